@@ -0,0 +1,222 @@
+package snake;
+
+import java.util.Arrays;
+
+/**
+ * The {@code AutopilotController} class steers a snake by pathfinding. Each
+ * decision runs a breadth-first search from the tile the head is about to
+ * enter to the nearest fruit by path length, going around bodies, heads and
+ * bad fruits. Before following the path it flood fills the area behind the
+ * first step, and if that area couldn't hold the snake it picks the step
+ * that leads into the largest area instead, so it doesn't chase a fruit
+ * into a dead end.
+ * <p>
+ * The searches only use int arrays that are allocated once per board size,
+ * and cells are marked with a stamp that changes every search instead of
+ * being cleared, so a decision costs no allocation and no more than a few
+ * passes over the reachable tiles.
+ */
+public class AutopilotController implements SnakeController {
+
+    /**
+     * The directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The number of tiles of the board the arrays were sized for.
+     */
+    private int iCells;
+
+    /**
+     * The tiles waiting to be expanded by the current search.
+     */
+    private int[] iaQueue;
+
+    /**
+     * The stamp of the last search that reached each tile.
+     */
+    private int[] iaSeen;
+
+    /**
+     * The ordinal of the first step of the path to each tile, as found by
+     * the last breadth-first search.
+     */
+    private int[] iaFirstStep;
+
+    /**
+     * The stamp of the current search.
+     */
+    private int iStamp;
+
+    /**
+     * The size of the area behind each possible first step.
+     */
+    private final int[] iaAreas = new int[DIRECTIONS.length];
+
+    @Override
+    public void control(final SnakeEngine engine, final int iSnake) {
+        /*
+         * Like the greedy bot, only decide once the previous decision has
+         * been acted on, and plan from the tile the head is about to move
+         * into.
+         */
+        if (!engine.isAlive(iSnake) || (engine.getDirectionCount(iSnake) > 1)) {
+            return;
+        }
+        final GameBoard board = engine.getBoard();
+        final Direction current = engine.getDirection(iSnake);
+        final int iFrom = engine.getNextCell(engine.getHeadCell(iSnake), current);
+        if ((iFrom < 0) || !isPassable(board.getCell(iFrom))) {
+            return;
+        }
+        prepare(board);
+
+        /*
+         * Measure the area behind each step, up to the size that is enough
+         * for the snake to fit in.
+         */
+        final int iBack = current.getOpposite().ordinal();
+        final int iEnough = engine.getLength(iSnake) + 1;
+        int iBest = -1;
+        for (int iStep = 0; iStep < DIRECTIONS.length; iStep++) {
+            iaAreas[iStep] = -1;
+            if (iStep == iBack) {
+                continue;
+            }
+            final int iNext = board.getNeighbour(iFrom, DIRECTIONS[iStep]);
+            if ((iNext >= 0) && isPassable(board.getCell(iNext))) {
+                iaAreas[iStep] = fill(board, iFrom, iNext, iEnough);
+                if ((iBest < 0) || (iaAreas[iStep] > iaAreas[iBest]) ||
+                        ((iaAreas[iStep] == iaAreas[iBest]) && (iStep == current.ordinal()))) {
+                    iBest = iStep;
+                }
+            }
+        }
+        if (iBest < 0) {
+            return;
+        }
+
+        /*
+         * Follow the path to the nearest fruit unless it leads somewhere
+         * too small to get out of.
+         */
+        final int iToFruit = findFruit(board, iFrom, iBack);
+        if ((iToFruit >= 0) && (iaAreas[iToFruit] >= Math.min(iEnough, iaAreas[iBest]))) {
+            iBest = iToFruit;
+        }
+        if (iBest != current.ordinal()) {
+            engine.queueDirection(iSnake, DIRECTIONS[iBest]);
+        }
+    }
+
+    /**
+     * Makes sure the arrays fit the board.
+     *
+     * @param board The board.
+     */
+    private void prepare(final GameBoard board) {
+        if ((iaQueue == null) || (board.getCellCount() != iCells)) {
+            iCells = board.getCellCount();
+            iaQueue = new int[iCells];
+            iaSeen = new int[iCells];
+            iaFirstStep = new int[iCells];
+            iStamp = 0;
+        }
+    }
+
+    /**
+     * Starts a new search, so that every tile counts as unreached.
+     *
+     * @return The stamp of the new search.
+     */
+    private int nextStamp() {
+        if (iStamp == Integer.MAX_VALUE) {
+            Arrays.fill(iaSeen, 0);
+            iStamp = 0;
+        }
+        return ++iStamp;
+    }
+
+    /**
+     * Searches breadth first for the nearest fruit.
+     *
+     * @param board The board.
+     * @param iFrom The tile the search starts from.
+     * @param iBack The ordinal of the step that would reverse the snake.
+     * @return The ordinal of the first step towards the nearest fruit, or -1
+     * if no fruit can be reached.
+     */
+    private int findFruit(final GameBoard board, final int iFrom, final int iBack) {
+        final int iSearch = nextStamp();
+        iaSeen[iFrom] = iSearch;
+        int iHead = 0;
+        int iTail = 0;
+        for (int iStep = 0; iStep < DIRECTIONS.length; iStep++) {
+            final int iNext = board.getNeighbour(iFrom, DIRECTIONS[iStep]);
+            if ((iStep != iBack) && (iNext >= 0) && isPassable(board.getCell(iNext))) {
+                iaSeen[iNext] = iSearch;
+                iaFirstStep[iNext] = iStep;
+                iaQueue[iTail++] = iNext;
+            }
+        }
+
+        while (iHead < iTail) {
+            final int iCell = iaQueue[iHead++];
+            if (board.getCell(iCell) == GameBoard.FRUIT) {
+                return iaFirstStep[iCell];
+            }
+            for (int iStep = 0; iStep < DIRECTIONS.length; iStep++) {
+                final int iNext = board.getNeighbour(iCell, DIRECTIONS[iStep]);
+                if ((iNext >= 0) && (iaSeen[iNext] != iSearch) &&
+                        isPassable(board.getCell(iNext))) {
+                    iaSeen[iNext] = iSearch;
+                    iaFirstStep[iNext] = iaFirstStep[iCell];
+                    iaQueue[iTail++] = iNext;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the tiles that can be reached from a tile without passing
+     * another one.
+     *
+     * @param board    The board.
+     * @param iBlocked The tile that can't be passed.
+     * @param iStart   The tile to count from.
+     * @param iLimit   The count at which to stop counting.
+     * @return The number of tiles, no more than the limit.
+     */
+    private int fill(final GameBoard board, final int iBlocked, final int iStart, final int iLimit) {
+        final int iSearch = nextStamp();
+        iaSeen[iBlocked] = iSearch;
+        iaSeen[iStart] = iSearch;
+        iaQueue[0] = iStart;
+        int iHead = 0;
+        int iTail = 1;
+        while ((iHead < iTail) && (iTail < iLimit)) {
+            final int iCell = iaQueue[iHead++];
+            for (int iStep = 0; iStep < DIRECTIONS.length; iStep++) {
+                final int iNext = board.getNeighbour(iCell, DIRECTIONS[iStep]);
+                if ((iNext >= 0) && (iaSeen[iNext] != iSearch) &&
+                        isPassable(board.getCell(iNext))) {
+                    iaSeen[iNext] = iSearch;
+                    iaQueue[iTail++] = iNext;
+                }
+            }
+        }
+        return Math.min(iTail, iLimit);
+    }
+
+    /**
+     * Checks whether a snake can move onto a tile and survive.
+     *
+     * @param bCode The tile's code.
+     * @return Whether or not the tile is safe.
+     */
+    private static boolean isPassable(final byte bCode) {
+        return (bCode == GameBoard.EMPTY) || (bCode == GameBoard.FRUIT);
+    }
+}
@@ -0,0 +1,176 @@
+package snake;
+
+import java.awt.Color;
+import java.awt.Graphics;
+
+/**
+ * The {@code BoardEffects} class sets off the particle effects of a board:
+ * a burst where a fruit is eaten, debris where a snake dies and a trail
+ * behind each tail. It works out where each effect goes from the cells of
+ * the board and the size of a tile, and needs no window, so the tick path
+ * can be driven headless with its effects included.
+ */
+public class BoardEffects {
+
+    /**
+     * The most particles alive on the board at once.
+     */
+    public static final int iPARTICLE_CAPACITY = 4096;
+
+    /**
+     * The downward pull on the particles, in pixels per second squared.
+     */
+    private static final float fPARTICLE_GRAVITY = 240.0f;
+
+    /**
+     * The colors of the particles, indexed by the {@code iPARTICLE_*}
+     * constants.
+     */
+    private static final Color[] PARTICLE_COLORS = {
+            Color.MAGENTA.brighter(), Color.ORANGE, Color.WHITE, Color.LIGHT_GRAY};
+
+    /**
+     * The particle color of a fruit being eaten.
+     */
+    private static final int iPARTICLE_FRUIT = 0;
+
+    /**
+     * The particle color of the debris of a dead snake.
+     */
+    private static final int iPARTICLE_DEBRIS = 1;
+
+    /**
+     * The particle color of the sparks thrown off by a dead snake.
+     */
+    private static final int iPARTICLE_SPARK = 2;
+
+    /**
+     * The particle color of the trail behind a snake.
+     */
+    private static final int iPARTICLE_TRAIL = 3;
+
+    /**
+     * The particles of the bursts, debris and trails.
+     */
+    private final ParticleSystem pasParticles;
+
+    /**
+     * The number of columns on the board.
+     */
+    private final int iCols;
+
+    /**
+     * The size of each tile in pixels.
+     */
+    private final int iTileSize;
+
+    /**
+     * Creates the effects of a board.
+     *
+     * @param iCols      The number of columns on the board.
+     * @param iTileSize  The size of each tile in pixels.
+     * @param background The color behind the tiles, which the particles fade
+     *                   out into.
+     */
+    public BoardEffects(final int iCols, final int iTileSize, final Color background) {
+        this.iCols = iCols;
+        this.iTileSize = iTileSize;
+        this.pasParticles = new ParticleSystem(iPARTICLE_CAPACITY, PARTICLE_COLORS, background,
+                                               fPARTICLE_GRAVITY);
+    }
+
+    /**
+     * Moves the particles on by some time.
+     *
+     * @param fSeconds The time since the last update, in seconds.
+     */
+    public void update(final float fSeconds) {
+        pasParticles.update(fSeconds);
+    }
+
+    /**
+     * Draws the particles.
+     *
+     * @param g The graphics object to draw to.
+     */
+    public void draw(final Graphics g) {
+        pasParticles.draw(g);
+    }
+
+    /**
+     * Checks whether any particles are still flying.
+     *
+     * @return Whether or not there are live particles.
+     */
+    public boolean hasParticles() {
+        return pasParticles.getCount() > 0;
+    }
+
+    /**
+     * Removes every particle.
+     */
+    public void clear() {
+        pasParticles.clear();
+    }
+
+    /**
+     * Bursts particles out of a fruit that was just eaten.
+     *
+     * @param iCell The cell of the fruit.
+     */
+    public void emitFruitBurst(final int iCell) {
+        pasParticles.emit(getCellCenterX(iCell), getCellCenterY(iCell), 24,
+                          iTileSize * 8.0f, 0.6f, Math.max(2, iTileSize / 6),
+                          iPARTICLE_FRUIT);
+    }
+
+    /**
+     * Breaks the body of a snake that just died into debris.
+     *
+     * @param engine The engine the snake is in.
+     * @param iSnake The snake.
+     */
+    public void emitDeathDebris(final SnakeEngine engine, final int iSnake) {
+        final int iSize = Math.max(2, iTileSize / 4);
+        final int iLength = engine.getLength(iSnake);
+        for (int iPiece = 0; iPiece < iLength; iPiece++) {
+            final int iCell = engine.getBodyCell(iSnake, iPiece);
+            final float fX = getCellCenterX(iCell);
+            final float fY = getCellCenterY(iCell);
+            pasParticles.emit(fX, fY, 6, iTileSize * 6.0f, 1.2f, iSize, iPARTICLE_DEBRIS);
+            pasParticles.emit(fX, fY, 2, iTileSize * 10.0f, 0.5f, iSize / 2,
+                              iPARTICLE_SPARK);
+        }
+    }
+
+    /**
+     * Leaves a short trail of particles in a cell a snake has just left.
+     *
+     * @param iCell The cell.
+     */
+    public void emitTrail(final int iCell) {
+        pasParticles.emit(getCellCenterX(iCell), getCellCenterY(iCell), 2,
+                          iTileSize * 0.75f, 0.4f, Math.max(1, iTileSize / 8),
+                          iPARTICLE_TRAIL);
+    }
+
+    /**
+     * Gets the x coordinate of the center of a cell.
+     *
+     * @param iCell The cell.
+     * @return The x coordinate in pixels.
+     */
+    private float getCellCenterX(final int iCell) {
+        return ((iCell % iCols) * iTileSize) + (iTileSize / 2.0f);
+    }
+
+    /**
+     * Gets the y coordinate of the center of a cell.
+     *
+     * @param iCell The cell.
+     * @return The y coordinate in pixels.
+     */
+    private float getCellCenterY(final int iCell) {
+        return ((iCell / iCols) * iTileSize) + (iTileSize / 2.0f);
+    }
+}
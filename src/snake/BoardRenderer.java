@@ -0,0 +1,516 @@
+package snake;
+
+import java.awt.*;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+import static snake.BoardPanel.ALPHA_THRESHOLD;
+import static snake.BoardPanel.BRIGHT_RADIAL;
+import static snake.BoardPanel.DARK_RADIAL;
+
+/**
+ * The {@code BoardRenderer} class draws the tiles and the grid of a board
+ * onto any {@link Graphics}, whether that's the {@link BoardPanel} of a live
+ * window or an offscreen image with no display at all. It keeps the state of
+ * the shining animation, which moves on by one step per frame drawn.
+ * <p>
+ * The colors and the jitter of the tiles come from a random number
+ * generator that can be seeded, so that the frames of a replay come out the
+ * same every time they're drawn.
+ */
+public class BoardRenderer {
+
+    /**
+     * The smallest size of a tile in pixels, used when a large board has to
+     * be scaled down to fit on the screen.
+     */
+    private static final int iMIN_TILE_SIZE = 4;
+
+    /**
+     * The largest size (in pixels) that a board is scaled down to fit in.
+     */
+    private static final int iMAX_BOARD_SIZE = 800;
+
+    /**
+     * The number of columns on the board.
+     */
+    private final int iCols;
+
+    /**
+     * The number of rows on the board.
+     */
+    private final int iRows;
+
+    /**
+     * The size of each tile in pixels.
+     */
+    private final int iTileSize;
+
+    /**
+     * The number of pixels to offset the eyes from the sides.
+     */
+    private final int iEyeLargeInset;
+
+    /**
+     * The number of pixels to offset the eyes from the front.
+     */
+    private final int iEyeSmallInset;
+
+    /**
+     * The length of the eyes from the base (small inset).
+     */
+    private final int iEyeLength;
+
+    /**
+     * The random number generator used for the colors and the jitter of the
+     * tiles.
+     */
+    private final Random rRandom = new Random();
+
+    /**
+     * The current amount of alpha a tile is being drawn with in order to
+     * animate a "shining" effect.
+     */
+    private float fAlphaAmount;
+
+    /**
+     * How much is the current alpha being modified with the drawing of each
+     * tile.
+     */
+    private float fAlphaFactor;
+
+    /**
+     * The level of displacement from the gradient center to animate motion.
+     */
+    private float iGradientModifier;
+
+    /**
+     * Where the light and dark colors sit along the gradient of a fruit.
+     */
+    private static final float[] faFRUIT_GRADIENT = {BRIGHT_RADIAL, DARK_RADIAL};
+
+    /**
+     * The light and dark colors of the gradient of the current fruit color,
+     * picked together with it rather than for every frame.
+     */
+    private final Color[] colaFruitGradient = new Color[2];
+
+    /**
+     * Creates a renderer for boards of a size, with tiles scaled down to fit
+     * a large board on the screen.
+     *
+     * @param iCols The number of columns.
+     * @param iRows The number of rows.
+     */
+    public BoardRenderer(final int iCols, final int iRows) {
+        this(iCols, iRows, getDefaultTileSize(iCols, iRows));
+    }
+
+    /**
+     * Creates a renderer for boards of a size.
+     *
+     * @param iCols     The number of columns.
+     * @param iRows     The number of rows.
+     * @param iTileSize The size of each tile in pixels.
+     */
+    public BoardRenderer(final int iCols, final int iRows, final int iTileSize) {
+        this.iCols = iCols;
+        this.iRows = iRows;
+        this.iTileSize = iTileSize;
+        this.iEyeLargeInset = iTileSize / 3;
+        this.iEyeSmallInset = iTileSize / 6;
+        this.iEyeLength = iTileSize / 5;
+        this.fAlphaAmount = 0.4f;
+        pickFruitColor();
+        this.fAlphaFactor = 0.06f;
+        this.iGradientModifier = 0;
+    }
+
+    /**
+     * Gets the size a tile is drawn at on the screen: the usual size, or
+     * smaller if that's needed to fit a large board.
+     *
+     * @param iCols The number of columns.
+     * @param iRows The number of rows.
+     * @return The size of a tile in pixels.
+     */
+    public static int getDefaultTileSize(final int iCols, final int iRows) {
+        return Math.max(iMIN_TILE_SIZE, Math.min(BoardPanel.iTILE_SIZE,
+                iMAX_BOARD_SIZE / Math.max(iCols, iRows)));
+    }
+
+    /**
+     * Gets the size of each tile.
+     *
+     * @return The size in pixels.
+     */
+    public int getTileSize() {
+        return iTileSize;
+    }
+
+    /**
+     * Gets the width of a drawn board.
+     *
+     * @return The width in pixels.
+     */
+    public int getWidth() {
+        return iCols * iTileSize;
+    }
+
+    /**
+     * Gets the height of a drawn board.
+     *
+     * @return The height in pixels.
+     */
+    public int getHeight() {
+        return iRows * iTileSize;
+    }
+
+    /**
+     * Seeds the colors and the jitter of the tiles.
+     *
+     * @param lSeed The seed.
+     */
+    public void setSeed(final long lSeed) {
+        rRandom.setSeed(lSeed);
+        pickFruitColor();
+    }
+
+    /**
+     * Sets the current alpha amount
+     * @param fAlphaAmount The alpha amount
+     */
+    public void setAlphaAmount(final float fAlphaAmount) {
+        this.fAlphaAmount = fAlphaAmount;
+    }
+
+    /**
+     * Sets the current alpha factor
+     * @param fAlphaFactor The alpha factor
+     */
+    public void setAlphaFactor(final float fAlphaFactor) {
+        this.fAlphaFactor = fAlphaFactor;
+    }
+
+    /**
+     * Draws one frame of a board: moves the animation on a step, then draws
+     * the tiles and the grid.
+     *
+     * @param g      The graphics object to draw to.
+     * @param board  The board.
+     * @param engine The engine the board belongs to, which gives the
+     *               direction of each head, or null to draw heads without
+     *               eyes.
+     * @return The number of tiles drawn.
+     */
+    public int render(final Graphics g, final GameBoard board, final SnakeEngine engine) {
+        updateAlphaValue();
+        final int iTilesDrawn = drawTiles(g, board, engine);
+        drawGrid(g);
+        return iTilesDrawn;
+    }
+
+    /**
+     * Draws a single tile in the current step of the animation, for sprites
+     * that are drawn once and reused.
+     *
+     * @param g         The graphics object to draw to.
+     * @param iX        The x coordinate of the tile (in pixels).
+     * @param iY        The y coordinate of the tile (in pixels).
+     * @param type      The type of tile to draw.
+     * @param direction The direction a snake head is facing, or null.
+     */
+    void drawSprite(final Graphics g,
+                    final int iX,
+                    final int iY,
+                    final TileType type,
+                    final Direction direction) {
+        drawTile(iX, iY, type, direction, g, fAlphaAmount);
+    }
+
+    private int drawTiles(final Graphics g, final GameBoard board, final SnakeEngine engine) {
+    /*
+     * Loop through each tile on the board and draw it if it
+     * is not null. Heads are drawn afterwards, once per live snake, so that
+     * each one can face its own direction. Without an engine, heads are
+     * drawn with the other tiles.
+     */
+        int iDrawn = 0;
+        for(int iCell = 0; iCell < board.getCellCount(); iCell++) {
+            TileType type = GameBoard.decode(board.getCell(iCell));
+            if((type != null) && ((type != TileType.SnakeHead) || (engine == null))) {
+                // Draw tile and glow
+                drawTile((iCell % iCols) * iTileSize, (iCell / iCols) * iTileSize,
+                         type, null, g, fAlphaAmount);
+                iDrawn++;
+            }
+        }
+        if (engine == null) {
+            return iDrawn;
+        }
+        for(int iSnake = 0; iSnake < engine.getSnakeCount(); iSnake++) {
+            final int iHead = engine.getHeadCell(iSnake);
+            if((engine.getLength(iSnake) > 0) &&
+                    (board.getCell(iHead) == GameBoard.SNAKE_HEAD)) {
+                drawTile((iHead % iCols) * iTileSize, (iHead / iCols) * iTileSize,
+                         TileType.SnakeHead, engine.getDirection(iSnake), g,
+                         fAlphaAmount);
+                iDrawn++;
+            }
+        }
+        return iDrawn;
+    }
+
+    private void drawGrid(Graphics g) {
+    /*
+     * Draw the grid on the board. This makes it easier to see exactly
+     * where we in relation to the fruit.
+     *
+     * The board is one pixel too small to draw the bottom and right
+     * outlines, so we outline the board with a rectangle separately.
+     */
+        g.setColor(Color.DARK_GRAY);
+        g.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
+        for(int x = 0; x < iCols; x++) {
+            g.drawLine(x * iTileSize, 0, x * iTileSize, getHeight());
+        }
+        for(int y = 0; y < iRows; y++) {
+            g.drawLine(0, y * iTileSize, getWidth(), y * iTileSize);
+        }
+    }
+
+    private void updateAlphaValue() {
+        fAlphaAmount += fAlphaFactor;
+    /*
+     * When the alpha has reached the maximum value, start decreasing
+     * it and viceversa.
+     */
+        if(fAlphaAmount >= ALPHA_THRESHOLD){
+            fAlphaAmount = 0.75f;
+            fAlphaFactor *= -1;
+            pickFruitColor();
+        }
+        else if(fAlphaAmount <= 0.200f){
+            fAlphaAmount = 0.3f;
+            fAlphaFactor *= -1;
+            pickFruitColor();
+        }
+        if(iGradientModifier > 12){
+            iGradientModifier = 0;
+        }
+    }
+
+
+    /**
+     * Draws a tile onto the board.
+     * @param iX The x coordinate of the tile (in pixels).
+     * @param iY The y coordinate of the tile (in pixels).
+     * @param type The type of tile to draw.
+     * @param direction The direction a snake head is facing, or null for
+     *                  any other tile.
+     * @param g The graphics object to draw to.
+     */
+    private void drawTile(int iX, int iY, TileType type, Direction direction,
+                          Graphics g, final float fAlphaValue) {
+        /*
+         * Create a new Graphics2D instance to allow alpha to be drawn into
+         * the object. Then save the current composite to restore normal
+         * non-alpha painting.
+         */
+        Graphics2D g2d = (Graphics2D) g;
+        Composite cCurrentComposite = g2d.getComposite();
+
+
+        /*
+         * Because each type of tile is drawn differently, it's easiest
+         * to just run through a switch statement rather than come up with some
+         * overly complex code to handle everything.
+         */
+        switch(type) {
+            /*
+             * A fruit is depicted as a small red circle that with a bit of padding
+             * on each side.
+             */
+            case Fruit:
+                g2d.setColor(Color.MAGENTA.brighter());
+                g2d.fillOval(iX + 2, iY + 2, iTileSize - 4, iTileSize - 4);
+
+                /*
+                 * Create a radial gradient with the light and dark colors to give the
+                 * tile a more dynamic look. The increasing iGradientModifier gives the
+                 * effect of the tile shining
+                 */
+                final Point2D center = new Point2D.Float((iX / 2) + iGradientModifier,
+                                                         iY / 2);
+                iGradientModifier += .1;
+                final float radius = 14;
+                RadialGradientPaint paint =
+                        new RadialGradientPaint(center,
+                                                radius,
+                                                faFRUIT_GRADIENT,
+                                                colaFruitGradient,
+                                                CycleMethod.REFLECT);
+                g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER,
+
+                                                            fAlphaValue));
+                g2d.setPaint(paint);
+                g2d.fillOval(iX + 1,
+                             iY + 1,
+                             iTileSize - 2,
+                             iTileSize - 2);
+                g2d.setComposite(cCurrentComposite);
+                break;
+
+            /*
+            * A bad fruit is depicted as a small blue circe that with a bit of padding
+            * on each side
+            */
+            case BadFruit:
+                int iNegativizer = rRandom.nextInt(2);
+                if (iNegativizer != 1) {
+                    iNegativizer = -1;
+                }
+                g.setColor(Color.CYAN.darker().darker());
+                final int iEnlarge = 40;
+                g.fillRect((iX + 2 + (rRandom.nextInt(2) * iNegativizer)) -
+                                   getExpansion(iEnlarge / 2),
+                           (iY + 2 + (rRandom.nextInt(2) * iNegativizer)) -
+                                   getExpansion(iEnlarge / 2),
+                           (iTileSize - 4) + getExpansion(iEnlarge),
+                           (iTileSize - 4) + getExpansion(iEnlarge));
+                break;
+
+            /*
+             * The snake body is depicted as a green square that takes up the
+             * entire tile.
+             */
+            case SnakeBody:
+                g.setColor(getRandomColor().brighter().brighter());
+                g.fillRect(iX, iY, iTileSize, iTileSize);
+                break;
+
+            /*
+             * The snake head is depicted similarly to the body, but with two
+             * lines (representing eyes) that indicate it's direction.
+             */
+            case SnakeHead:
+                //Fill the tile in with green.
+                g.setColor(getRandomColor().brighter().brighter());
+                g.fillRect(iX, iY, iTileSize, iTileSize);
+
+                /*
+                 * A head read back from a stream has no direction, so it's
+                 * drawn without eyes.
+                 */
+                if (direction == null) {
+                    break;
+                }
+
+                //Set the color to black so that we can start drawing the eyes.
+                g.setColor(Color.BLACK);
+
+                /*
+                 * The eyes will always 'face' the direction that the snake is
+                 * moving.
+                 *
+                 * Vertical lines indicate that it's facing North or South, and
+                 * Horizontal lines indicate that it's facing East or West.
+                 *
+                 * Additionally, the eyes will be closer to whichever edge it's
+                 * facing.
+                 *
+                 * Drawing the eyes is fairly simple, but is a bit difficult to
+                 * explain. The basic process is this:
+                 *
+                 * First, we add (or subtract) iEyeSmallInset to or from the
+                 * side of the tile representing the direction we're facing. This
+                 * will be constant for both eyes, and is represented by the
+                 * variable 'baseX' or 'baseY' (depending on orientation).
+                 *
+                 * Next, we add (or subtract) iEyeLargeInset to and from the two
+                 * neighboring directions (Example; East and West if we're facing
+                 * north).
+                 *
+                 * Finally, we draw a line from the base offset that is iEyeLength
+                 * pixels in length at whatever the offset is from the neighboring
+                 * directions.
+                 *
+                 */
+                switch (direction) {
+                    case North: {
+                        final int baseY = iY + iEyeSmallInset;
+                        g.drawLine(iX + iEyeLargeInset,
+                                   baseY,
+                                   iX + iEyeLargeInset,
+                                   baseY + iEyeLength);
+                        g.drawLine((iX + iTileSize) - iEyeLargeInset,
+                                   baseY,
+                                   (iX + iTileSize) - iEyeLargeInset,
+                                   baseY + iEyeLength);
+                        break;
+                    }
+
+                    case South: {
+                        final int baseY = (iY + iTileSize) - iEyeSmallInset;
+                        g.drawLine(iX + iEyeLargeInset,
+                                   baseY,
+                                   iX + iEyeLargeInset,
+                                   baseY - iEyeLength);
+                        g.drawLine((iX + iTileSize) - iEyeLargeInset,
+                                   baseY,
+                                   (iX + iTileSize) - iEyeLargeInset,
+                                   baseY - iEyeLength);
+                        break;
+                    }
+                    case West: {
+                        final int baseX = iX + iEyeSmallInset;
+                        g.drawLine(baseX,
+                                   iY + iEyeLargeInset,
+                                   baseX + iEyeLength,
+                                   iY + iEyeLargeInset);
+                        g.drawLine(baseX,
+                                   (iY + iTileSize) - iEyeLargeInset,
+                                   baseX + iEyeLength,
+                                   (iY + iTileSize) - iEyeLargeInset);
+                        break;
+                    }
+
+                    case East: {
+                        final int baseX = (iX + iTileSize) - iEyeSmallInset;
+                        g.drawLine(baseX,
+                                   iY + iEyeLargeInset,
+                                   baseX - iEyeLength,
+                                   iY + iEyeLargeInset);
+                        g.drawLine(baseX,
+                                   (iY + iTileSize) - iEyeLargeInset,
+                                   baseX - iEyeLength,
+                                   (iY + iTileSize) - iEyeLargeInset);
+                        break;
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Picks a new random color for the fruits to shine with.
+     */
+    private void pickFruitColor() {
+        final Color cFruitColor = getRandomColor();
+        colaFruitGradient[0] = cFruitColor.brighter();
+        colaFruitGradient[1] = cFruitColor.darker();
+    }
+
+    private Color getRandomColor(){
+        final float fRed = rRandom.nextFloat();
+        final float fBlue = rRandom.nextFloat();
+        final float fGreen = rRandom.nextFloat();
+        return new Color(fRed, fBlue, fGreen);
+    }
+
+    // Creates an expansion value based on the current alpha value
+    int getExpansion(final int iAmplifier){
+        return (int) (fAlphaAmount * iAmplifier * fAlphaFactor);
+    }
+}
@@ -123,6 +123,14 @@ public class Clock implements Serializable {
         return false;
     }
 
+    /**
+     * Discards all of the cycles that have elapsed but have not been polled
+     * yet. This is used to drop a backlog that can't be caught up on.
+     */
+    public void clearElapsedCycles() {
+        iElapsedCycles = 0;
+    }
+
     /**
      * Checks to see if a cycle has elapsed for this clock yet. Unlike
      * {@code hasElapsedCycle}, the number of cycles will not be decremented
@@ -0,0 +1,65 @@
+package snake;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code Counter} class is a lock-free, monotonically increasing count of
+ * events that can be exposed over JMX.
+ */
+public class Counter implements CounterMXBean {
+
+    /**
+     * The name this counter is registered and dumped under.
+     */
+    private final String sName;
+
+    /**
+     * The running count.
+     */
+    private final LongAdder ladCount;
+
+    /**
+     * Creates a new counter starting at zero.
+     *
+     * @param sName The name of the counter.
+     */
+    public Counter(final String sName) {
+        this.sName = sName;
+        ladCount = new LongAdder();
+    }
+
+    /**
+     * Counts a single event.
+     */
+    public void increment() {
+        ladCount.increment();
+    }
+
+    /**
+     * Counts several events at once.
+     *
+     * @param lAmount The number of events.
+     */
+    public void add(final long lAmount) {
+        ladCount.add(lAmount);
+    }
+
+    /**
+     * Gets the name of this counter.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return sName;
+    }
+
+    @Override
+    public long getCount() {
+        return ladCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return sName + " count=" + getCount();
+    }
+}
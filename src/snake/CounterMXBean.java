@@ -0,0 +1,15 @@
+package snake;
+
+/**
+ * The {@code CounterMXBean} interface is the management view of a
+ * {@link Counter} that is exposed over JMX.
+ */
+public interface CounterMXBean {
+
+    /**
+     * Gets the number of events counted so far.
+     *
+     * @return The count.
+     */
+    long getCount();
+}
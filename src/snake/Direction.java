@@ -26,7 +26,25 @@ public enum Direction {
     /**
      * Moving West (Left).
      */
-    West
+    West;
+
+    /**
+     * Gets the direction that points the opposite way.
+     *
+     * @return The opposite direction.
+     */
+    public Direction getOpposite() {
+        switch (this) {
+            case North:
+                return South;
+            case South:
+                return North;
+            case East:
+                return West;
+            default:
+                return East;
+        }
+    }
 
 }
 
@@ -0,0 +1,513 @@
+package snake;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code FrameExporter} class draws game states into offscreen images
+ * and encodes them as PNGs, with no display needed, so that clips can be
+ * made on machines without one. Boards are drawn by the same
+ * {@link BoardRenderer} as the game window.
+ * <p>
+ * Frames go through a bounded pipeline: the caller draws each frame into an
+ * image taken from a fixed pool, several worker threads encode frames at
+ * the same time, and a writer thread hands the encoded frames to the
+ * {@link FrameSink} strictly in the order they were drawn. When every image
+ * of the pool is waiting to be encoded or written, drawing the next frame
+ * waits, so memory stays bounded however slow the encoders are.
+ * <p>
+ * Usage: {@code FrameExporter [--out=DIR] [--seed=N] [--bot=B] [--size=N]
+ * [--frames=N] [--stream=FILE] [--tile=N] [--threads=N] [--queue=N]}
+ * simulates the game of a bot on the board seeded with {@code N} (the same
+ * seed and bot always give the same game), or replays a recorded
+ * {@link SpectatorStream}, and writes one {@code frame-NNNNNN.png} per tick
+ * to {@code DIR}.
+ */
+public class FrameExporter implements Closeable {
+
+    /**
+     * The color of the board behind the tiles, as in the game window.
+     */
+    private static final Color BACKGROUND = Color.DARK_GRAY.darker().darker();
+
+    /**
+     * The marker that tells the writer no more frames are coming.
+     */
+    private static final Future<byte[]> END = new FutureTask<>(new Callable<byte[]>() {
+        @Override
+        public byte[] call() {
+            return null;
+        }
+    });
+
+    /**
+     * The renderer that draws the boards.
+     */
+    private final BoardRenderer bdrRenderer;
+
+    /**
+     * The images that are free to draw into.
+     */
+    private final BlockingQueue<BufferedImage> queFree;
+
+    /**
+     * The frames being encoded or waiting to be written, in order.
+     */
+    private final BlockingQueue<Future<byte[]>> queEncoded;
+
+    /**
+     * The threads that encode the frames.
+     */
+    private final ExecutorService exsEncoders;
+
+    /**
+     * The thread that writes the frames in order.
+     */
+    private final Thread thrWriter;
+
+    /**
+     * Where the encoded frames go.
+     */
+    private final FrameSink sinkFrames;
+
+    /**
+     * The first failure of an encoder or of the sink, or null.
+     */
+    private volatile Throwable thrFailure;
+
+    /**
+     * The number of frames drawn.
+     */
+    private int iFrames;
+
+    /**
+     * The number of bytes written to the sink.
+     */
+    private volatile long lBytes;
+
+    /**
+     * Whether or not {@link #close()} has run.
+     */
+    private boolean bClosed;
+
+    /**
+     * Creates a new exporter and starts its threads.
+     *
+     * @param bdrRenderer The renderer that draws the boards.
+     * @param iThreads    The number of threads that encode frames.
+     * @param iQueue      The number of frames that may be drawn but not yet
+     *                    written, at least one per encoder.
+     * @param sinkFrames  Where the encoded frames go.
+     */
+    public FrameExporter(final BoardRenderer bdrRenderer,
+                         final int iThreads,
+                         final int iQueue,
+                         final FrameSink sinkFrames) {
+        this.bdrRenderer = bdrRenderer;
+        this.sinkFrames = sinkFrames;
+        final int iImages = Math.max(iThreads, iQueue);
+        this.queFree = new ArrayBlockingQueue<>(iImages);
+        for (int iImage = 0; iImage < iImages; iImage++) {
+            queFree.add(new BufferedImage(bdrRenderer.getWidth(), bdrRenderer.getHeight(),
+                                          BufferedImage.TYPE_INT_RGB));
+        }
+        this.queEncoded = new ArrayBlockingQueue<>(iImages);
+
+        final AtomicInteger iEncoders = new AtomicInteger();
+        this.exsEncoders = Executors.newFixedThreadPool(iThreads, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thrThread = new Thread(runnable, "frame-encoder-" +
+                        iEncoders.incrementAndGet());
+                thrThread.setDaemon(true);
+                return thrThread;
+            }
+        });
+        this.thrWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "frame-writer");
+        thrWriter.setDaemon(true);
+        thrWriter.start();
+    }
+
+    /**
+     * Draws a frame and queues it to be encoded, waiting for a free image if
+     * the pipeline is full. The board is only read before this returns, so
+     * the game may move on straight away.
+     *
+     * @param board  The board.
+     * @param engine The engine the board belongs to, or null to draw heads
+     *               without eyes.
+     * @throws IOException If an earlier frame could not be encoded or
+     *                     written, or the wait was interrupted.
+     */
+    public void addFrame(final GameBoard board, final SnakeEngine engine) throws IOException {
+        checkFailure();
+        final BufferedImage imgFrame;
+        try {
+            imgFrame = queFree.take();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a free frame", e);
+        }
+
+        final Graphics2D g2dFrame = imgFrame.createGraphics();
+        try {
+            g2dFrame.setColor(BACKGROUND);
+            g2dFrame.fillRect(0, 0, imgFrame.getWidth(), imgFrame.getHeight());
+            bdrRenderer.render(g2dFrame, board, engine);
+        }
+        finally {
+            g2dFrame.dispose();
+        }
+        iFrames++;
+
+        /*
+         * Encoded frames wait in the queue until they're written, so a slow
+         * sink holds up drawing here as well.
+         */
+        final Future<byte[]> futPng = exsEncoders.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                try {
+                    final ByteArrayOutputStream baosPng = new ByteArrayOutputStream(
+                            imgFrame.getWidth() * imgFrame.getHeight() / 4);
+                    ImageIO.write(imgFrame, "png", baosPng);
+                    return baosPng.toByteArray();
+                }
+                finally {
+                    queFree.add(imgFrame);
+                }
+            }
+        });
+        try {
+            queEncoded.put(futPng);
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queueing a frame", e);
+        }
+    }
+
+    /**
+     * Hands the encoded frames to the sink in the order they were drawn,
+     * until the end marker. After a failure the frames are still taken off
+     * the queue, but no longer written.
+     */
+    private void write() {
+        int iFrame = 0;
+        while (true) {
+            final Future<byte[]> futPng;
+            try {
+                futPng = queEncoded.take();
+            }
+            catch (final InterruptedException e) {
+                thrFailure = e;
+                return;
+            }
+            if (futPng == END) {
+                return;
+            }
+            try {
+                final byte[] baPng = futPng.get();
+                if (thrFailure == null) {
+                    sinkFrames.write(iFrame, baPng);
+                    lBytes += baPng.length;
+                }
+            }
+            catch (final ExecutionException e) {
+                if (thrFailure == null) {
+                    thrFailure = e.getCause();
+                }
+            }
+            catch (final IOException | RuntimeException | InterruptedException e) {
+                if (thrFailure == null) {
+                    thrFailure = e;
+                }
+            }
+            iFrame++;
+        }
+    }
+
+    /**
+     * Throws the first failure of the pipeline, if there was one.
+     *
+     * @throws IOException The failure.
+     */
+    private void checkFailure() throws IOException {
+        final Throwable thrFirst = thrFailure;
+        if (thrFirst != null) {
+            throw (thrFirst instanceof IOException) ? (IOException) thrFirst :
+                    new IOException("A frame could not be exported", thrFirst);
+        }
+    }
+
+    /**
+     * Gets the number of frames drawn.
+     *
+     * @return The number of frames.
+     */
+    public int getFrameCount() {
+        return iFrames;
+    }
+
+    /**
+     * Gets the number of bytes of PNG written so far.
+     *
+     * @return The number of bytes.
+     */
+    public long getByteCount() {
+        return lBytes;
+    }
+
+    /**
+     * Waits for every frame to be encoded and written, then stops the
+     * threads.
+     *
+     * @throws IOException If a frame could not be encoded or written, or
+     *                     the wait was interrupted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (bClosed) {
+            return;
+        }
+        bClosed = true;
+        try {
+            queEncoded.put(END);
+            thrWriter.join();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing frames", e);
+        }
+        finally {
+            exsEncoders.shutdown();
+        }
+        checkFailure();
+    }
+
+    /**
+     * The {@code FrameSink} interface receives the encoded frames, one at a
+     * time and in order.
+     */
+    public interface FrameSink {
+
+        /**
+         * Writes a frame.
+         *
+         * @param iFrame The number of the frame, from 0.
+         * @param baPng  The frame as a PNG file.
+         * @throws IOException If the frame could not be written.
+         */
+        void write(int iFrame, byte[] baPng) throws IOException;
+    }
+
+    /**
+     * Creates a sink that writes each frame to its own numbered file in a
+     * directory, which it creates if needed.
+     *
+     * @param pthDirectory The directory.
+     * @return The sink.
+     * @throws IOException If the directory could not be created.
+     */
+    public static FrameSink toDirectory(final Path pthDirectory) throws IOException {
+        Files.createDirectories(pthDirectory);
+        return new FrameSink() {
+            @Override
+            public void write(final int iFrame, final byte[] baPng) throws IOException {
+                try (final OutputStream osOut = Files.newOutputStream(
+                        pthDirectory.resolve(String.format("frame-%06d.png", iFrame)))) {
+                    osOut.write(baPng);
+                }
+            }
+        };
+    }
+
+    /**
+     * Entry point of the exporter.
+     *
+     * @param args The options described in the class comment.
+     * @throws IOException If a stream could not be read or a frame could
+     *                     not be written.
+     */
+    public static void main(final String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        String sOut = "snake_frames";
+        long lSeed = 1L;
+        String sBot = "greedy";
+        int iSize = BoardPanel.iCOL_COUNT;
+        int iMaxFrames = 10000;
+        String sStream = null;
+        int iTileSize = BoardPanel.iTILE_SIZE;
+        int iThreads = Runtime.getRuntime().availableProcessors();
+        int iQueue = 0;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--out=")) {
+                sOut = sArg.substring("--out=".length());
+            }
+            else if (sArg.startsWith("--seed=")) {
+                lSeed = Long.parseLong(sArg.substring("--seed=".length()));
+            }
+            else if (sArg.startsWith("--bot=")) {
+                sBot = sArg.substring("--bot=".length());
+            }
+            else if (sArg.startsWith("--size=")) {
+                iSize = Math.max(5, Integer.parseInt(sArg.substring("--size=".length())));
+            }
+            else if (sArg.startsWith("--frames=")) {
+                iMaxFrames = Math.max(1, Integer.parseInt(sArg.substring("--frames=".length())));
+            }
+            else if (sArg.startsWith("--stream=")) {
+                sStream = sArg.substring("--stream=".length());
+            }
+            else if (sArg.startsWith("--tile=")) {
+                iTileSize = Math.max(2, Integer.parseInt(sArg.substring("--tile=".length())));
+            }
+            else if (sArg.startsWith("--threads=")) {
+                iThreads = Math.max(1, Integer.parseInt(sArg.substring("--threads=".length())));
+            }
+            else if (sArg.startsWith("--queue=")) {
+                iQueue = Math.max(1, Integer.parseInt(sArg.substring("--queue=".length())));
+            }
+        }
+        if (iQueue == 0) {
+            iQueue = 2 * iThreads;
+        }
+
+        final FrameSink sinkFrames = toDirectory(Paths.get(sOut));
+        final long lStart = System.nanoTime();
+        final FrameExporter exporter;
+        if (sStream != null) {
+            exporter = replay(Paths.get(sStream), iMaxFrames, iTileSize, iThreads, iQueue, sinkFrames);
+        }
+        else {
+            exporter = simulate(lSeed, sBot, iSize, iMaxFrames, iTileSize, iThreads, iQueue,
+                                sinkFrames);
+        }
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+        System.out.printf("frames=%d seconds=%.2f frames/s=%.0f bytes=%d%n",
+                          exporter.getFrameCount(),
+                          dSeconds,
+                          exporter.getFrameCount() / dSeconds,
+                          exporter.getByteCount());
+    }
+
+    /**
+     * Exports the game a bot plays on a seeded board, one frame per tick,
+     * until the game ends, the bot starves or there are enough frames.
+     *
+     * @param lSeed      The seed of the board.
+     * @param sBot       The name of the bot.
+     * @param iSize      The size of the board.
+     * @param iMaxFrames The most frames to export.
+     * @param iTileSize  The size of each tile in pixels.
+     * @param iThreads   The number of encoders.
+     * @param iQueue     The number of frames in flight.
+     * @param sinkFrames Where the frames go.
+     * @return The closed exporter.
+     * @throws IOException If a frame could not be written.
+     */
+    private static FrameExporter simulate(final long lSeed,
+                                          final String sBot,
+                                          final int iSize,
+                                          final int iMaxFrames,
+                                          final int iTileSize,
+                                          final int iThreads,
+                                          final int iQueue,
+                                          final FrameSink sinkFrames) throws IOException {
+        final SnakeEngine engine = new SnakeEngine(iSize, iSize, new Random(lSeed));
+        final SnakeController controller = HeatmapAnalytics.getBotFactory(sBot).create();
+        final BoardRenderer bdrRenderer = new BoardRenderer(iSize, iSize, iTileSize);
+        bdrRenderer.setSeed(lSeed);
+        engine.reset();
+        final int iStarvation = 2 * iSize * iSize;
+        try (final FrameExporter exporter = new FrameExporter(bdrRenderer, iThreads, iQueue, sinkFrames)) {
+            exporter.addFrame(engine.getBoard(), engine);
+            int iHungry = 0;
+            while (!engine.isGameOver() && (iHungry < iStarvation) &&
+                    (exporter.getFrameCount() < iMaxFrames)) {
+                controller.control(engine, 0);
+                iHungry = (engine.tick() == TileType.Fruit) ? 0 : (iHungry + 1);
+                exporter.addFrame(engine.getBoard(), engine);
+            }
+            return exporter;
+        }
+    }
+
+    /**
+     * Exports a recorded spectator stream, one frame per frame decoded once
+     * the stream is in sync.
+     *
+     * @param pthStream  The recorded stream.
+     * @param iMaxFrames The most frames to export.
+     * @param iTileSize  The size of each tile in pixels.
+     * @param iThreads   The number of encoders.
+     * @param iQueue     The number of frames in flight.
+     * @param sinkFrames Where the frames go.
+     * @return The closed exporter.
+     * @throws IOException If the stream could not be read or a frame could
+     *                     not be written.
+     */
+    private static FrameExporter replay(final Path pthStream,
+                                        final int iMaxFrames,
+                                        final int iTileSize,
+                                        final int iThreads,
+                                        final int iQueue,
+                                        final FrameSink sinkFrames) throws IOException {
+        final ByteBuffer bufStream = ByteBuffer.wrap(Files.readAllBytes(pthStream));
+        final SpectatorDecoder decoder = new SpectatorDecoder();
+        FrameExporter exporter = null;
+        try {
+            while ((decoder.decode(bufStream)) &&
+                    ((exporter == null) || (exporter.getFrameCount() < iMaxFrames))) {
+                if (!decoder.isSynced()) {
+                    continue;
+                }
+                final GameBoard board = decoder.getBoard();
+                if (exporter == null) {
+                    exporter = new FrameExporter(new BoardRenderer(board.getColumns(), board.getRows(),
+                                                                   iTileSize),
+                                                 iThreads,
+                                                 iQueue,
+                                                 sinkFrames);
+                }
+                exporter.addFrame(board, null);
+            }
+        }
+        finally {
+            if (exporter != null) {
+                exporter.close();
+            }
+        }
+        if (exporter == null) {
+            throw new IOException(pthStream + " holds no keyframe");
+        }
+        return exporter;
+    }
+}
@@ -0,0 +1,555 @@
+package snake;
+
+import java.util.Arrays;
+
+/**
+ * The {@code GameBoard} class holds the contents of the board as a packed
+ * array of bytes, one per tile, stored row by row. It knows nothing about
+ * drawing, so it can be used by headless games as well as by the
+ * {@link BoardPanel}.
+ * <p>
+ * Each tile is stored as {@link #EMPTY} or as the code returned by
+ * {@link #encode(TileType)}.
+ * <p>
+ * Alongside the bytes, the board keeps one bitmap per code, packed 64 tiles
+ * to a word, and a count of the tiles of each code. They cost two bit flips
+ * per changed tile and let the board count tiles by code in constant time
+ * and find the nth free tile with a popcount per word instead of a branch
+ * per tile, which keeps fruit spawns cheap on very large boards.
+ * <p>
+ * The board also keeps a 64-bit Zobrist hash of its contents, updated with
+ * two XORs whenever a tile changes. The key of each tile and code is mixed
+ * from the two on the fly rather than looked up, so boards of any size
+ * need no tables, and empty tiles have a key of zero, so an empty board
+ * hashes to zero.
+ */
+public class GameBoard {
+
+    /**
+     * The code of a tile that holds nothing.
+     */
+    public static final byte EMPTY = 0;
+
+    /**
+     * The tile types, indexed by their code minus one.
+     */
+    private static final TileType[] TYPES = TileType.values();
+
+    /**
+     * The code of a fruit tile.
+     */
+    public static final byte FRUIT = encode(TileType.Fruit);
+
+    /**
+     * The code of a bad fruit tile.
+     */
+    public static final byte BAD_FRUIT = encode(TileType.BadFruit);
+
+    /**
+     * The code of a snake head tile.
+     */
+    public static final byte SNAKE_HEAD = encode(TileType.SnakeHead);
+
+    /**
+     * The code of a snake body tile.
+     */
+    public static final byte SNAKE_BODY = encode(TileType.SnakeBody);
+
+    /**
+     * The number of columns on the board.
+     */
+    private final int iCols;
+
+    /**
+     * The number of rows on the board.
+     */
+    private final int iRows;
+
+    /**
+     * The code of every tile on the board.
+     */
+    private final byte[] baCells;
+
+    /**
+     * The bitmap of the tiles holding each code, indexed by code and then
+     * by tile index divided by 64.
+     */
+    private final long[][] laaCodeWords;
+
+    /**
+     * The number of tiles holding each code.
+     */
+    private final int[] iaCodeCounts;
+
+    /**
+     * The Zobrist hash of the board's contents.
+     */
+    private long lHash;
+
+    /**
+     * The index of every fruit on the board, in no particular order, so that
+     * bots can find fruits without scanning the whole board.
+     */
+    private final int[] iaFruitCells;
+
+    /**
+     * The position of each fruit tile in {@code iaFruitCells}. Only valid for
+     * tiles that hold a fruit.
+     */
+    private final int[] iaFruitSlots;
+
+    /**
+     * The number of fruits on the board.
+     */
+    private int iFruitCount;
+
+    /**
+     * The index of every tile changed since {@link #beginChanges()}, or
+     * null if changes are not being tracked.
+     */
+    private int[] iaChangedCells;
+
+    /**
+     * The round of changes in which each tile was last recorded, so that a
+     * tile changed twice is only recorded once.
+     */
+    private int[] iaChangeRounds;
+
+    /**
+     * The current round of changes.
+     */
+    private int iChangeRound;
+
+    /**
+     * The number of tiles changed since {@link #beginChanges()}.
+     */
+    private int iChangeCount;
+
+    /**
+     * Whether or not the whole board was cleared since
+     * {@link #beginChanges()}.
+     */
+    private boolean bAllChanged;
+
+    /**
+     * Creates a new, empty board.
+     *
+     * @param iCols The number of columns.
+     * @param iRows The number of rows.
+     */
+    public GameBoard(final int iCols, final int iRows) {
+        this.iCols = iCols;
+        this.iRows = iRows;
+        this.baCells = new byte[iCols * iRows];
+        this.iaFruitCells = new int[baCells.length];
+        this.iaFruitSlots = new int[baCells.length];
+        this.laaCodeWords = new long[TYPES.length + 1][(baCells.length + 63) >>> 6];
+        this.iaCodeCounts = new int[TYPES.length + 1];
+        fillEmptyWords();
+    }
+
+    /**
+     * Gets the code that a tile type is stored as.
+     *
+     * @param type The tile type, or null for an empty tile.
+     * @return The code.
+     */
+    public static byte encode(final TileType type) {
+        return (type == null) ? EMPTY : (byte) (type.ordinal() + 1);
+    }
+
+    /**
+     * Gets the tile type that a code stands for.
+     *
+     * @param bCode The code.
+     * @return The tile type, or null for an empty tile.
+     */
+    public static TileType decode(final byte bCode) {
+        return (bCode == EMPTY) ? null : TYPES[bCode - 1];
+    }
+
+    /**
+     * Gets the number of columns on the board.
+     *
+     * @return The number of columns.
+     */
+    public int getColumns() {
+        return iCols;
+    }
+
+    /**
+     * Gets the number of rows on the board.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return iRows;
+    }
+
+    /**
+     * Gets the number of tiles on the board.
+     *
+     * @return The number of tiles.
+     */
+    public int getCellCount() {
+        return baCells.length;
+    }
+
+    /**
+     * Gets the index of the tile at the desired coordinate.
+     *
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     * @return The index of the tile.
+     */
+    public int indexOf(final int x, final int y) {
+        return (y * iCols) + x;
+    }
+
+    /**
+     * Gets the tile next to another one.
+     *
+     * @param iCell     The index of the tile.
+     * @param direction The direction to look in.
+     * @return The index of the tile next to it, or -1 if that is a wall.
+     */
+    public int getNeighbour(final int iCell, final Direction direction) {
+        final int x = iCell % iCols;
+        switch (direction) {
+            case North:
+                return (iCell >= iCols) ? (iCell - iCols) : -1;
+
+            case South:
+                return ((iCell + iCols) < baCells.length) ? (iCell + iCols) : -1;
+
+            case West:
+                return (x > 0) ? (iCell - 1) : -1;
+
+            default:
+                return (x < (iCols - 1)) ? (iCell + 1) : -1;
+        }
+    }
+
+    /**
+     * Gets the code of the tile at the desired index.
+     *
+     * @param iCell The index of the tile.
+     * @return The code of the tile.
+     */
+    public byte getCell(final int iCell) {
+        return baCells[iCell];
+    }
+
+    /**
+     * Sets the code of the tile at the desired index.
+     *
+     * @param iCell The index of the tile.
+     * @param bCode The code to set the tile to.
+     */
+    public void setCell(final int iCell, final byte bCode) {
+        final byte bOld = baCells[iCell];
+        if ((bOld == FRUIT) && (bCode != FRUIT)) {
+            /*
+             * Move the last fruit into the slot of the one being removed.
+             */
+            final int iSlot = iaFruitSlots[iCell];
+            final int iLast = iaFruitCells[--iFruitCount];
+            iaFruitCells[iSlot] = iLast;
+            iaFruitSlots[iLast] = iSlot;
+        }
+        else if ((bOld != FRUIT) && (bCode == FRUIT)) {
+            iaFruitCells[iFruitCount] = iCell;
+            iaFruitSlots[iCell] = iFruitCount++;
+        }
+        baCells[iCell] = bCode;
+        lHash ^= getKey(iCell, bOld) ^ getKey(iCell, bCode);
+        final long lBit = 1L << iCell;
+        laaCodeWords[bOld][iCell >>> 6] &= ~lBit;
+        laaCodeWords[bCode][iCell >>> 6] |= lBit;
+        iaCodeCounts[bOld]--;
+        iaCodeCounts[bCode]++;
+        if ((iaChangedCells != null) && (iaChangeRounds[iCell] != iChangeRound)) {
+            iaChangeRounds[iCell] = iChangeRound;
+            iaChangedCells[iChangeCount++] = iCell;
+        }
+    }
+
+    /**
+     * Starts tracking which tiles change, for encoding the board as a
+     * stream of deltas. Tracking costs a couple of array writes per changed
+     * tile and can't be turned off again.
+     */
+    public void trackChanges() {
+        if (iaChangedCells == null) {
+            iaChangedCells = new int[baCells.length];
+            iaChangeRounds = new int[baCells.length];
+            beginChanges();
+        }
+    }
+
+    /**
+     * Forgets the tiles changed so far and starts a new round of changes.
+     */
+    public void beginChanges() {
+        iChangeRound++;
+        iChangeCount = 0;
+        bAllChanged = false;
+    }
+
+    /**
+     * Gets the number of tiles changed since {@link #beginChanges()}.
+     *
+     * @return The number of changed tiles.
+     */
+    public int getChangeCount() {
+        return iChangeCount;
+    }
+
+    /**
+     * Gets the index of one of the tiles changed since
+     * {@link #beginChanges()}.
+     *
+     * @param iChange The change, between 0 and {@link #getChangeCount()}.
+     * @return The index of the tile.
+     */
+    public int getChangedCell(final int iChange) {
+        return iaChangedCells[iChange];
+    }
+
+    /**
+     * Checks whether the whole board was cleared since
+     * {@link #beginChanges()}, in which case the individual changes are not
+     * recorded.
+     *
+     * @return Whether or not every tile may have changed.
+     */
+    public boolean isAllChanged() {
+        return bAllChanged;
+    }
+
+    /**
+     * Gets the number of fruits on the board.
+     *
+     * @return The number of fruits.
+     */
+    public int getFruitCount() {
+        return iFruitCount;
+    }
+
+    /**
+     * Gets the index of one of the fruits on the board.
+     *
+     * @param iFruit The fruit, between 0 and {@link #getFruitCount()}.
+     * @return The index of the fruit's tile.
+     */
+    public int getFruitCell(final int iFruit) {
+        return iaFruitCells[iFruit];
+    }
+
+    /**
+     * Gets the tile at the desired coordinate.
+     *
+     * @param x The x coordinate of the tile.
+     * @param y The y coordinate of the tile.
+     * @return The tile type, or null if the tile is empty.
+     */
+    public TileType getTile(final int x, final int y) {
+        return decode(baCells[indexOf(x, y)]);
+    }
+
+    /**
+     * Sets the tile at the desired coordinate.
+     *
+     * @param x    The x coordinate of the tile.
+     * @param y    The y coordinate of the tile.
+     * @param type The type to set the tile to, or null to empty it.
+     */
+    public void setTile(final int x, final int y, final TileType type) {
+        setCell(indexOf(x, y), encode(type));
+    }
+
+    /**
+     * Empties every tile on the board.
+     */
+    public void clear() {
+        Arrays.fill(baCells, EMPTY);
+        for (int iCode = 1; iCode < laaCodeWords.length; iCode++) {
+            if (iaCodeCounts[iCode] > 0) {
+                Arrays.fill(laaCodeWords[iCode], 0L);
+                iaCodeCounts[iCode] = 0;
+            }
+        }
+        fillEmptyWords();
+        iFruitCount = 0;
+        lHash = 0L;
+        if (iaChangedCells != null) {
+            bAllChanged = true;
+        }
+    }
+
+    /**
+     * Finds the nth tile (counting from 0, row by row) that is either empty
+     * or holds the given code.
+     *
+     * @param iNth  Which of the matching tiles to find.
+     * @param bAlso A code that counts as free as well as {@link #EMPTY}.
+     * @return The index of the tile, or -1 if there are not enough free
+     * tiles.
+     */
+    public int findNthFree(final int iNth, final byte bAlso) {
+        if ((iNth < 0) || (iNth >= countFree(bAlso))) {
+            return -1;
+        }
+
+        /*
+         * Skip whole words by their popcount, then drop the lowest set bits
+         * of the word that holds the tile.
+         */
+        final long[] laEmpty = laaCodeWords[EMPTY];
+        final long[] laAlso = laaCodeWords[bAlso];
+        int iLeft = iNth;
+        for (int iWord = 0; iWord < laEmpty.length; iWord++) {
+            long lFree = laEmpty[iWord] | laAlso[iWord];
+            final int iBits = Long.bitCount(lFree);
+            if (iLeft >= iBits) {
+                iLeft -= iBits;
+                continue;
+            }
+            for (; iLeft > 0; iLeft--) {
+                lFree &= lFree - 1;
+            }
+            return (iWord << 6) + Long.numberOfTrailingZeros(lFree);
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the tiles that are either empty or hold the given code.
+     *
+     * @param bAlso A code that counts as free as well as {@link #EMPTY}.
+     * @return The number of free tiles.
+     */
+    public int countFree(final byte bAlso) {
+        return iaCodeCounts[EMPTY] + ((bAlso != EMPTY) ? iaCodeCounts[bAlso] : 0);
+    }
+
+    /**
+     * Counts the tiles that hold a code.
+     *
+     * @param bCode The code.
+     * @return The number of tiles.
+     */
+    public int countCode(final byte bCode) {
+        return iaCodeCounts[bCode];
+    }
+
+    /**
+     * Gets the Zobrist hash of the board's contents. Two boards of the same
+     * size with the same tiles have the same hash.
+     *
+     * @return The hash.
+     */
+    public long getHash() {
+        return lHash;
+    }
+
+    /**
+     * Calculates the Zobrist hash of the board from scratch, to check the
+     * one kept by {@link #getHash()}.
+     *
+     * @return The hash.
+     */
+    public long computeHash() {
+        long lComputed = 0L;
+        for (int iCell = 0; iCell < baCells.length; iCell++) {
+            lComputed ^= getKey(iCell, baCells[iCell]);
+        }
+        return lComputed;
+    }
+
+    /**
+     * Gets the Zobrist key of a code on a tile.
+     *
+     * @param iCell The tile index.
+     * @param bCode The code.
+     * @return The key, which is zero for an empty tile.
+     */
+    private static long getKey(final int iCell, final byte bCode) {
+        return (bCode == EMPTY) ? 0L : mix(((long) iCell << 3) | bCode);
+    }
+
+    /**
+     * Scrambles a value into a well distributed 64-bit hash, with the
+     * finalizer of SplitMix64.
+     *
+     * @param lValue The value.
+     * @return The hash.
+     */
+    static long mix(final long lValue) {
+        long lMixed = lValue + 0x9E3779B97F4A7C15L;
+        lMixed = (lMixed ^ (lMixed >>> 30)) * 0xBF58476D1CE4E5B9L;
+        lMixed = (lMixed ^ (lMixed >>> 27)) * 0x94D049BB133111EBL;
+        return lMixed ^ (lMixed >>> 31);
+    }
+
+    /**
+     * Marks every tile as empty in the bitmaps, leaving the bits past the
+     * last tile clear.
+     */
+    private void fillEmptyWords() {
+        final long[] laEmpty = laaCodeWords[EMPTY];
+        Arrays.fill(laEmpty, -1L);
+        final int iSpare = (laEmpty.length << 6) - baCells.length;
+        if (iSpare > 0) {
+            laEmpty[laEmpty.length - 1] = -1L >>> iSpare;
+        }
+        iaCodeCounts[EMPTY] = baCells.length;
+    }
+
+    /**
+     * Copies the contents of another board of the same size into this one.
+     *
+     * @param other The board to copy.
+     */
+    public void copyFrom(final GameBoard other) {
+        System.arraycopy(other.baCells, 0, baCells, 0, baCells.length);
+        System.arraycopy(other.iaFruitCells, 0, iaFruitCells, 0, other.iFruitCount);
+        System.arraycopy(other.iaFruitSlots, 0, iaFruitSlots, 0, iaFruitSlots.length);
+        iFruitCount = other.iFruitCount;
+        for (int iCode = 0; iCode < laaCodeWords.length; iCode++) {
+            System.arraycopy(other.laaCodeWords[iCode], 0, laaCodeWords[iCode], 0,
+                             laaCodeWords[iCode].length);
+        }
+        System.arraycopy(other.iaCodeCounts, 0, iaCodeCounts, 0, iaCodeCounts.length);
+        lHash = other.lHash;
+        if (iaChangedCells != null) {
+            bAllChanged = true;
+        }
+    }
+
+    /**
+     * Copies the board into an array of tile types, in the format that
+     * saved games use.
+     *
+     * @return The tiles of the board.
+     */
+    public TileType[] toTiles() {
+        final TileType[] tiles = new TileType[baCells.length];
+        for (int iCell = 0; iCell < baCells.length; iCell++) {
+            tiles[iCell] = decode(baCells[iCell]);
+        }
+        return tiles;
+    }
+
+    /**
+     * Replaces the contents of the board with an array of tile types, in the
+     * format that saved games use.
+     *
+     * @param tiles The tiles of the board.
+     */
+    public void loadTiles(final TileType[] tiles) {
+        for (int iCell = 0; iCell < baCells.length; iCell++) {
+            setCell(iCell, encode(tiles[iCell]));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package snake;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The {@code GameEvents} class holds the custom Java Flight Recorder events
+ * that are emitted around each phase of the game. They cost next to nothing
+ * unless a recording is running, and let a recording taken on a player's
+ * machine show which phase caused a hitch next to the GC and safepoint
+ * events.
+ * <p>
+ * The events fired on every tick or frame are only created while a
+ * recording has them enabled, checked through their cached
+ * {@link EventType}, so that the game loop allocates nothing the rest of the
+ * time.
+ */
+public final class GameEvents {
+
+    /**
+     * The category every game event is listed under.
+     */
+    private static final String sCATEGORY = "Snake";
+
+    /**
+     * The type of the {@link Tick} event.
+     */
+    public static final EventType TICK = EventType.getEventType(Tick.class);
+
+    /**
+     * The type of the {@link Spawn} event.
+     */
+    public static final EventType SPAWN = EventType.getEventType(Spawn.class);
+
+    /**
+     * The type of the {@link Render} event.
+     */
+    public static final EventType RENDER = EventType.getEventType(Render.class);
+
+    /**
+     * This class only holds the event types.
+     */
+    private GameEvents() {
+    }
+
+    /**
+     * Emitted for every update of the game logic.
+     */
+    @Name("snake.Tick")
+    @Label("Game Tick")
+    @Category(sCATEGORY)
+    @Description("One update of the game logic")
+    public static class Tick extends Event {
+
+        /**
+         * The length of the snake after the tick.
+         */
+        @Label("Snake Length")
+        public int snakeLength;
+
+        /**
+         * The type of tile the head moved into, if any.
+         */
+        @Label("Collision")
+        public String collision;
+
+        /**
+         * The score after the tick.
+         */
+        @Label("Score")
+        public int score;
+    }
+
+    /**
+     * Emitted every time fruits are spawned.
+     */
+    @Name("snake.Spawn")
+    @Label("Fruit Spawn")
+    @Category(sCATEGORY)
+    @Description("Searching the board for free tiles and placing fruits")
+    public static class Spawn extends Event {
+
+        /**
+         * The length of the snake while spawning.
+         */
+        @Label("Snake Length")
+        public int snakeLength;
+
+        /**
+         * The number of free tiles the spawn picked from.
+         */
+        @Label("Free Cells")
+        public int freeCells;
+
+        /**
+         * The number of fruits that were placed.
+         */
+        @Label("Fruits")
+        public int fruits;
+    }
+
+    /**
+     * Emitted for every frame painted onto the board.
+     */
+    @Name("snake.Render")
+    @Label("Board Render")
+    @Category(sCATEGORY)
+    @Description("Painting one frame of the board")
+    public static class Render extends Event {
+
+        /**
+         * The number of tiles that were drawn.
+         */
+        @Label("Tiles Drawn")
+        public int tilesDrawn;
+    }
+
+    /**
+     * Emitted for every game that is saved or loaded.
+     */
+    @Name("snake.StateIo")
+    @Label("Save/Load")
+    @Category(sCATEGORY)
+    @Description("Writing or reading a saved game")
+    public static class StateIo extends Event {
+
+        /**
+         * Either "save" or "load".
+         */
+        @Label("Operation")
+        public String operation;
+
+        /**
+         * The username the game was saved under.
+         */
+        @Label("Username")
+        public String username;
+
+        /**
+         * The size of the saved game.
+         */
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+
+        /**
+         * Whether or not the operation succeeded.
+         */
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+}
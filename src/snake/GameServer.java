@@ -0,0 +1,511 @@
+package snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The {@code GameServer} class hosts many single player games at once and
+ * runs them authoritatively: clients only send their input, and the rules of
+ * {@link SnakeEngine} decide what happens.
+ * <p>
+ * A single thread does everything. It waits on a {@link Selector} for input
+ * until the next tick is due, then ticks every session in one pass and
+ * queues a state update for each. Input is read through one shared direct
+ * buffer and every connection reuses its own small direct buffer for
+ * output, so a pass doesn't allocate. A client that hasn't read its previous
+ * update yet simply skips the next one.
+ * <p>
+ * Usage: {@code GameServer [port] [ticksPerSecond] [cols] [rows]}
+ *
+ * @see LoadTestClient
+ * @see ServerProtocol
+ */
+public class GameServer implements Runnable {
+
+    /**
+     * The default port to listen on.
+     */
+    public static final int iDEFAULT_PORT = 7777;
+
+    /**
+     * The number of pending connections the operating system may queue.
+     */
+    private static final int iBACKLOG = 4096;
+
+    /**
+     * The size of the shared input buffer, in bytes.
+     */
+    private static final int iREAD_BUFFER_SIZE = 4096;
+
+    /**
+     * The size of each connection's output buffer, in bytes.
+     */
+    private static final int iWRITE_BUFFER_SIZE = 64;
+
+    /**
+     * The channel that accepts new connections.
+     */
+    private final ServerSocketChannel sscServer;
+
+    /**
+     * The selector that every channel is registered with.
+     */
+    private final Selector selSelector;
+
+    /**
+     * The key the server channel is registered with for new connections.
+     */
+    private final SelectionKey keyAccept;
+
+    /**
+     * The buffer that input is read into, shared by every connection.
+     */
+    private final ByteBuffer bufRead;
+
+    /**
+     * The open connections, in no particular order.
+     */
+    private final List<Connection> lstConnections;
+
+    /**
+     * The number of nanoseconds between ticks.
+     */
+    private final long lTickNanos;
+
+    /**
+     * The number of columns on each board.
+     */
+    private final int iCols;
+
+    /**
+     * The number of rows on each board.
+     */
+    private final int iRows;
+
+    /**
+     * The identifier given to the next session.
+     */
+    private int iNextId;
+
+    /**
+     * The log the sessions record their finished games in, or null.
+     */
+    private volatile StatsLog slgStats;
+
+    /**
+     * Whether or not the server should keep running.
+     */
+    private volatile boolean bRunning;
+
+    /**
+     * The number of open connections, readable from other threads.
+     */
+    private volatile int iSessionCount;
+
+    /**
+     * Creates a new server and starts listening. Call {@link #run()} to
+     * serve clients.
+     *
+     * @param addrLocal       The address to listen on.
+     * @param fTicksPerSecond The number of ticks per second of every game.
+     * @param iCols           The number of columns on each board.
+     * @param iRows           The number of rows on each board.
+     * @throws IOException If the server could not listen on the address.
+     */
+    public GameServer(final InetSocketAddress addrLocal,
+                      final float fTicksPerSecond,
+                      final int iCols,
+                      final int iRows) throws IOException {
+        this.lTickNanos = (long) ((1000L * SnakeGame.MILLION) / fTicksPerSecond);
+        this.iCols = iCols;
+        this.iRows = iRows;
+        this.bufRead = ByteBuffer.allocateDirect(iREAD_BUFFER_SIZE);
+        this.lstConnections = new ArrayList<>();
+        this.selSelector = Selector.open();
+        this.sscServer = ServerSocketChannel.open();
+        sscServer.bind(addrLocal, iBACKLOG);
+        sscServer.configureBlocking(false);
+        this.keyAccept = sscServer.register(selSelector, SelectionKey.OP_ACCEPT);
+        this.bRunning = true;
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return The port.
+     * @throws IOException If the server socket is closed.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) sscServer.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Gets the number of connected clients.
+     *
+     * @return The number of sessions.
+     */
+    public int getSessionCount() {
+        return iSessionCount;
+    }
+
+    /**
+     * Sets the log the sessions record their finished games in. Only
+     * sessions started afterwards use it.
+     *
+     * @param slgStats The log, or null to stop recording.
+     */
+    public void setStatsLog(final StatsLog slgStats) {
+        this.slgStats = slgStats;
+    }
+
+    /**
+     * Asks the server to stop. {@link #run()} returns once the current pass
+     * is done.
+     */
+    public void stop() {
+        bRunning = false;
+        selSelector.wakeup();
+    }
+
+    /**
+     * Serves clients until {@link #stop()} is called, then closes every
+     * connection.
+     */
+    @Override
+    public void run() {
+        long lNextTick = System.nanoTime() + lTickNanos;
+        try {
+            while (bRunning) {
+                final long lWait = lNextTick - System.nanoTime();
+                if (lWait <= 0) {
+                    tickAll();
+
+                    /*
+                     * If a pass ran over, drop the backlog rather than
+                     * ticking twice in a row to catch up.
+                     */
+                    lNextTick += lTickNanos;
+                    if ((lNextTick - System.nanoTime()) < 0) {
+                        lNextTick = System.nanoTime() + lTickNanos;
+                    }
+                    continue;
+                }
+
+                selSelector.select(Math.max(1L, lWait / SnakeGame.MILLION));
+                final Iterator<SelectionKey> itKeys = selSelector.selectedKeys().iterator();
+                while (itKeys.hasNext()) {
+                    final SelectionKey key = itKeys.next();
+                    itKeys.remove();
+                    handleKey(key);
+                }
+            }
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+        finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Handles a key that the selector found ready.
+     *
+     * @param key The key.
+     */
+    private void handleKey(final SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+
+        final Connection conConnection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(conConnection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush(conConnection);
+            }
+        }
+        catch (final IOException e) {
+            close(conConnection);
+        }
+    }
+
+    /**
+     * Accepts every pending connection and greets each one.
+     * <p>
+     * A connection that fails to be accepted or set up, say because the
+     * server ran out of file descriptors, is counted and dropped, and the
+     * other sessions carry on. Accepting then pauses until the next tick,
+     * so that the failure doesn't turn into a busy loop.
+     */
+    private void accept() {
+        while (true) {
+            final SocketChannel schClient;
+            try {
+                schClient = sscServer.accept();
+            }
+            catch (final IOException e) {
+                Metrics.ACCEPT_FAILURES.increment();
+                keyAccept.interestOps(0);
+                return;
+            }
+            if (schClient == null) {
+                return;
+            }
+            final SelectionKey keyClient;
+            try {
+                schClient.configureBlocking(false);
+                schClient.socket().setTcpNoDelay(true);
+                keyClient = schClient.register(selSelector, SelectionKey.OP_READ);
+            }
+            catch (final IOException e) {
+                Metrics.ACCEPT_FAILURES.increment();
+                closeChannel(schClient);
+                continue;
+            }
+
+            final int iId = iNextId++;
+            final GameSession session = new GameSession(iId, iCols, iRows, System.nanoTime() ^ iId);
+            session.setStatsLog(slgStats);
+            final Connection conConnection = new Connection(schClient, session);
+            conConnection.keyKey = keyClient;
+            keyClient.attach(conConnection);
+            conConnection.iIndex = lstConnections.size();
+            lstConnections.add(conConnection);
+            iSessionCount = lstConnections.size();
+
+            ServerProtocol.writeHello(conConnection.bufOut, iCols, iRows);
+            try {
+                flush(conConnection);
+            }
+            catch (final IOException e) {
+                close(conConnection);
+            }
+        }
+    }
+
+    /**
+     * Reads whatever input a client has sent and applies it to its session.
+     *
+     * @param conConnection The connection.
+     * @throws IOException If the client has gone away.
+     */
+    private void read(final Connection conConnection) throws IOException {
+        int iRead;
+        do {
+            bufRead.clear();
+            iRead = conConnection.schChannel.read(bufRead);
+            if (iRead < 0) {
+                close(conConnection);
+                return;
+            }
+            bufRead.flip();
+            while (bufRead.hasRemaining()) {
+                conConnection.sesSession.handleInput(bufRead.get());
+            }
+        } while (iRead == bufRead.capacity());
+    }
+
+    /**
+     * Ticks every session once and sends each client its new state.
+     */
+    private void tickAll() {
+        final long lStart = System.nanoTime();
+        if (keyAccept.interestOps() == 0) {
+            keyAccept.interestOps(SelectionKey.OP_ACCEPT);
+        }
+
+        /*
+         * Walk backwards so that closing a connection (which moves the last
+         * one into its place) doesn't skip anyone.
+         */
+        for (int iConnection = lstConnections.size() - 1; iConnection >= 0; iConnection--) {
+            final Connection conConnection = lstConnections.get(iConnection);
+            final GameSession session = conConnection.sesSession;
+            session.tick();
+
+            if (conConnection.bufOut.position() > 0) {
+                Metrics.STATES_DROPPED.increment();
+                continue;
+            }
+            ServerProtocol.writeState(conConnection.bufOut, session.getEngine(),
+                                      session.getTicks());
+            try {
+                flush(conConnection);
+                Metrics.STATES_SENT.increment();
+            }
+            catch (final IOException e) {
+                close(conConnection);
+            }
+        }
+
+        Metrics.TICKS.add(lstConnections.size());
+        Metrics.SERVER_PASS_TIME.recordSince(lStart);
+    }
+
+    /**
+     * Writes as much of a connection's pending output as the socket takes,
+     * and waits for the socket to become writable if anything is left.
+     *
+     * @param conConnection The connection.
+     * @throws IOException If the client has gone away.
+     */
+    private void flush(final Connection conConnection) throws IOException {
+        final ByteBuffer bufOut = conConnection.bufOut;
+        bufOut.flip();
+        conConnection.schChannel.write(bufOut);
+        final boolean bPending = bufOut.hasRemaining();
+        bufOut.compact();
+
+        final int iOps = bPending ? (SelectionKey.OP_READ | SelectionKey.OP_WRITE) :
+                SelectionKey.OP_READ;
+        if (conConnection.keyKey.interestOps() != iOps) {
+            conConnection.keyKey.interestOps(iOps);
+        }
+    }
+
+    /**
+     * Closes a connection and forgets its session.
+     *
+     * @param conConnection The connection.
+     */
+    private void close(final Connection conConnection) {
+        if (conConnection.iIndex < 0) {
+            return;
+        }
+        conConnection.keyKey.cancel();
+        closeChannel(conConnection.schChannel);
+
+        /*
+         * Move the last connection into the freed slot.
+         */
+        final Connection conLast = lstConnections.remove(lstConnections.size() - 1);
+        if (conLast != conConnection) {
+            conLast.iIndex = conConnection.iIndex;
+            lstConnections.set(conLast.iIndex, conLast);
+        }
+        conConnection.iIndex = -1;
+        iSessionCount = lstConnections.size();
+    }
+
+    /**
+     * Closes the channel of a client.
+     *
+     * @param schChannel The channel.
+     */
+    private static void closeChannel(final SocketChannel schChannel) {
+        try {
+            schChannel.close();
+        }
+        catch (final IOException e) {
+            /*
+             * The connection is gone either way.
+             */
+        }
+    }
+
+    /**
+     * Closes every connection, the server socket and the selector, and
+     * writes out the games left in the stats log.
+     */
+    private void shutdown() {
+        while (!lstConnections.isEmpty()) {
+            close(lstConnections.get(lstConnections.size() - 1));
+        }
+        try {
+            sscServer.close();
+            selSelector.close();
+            final StatsLog slgLog = slgStats;
+            if (slgLog != null) {
+                slgLog.flush();
+            }
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Entry point of the server.
+     *
+     * @param args The port, the number of ticks per second and the size of
+     *             the board, all optional.
+     * @throws IOException If the server could not listen on the port.
+     */
+    public static void main(final String[] args) throws IOException {
+        final int iPort = (args.length > 0) ? Integer.parseInt(args[0]) : iDEFAULT_PORT;
+        final float fTicksPerSecond = (args.length > 1) ?
+                Float.parseFloat(args[1]) : SnakeGame.CYCLES_PER_SECOND;
+        final int iCols = (args.length > 2) ? Integer.parseInt(args[2]) : BoardPanel.iCOL_COUNT;
+        final int iRows = (args.length > 3) ? Integer.parseInt(args[3]) : BoardPanel.iROW_COUNT;
+
+        Metrics.install();
+        StatsServer.startDefault(Leaderboard.openDefault());
+        final GameServer server = new GameServer(new InetSocketAddress(iPort),
+                                                 fTicksPerSecond,
+                                                 iCols,
+                                                 iRows);
+        server.setStatsLog(StatsLog.openDefault());
+        System.out.println("Listening on port " + server.getPort() + " at " +
+                                   fTicksPerSecond + " ticks per second");
+        server.run();
+    }
+
+    /**
+     * The {@code Connection} class ties a client's channel to its session.
+     */
+    private static final class Connection {
+
+        /**
+         * The channel to the client.
+         */
+        private final SocketChannel schChannel;
+
+        /**
+         * The session the client plays in.
+         */
+        private final GameSession sesSession;
+
+        /**
+         * The output waiting to be written, reused for every message.
+         */
+        private final ByteBuffer bufOut;
+
+        /**
+         * The key the channel is registered with.
+         */
+        private SelectionKey keyKey;
+
+        /**
+         * The position of the connection in the list of connections, or -1
+         * once it's closed.
+         */
+        private int iIndex;
+
+        /**
+         * Creates a new connection.
+         *
+         * @param schChannel The channel to the client.
+         * @param sesSession The session the client plays in.
+         */
+        private Connection(final SocketChannel schChannel, final GameSession sesSession) {
+            this.schChannel = schChannel;
+            this.sesSession = sesSession;
+            this.bufOut = ByteBuffer.allocateDirect(iWRITE_BUFFER_SIZE);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package snake;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The {@code GameSession} class is a single player game hosted by a server.
+ * It owns an engine, applies the input of its client and counts its ticks;
+ * how and when it is ticked is up to whoever hosts it.
+ */
+public class GameSession {
+
+    /**
+     * The identifier of the session, unique within its host.
+     */
+    private final int iId;
+
+    /**
+     * The engine holding the rules and the state of the game.
+     */
+    private final SnakeEngine engine;
+
+    /**
+     * The number of ticks the session has run.
+     */
+    private int iTicks;
+
+    /**
+     * The log each finished game is recorded in, or null.
+     */
+    private StatsLog slgStats;
+
+    /**
+     * Creates a new session and starts its first game.
+     *
+     * @param iId   The identifier of the session.
+     * @param iCols The number of columns on the board.
+     * @param iRows The number of rows on the board.
+     * @param lSeed The seed used for spawning fruits.
+     */
+    public GameSession(final int iId,
+                       final int iCols,
+                       final int iRows,
+                       final long lSeed) {
+        this.iId = iId;
+        this.engine = new SnakeEngine(iCols, iRows, new Random(lSeed));
+        engine.reset();
+    }
+
+    /**
+     * Sets the log each finished game is recorded in.
+     *
+     * @param slgStats The log, or null to stop recording.
+     */
+    public void setStatsLog(final StatsLog slgStats) {
+        this.slgStats = slgStats;
+    }
+
+    /**
+     * Applies a byte of client input: a direction to steer in, or a request
+     * to start a new game once the current one is over. Anything else is
+     * ignored.
+     *
+     * @param bInput The byte.
+     */
+    public void handleInput(final byte bInput) {
+        if (bInput == ServerProtocol.bRESET) {
+            if (engine.isGameOver()) {
+                engine.reset();
+            }
+            return;
+        }
+        final Direction direction = ServerProtocol.decodeDirection(bInput);
+        if ((direction != null) && !engine.isGameOver()) {
+            engine.queueDirection(direction);
+        }
+    }
+
+    /**
+     * Updates the game by one cycle, unless it is over, and records the game
+     * if that cycle ended it.
+     */
+    public void tick() {
+        if (!engine.isGameOver()) {
+            engine.tick();
+            if (engine.isGameOver()) {
+                Metrics.GAMES_OVER.increment();
+                recordGame();
+            }
+        }
+        iTicks++;
+    }
+
+    /**
+     * Records the game that just finished in the stats log, if there is
+     * one. The log only writes once its buffer is full, so this doesn't
+     * hold up the host.
+     */
+    private void recordGame() {
+        if (slgStats == null) {
+            return;
+        }
+        try {
+            slgStats.record(engine, StatsLog.SOURCE_SERVER);
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the identifier of the session.
+     *
+     * @return The identifier.
+     */
+    public int getId() {
+        return iId;
+    }
+
+    /**
+     * Gets the engine of the session.
+     *
+     * @return The engine.
+     */
+    public SnakeEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Gets the number of ticks the session has run.
+     *
+     * @return The number of ticks.
+     */
+    public int getTicks() {
+        return iTicks;
+    }
+}
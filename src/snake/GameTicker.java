@@ -0,0 +1,179 @@
+package snake;
+
+/**
+ * The {@code GameTicker} class runs one update of the game logic the way
+ * the game window does: it lets the controllers steer, ticks the engine,
+ * sets off the effects of what happened, ends the game once every player at
+ * the keyboard is out, and updates the metrics and the flight recorder
+ * event of the tick. It holds no window, so the allocation check of the
+ * build drives the very same path headless.
+ */
+final class GameTicker {
+
+    /**
+     * The engine holding the rules and the state of the game.
+     */
+    private final SnakeEngine engine;
+
+    /**
+     * The controller of each snake. The players at the keyboard come first,
+     * followed by the bots.
+     */
+    private final SnakeController[] ctlControllers;
+
+    /**
+     * The number of snakes steered from the keyboard.
+     */
+    private final int iHumans;
+
+    /**
+     * The bot that steers the players' snakes while the autopilot is on.
+     */
+    private final SnakeController ctlAutopilot;
+
+    /**
+     * The effects of the board, or null for none.
+     */
+    private final BoardEffects bfxEffects;
+
+    /**
+     * Whether or not each snake was alive before the current tick.
+     */
+    private final boolean[] baWasAlive;
+
+    /**
+     * The number of fruits each snake had eaten before the current tick.
+     */
+    private final int[] iaFruitsEaten;
+
+    /**
+     * The tail cell of each snake before the current tick.
+     */
+    private final int[] iaTailCells;
+
+    /**
+     * Creates a ticker for a game.
+     *
+     * @param engine         The engine of the game.
+     * @param ctlControllers The controller of each snake, the players at the
+     *                       keyboard first.
+     * @param iHumans        The number of snakes steered from the keyboard.
+     * @param ctlAutopilot   The bot that steers the players' snakes while the
+     *                       autopilot is on.
+     * @param bfxEffects     The effects of the board, or null for none.
+     */
+    GameTicker(final SnakeEngine engine,
+               final SnakeController[] ctlControllers,
+               final int iHumans,
+               final SnakeController ctlAutopilot,
+               final BoardEffects bfxEffects) {
+        this.engine = engine;
+        this.ctlControllers = ctlControllers;
+        this.iHumans = iHumans;
+        this.ctlAutopilot = ctlAutopilot;
+        this.bfxEffects = bfxEffects;
+        baWasAlive = new boolean[engine.getSnakeCount()];
+        iaFruitsEaten = new int[engine.getSnakeCount()];
+        iaTailCells = new int[engine.getSnakeCount()];
+    }
+
+    /**
+     * Runs one update of the game logic.
+     *
+     * @param bAutopilot Whether or not the players' snakes are steered by
+     *                   the autopilot.
+     * @return Whether or not the game went from playing to over on this
+     * tick.
+     */
+    boolean tick(final boolean bAutopilot) {
+        final long lStart = System.nanoTime();
+        final boolean bWasGameOver = engine.isGameOver();
+        final GameEvents.Tick evtTick = GameEvents.TICK.isEnabled() ? new GameEvents.Tick() : null;
+        if (evtTick != null) {
+            evtTick.begin();
+        }
+
+        /*
+         * Let the bots steer, then let the engine move the snakes and handle
+         * whatever they ran into.
+         */
+        if (bAutopilot) {
+            for (int iSnake = 0; iSnake < iHumans; iSnake++) {
+                ctlAutopilot.control(engine, iSnake);
+            }
+        }
+        for (int iSnake = iHumans; iSnake < ctlControllers.length; iSnake++) {
+            ctlControllers[iSnake].control(engine, iSnake);
+        }
+        for (int iSnake = 0; iSnake < baWasAlive.length; iSnake++) {
+            baWasAlive[iSnake] = engine.isAlive(iSnake);
+            iaFruitsEaten[iSnake] = engine.getFruitsEaten(iSnake);
+            iaTailCells[iSnake] = engine.getBodyCell(iSnake, engine.getLength(iSnake) - 1);
+        }
+        final TileType collision = engine.tick();
+        if (bfxEffects != null) {
+            emitEffects();
+        }
+
+        /*
+         * Once every player at the keyboard is out, the bots have won and
+         * the game is over.
+         */
+        if ((iHumans > 0) && !engine.isGameOver() && !isAnyHumanAlive()) {
+            engine.setGameOver(true);
+        }
+
+        final boolean bEnded = engine.isGameOver() && !bWasGameOver;
+        if (bEnded) {
+            Metrics.GAMES_OVER.increment();
+        }
+        Metrics.SCORE.set(engine.getScore());
+        Metrics.SNAKE_LENGTH.set(engine.getLength());
+        Metrics.TICKS.increment();
+        Metrics.TICK_TIME.recordSince(lStart);
+        if ((evtTick != null) && evtTick.shouldCommit()) {
+            evtTick.snakeLength = engine.getLength();
+            evtTick.collision = (collision == null) ? null : collision.name();
+            evtTick.score = engine.getScore();
+            evtTick.commit();
+        }
+        return bEnded;
+    }
+
+    /**
+     * Sets off the effects of the tick that just ran, by comparing each
+     * snake with how it was before the tick: a burst where a fruit was
+     * eaten, debris where a snake died, and a trail where a tail moved on.
+     */
+    private void emitEffects() {
+        for (int iSnake = 0; iSnake < baWasAlive.length; iSnake++) {
+            if (!baWasAlive[iSnake]) {
+                continue;
+            }
+            if (!engine.isAlive(iSnake)) {
+                bfxEffects.emitDeathDebris(engine, iSnake);
+                continue;
+            }
+            if (engine.getFruitsEaten(iSnake) != iaFruitsEaten[iSnake]) {
+                bfxEffects.emitFruitBurst(engine.getHeadCell(iSnake));
+            }
+            if (engine.getBodyCell(iSnake, engine.getLength(iSnake) - 1) != iaTailCells[iSnake]) {
+                bfxEffects.emitTrail(iaTailCells[iSnake]);
+            }
+        }
+    }
+
+    /**
+     * Checks whether any of the snakes steered from the keyboard is alive.
+     *
+     * @return Whether or not a player is still in the game.
+     */
+    boolean isAnyHumanAlive() {
+        for (int iSnake = 0; iSnake < iHumans; iSnake++) {
+            if (engine.isAlive(iSnake)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,56 @@
+package snake;
+
+/**
+ * The {@code Gauge} class is a lock-free value that is set rather than
+ * counted, such as the current score, and that can be exposed over JMX.
+ * Setting it is a single volatile write, so it's safe to call on every tick.
+ */
+public class Gauge implements GaugeMXBean {
+
+    /**
+     * The name this gauge is registered and dumped under.
+     */
+    private final String sName;
+
+    /**
+     * The current value.
+     */
+    private volatile long lValue;
+
+    /**
+     * Creates a new gauge starting at zero.
+     *
+     * @param sName The name of the gauge.
+     */
+    public Gauge(final String sName) {
+        this.sName = sName;
+    }
+
+    /**
+     * Sets the value.
+     *
+     * @param lValue The new value.
+     */
+    public void set(final long lValue) {
+        this.lValue = lValue;
+    }
+
+    /**
+     * Gets the name of this gauge.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return sName;
+    }
+
+    @Override
+    public long getValue() {
+        return lValue;
+    }
+
+    @Override
+    public String toString() {
+        return sName + " value=" + getValue();
+    }
+}
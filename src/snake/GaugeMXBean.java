@@ -0,0 +1,15 @@
+package snake;
+
+/**
+ * The {@code GaugeMXBean} interface is the management view of a
+ * {@link Gauge} that is exposed over JMX.
+ */
+public interface GaugeMXBean {
+
+    /**
+     * Gets the value last set.
+     *
+     * @return The value.
+     */
+    long getValue();
+}
@@ -0,0 +1,498 @@
+package snake;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code GeneticTrainer} class evolves the weights of the
+ * {@link HeuristicController} with a genetic algorithm.
+ * <p>
+ * Every generation, each candidate plays the same set of seeded headless
+ * games, so that candidates are compared on equal terms, and its fitness is
+ * its mean score. The candidates are played on a fork-join pool, one task
+ * per candidate, and each task plays its games on its own engine, so the
+ * work scales with the number of cores until there are more cores than
+ * candidates. The next generation keeps the best candidates as they are and
+ * fills up with children of tournament winners, crossed over gene by gene
+ * and mutated with gaussian noise.
+ * <p>
+ * After every generation the population is written to a checkpoint file,
+ * which a later run picks up from. Each generation reports its fitness, the
+ * generations per minute and the game ticks simulated per second.
+ * <p>
+ * Usage: {@code GeneticTrainer [--generations=N] [--population=N]
+ * [--games=N] [--size=N] [--threads=N] [--checkpoint=FILE] [--scaling]}.
+ * With {@code --scaling} it instead times one generation on 1, 2, 4, ...
+ * threads up to the number of cores.
+ */
+public final class GeneticTrainer {
+
+    /**
+     * The first bytes of a checkpoint file.
+     */
+    private static final int iCHECKPOINT_MAGIC = 0x534E4741;
+
+    /**
+     * The default checkpoint file.
+     */
+    private static final String sDEFAULT_CHECKPOINT = "snake_population.bin";
+
+    /**
+     * The number of candidates carried over to the next generation as they
+     * are.
+     */
+    private static final int iELITES = 2;
+
+    /**
+     * The number of candidates that compete in each tournament.
+     */
+    private static final int iTOURNAMENT_SIZE = 3;
+
+    /**
+     * The chance that a gene is mutated.
+     */
+    private static final double dMUTATION_RATE = 0.25;
+
+    /**
+     * The standard deviation of a mutation.
+     */
+    private static final double dMUTATION_SIZE = 0.3;
+
+    /**
+     * The number of ticks a game may go without eating before it is ended,
+     * per tile of the board.
+     */
+    private static final int iSTARVATION_PER_CELL = 2;
+
+    /**
+     * The pool the candidates are played on.
+     */
+    private final ForkJoinPool fjpPool;
+
+    /**
+     * The number of games each candidate plays.
+     */
+    private final int iGames;
+
+    /**
+     * The number of columns and rows of the boards.
+     */
+    private final int iSize;
+
+    /**
+     * The random number generator of selection, crossover and mutation.
+     */
+    private final Random rRandom;
+
+    /**
+     * The weights of every candidate.
+     */
+    private double[][] daaPopulation;
+
+    /**
+     * The fitness of every candidate in the last generation played.
+     */
+    private final double[] daFitness;
+
+    /**
+     * The number of generations played so far.
+     */
+    private int iGeneration;
+
+    /**
+     * Creates a new trainer with a random population.
+     *
+     * @param fjpPool     The pool to play on.
+     * @param iPopulation The number of candidates.
+     * @param iGames      The number of games each candidate plays.
+     * @param iSize       The number of columns and rows of the boards.
+     * @param lSeed       The seed of the trainer's random choices.
+     */
+    private GeneticTrainer(final ForkJoinPool fjpPool,
+                           final int iPopulation,
+                           final int iGames,
+                           final int iSize,
+                           final long lSeed) {
+        this.fjpPool = fjpPool;
+        this.iGames = iGames;
+        this.iSize = iSize;
+        this.rRandom = new Random(lSeed);
+        this.daaPopulation = new double[iPopulation][HeuristicController.iFEATURES];
+        this.daFitness = new double[iPopulation];
+        for (final double[] daWeights : daaPopulation) {
+            for (int iGene = 0; iGene < daWeights.length; iGene++) {
+                daWeights[iGene] = (rRandom.nextDouble() * 2.0) - 1.0;
+            }
+        }
+    }
+
+    /**
+     * Plays every candidate's games and records their fitness.
+     *
+     * @return The number of ticks played.
+     * @throws InterruptedException If the trainer was interrupted.
+     */
+    private long evaluate() throws InterruptedException {
+        final List<Callable<Long>> lstTasks = new ArrayList<>(daaPopulation.length);
+        for (int iCandidate = 0; iCandidate < daaPopulation.length; iCandidate++) {
+            final int iIndex = iCandidate;
+            lstTasks.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return play(iIndex);
+                }
+            });
+        }
+
+        long lTicks = 0;
+        try {
+            for (final Future<Long> future : fjpPool.invokeAll(lstTasks)) {
+                lTicks += future.get();
+            }
+        }
+        catch (final ExecutionException e) {
+            throw new IllegalStateException("A candidate failed to play", e.getCause());
+        }
+        return lTicks;
+    }
+
+    /**
+     * Plays a candidate's games. Game {@code i} is seeded with {@code i}
+     * for every candidate.
+     *
+     * @param iCandidate The candidate.
+     * @return The number of ticks played.
+     */
+    private long play(final int iCandidate) {
+        final Random rSpawns = new Random();
+        final SnakeEngine engine = new SnakeEngine(iSize, iSize, rSpawns);
+        final HeuristicController controller = new HeuristicController(daaPopulation[iCandidate]);
+        final int iStarvation = iSize * iSize * iSTARVATION_PER_CELL;
+        long lTicks = 0;
+        long lScore = 0;
+        for (int iGame = 0; iGame < iGames; iGame++) {
+            rSpawns.setSeed(iGame);
+            engine.reset();
+            int iHungry = 0;
+            while (!engine.isGameOver() && (iHungry < iStarvation)) {
+                controller.control(engine, 0);
+                iHungry = (engine.tick() == TileType.Fruit) ? 0 : (iHungry + 1);
+                lTicks++;
+            }
+            lScore += engine.getScore();
+        }
+        daFitness[iCandidate] = lScore / (double) iGames;
+        return lTicks;
+    }
+
+    /**
+     * Breeds the next generation from the one just played.
+     */
+    private void breed() {
+        final Integer[] iaRanked = rank();
+        final double[][] daaNext = new double[daaPopulation.length][];
+        for (int iElite = 0; iElite < Math.min(iELITES, daaNext.length); iElite++) {
+            daaNext[iElite] = daaPopulation[iaRanked[iElite]].clone();
+        }
+        for (int iChild = Math.min(iELITES, daaNext.length); iChild < daaNext.length; iChild++) {
+            final double[] daMother = daaPopulation[selectParent()];
+            final double[] daFather = daaPopulation[selectParent()];
+            final double[] daChild = new double[daMother.length];
+            for (int iGene = 0; iGene < daChild.length; iGene++) {
+                daChild[iGene] = rRandom.nextBoolean() ? daMother[iGene] : daFather[iGene];
+                if (rRandom.nextDouble() < dMUTATION_RATE) {
+                    daChild[iGene] += rRandom.nextGaussian() * dMUTATION_SIZE;
+                }
+            }
+            daaNext[iChild] = daChild;
+        }
+        daaPopulation = daaNext;
+        iGeneration++;
+    }
+
+    /**
+     * Ranks the candidates by fitness.
+     *
+     * @return The indices of the candidates, fittest first.
+     */
+    private Integer[] rank() {
+        final Integer[] iaRanked = new Integer[daaPopulation.length];
+        for (int iCandidate = 0; iCandidate < iaRanked.length; iCandidate++) {
+            iaRanked[iCandidate] = iCandidate;
+        }
+        Arrays.sort(iaRanked, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer iFirst, final Integer iSecond) {
+                return Double.compare(daFitness[iSecond], daFitness[iFirst]);
+            }
+        });
+        return iaRanked;
+    }
+
+    /**
+     * Picks a parent by tournament: the fittest of a few candidates picked
+     * at random.
+     *
+     * @return The index of the parent.
+     */
+    private int selectParent() {
+        int iBest = rRandom.nextInt(daaPopulation.length);
+        for (int iRound = 1; iRound < iTOURNAMENT_SIZE; iRound++) {
+            final int iOther = rRandom.nextInt(daaPopulation.length);
+            if (daFitness[iOther] > daFitness[iBest]) {
+                iBest = iOther;
+            }
+        }
+        return iBest;
+    }
+
+    /**
+     * Writes the population just played to a checkpoint, fittest first,
+     * with its fitness. The file is
+     * written next to the checkpoint and then moved over it, so a crash
+     * never leaves half a checkpoint behind.
+     *
+     * @param pthCheckpoint The checkpoint file.
+     * @throws IOException If the checkpoint could not be written.
+     */
+    private void writeCheckpoint(final Path pthCheckpoint) throws IOException {
+        final Integer[] iaRanked = rank();
+        final Path pthTemporary = pthCheckpoint.resolveSibling(pthCheckpoint.getFileName() + ".tmp");
+        try (final OutputStream osOut = Files.newOutputStream(pthTemporary);
+             final DataOutputStream dosOut = new DataOutputStream(osOut)) {
+            dosOut.writeInt(iCHECKPOINT_MAGIC);
+            dosOut.writeInt(iGeneration + 1);
+            dosOut.writeInt(daaPopulation.length);
+            dosOut.writeInt(HeuristicController.iFEATURES);
+            for (final Integer iCandidate : iaRanked) {
+                dosOut.writeDouble(daFitness[iCandidate]);
+                for (final double dWeight : daaPopulation[iCandidate]) {
+                    dosOut.writeDouble(dWeight);
+                }
+            }
+        }
+        Files.move(pthTemporary, pthCheckpoint, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the population with the one in a checkpoint, and breeds the
+     * next generation from it, so training carries on where it left off.
+     *
+     * @param pthCheckpoint The checkpoint file.
+     * @throws IOException If the checkpoint could not be read.
+     */
+    private void readCheckpoint(final Path pthCheckpoint) throws IOException {
+        try (final InputStream isIn = Files.newInputStream(pthCheckpoint);
+             final DataInputStream disIn = new DataInputStream(isIn)) {
+            final int iSavedGeneration = readHeader(disIn);
+            final int iCandidates = disIn.readInt();
+            final int iGenes = disIn.readInt();
+            if (iCandidates < 1) {
+                throw new IOException("The checkpoint has no candidates");
+            }
+            if (iGenes != HeuristicController.iFEATURES) {
+                throw new IOException("The checkpoint has " + iGenes + " weights per candidate");
+            }
+            final double[][] daaLoaded = new double[iCandidates][iGenes];
+            final double[] daLoadedFitness = new double[iCandidates];
+            for (int iCandidate = 0; iCandidate < iCandidates; iCandidate++) {
+                final double[] daWeights = daaLoaded[iCandidate];
+                daLoadedFitness[iCandidate] = disIn.readDouble();
+                for (int iGene = 0; iGene < iGenes; iGene++) {
+                    daWeights[iGene] = disIn.readDouble();
+                }
+            }
+
+            /*
+             * A checkpoint of a different size still seeds the population;
+             * missing candidates are mutants of the saved ones and take
+             * their fitness.
+             */
+            for (int iCandidate = 0; iCandidate < daaPopulation.length; iCandidate++) {
+                final double[] daSource = daaLoaded[iCandidate % iCandidates];
+                daFitness[iCandidate] = daLoadedFitness[iCandidate % iCandidates];
+                for (int iGene = 0; iGene < iGenes; iGene++) {
+                    daaPopulation[iCandidate][iGene] = daSource[iGene] +
+                            ((iCandidate < iCandidates) ? 0.0 :
+                                    (rRandom.nextGaussian() * dMUTATION_SIZE));
+                }
+            }
+            iGeneration = iSavedGeneration - 1;
+        }
+        breed();
+    }
+
+    /**
+     * Reads the weights of the fittest candidate of a checkpoint.
+     *
+     * @param pthCheckpoint The checkpoint file.
+     * @return The weights.
+     * @throws IOException If the checkpoint could not be read.
+     */
+    static double[] readBest(final Path pthCheckpoint) throws IOException {
+        try (final InputStream isIn = Files.newInputStream(pthCheckpoint);
+             final DataInputStream disIn = new DataInputStream(isIn)) {
+            readHeader(disIn);
+            if (disIn.readInt() < 1) {
+                throw new IOException("The checkpoint has no candidates");
+            }
+            final double[] daWeights = new double[disIn.readInt()];
+            disIn.readDouble();
+            for (int iGene = 0; iGene < daWeights.length; iGene++) {
+                daWeights[iGene] = disIn.readDouble();
+            }
+            return daWeights;
+        }
+    }
+
+    /**
+     * Reads and checks the start of a checkpoint.
+     *
+     * @param disIn The stream to read from.
+     * @return The generation the checkpoint was written after.
+     * @throws IOException If the stream is not a checkpoint.
+     */
+    private static int readHeader(final DataInputStream disIn) throws IOException {
+        if (disIn.readInt() != iCHECKPOINT_MAGIC) {
+            throw new IOException("Not a population checkpoint");
+        }
+        return disIn.readInt();
+    }
+
+    /**
+     * Times one generation on more and more threads, and prints how the
+     * throughput scales.
+     *
+     * @param iPopulation The number of candidates.
+     * @param iGames      The number of games each candidate plays.
+     * @param iSize       The number of columns and rows of the boards.
+     * @throws InterruptedException If the benchmark was interrupted.
+     */
+    private static void measureScaling(final int iPopulation, final int iGames, final int iSize)
+            throws InterruptedException {
+        final int iCores = Runtime.getRuntime().availableProcessors();
+        double dBaseline = 0.0;
+        for (int iThreads = 1; iThreads <= iCores; iThreads = (iThreads == iCores) ?
+                (iCores + 1) : Math.min(iCores, iThreads * 2)) {
+            final ForkJoinPool fjpPool = new ForkJoinPool(iThreads);
+            final GeneticTrainer trainer = new GeneticTrainer(fjpPool, iPopulation, iGames, iSize, 1L);
+            trainer.evaluate();
+            final long lStart = System.nanoTime();
+            final long lTicks = trainer.evaluate();
+            final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+            fjpPool.shutdown();
+
+            final double dTicksPerSecond = lTicks / dSeconds;
+            if (iThreads == 1) {
+                dBaseline = dTicksPerSecond;
+            }
+            System.out.printf("threads=%d generation=%.2fs ticks/s=%.0f speedup=%.2fx%n",
+                              iThreads,
+                              dSeconds,
+                              dTicksPerSecond,
+                              dTicksPerSecond / dBaseline);
+        }
+    }
+
+    /**
+     * Entry point of the trainer.
+     *
+     * @param args The options described in the class comment.
+     * @throws IOException          If the checkpoint could not be read or
+     *                              written.
+     * @throws InterruptedException If the trainer was interrupted.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        int iGenerations = 50;
+        int iPopulation = 48;
+        int iGames = 200;
+        int iSize = BoardPanel.iCOL_COUNT;
+        int iThreads = Runtime.getRuntime().availableProcessors();
+        Path pthCheckpoint = Paths.get(sDEFAULT_CHECKPOINT);
+        boolean bScaling = false;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--generations=")) {
+                iGenerations = Integer.parseInt(sArg.substring("--generations=".length()));
+            }
+            else if (sArg.startsWith("--population=")) {
+                iPopulation = Math.max(iELITES + 1,
+                                       Integer.parseInt(sArg.substring("--population=".length())));
+            }
+            else if (sArg.startsWith("--games=")) {
+                iGames = Math.max(1, Integer.parseInt(sArg.substring("--games=".length())));
+            }
+            else if (sArg.startsWith("--size=")) {
+                iSize = Math.max(5, Integer.parseInt(sArg.substring("--size=".length())));
+            }
+            else if (sArg.startsWith("--threads=")) {
+                iThreads = Math.max(1, Integer.parseInt(sArg.substring("--threads=".length())));
+            }
+            else if (sArg.startsWith("--checkpoint=")) {
+                pthCheckpoint = Paths.get(sArg.substring("--checkpoint=".length()));
+            }
+            else if (sArg.equals("--scaling")) {
+                bScaling = true;
+            }
+        }
+        if (bScaling) {
+            measureScaling(iPopulation, iGames, iSize);
+            return;
+        }
+
+        final ForkJoinPool fjpPool = new ForkJoinPool(iThreads);
+        final GeneticTrainer trainer = new GeneticTrainer(fjpPool, iPopulation, iGames, iSize,
+                                                          System.nanoTime());
+        if (Files.exists(pthCheckpoint)) {
+            trainer.readCheckpoint(pthCheckpoint);
+            System.out.println("Resuming after generation " + trainer.iGeneration +
+                                       " from " + pthCheckpoint);
+        }
+
+        final long lStart = System.nanoTime();
+        for (int iRun = 0; iRun < iGenerations; iRun++) {
+            final long lGenerationStart = System.nanoTime();
+            final long lTicks = trainer.evaluate();
+            final double dSeconds = (System.nanoTime() - lGenerationStart) / 1.0e9;
+            trainer.writeCheckpoint(pthCheckpoint);
+
+            double dBest = Double.NEGATIVE_INFINITY;
+            double dMean = 0.0;
+            int iBest = 0;
+            for (int iCandidate = 0; iCandidate < iPopulation; iCandidate++) {
+                dMean += trainer.daFitness[iCandidate] / iPopulation;
+                if (trainer.daFitness[iCandidate] > dBest) {
+                    dBest = trainer.daFitness[iCandidate];
+                    iBest = iCandidate;
+                }
+            }
+            final double dMinutes = (System.nanoTime() - lStart) / 6.0e10;
+            System.out.printf("generation %d: best=%.0f mean=%.0f weights=%s " +
+                                      "generations/min=%.2f ticks/s=%.0f%n",
+                              trainer.iGeneration + 1,
+                              dBest,
+                              dMean,
+                              Arrays.toString(trainer.daaPopulation[iBest]),
+                              (iRun + 1) / dMinutes,
+                              lTicks / dSeconds);
+            trainer.breed();
+        }
+        fjpPool.shutdown();
+    }
+}
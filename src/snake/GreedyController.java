@@ -0,0 +1,106 @@
+package snake;
+
+/**
+ * The {@code GreedyController} class is a simple bot that heads for the
+ * nearest fruit, turning only onto tiles that won't kill it right away. It
+ * looks at no more than three tiles and the list of fruits each tick, so
+ * dozens of them can share a large board.
+ */
+public class GreedyController implements SnakeController {
+
+    /**
+     * The directions the bot considers, in order of preference when two are
+     * equally good.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Override
+    public void control(final SnakeEngine engine, final int iSnake) {
+        /*
+         * Only decide once the previous decision has been acted on, so the
+         * bot always steers from where its head actually is.
+         */
+        if (!engine.isAlive(iSnake) || (engine.getDirectionCount(iSnake) > 1)) {
+            return;
+        }
+
+        /*
+         * The direction at the front of the queue is only dropped once the
+         * snake has moved in it, so whatever we queue now takes effect from
+         * the tile the head is about to move into.
+         */
+        final GameBoard board = engine.getBoard();
+        final Direction current = engine.getDirection(iSnake);
+        final int iFrom = engine.getNextCell(engine.getHeadCell(iSnake), current);
+        if (iFrom < 0) {
+            return;
+        }
+
+        /*
+         * Going straight wins ties, so the bot doesn't wiggle for nothing.
+         */
+        Direction best = null;
+        int iBestDistance = Integer.MAX_VALUE;
+        if (isSafe(engine, iFrom, current)) {
+            best = current;
+            iBestDistance = getFruitDistance(board, engine.getNextCell(iFrom, current));
+        }
+        for (final Direction direction : DIRECTIONS) {
+            if ((direction != current) && (direction != current.getOpposite()) &&
+                    isSafe(engine, iFrom, direction)) {
+                final int iDistance = getFruitDistance(board,
+                                                       engine.getNextCell(iFrom, direction));
+                if (iDistance < iBestDistance) {
+                    best = direction;
+                    iBestDistance = iDistance;
+                }
+            }
+        }
+
+        if ((best != null) && (best != current)) {
+            engine.queueDirection(iSnake, best);
+        }
+    }
+
+    /**
+     * Checks whether moving in a direction keeps the snake alive for at
+     * least this tick.
+     *
+     * @param engine    The engine.
+     * @param iFrom     The tile index the head moves from.
+     * @param direction The direction to move in.
+     * @return Whether or not the move is safe.
+     */
+    private static boolean isSafe(final SnakeEngine engine,
+                                  final int iFrom,
+                                  final Direction direction) {
+        final int iCell = engine.getNextCell(iFrom, direction);
+        if (iCell < 0) {
+            return false;
+        }
+        final byte bCode = engine.getBoard().getCell(iCell);
+        return (bCode == GameBoard.EMPTY) || (bCode == GameBoard.FRUIT);
+    }
+
+    /**
+     * Calculates the Manhattan distance from a tile to the nearest fruit.
+     *
+     * @param board The board.
+     * @param iCell The tile index.
+     * @return The distance, or {@code Integer.MAX_VALUE - 1} if there are no
+     * fruits.
+     */
+    private static int getFruitDistance(final GameBoard board, final int iCell) {
+        final int iCols = board.getColumns();
+        final int x = iCell % iCols;
+        final int y = iCell / iCols;
+        int iNearest = Integer.MAX_VALUE - 1;
+        for (int iFruit = 0; iFruit < board.getFruitCount(); iFruit++) {
+            final int iFruitCell = board.getFruitCell(iFruit);
+            final int iDistance = Math.abs((iFruitCell % iCols) - x) +
+                    Math.abs((iFruitCell / iCols) - y);
+            iNearest = Math.min(iNearest, iDistance);
+        }
+        return iNearest;
+    }
+}
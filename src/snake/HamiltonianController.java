@@ -0,0 +1,335 @@
+package snake;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@code HamiltonianController} class is a solver that can fill the
+ * whole board. It follows a cycle that visits every tile once, so the body
+ * always trails the head in cycle order and the snake can never trap
+ * itself. While the snake is short it takes shortcuts: it may step onto any
+ * neighbouring tile that lies further ahead on the cycle, as long as that
+ * tile is still between the head and the tail and doesn't jump past the
+ * next fruit.
+ * <p>
+ * The cycle is built once per board size and shared by every solver, as an
+ * array holding each tile's position on the cycle, so that a decision only
+ * looks at four neighbours and the fruits.
+ * <p>
+ * A board with an odd number of columns and an odd number of rows has no
+ * such cycle, so on those the cycle skips the bottom left corner, which the
+ * solver then never enters. Sooner or later a fruit lands in that corner
+ * when it's the only free tile left, and the snake runs out of room and
+ * dies a tile or two short of a full board; {@link #isCovering(int, int)}
+ * tells the two kinds of board apart. Bad fruits sit on the cycle as well;
+ * the solver steps around them where the rules above allow, so only games
+ * without bad fruits (see {@link SnakeEngine#setBadFruits(boolean)}) on a
+ * board the cycle covers fill it. The solver steers a single snake; other
+ * snakes break its assumptions.
+ */
+public class HamiltonianController implements SnakeController {
+
+    /**
+     * The cycles built so far, by board size.
+     */
+    private static final ConcurrentHashMap<Long, int[]> CYCLES = new ConcurrentHashMap<>();
+
+    /**
+     * The directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The number of free tiles the solver keeps between its head and its
+     * tail when it takes a shortcut, so that eating a fruit right after
+     * can't close the gap.
+     */
+    private static final int iSHORTCUT_MARGIN = (2 * SnakeEngine.iMAX_FRUIT_VALUE) + 2;
+
+    /**
+     * The number of columns of the board the cycle was built for.
+     */
+    private int iCols;
+
+    /**
+     * The number of tiles of the board the cycle was built for.
+     */
+    private int iCells;
+
+    /**
+     * The position of each tile on the cycle, or -1 for a tile the cycle
+     * skips.
+     */
+    private int[] iaOrder;
+
+    /**
+     * The number of tiles on the cycle.
+     */
+    private int iCycleLength;
+
+    @Override
+    public void control(final SnakeEngine engine, final int iSnake) {
+        /*
+         * Plan from the tile the head is about to move into, once the
+         * previous decision has been acted on.
+         */
+        if (!engine.isAlive(iSnake) || (engine.getDirectionCount(iSnake) > 1)) {
+            return;
+        }
+        final GameBoard board = engine.getBoard();
+        final Direction current = engine.getDirection(iSnake);
+        final int iFrom = engine.getNextCell(engine.getHeadCell(iSnake), current);
+        if ((iFrom < 0) || !isPassable(board.getCell(iFrom))) {
+            return;
+        }
+        prepare(board);
+
+        /*
+         * The free part of the cycle runs from the head forward to the tail.
+         */
+        final int iHead = iaOrder[iFrom];
+        final int iTail = iaOrder[engine.getBodyCell(iSnake, engine.getLength(iSnake) - 1)];
+        final int iFree = ((iHead < 0) || (iTail < 0)) ? iCycleLength : distance(iHead, iTail);
+        final int iFruit = (iHead < 0) ? iCycleLength : getFruitDistance(board, iHead);
+
+        /*
+         * Shortcuts are only taken while the body and the tiles it skipped
+         * fill less than half the cycle.
+         */
+        final boolean bShortcuts = (iCycleLength - iFree) < (iCycleLength / 2);
+        final int iBack = current.getOpposite().ordinal();
+        int iBest = -1;
+        int iBestDistance = 0;
+        int iEscape = -1;
+        int iEscapeDistance = Integer.MAX_VALUE;
+        int iAny = -1;
+        for (int iStep = 0; iStep < DIRECTIONS.length; iStep++) {
+            final int iNext = (iStep == iBack) ? -1 : board.getNeighbour(iFrom, DIRECTIONS[iStep]);
+            if ((iNext < 0) || !isPassable(board.getCell(iNext))) {
+                continue;
+            }
+            iAny = iStep;
+            if ((iHead < 0) || (iaOrder[iNext] < 0)) {
+                continue;
+            }
+            final int iDistance = distance(iHead, iaOrder[iNext]);
+            if ((iDistance == 0) || (iDistance >= iFree)) {
+                continue;
+            }
+
+            final boolean bAllowed = (iDistance == 1) ||
+                    (bShortcuts && (iDistance <= iFruit) &&
+                            ((iFree - iDistance) > iSHORTCUT_MARGIN));
+            if (bAllowed && (iDistance > iBestDistance)) {
+                iBest = iStep;
+                iBestDistance = iDistance;
+            }
+            if (iDistance < iEscapeDistance) {
+                iEscape = iStep;
+                iEscapeDistance = iDistance;
+            }
+        }
+
+        /*
+         * If the next tile on the cycle is blocked, step as little ahead as
+         * possible without passing the tail, and failing that anywhere that
+         * doesn't end the game right away.
+         */
+        if (iBest < 0) {
+            iBest = (iEscape >= 0) ? iEscape : iAny;
+        }
+        if ((iBest >= 0) && (iBest != current.ordinal())) {
+            engine.queueDirection(iSnake, DIRECTIONS[iBest]);
+        }
+    }
+
+    /**
+     * Looks up the cycle for the board, building it if it's the first of
+     * its size.
+     *
+     * @param board The board.
+     */
+    private void prepare(final GameBoard board) {
+        if ((iaOrder != null) && (board.getCellCount() == iCells) &&
+                (board.getColumns() == iCols)) {
+            return;
+        }
+        iCols = board.getColumns();
+        iCells = board.getCellCount();
+        iaOrder = getCycle(iCols, board.getRows());
+        iCycleLength = 0;
+        for (int iCell = 0; iCell < iCells; iCell++) {
+            if (iaOrder[iCell] >= 0) {
+                iCycleLength++;
+            }
+        }
+    }
+
+    /**
+     * Calculates how far ahead one position on the cycle is from another.
+     *
+     * @param iFrom The position to count from.
+     * @param iTo   The position to count to.
+     * @return The number of steps along the cycle.
+     */
+    private int distance(final int iFrom, final int iTo) {
+        final int iDistance = iTo - iFrom;
+        return (iDistance < 0) ? (iDistance + iCycleLength) : iDistance;
+    }
+
+    /**
+     * Finds how far ahead on the cycle the nearest fruit is.
+     *
+     * @param board The board.
+     * @param iHead The position of the head on the cycle.
+     * @return The distance, or the length of the cycle if there are no
+     * fruits on it.
+     */
+    private int getFruitDistance(final GameBoard board, final int iHead) {
+        int iNearest = iCycleLength;
+        for (int iFruit = 0; iFruit < board.getFruitCount(); iFruit++) {
+            final int iOrder = iaOrder[board.getFruitCell(iFruit)];
+            if (iOrder >= 0) {
+                iNearest = Math.min(iNearest, distance(iHead, iOrder));
+            }
+        }
+        return iNearest;
+    }
+
+    /**
+     * Checks whether a snake can move onto a tile and survive.
+     *
+     * @param bCode The tile's code.
+     * @return Whether or not the tile is safe.
+     */
+    private static boolean isPassable(final byte bCode) {
+        return (bCode == GameBoard.EMPTY) || (bCode == GameBoard.FRUIT);
+    }
+
+    /**
+     * Checks whether the cycle of a board size visits every tile, which is
+     * what it takes for the solver to fill the board. That's the case unless
+     * both the number of columns and the number of rows are odd.
+     *
+     * @param iCols The number of columns.
+     * @param iRows The number of rows.
+     * @return Whether or not the cycle covers the whole board.
+     */
+    public static boolean isCovering(final int iCols, final int iRows) {
+        return ((iCols % 2) == 0) || ((iRows % 2) == 0);
+    }
+
+    /**
+     * Gets the cycle for a board size, building it the first time.
+     *
+     * @param iCols The number of columns.
+     * @param iRows The number of rows.
+     * @return The position of each tile on the cycle, or -1 for a tile the
+     * cycle skips. The array is shared and must not be modified.
+     */
+    static int[] getCycle(final int iCols, final int iRows) {
+        final Long lKey = ((long) iCols << 32) | iRows;
+        final int[] iaCycle = CYCLES.get(lKey);
+        if (iaCycle != null) {
+            return iaCycle;
+        }
+        final int[] iaBuilt = buildCycle(iCols, iRows);
+        final int[] iaRaced = CYCLES.putIfAbsent(lKey, iaBuilt);
+        return (iaRaced != null) ? iaRaced : iaBuilt;
+    }
+
+    /**
+     * Builds a cycle over a board.
+     * <p>
+     * With an even number of rows, the cycle zigzags along the rows over
+     * every column but the first, and comes back up the first column. With
+     * an odd number of rows but an even number of columns the same is done
+     * along the columns. With both odd, the last row is left out of the
+     * zigzag, and then picked up two tiles at a time by detours from the row
+     * above it, which reaches every tile of it but the first.
+     *
+     * @param iCols The number of columns, at least 2.
+     * @param iRows The number of rows, at least 2.
+     * @return The position of each tile on the cycle, or -1 for a tile the
+     * cycle skips.
+     */
+    private static int[] buildCycle(final int iCols, final int iRows) {
+        if ((iCols < 2) || (iRows < 2)) {
+            throw new IllegalArgumentException("The board must be at least 2 by 2");
+        }
+        final int[] iaNext = new int[iCols * iRows];
+        if ((iRows % 2) == 0) {
+            zigzag(iaNext, iCols, iRows, false);
+        }
+        else if ((iCols % 2) == 0) {
+            zigzag(iaNext, iRows, iCols, true);
+        }
+        else {
+            zigzag(iaNext, iCols, iRows - 1, false);
+            iaNext[(iRows - 1) * iCols] = -1;
+            final int iAbove = (iRows - 2) * iCols;
+            final int iBottom = (iRows - 1) * iCols;
+            for (int x = iCols - 1; x > 0; x -= 2) {
+                iaNext[iAbove + x] = iBottom + x;
+                iaNext[iBottom + x] = iBottom + x - 1;
+                iaNext[iBottom + x - 1] = iAbove + x - 1;
+            }
+        }
+
+        /*
+         * Walk the cycle once to number its tiles.
+         */
+        final int[] iaOrder = new int[iaNext.length];
+        for (int iCell = 0; iCell < iaOrder.length; iCell++) {
+            iaOrder[iCell] = -1;
+        }
+        int iCell = 0;
+        int iOrder = 0;
+        do {
+            iaOrder[iCell] = iOrder++;
+            iCell = iaNext[iCell];
+        } while (iCell != 0);
+        return iaOrder;
+    }
+
+    /**
+     * Links the tiles of a board with an even number of rows into a cycle:
+     * east along the even rows and west along the odd ones, skipping the
+     * first column, which leads back up to the start.
+     *
+     * @param iaNext     The next tile of each tile, filled in by this call.
+     * @param iWidth     The number of columns, or rows if transposed.
+     * @param iHeight    The number of rows, or columns if transposed. Must
+     *                   be even.
+     * @param bTranspose Whether or not columns and rows are swapped.
+     */
+    private static void zigzag(final int[] iaNext,
+                               final int iWidth,
+                               final int iHeight,
+                               final boolean bTranspose) {
+        for (int v = 0; v < iHeight; v++) {
+            for (int u = 0; u < iWidth; u++) {
+                int uNext;
+                int vNext;
+                if (u == 0) {
+                    uNext = (v > 0) ? 0 : 1;
+                    vNext = (v > 0) ? (v - 1) : 0;
+                }
+                else if ((v % 2) == 0) {
+                    uNext = (u < (iWidth - 1)) ? (u + 1) : u;
+                    vNext = (u < (iWidth - 1)) ? v : (v + 1);
+                }
+                else if (u > 1) {
+                    uNext = u - 1;
+                    vNext = v;
+                }
+                else {
+                    uNext = (v < (iHeight - 1)) ? 1 : 0;
+                    vNext = (v < (iHeight - 1)) ? (v + 1) : v;
+                }
+                final int iCell = bTranspose ? ((u * iHeight) + v) : ((v * iWidth) + u);
+                iaNext[iCell] = bTranspose ? ((uNext * iHeight) + vNext) :
+                        ((vNext * iWidth) + uNext);
+            }
+        }
+    }
+}
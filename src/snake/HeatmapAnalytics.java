@@ -0,0 +1,499 @@
+package snake;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@code HeatmapAnalytics} class plays many headless games with a bot
+ * and counts, for every tile of the board, how often a head entered it, how
+ * often a snake died on it and how often a fruit was eaten on it.
+ * <p>
+ * The counts live off the heap, in direct buffers of longs sized to the
+ * board, so that millions of games add nothing for the garbage collector to
+ * trace. Each worker thread counts into its own stripe of buffers with
+ * plain reads and writes, and the stripes are only added up when the
+ * heatmap is read, so the workers never contend on a counter.
+ * <p>
+ * The heatmaps are exported as a CSV file with one line per tile, and as
+ * one PNG image per heatmap, shaded on a logarithmic scale.
+ * <p>
+ * Usage: {@code HeatmapAnalytics [--games=N] [--size=N] [--threads=N]
+ * [--bot=greedy|autopilot|heuristic] [--out=PREFIX] [--stats]} plays the
+ * games and writes {@code PREFIX.csv} and {@code PREFIX-<heatmap>.png}.
+ * With {@code --stats} every game is also recorded in the default
+ * {@link StatsLog}.
+ */
+public class HeatmapAnalytics {
+
+    /**
+     * The heatmap of tiles entered by a head.
+     */
+    public static final int iHEAD_VISITS = 0;
+
+    /**
+     * The heatmap of tiles a snake died on.
+     */
+    public static final int iDEATHS = 1;
+
+    /**
+     * The heatmap of tiles a fruit was eaten on.
+     */
+    public static final int iFRUIT_PICKUPS = 2;
+
+    /**
+     * The number of heatmaps.
+     */
+    public static final int iHEATMAPS = 3;
+
+    /**
+     * The names of the heatmaps, as used in the exports.
+     */
+    private static final String[] saHEATMAP_NAMES = {"visits", "deaths", "fruits"};
+
+    /**
+     * The number of ticks a game may go without eating before it's cut
+     * short, per tile of the board.
+     */
+    private static final int iSTARVATION_PER_CELL = 2;
+
+    /**
+     * The number of games a worker claims at a time.
+     */
+    private static final int iGAMES_PER_CLAIM = 64;
+
+    /**
+     * The number of columns of the board.
+     */
+    private final int iCols;
+
+    /**
+     * The number of rows of the board.
+     */
+    private final int iRows;
+
+    /**
+     * The counts of each stripe, as {@code [heatmap][tile]} longs in native
+     * byte order.
+     */
+    private final ByteBuffer[] bufStripes;
+
+    /**
+     * The log every game played is recorded in, or null.
+     */
+    private StatsLog slgStats;
+
+    /**
+     * The number of games played so far, counted a claim at a time.
+     */
+    private final AtomicLong lGamesPlayed = new AtomicLong();
+
+    /**
+     * Whether or not the workers should stop claiming games.
+     */
+    private volatile boolean bCancelled;
+
+    /**
+     * Creates a new, empty set of heatmaps.
+     *
+     * @param iCols    The number of columns of the board.
+     * @param iRows    The number of rows of the board.
+     * @param iStripes The number of stripes, one per worker thread.
+     */
+    public HeatmapAnalytics(final int iCols, final int iRows, final int iStripes) {
+        this.iCols = iCols;
+        this.iRows = iRows;
+        this.bufStripes = new ByteBuffer[iStripes];
+        for (int iStripe = 0; iStripe < iStripes; iStripe++) {
+            bufStripes[iStripe] = ByteBuffer.allocateDirect(iHEATMAPS * iCols * iRows * Long.BYTES)
+                    .order(ByteOrder.nativeOrder());
+        }
+    }
+
+    /**
+     * Records every game played from now on in a stats log.
+     *
+     * @param slgStats The log, or null to stop recording.
+     */
+    public void setStatsLog(final StatsLog slgStats) {
+        this.slgStats = slgStats;
+    }
+
+    /**
+     * Adds one to a tile of a heatmap. Only the thread that owns the stripe
+     * may call this.
+     *
+     * @param iStripe  The stripe of the calling thread.
+     * @param iHeatmap The heatmap.
+     * @param iCell    The tile index.
+     */
+    public void increment(final int iStripe, final int iHeatmap, final int iCell) {
+        final ByteBuffer bufStripe = bufStripes[iStripe];
+        final int iIndex = ((iHeatmap * iCols * iRows) + iCell) * Long.BYTES;
+        bufStripe.putLong(iIndex, bufStripe.getLong(iIndex) + 1L);
+    }
+
+    /**
+     * Gets the count of a tile of a heatmap, added up over every stripe.
+     * Only exact once the workers have finished.
+     *
+     * @param iHeatmap The heatmap.
+     * @param iCell    The tile index.
+     * @return The count.
+     */
+    public long getCount(final int iHeatmap, final int iCell) {
+        final int iIndex = ((iHeatmap * iCols * iRows) + iCell) * Long.BYTES;
+        long lCount = 0L;
+        for (final ByteBuffer bufStripe : bufStripes) {
+            lCount += bufStripe.getLong(iIndex);
+        }
+        return lCount;
+    }
+
+    /**
+     * Plays games on a pool, one worker per stripe, and counts them into the
+     * heatmaps. Game {@code n} is seeded with {@code n}, so the heatmaps of a
+     * run don't depend on the number of workers.
+     *
+     * @param fjpPool    The pool to play on.
+     * @param lGames     The number of games.
+     * @param ctlFactory Creates the bot of each worker.
+     * @return The number of ticks played.
+     * @throws InterruptedException If the run was interrupted.
+     */
+    public long play(final ForkJoinPool fjpPool, final long lGames, final BotFactory ctlFactory)
+            throws InterruptedException {
+        final AtomicLong lNextGame = new AtomicLong();
+        final List<Callable<Long>> lstWorkers = new ArrayList<>(bufStripes.length);
+        for (int iStripe = 0; iStripe < bufStripes.length; iStripe++) {
+            final int iWorker = iStripe;
+            lstWorkers.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return work(iWorker, lNextGame, lGames, ctlFactory.create());
+                }
+            });
+        }
+
+        long lTicks = 0L;
+        try {
+            for (final Future<Long> future : fjpPool.invokeAll(lstWorkers)) {
+                lTicks += future.get();
+            }
+        }
+        catch (final ExecutionException e) {
+            throw new IllegalStateException("A worker failed", e.getCause());
+        }
+        if (slgStats != null) {
+            try {
+                slgStats.flush();
+            }
+            catch (final IOException e) {
+                throw new IllegalStateException("The stats log could not be written", e);
+            }
+        }
+        return lTicks;
+    }
+
+    /**
+     * Plays games until there are none left to claim.
+     *
+     * @param iStripe    The worker's stripe.
+     * @param lNextGame  The next game to be claimed.
+     * @param lGames     The number of games.
+     * @param controller The worker's bot.
+     * @return The number of ticks played.
+     */
+    private long work(final int iStripe,
+                      final AtomicLong lNextGame,
+                      final long lGames,
+                      final SnakeController controller) {
+        final Random rSpawns = new Random();
+        final SnakeEngine engine = new SnakeEngine(iCols, iRows, rSpawns);
+        final int iStarvation = iCols * iRows * iSTARVATION_PER_CELL;
+        long lTicks = 0L;
+        long lFirst;
+        while (!bCancelled && ((lFirst = lNextGame.getAndAdd(iGAMES_PER_CLAIM)) < lGames)) {
+            final long lLast = Math.min(lGames, lFirst + iGAMES_PER_CLAIM);
+            for (long lGame = lFirst; lGame < lLast; lGame++) {
+                rSpawns.setSeed(lGame);
+                engine.reset();
+                increment(iStripe, iHEAD_VISITS, engine.getHeadCell());
+                int iHungry = 0;
+                while (iHungry < iStarvation) {
+                    controller.control(engine, 0);
+                    final int iHead = engine.getHeadCell();
+                    final Direction heading = engine.getDirection();
+                    final TileType collision = engine.tick();
+                    lTicks++;
+                    if (engine.isGameOver()) {
+                        /*
+                         * The tile the snake died on is the one it was
+                         * moving into, unless that was a wall.
+                         */
+                        final int iTarget = engine.getNextCell(iHead, heading);
+                        increment(iStripe, iDEATHS, (iTarget >= 0) ? iTarget : iHead);
+                        break;
+                    }
+                    increment(iStripe, iHEAD_VISITS, engine.getHeadCell());
+                    if (collision == TileType.Fruit) {
+                        increment(iStripe, iFRUIT_PICKUPS, engine.getHeadCell());
+                        iHungry = 0;
+                    }
+                    else {
+                        iHungry++;
+                    }
+                }
+                if (slgStats != null) {
+                    try {
+                        slgStats.record(engine, StatsLog.SOURCE_SIMULATED);
+                    }
+                    catch (final IOException e) {
+                        throw new IllegalStateException("The stats log could not be written", e);
+                    }
+                }
+            }
+            lGamesPlayed.addAndGet(lLast - lFirst);
+        }
+        return lTicks;
+    }
+
+    /**
+     * Gets the number of games played so far. It's updated as workers
+     * finish each claim of games, so it may lag behind by a few games.
+     *
+     * @return The number of games.
+     */
+    public long getGamesPlayed() {
+        return lGamesPlayed.get();
+    }
+
+    /**
+     * Asks the workers to stop once they've finished the games they've
+     * claimed, which makes {@link #play(ForkJoinPool, long, BotFactory)}
+     * return early.
+     */
+    public void cancel() {
+        bCancelled = true;
+    }
+
+    /**
+     * Checks whether {@link #cancel()} was called.
+     *
+     * @return Whether or not the games were cancelled.
+     */
+    public boolean isCancelled() {
+        return bCancelled;
+    }
+
+    /**
+     * Writes the heatmaps as {@code PREFIX.csv} and one
+     * {@code PREFIX-<heatmap>.png} each, scaled to about 512 pixels across.
+     *
+     * @param sPrefix The start of the name of each file.
+     * @throws IOException If a file could not be written.
+     */
+    public void writeExports(final String sPrefix) throws IOException {
+        writeCsv(Paths.get(sPrefix + ".csv"));
+        for (int iHeatmap = 0; iHeatmap < iHEATMAPS; iHeatmap++) {
+            writePng(iHeatmap, Math.max(1, 512 / Math.max(iCols, iRows)),
+                     Paths.get(sPrefix + "-" + saHEATMAP_NAMES[iHeatmap] + ".png"));
+        }
+    }
+
+    /**
+     * Writes the heatmaps as CSV, one line per tile.
+     *
+     * @param pthCsv The file to write.
+     * @throws IOException If the file could not be written.
+     */
+    public void writeCsv(final Path pthCsv) throws IOException {
+        try (final BufferedWriter bwOut = Files.newBufferedWriter(pthCsv)) {
+            bwOut.write("x,y");
+            for (final String sName : saHEATMAP_NAMES) {
+                bwOut.write(',');
+                bwOut.write(sName);
+            }
+            bwOut.newLine();
+            for (int iCell = 0; iCell < (iCols * iRows); iCell++) {
+                bwOut.write(Integer.toString(iCell % iCols));
+                bwOut.write(',');
+                bwOut.write(Integer.toString(iCell / iCols));
+                for (int iHeatmap = 0; iHeatmap < iHEATMAPS; iHeatmap++) {
+                    bwOut.write(',');
+                    bwOut.write(Long.toString(getCount(iHeatmap, iCell)));
+                }
+                bwOut.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes a heatmap as a PNG image, shading each tile from black through
+     * red and yellow to white by the logarithm of its count, from the least
+     * visited tile to the most.
+     *
+     * @param iHeatmap The heatmap.
+     * @param iScale   The width and height of a tile in pixels.
+     * @param pthPng   The file to write.
+     * @throws IOException If the file could not be written.
+     */
+    public void writePng(final int iHeatmap, final int iScale, final Path pthPng) throws IOException {
+        long lMin = Long.MAX_VALUE;
+        long lMax = 0L;
+        for (int iCell = 0; iCell < (iCols * iRows); iCell++) {
+            final long lCount = getCount(iHeatmap, iCell);
+            lMin = Math.min(lMin, lCount);
+            lMax = Math.max(lMax, lCount);
+        }
+        final double dLogMin = Math.log1p(lMin);
+        final double dLogRange = Math.max(1.0e-9, Math.log1p(lMax) - dLogMin);
+
+        final BufferedImage imgHeatmap = new BufferedImage(iCols * iScale, iRows * iScale,
+                                                           BufferedImage.TYPE_INT_RGB);
+        for (int iCell = 0; iCell < (iCols * iRows); iCell++) {
+            final double dHeat = (Math.log1p(getCount(iHeatmap, iCell)) - dLogMin) / dLogRange;
+            final int iRed = (int) Math.min(255.0, dHeat * 3.0 * 255.0);
+            final int iGreen = (int) Math.max(0.0, Math.min(255.0, ((dHeat * 3.0) - 1.0) * 255.0));
+            final int iBlue = (int) Math.max(0.0, Math.min(255.0, ((dHeat * 3.0) - 2.0) * 255.0));
+            final int iRgb = (iRed << 16) | (iGreen << 8) | iBlue;
+            final int x = (iCell % iCols) * iScale;
+            final int y = (iCell / iCols) * iScale;
+            for (int iPixel = 0; iPixel < (iScale * iScale); iPixel++) {
+                imgHeatmap.setRGB(x + (iPixel % iScale), y + (iPixel / iScale), iRgb);
+            }
+        }
+        ImageIO.write(imgHeatmap, "png", pthPng.toFile());
+    }
+
+    /**
+     * The {@code BotFactory} interface creates the bot of each worker, as
+     * bots keep search state that can't be shared between threads.
+     */
+    public interface BotFactory {
+
+        /**
+         * Creates a bot.
+         *
+         * @return The bot.
+         */
+        SnakeController create();
+    }
+
+    /**
+     * Gets the factory of a bot by name.
+     *
+     * @param sBot {@code greedy}, {@code autopilot} or {@code heuristic}.
+     * @return The factory.
+     */
+    static BotFactory getBotFactory(final String sBot) {
+        if (sBot.equals("autopilot")) {
+            return new BotFactory() {
+                @Override
+                public SnakeController create() {
+                    return new AutopilotController();
+                }
+            };
+        }
+        else if (sBot.equals("heuristic")) {
+            return new BotFactory() {
+                @Override
+                public SnakeController create() {
+                    return new HeuristicController();
+                }
+            };
+        }
+        return new BotFactory() {
+            @Override
+            public SnakeController create() {
+                return new GreedyController();
+            }
+        };
+    }
+
+    /**
+     * Entry point of the analytics mode.
+     *
+     * @param args The options described in the class comment.
+     * @throws IOException          If the exports could not be written.
+     * @throws InterruptedException If the run was interrupted.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        long lGames = 100000L;
+        int iSize = BoardPanel.iCOL_COUNT;
+        int iThreads = Runtime.getRuntime().availableProcessors();
+        String sBot = "greedy";
+        String sOut = "snake_heatmap";
+        boolean bStats = false;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--games=")) {
+                lGames = Math.max(1L, Long.parseLong(sArg.substring("--games=".length())));
+            }
+            else if (sArg.startsWith("--size=")) {
+                iSize = Math.max(5, Integer.parseInt(sArg.substring("--size=".length())));
+            }
+            else if (sArg.startsWith("--threads=")) {
+                iThreads = Math.max(1, Integer.parseInt(sArg.substring("--threads=".length())));
+            }
+            else if (sArg.startsWith("--bot=")) {
+                sBot = sArg.substring("--bot=".length());
+            }
+            else if (sArg.startsWith("--out=")) {
+                sOut = sArg.substring("--out=".length());
+            }
+            else if (sArg.equals("--stats")) {
+                bStats = true;
+            }
+        }
+
+        final HeatmapAnalytics analytics = new HeatmapAnalytics(iSize, iSize, iThreads);
+        if (bStats) {
+            analytics.setStatsLog(StatsLog.openDefault());
+        }
+        final ForkJoinPool fjpPool = new ForkJoinPool(iThreads);
+        final long lGcBefore = getCollectionCount();
+        final long lStart = System.nanoTime();
+        final long lTicks = analytics.play(fjpPool, lGames, getBotFactory(sBot));
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+        final long lGcAfter = getCollectionCount();
+        fjpPool.shutdown();
+
+        analytics.writeExports(sOut);
+        System.out.printf("games=%d ticks=%d games/s=%.0f ticks/s=%.0f collections=%d%n",
+                          lGames,
+                          lTicks,
+                          lGames / dSeconds,
+                          lTicks / dSeconds,
+                          lGcAfter - lGcBefore);
+    }
+
+    /**
+     * Gets the number of garbage collections so far, over every collector.
+     *
+     * @return The number of collections.
+     */
+    private static long getCollectionCount() {
+        long lCount = 0L;
+        for (final GarbageCollectorMXBean gcBean :
+                ManagementFactory.getGarbageCollectorMXBeans()) {
+            lCount += Math.max(0L, gcBean.getCollectionCount());
+        }
+        return lCount;
+    }
+}
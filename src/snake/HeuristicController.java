@@ -0,0 +1,241 @@
+package snake;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The {@code HeuristicController} class is a bot that rates each of its
+ * three moves by a weighted sum of features of the tile it would move into,
+ * and takes the best one. The features are:
+ * <ol>
+ * <li>how close the tile is to the nearest fruit,</li>
+ * <li>how much of the board can still be reached from it,</li>
+ * <li>whether the snake's tail can be reached from it, so that the snake
+ * can follow itself out of a tight spot, and</li>
+ * <li>how many bad fruits are next to it.</li>
+ * </ol>
+ * The weights are what the {@link GeneticTrainer} evolves. Moves that die
+ * on the spot are never taken while there is another.
+ * <p>
+ * The flood fill behind the second and third feature uses arrays that are
+ * allocated once per board size, so a decision allocates nothing.
+ */
+public class HeuristicController implements SnakeController {
+
+    /**
+     * The number of features, and so of weights.
+     */
+    public static final int iFEATURES = 4;
+
+    /**
+     * Weights that play reasonably well, for when no trained ones are
+     * given.
+     */
+    private static final double[] daDEFAULT_WEIGHTS = {1.0, 2.0, 1.0, -0.5};
+
+    /**
+     * The directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The weight of each feature.
+     */
+    private final double[] daWeights;
+
+    /**
+     * The features of the move being rated.
+     */
+    private final double[] daFeatures = new double[iFEATURES];
+
+    /**
+     * The number of tiles of the board the arrays were sized for.
+     */
+    private int iCells;
+
+    /**
+     * The tiles waiting to be expanded by the flood fill.
+     */
+    private int[] iaQueue;
+
+    /**
+     * The stamp of the last fill that reached each tile.
+     */
+    private int[] iaSeen;
+
+    /**
+     * The stamp of the current fill.
+     */
+    private int iStamp;
+
+    /**
+     * Creates a new bot with the default weights.
+     */
+    public HeuristicController() {
+        this(daDEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Creates a new bot.
+     *
+     * @param daWeights The weight of each feature.
+     */
+    public HeuristicController(final double[] daWeights) {
+        if (daWeights.length != iFEATURES) {
+            throw new IllegalArgumentException("Expected " + iFEATURES + " weights");
+        }
+        this.daWeights = daWeights.clone();
+    }
+
+    /**
+     * Creates a new bot with the best weights of a trainer's checkpoint.
+     *
+     * @param pthCheckpoint The checkpoint file.
+     * @return The bot.
+     * @throws IOException If the checkpoint could not be read.
+     */
+    public static HeuristicController fromCheckpoint(final Path pthCheckpoint) throws IOException {
+        return new HeuristicController(GeneticTrainer.readBest(pthCheckpoint));
+    }
+
+    /**
+     * Gets the weight of each feature.
+     *
+     * @return A copy of the weights.
+     */
+    public double[] getWeights() {
+        return daWeights.clone();
+    }
+
+    @Override
+    public void control(final SnakeEngine engine, final int iSnake) {
+        if (!engine.isAlive(iSnake)) {
+            return;
+        }
+        final GameBoard board = engine.getBoard();
+        prepare(board);
+
+        final Direction current = engine.getDirection(iSnake);
+        final int iHead = engine.getHeadCell(iSnake);
+        final int iTail = engine.getBodyCell(iSnake, engine.getLength(iSnake) - 1);
+        Direction best = null;
+        double dBestScore = Double.NEGATIVE_INFINITY;
+        for (final Direction direction : DIRECTIONS) {
+            if (direction == current.getOpposite()) {
+                continue;
+            }
+            final int iCell = engine.getNextCell(iHead, direction);
+            if (iCell < 0) {
+                continue;
+            }
+            final byte bCode = board.getCell(iCell);
+            if ((bCode != GameBoard.EMPTY) && (bCode != GameBoard.FRUIT)) {
+                continue;
+            }
+
+            rate(board, iCell, iHead, iTail);
+            double dScore = 0.0;
+            for (int iFeature = 0; iFeature < iFEATURES; iFeature++) {
+                dScore += daWeights[iFeature] * daFeatures[iFeature];
+            }
+            if (dScore > dBestScore) {
+                best = direction;
+                dBestScore = dScore;
+            }
+        }
+        if ((best != null) && (best != current)) {
+            engine.steer(iSnake, best);
+        }
+    }
+
+    /**
+     * Works out the features of a tile.
+     *
+     * @param board The board.
+     * @param iCell The tile the head would move into.
+     * @param iHead The tile the head is on now.
+     * @param iTail The tile of the end of the tail.
+     */
+    private void rate(final GameBoard board, final int iCell, final int iHead, final int iTail) {
+        /*
+         * Distance to the nearest fruit, with 1 on a fruit and 0 as far
+         * away as the board allows.
+         */
+        final int iCols = board.getColumns();
+        final int iRows = board.getRows();
+        final int x = iCell % iCols;
+        final int y = iCell / iCols;
+        int iNearest = iCols + iRows;
+        for (int iFruit = 0; iFruit < board.getFruitCount(); iFruit++) {
+            final int iFruitCell = board.getFruitCell(iFruit);
+            iNearest = Math.min(iNearest, Math.abs((iFruitCell % iCols) - x) +
+                    Math.abs((iFruitCell / iCols) - y));
+        }
+        daFeatures[0] = 1.0 - (iNearest / (double) (iCols + iRows));
+
+        /*
+         * Flood fill from the tile, with the current head as a wall, to find
+         * the share of the board that stays reachable and whether the tail
+         * is part of it.
+         */
+        final int iSearch = ++iStamp;
+        iaSeen[iHead] = iSearch;
+        iaSeen[iCell] = iSearch;
+        iaQueue[0] = iCell;
+        int iFirst = 0;
+        int iLast = 1;
+        boolean bTail = false;
+        while (iFirst < iLast) {
+            final int iFrom = iaQueue[iFirst++];
+            for (int iStep = 0; iStep < DIRECTIONS.length; iStep++) {
+                final int iNext = board.getNeighbour(iFrom, DIRECTIONS[iStep]);
+                if ((iNext < 0) || (iaSeen[iNext] == iSearch)) {
+                    continue;
+                }
+                if (iNext == iTail) {
+                    bTail = true;
+                }
+                final byte bCode = board.getCell(iNext);
+                if ((bCode == GameBoard.EMPTY) || (bCode == GameBoard.FRUIT)) {
+                    iaSeen[iNext] = iSearch;
+                    iaQueue[iLast++] = iNext;
+                }
+            }
+        }
+        daFeatures[1] = iLast / (double) iCells;
+        daFeatures[2] = bTail ? 1.0 : 0.0;
+
+        /*
+         * Bad fruits next to the tile.
+         */
+        int iBad = 0;
+        for (int iStep = 0; iStep < DIRECTIONS.length; iStep++) {
+            final int iNext = board.getNeighbour(iCell, DIRECTIONS[iStep]);
+            if ((iNext >= 0) && (board.getCell(iNext) == GameBoard.BAD_FRUIT)) {
+                iBad++;
+            }
+        }
+        daFeatures[3] = iBad / (double) DIRECTIONS.length;
+    }
+
+    /**
+     * Makes sure the arrays fit the board.
+     *
+     * @param board The board.
+     */
+    private void prepare(final GameBoard board) {
+        if ((iaQueue == null) || (board.getCellCount() != iCells)) {
+            iCells = board.getCellCount();
+            iaQueue = new int[iCells];
+            iaSeen = new int[iCells];
+            iStamp = 0;
+        }
+        else if (iStamp > (Integer.MAX_VALUE - DIRECTIONS.length)) {
+            for (int iCell = 0; iCell < iCells; iCell++) {
+                iaSeen[iCell] = 0;
+            }
+            iStamp = 0;
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package snake;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * The {@code KeyboardController} class binds a set of keys to the four
+ * directions of one snake. Key presses are queued on the engine as soon as
+ * they arrive rather than on the next tick, so {@link #control} has nothing
+ * left to do.
+ */
+public class KeyboardController implements SnakeController {
+
+    /**
+     * The keys for up, down, left and right, for each of the players that
+     * share a keyboard.
+     */
+    private static final int[][] iaPLAYER_KEYS = {
+            {KeyEvent.VK_W, KeyEvent.VK_S, KeyEvent.VK_A, KeyEvent.VK_D},
+            {KeyEvent.VK_UP, KeyEvent.VK_DOWN, KeyEvent.VK_LEFT, KeyEvent.VK_RIGHT},
+            {KeyEvent.VK_I, KeyEvent.VK_K, KeyEvent.VK_J, KeyEvent.VK_L},
+            {KeyEvent.VK_NUMPAD8, KeyEvent.VK_NUMPAD5, KeyEvent.VK_NUMPAD4, KeyEvent.VK_NUMPAD6}
+    };
+
+    /**
+     * The names of the keys of each player, as shown to the players.
+     */
+    private static final String[] saPLAYER_KEY_NAMES = {
+            "W / A / S / D",
+            "Arrowkeys",
+            "I / J / K / L",
+            "Numpad 8 / 4 / 5 / 6"
+    };
+
+    /**
+     * The maximum number of players that can share the keyboard.
+     */
+    public static final int iMAX_PLAYERS = iaPLAYER_KEYS.length;
+
+    /**
+     * The directions, in the order their keys are bound.
+     */
+    private static final Direction[] daBOUND_DIRECTIONS = {
+            Direction.North, Direction.South, Direction.West, Direction.East
+    };
+
+    /**
+     * The bound keys, in groups of up, down, left and right.
+     */
+    private final int[] iaKeys;
+
+    /**
+     * Creates a new KeyboardController instance.
+     *
+     * @param iaKeys The bound keys, in groups of up, down, left and right.
+     */
+    public KeyboardController(final int... iaKeys) {
+        this.iaKeys = iaKeys.clone();
+    }
+
+    /**
+     * Creates the controller for one of the players sharing the keyboard. A
+     * lone player can use both WASD and the arrow keys.
+     *
+     * @param iPlayer  The player, counting from 0.
+     * @param iPlayers The number of players sharing the keyboard.
+     * @return The controller.
+     */
+    public static KeyboardController forPlayer(final int iPlayer, final int iPlayers) {
+        if (iPlayers == 1) {
+            final int[] iaBoth = new int[8];
+            System.arraycopy(iaPLAYER_KEYS[0], 0, iaBoth, 0, 4);
+            System.arraycopy(iaPLAYER_KEYS[1], 0, iaBoth, 4, 4);
+            return new KeyboardController(iaBoth);
+        }
+        return new KeyboardController(iaPLAYER_KEYS[iPlayer]);
+    }
+
+    /**
+     * Gets the names of the keys of one of the players sharing the keyboard.
+     *
+     * @param iPlayer The player, counting from 0.
+     * @return The names of the keys.
+     */
+    public static String getKeyNames(final int iPlayer) {
+        return saPLAYER_KEY_NAMES[iPlayer];
+    }
+
+    /**
+     * Gets the direction a key is bound to.
+     *
+     * @param iKeyCode The key code.
+     * @return The direction, or null if the key is not bound.
+     */
+    public Direction getDirection(final int iKeyCode) {
+        for (int iKey = 0; iKey < iaKeys.length; iKey++) {
+            if (iaKeys[iKey] == iKeyCode) {
+                return daBOUND_DIRECTIONS[iKey % daBOUND_DIRECTIONS.length];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void control(final SnakeEngine engine, final int iSnake) {
+        /*
+         * Directions were already queued by the key listener.
+         */
+    }
+}
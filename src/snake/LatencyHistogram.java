@@ -0,0 +1,289 @@
+package snake;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code LatencyHistogram} class records latencies (in nanoseconds) into
+ * log-linear buckets, in the spirit of an HDR histogram. Each power of two is
+ * split into {@code iSUB_BUCKETS} linear buckets, which keeps the relative
+ * error of any reported percentile around 3% while using a fixed amount of
+ * memory.
+ * <p>
+ * Recording is lock-free and never allocates, so it is safe to call from the
+ * game loop and the event dispatch thread at the same time.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    /**
+     * The number of significant bits that are kept for each value.
+     */
+    private static final int iSIGNIFICANT_BITS = 6;
+
+    /**
+     * The number of linear buckets in each power of two.
+     */
+    private static final int iSUB_BUCKETS = 1 << (iSIGNIFICANT_BITS - 1);
+
+    /**
+     * The total number of buckets needed to cover every positive long.
+     */
+    private static final int iBUCKET_COUNT =
+            (64 - iSIGNIFICANT_BITS + 2) * iSUB_BUCKETS;
+
+    /**
+     * The number of nanoseconds in a microsecond.
+     */
+    private static final double dNANOS_PER_MICRO = 1000.0;
+
+    /**
+     * The name this histogram is registered and dumped under.
+     */
+    private final String sName;
+
+    /**
+     * The number of values recorded in each bucket.
+     */
+    private final AtomicLongArray alaBuckets;
+
+    /**
+     * The total number of values recorded.
+     */
+    private final AtomicLong alCount;
+
+    /**
+     * The sum of all values recorded.
+     */
+    private final AtomicLong alSum;
+
+    /**
+     * The largest value recorded.
+     */
+    private final AtomicLong alMax;
+
+    /**
+     * Creates a new, empty histogram.
+     *
+     * @param sName The name of the histogram.
+     */
+    public LatencyHistogram(final String sName) {
+        this.sName = sName;
+        alaBuckets = new AtomicLongArray(iBUCKET_COUNT);
+        alCount = new AtomicLong();
+        alSum = new AtomicLong();
+        alMax = new AtomicLong();
+    }
+
+    /**
+     * Records a single latency.
+     *
+     * @param lNanos The latency in nanoseconds. Negative values are recorded
+     *               as zero.
+     */
+    public void record(final long lNanos) {
+        final long lValue = Math.max(0L, lNanos);
+        alaBuckets.incrementAndGet(getBucketIndex(lValue));
+        alCount.incrementAndGet();
+        alSum.addAndGet(lValue);
+
+        long lMax = alMax.get();
+        while ((lValue > lMax) && !alMax.compareAndSet(lMax, lValue)) {
+            lMax = alMax.get();
+        }
+    }
+
+    /**
+     * Records the time that has passed since the given start time.
+     *
+     * @param lStartNanos A start time taken from {@code System.nanoTime()}.
+     */
+    public void recordSince(final long lStartNanos) {
+        record(System.nanoTime() - lStartNanos);
+    }
+
+    /**
+     * Calculates the value (in nanoseconds) at the given percentile. The
+     * value reported is the upper bound of the bucket the percentile falls
+     * into.
+     *
+     * @param dPercentile The percentile, between 0 and 100.
+     * @return The value at the percentile, or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(final double dPercentile) {
+        final long lCount = alCount.get();
+        if (lCount == 0) {
+            return 0L;
+        }
+
+        final long lTarget = Math.max(1L,
+                                      (long) Math.ceil((dPercentile / 100.0) * lCount));
+        long lSeen = 0;
+        for (int iBucket = 0; iBucket < iBUCKET_COUNT; iBucket++) {
+            lSeen += alaBuckets.get(iBucket);
+            if (lSeen >= lTarget) {
+                return Math.min(getBucketUpperBound(iBucket), alMax.get());
+            }
+        }
+        return alMax.get();
+    }
+
+    /**
+     * Copies the current number of values in each bucket into an array, so
+     * that the values recorded over a window of time can be worked out by
+     * subtracting two copies.
+     *
+     * @param laTarget The array to copy into, at least
+     *                 {@link #getBucketCount()} long.
+     */
+    public void copyBuckets(final long[] laTarget) {
+        for (int iBucket = 0; iBucket < iBUCKET_COUNT; iBucket++) {
+            laTarget[iBucket] = alaBuckets.get(iBucket);
+        }
+    }
+
+    /**
+     * Gets the number of buckets that every histogram has.
+     *
+     * @return The number of buckets.
+     */
+    public static int getBucketCount() {
+        return iBUCKET_COUNT;
+    }
+
+    /**
+     * Calculates the value at the given percentile from a set of bucket
+     * counts, such as the difference between two calls to
+     * {@link #copyBuckets(long[])}.
+     *
+     * @param laCounts    The number of values in each bucket.
+     * @param dPercentile The percentile, between 0 and 100.
+     * @return The value (in nanoseconds) at the percentile, or 0 if the
+     * buckets are empty.
+     */
+    public static long getValueAtPercentile(final long[] laCounts,
+                                            final double dPercentile) {
+        long lCount = 0;
+        for (int iBucket = 0; iBucket < iBUCKET_COUNT; iBucket++) {
+            lCount += laCounts[iBucket];
+        }
+        if (lCount == 0) {
+            return 0L;
+        }
+
+        final long lTarget = Math.max(1L,
+                                      (long) Math.ceil((dPercentile / 100.0) * lCount));
+        long lSeen = 0;
+        for (int iBucket = 0; iBucket < iBUCKET_COUNT; iBucket++) {
+            lSeen += laCounts[iBucket];
+            if (lSeen >= lTarget) {
+                return getBucketUpperBound(iBucket);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Clears every recorded value. Values recorded concurrently with a reset
+     * may be partially lost, which is acceptable for monitoring purposes.
+     */
+    public void reset() {
+        for (int iBucket = 0; iBucket < iBUCKET_COUNT; iBucket++) {
+            alaBuckets.set(iBucket, 0L);
+        }
+        alCount.set(0L);
+        alSum.set(0L);
+        alMax.set(0L);
+    }
+
+    /**
+     * Gets the name of this histogram.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return sName;
+    }
+
+    @Override
+    public long getCount() {
+        return alCount.get();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        final long lCount = alCount.get();
+        return (lCount == 0) ? 0.0 : (alSum.get() / (double) lCount) / dNANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return getValueAtPercentile(50.0) / dNANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP90Micros() {
+        return getValueAtPercentile(90.0) / dNANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return getValueAtPercentile(99.0) / dNANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return getValueAtPercentile(99.9) / dNANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return alMax.get() / dNANOS_PER_MICRO;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s count=%d mean=%.1fus p50=%.1fus p90=%.1fus " +
+                                     "p99=%.1fus p999=%.1fus max=%.1fus",
+                             sName,
+                             getCount(),
+                             getMeanMicros(),
+                             getP50Micros(),
+                             getP90Micros(),
+                             getP99Micros(),
+                             getP999Micros(),
+                             getMaxMicros());
+    }
+
+    /**
+     * Finds the bucket that a value belongs to. Values below
+     * {@code 2 * iSUB_BUCKETS} get a bucket each, larger values share a
+     * bucket with the values that have the same significant bits.
+     *
+     * @param lValue The (non-negative) value.
+     * @return The bucket index.
+     */
+    private static int getBucketIndex(final long lValue) {
+        if (lValue < (iSUB_BUCKETS << 1)) {
+            return (int) lValue;
+        }
+        final int iHighBit = 63 - Long.numberOfLeadingZeros(lValue);
+        final int iShift = iHighBit - iSIGNIFICANT_BITS + 1;
+        final int iMantissa = (int) (lValue >>> iShift);
+        return ((iShift + 1) * iSUB_BUCKETS) + (iMantissa - iSUB_BUCKETS);
+    }
+
+    /**
+     * Calculates the largest value that falls into a bucket.
+     *
+     * @param iBucket The bucket index.
+     * @return The largest value in the bucket.
+     */
+    private static long getBucketUpperBound(final int iBucket) {
+        if (iBucket < (iSUB_BUCKETS << 1)) {
+            return iBucket;
+        }
+        final int iShift = (iBucket / iSUB_BUCKETS) - 1;
+        final long lMantissa = iSUB_BUCKETS + (iBucket % iSUB_BUCKETS);
+        return ((lMantissa + 1) << iShift) - 1;
+    }
+}
@@ -0,0 +1,63 @@
+package snake;
+
+/**
+ * The {@code LatencyHistogramMXBean} interface is the management view of a
+ * {@link LatencyHistogram} that is exposed over JMX. All of the latencies are
+ * reported in microseconds.
+ */
+public interface LatencyHistogramMXBean {
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The number of values.
+     */
+    long getCount();
+
+    /**
+     * Gets the mean of the values recorded.
+     *
+     * @return The mean latency.
+     */
+    double getMeanMicros();
+
+    /**
+     * Gets the median of the values recorded.
+     *
+     * @return The 50th percentile latency.
+     */
+    double getP50Micros();
+
+    /**
+     * Gets the 90th percentile of the values recorded.
+     *
+     * @return The 90th percentile latency.
+     */
+    double getP90Micros();
+
+    /**
+     * Gets the 99th percentile of the values recorded.
+     *
+     * @return The 99th percentile latency.
+     */
+    double getP99Micros();
+
+    /**
+     * Gets the 99.9th percentile of the values recorded.
+     *
+     * @return The 99.9th percentile latency.
+     */
+    double getP999Micros();
+
+    /**
+     * Gets the largest value recorded.
+     *
+     * @return The maximum latency.
+     */
+    double getMaxMicros();
+
+    /**
+     * Clears every recorded value.
+     */
+    void reset();
+}
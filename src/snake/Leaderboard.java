@@ -0,0 +1,913 @@
+package snake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The {@code Leaderboard} class keeps the high scores of every player. Each
+ * game over is appended to a log file as it happens, and the scores are
+ * held in memory in an indexable skip list ordered from the best score
+ * down, in which every link also knows how many entries it skips. That
+ * makes adding a score, finding the kth best and finding the rank of a
+ * player's best score all take O(log n) steps, and the top K take
+ * O(log n + K).
+ * <p>
+ * Only the {@link #iENTRIES_PER_PLAYER} best games of each player are kept.
+ * The log still holds every game, so once it holds twice as many games as
+ * are kept it's compacted: the kept games are written to a new file, in the
+ * order they were played, which then replaces the log. Starting up replays
+ * the log, and a record cut short by a crash is dropped.
+ * <p>
+ * Each record of the log is a big-endian short holding the length of the
+ * player's name, the name in UTF-8, the score, the fruits eaten and the
+ * ticks survived as ints, and the time of the game in milliseconds since
+ * the epoch as a long. A leaderboard may be shared by threads.
+ * <p>
+ * Usage: {@code Leaderboard [--file=FILE] [--top=K] [--rank=NAME]
+ * [--benchmark=N]} prints the top K and the rank of a player, or fills a
+ * scratch leaderboard with N random games and times every operation.
+ */
+public class Leaderboard implements Closeable {
+
+    /**
+     * The default log file.
+     */
+    public static final String sDEFAULT_FILE = "snake_leaderboard.log";
+
+    /**
+     * The number of games kept for each player.
+     */
+    public static final int iENTRIES_PER_PLAYER = 10;
+
+    /**
+     * The first bytes of a log file.
+     */
+    private static final int iMAGIC = 0x534E4C42;
+
+    /**
+     * The most levels the skip list grows to, enough for billions of
+     * entries.
+     */
+    private static final int iMAX_LEVEL = 32;
+
+    /**
+     * The longest name kept, in bytes of UTF-8.
+     */
+    private static final int iMAX_NAME_BYTES = 255;
+
+    /**
+     * The order of the entries: best score first, and the earlier game
+     * first among equal scores.
+     */
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(final Entry first, final Entry second) {
+            if (first.iScore != second.iScore) {
+                return (first.iScore > second.iScore) ? -1 : 1;
+            }
+            return Long.compare(first.lSequence, second.lSequence);
+        }
+    };
+
+    /**
+     * The log file.
+     */
+    private final Path pthFile;
+
+    /**
+     * The head of the skip list, which holds no entry.
+     */
+    private final Node nodHead = new Node(null, iMAX_LEVEL);
+
+    /**
+     * The kept entries of each player, best first.
+     */
+    private final HashMap<String, List<Node>> mapPlayers = new HashMap<>();
+
+    /**
+     * The random number generator that picks the level of new nodes.
+     */
+    private final Random rLevels = new Random();
+
+    /**
+     * The nodes that link to the place being changed, on each level.
+     */
+    private final Node[] nodaUpdate = new Node[iMAX_LEVEL];
+
+    /**
+     * The rank of each node in {@code nodaUpdate}.
+     */
+    private final int[] iaUpdateRanks = new int[iMAX_LEVEL];
+
+    /**
+     * The number of levels in use.
+     */
+    private int iLevels = 1;
+
+    /**
+     * The number of entries kept.
+     */
+    private int iSize;
+
+    /**
+     * The sequence number of the next entry.
+     */
+    private long lNextSequence;
+
+    /**
+     * The number of records in the log.
+     */
+    private long lLogRecords;
+
+    /**
+     * The stream appending to the log.
+     */
+    private DataOutputStream dosLog;
+
+    /**
+     * Opens a leaderboard, replaying its log if there is one. A log shorter
+     * than its header is written anew.
+     *
+     * @param pthFile The log file.
+     * @throws IOException If the log could not be read or opened for
+     *                     appending.
+     */
+    public Leaderboard(final Path pthFile) throws IOException {
+        this.pthFile = pthFile;
+
+        /*
+         * A log cut short before its header was written holds no games, so
+         * it's started over just like a missing one.
+         */
+        if (Files.exists(pthFile) && (Files.size(pthFile) >= Integer.BYTES)) {
+            replay();
+        }
+        else {
+            writeLog(pthFile, new ArrayList<Entry>());
+        }
+        dosLog = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(pthFile, StandardOpenOption.APPEND)));
+    }
+
+    /**
+     * Opens the default leaderboard, named by the
+     * {@code snake.leaderboard.file} system property.
+     *
+     * @return The leaderboard, or null if it could not be opened.
+     */
+    public static Leaderboard openDefault() {
+        try {
+            return new Leaderboard(Paths.get(System.getProperty("snake.leaderboard.file",
+                                                                sDEFAULT_FILE)));
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Reads every record of the log into the skip list, and cuts off a
+     * record left half written.
+     *
+     * @throws IOException If the log could not be read.
+     */
+    private void replay() throws IOException {
+        final HashMap<String, List<Entry>> mapKept = new HashMap<>();
+        long lGood;
+        try (final InputStream isIn = Files.newInputStream(pthFile);
+             final DataInputStream disIn = new DataInputStream(new BufferedInputStream(isIn, 1 << 16))) {
+            if (disIn.readInt() != iMAGIC) {
+                throw new IOException(pthFile + " is not a leaderboard");
+            }
+            lGood = Integer.BYTES;
+            final byte[] baName = new byte[iMAX_NAME_BYTES];
+            while (true) {
+                final int iNameBytes;
+                try {
+                    iNameBytes = disIn.readUnsignedShort();
+                }
+                catch (final EOFException e) {
+                    break;
+                }
+                if (iNameBytes > iMAX_NAME_BYTES) {
+                    throw new IOException(pthFile + " is corrupt");
+                }
+                try {
+                    disIn.readFully(baName, 0, iNameBytes);
+                    final int iScore = disIn.readInt();
+                    final int iFruits = disIn.readInt();
+                    final int iTicks = disIn.readInt();
+                    final long lTime = disIn.readLong();
+                    keep(mapKept, new Entry(new String(baName, 0, iNameBytes, StandardCharsets.UTF_8),
+                                            iScore, iFruits, iTicks, lTime));
+                    lGood += getRecordSize(iNameBytes);
+                    lLogRecords++;
+                }
+                catch (final EOFException e) {
+                    break;
+                }
+            }
+        }
+        try (final FileChannel fchLog = FileChannel.open(pthFile, StandardOpenOption.WRITE)) {
+            if (fchLog.size() > lGood) {
+                fchLog.truncate(lGood);
+            }
+        }
+
+        /*
+         * Sorting what's kept once and linking it in order is much quicker
+         * than inserting the records one by one.
+         */
+        final List<Entry> lstAll = new ArrayList<>();
+        for (final List<Entry> lstPlayer : mapKept.values()) {
+            lstAll.addAll(lstPlayer);
+        }
+        final Entry[] entries = lstAll.toArray(new Entry[0]);
+        Arrays.sort(entries, ORDER);
+        build(entries);
+    }
+
+    /**
+     * Adds a replayed entry to its player's kept entries, unless the player
+     * already has as many better ones, and drops the player's worst entry if
+     * it's one too many.
+     *
+     * @param mapKept The kept entries of each player, best first.
+     * @param entry   The entry.
+     */
+    private void keep(final HashMap<String, List<Entry>> mapKept, final Entry entry) {
+        entry.lSequence = lNextSequence++;
+        List<Entry> lstKept = mapKept.get(entry.sName);
+        if (lstKept == null) {
+            lstKept = new ArrayList<>(iENTRIES_PER_PLAYER + 1);
+            mapKept.put(entry.sName, lstKept);
+        }
+        int iSlot = lstKept.size();
+        while ((iSlot > 0) && (ORDER.compare(entry, lstKept.get(iSlot - 1)) < 0)) {
+            iSlot--;
+        }
+        if (iSlot < iENTRIES_PER_PLAYER) {
+            lstKept.add(iSlot, entry);
+            if (lstKept.size() > iENTRIES_PER_PLAYER) {
+                lstKept.remove(iENTRIES_PER_PLAYER);
+            }
+        }
+    }
+
+    /**
+     * Fills the empty skip list with sorted entries, appending each at the
+     * end, and lists the nodes of each player.
+     *
+     * @param entries The entries, in order.
+     */
+    private void build(final Entry[] entries) {
+        final Node[] nodaTails = new Node[iMAX_LEVEL];
+        final int[] iaTailRanks = new int[iMAX_LEVEL];
+        Arrays.fill(nodaTails, nodHead);
+        for (int iRank = 1; iRank <= entries.length; iRank++) {
+            final Node node = new Node(entries[iRank - 1], randomLevel());
+            for (int iLevel = 0; iLevel < node.naNext.length; iLevel++) {
+                nodaTails[iLevel].naNext[iLevel] = node;
+                nodaTails[iLevel].iaSpans[iLevel] = iRank - iaTailRanks[iLevel];
+                nodaTails[iLevel] = node;
+                iaTailRanks[iLevel] = iRank;
+            }
+            iLevels = Math.max(iLevels, node.naNext.length);
+
+            List<Node> lstKept = mapPlayers.get(node.entry.sName);
+            if (lstKept == null) {
+                lstKept = new ArrayList<>(iENTRIES_PER_PLAYER + 1);
+                mapPlayers.put(node.entry.sName, lstKept);
+            }
+            lstKept.add(node);
+        }
+
+        /*
+         * The last link of each level spans the entries after it, as insert
+         * leaves it.
+         */
+        for (int iLevel = 0; iLevel < iMAX_LEVEL; iLevel++) {
+            nodaTails[iLevel].iaSpans[iLevel] = entries.length - iaTailRanks[iLevel];
+        }
+        iSize = entries.length;
+    }
+
+    /**
+     * Records a game and appends it to the log, compacting the log if it
+     * has grown to twice the size of what is kept.
+     *
+     * @param sName   The name of the player.
+     * @param iScore  The score.
+     * @param iFruits The number of fruits eaten.
+     * @param iTicks  The number of ticks survived.
+     * @param lTime   When the game ended, in milliseconds since the epoch.
+     * @return The rank of the game, from 0 for the best, or -1 if it isn't
+     * one of the player's best games.
+     * @throws IOException If the log could not be written.
+     */
+    public synchronized int record(final String sName,
+                                   final int iScore,
+                                   final int iFruits,
+                                   final int iTicks,
+                                   final long lTime) throws IOException {
+        if (dosLog == null) {
+            throw new IOException("The leaderboard is closed");
+        }
+        final Entry entry = new Entry(normalize(sName), iScore, iFruits, iTicks, lTime);
+        writeRecord(dosLog, entry);
+        dosLog.flush();
+        lLogRecords++;
+        final Node node = add(entry);
+
+        if (lLogRecords > Math.max(1024L, 2L * iSize)) {
+            compact();
+        }
+        return (node != null) ? getRank(node) : -1;
+    }
+
+    /**
+     * Cleans up a player's name the way {@link StateHandler} does, and cuts
+     * it to the longest name the log can hold.
+     *
+     * @param sName The name.
+     * @return The name to record.
+     */
+    private static String normalize(final String sName) {
+        String sNormal = sName.trim().toLowerCase();
+        while (sNormal.getBytes(StandardCharsets.UTF_8).length > iMAX_NAME_BYTES) {
+            sNormal = sNormal.substring(0, sNormal.length() - 1);
+        }
+        return sNormal;
+    }
+
+    /**
+     * Adds an entry to the skip list, unless the player already has as many
+     * better games kept, and drops the player's worst game if it's one too
+     * many.
+     *
+     * @param entry The entry.
+     * @return The node of the entry, or null if it wasn't kept.
+     */
+    private Node add(final Entry entry) {
+        entry.lSequence = lNextSequence++;
+        List<Node> lstKept = mapPlayers.get(entry.sName);
+        if (lstKept == null) {
+            lstKept = new ArrayList<>(iENTRIES_PER_PLAYER + 1);
+            mapPlayers.put(entry.sName, lstKept);
+        }
+        if ((lstKept.size() == iENTRIES_PER_PLAYER) &&
+                (ORDER.compare(entry, lstKept.get(iENTRIES_PER_PLAYER - 1).entry) > 0)) {
+            return null;
+        }
+
+        final Node node = insert(entry);
+        int iSlot = lstKept.size();
+        while ((iSlot > 0) && (ORDER.compare(entry, lstKept.get(iSlot - 1).entry) < 0)) {
+            iSlot--;
+        }
+        lstKept.add(iSlot, node);
+        if (lstKept.size() > iENTRIES_PER_PLAYER) {
+            remove(lstKept.remove(iENTRIES_PER_PLAYER).entry);
+        }
+        return node;
+    }
+
+    /**
+     * Inserts an entry into the skip list.
+     *
+     * @param entry The entry.
+     * @return The new node.
+     */
+    private Node insert(final Entry entry) {
+        Node nodAt = nodHead;
+        for (int iLevel = iLevels - 1; iLevel >= 0; iLevel--) {
+            iaUpdateRanks[iLevel] = (iLevel == (iLevels - 1)) ? 0 : iaUpdateRanks[iLevel + 1];
+            while ((nodAt.naNext[iLevel] != null) &&
+                    (ORDER.compare(nodAt.naNext[iLevel].entry, entry) < 0)) {
+                iaUpdateRanks[iLevel] += nodAt.iaSpans[iLevel];
+                nodAt = nodAt.naNext[iLevel];
+            }
+            nodaUpdate[iLevel] = nodAt;
+        }
+
+        final int iLevel = randomLevel();
+        if (iLevel > iLevels) {
+            for (int iNew = iLevels; iNew < iLevel; iNew++) {
+                iaUpdateRanks[iNew] = 0;
+                nodaUpdate[iNew] = nodHead;
+                nodHead.iaSpans[iNew] = iSize;
+            }
+            iLevels = iLevel;
+        }
+
+        /*
+         * The new node sits right after the update node of the lowest level,
+         * whose rank tells how far each higher update node is behind it.
+         */
+        final Node node = new Node(entry, iLevel);
+        for (int iAt = 0; iAt < iLevel; iAt++) {
+            final Node nodBefore = nodaUpdate[iAt];
+            node.naNext[iAt] = nodBefore.naNext[iAt];
+            nodBefore.naNext[iAt] = node;
+            final int iBehind = iaUpdateRanks[0] - iaUpdateRanks[iAt];
+            node.iaSpans[iAt] = nodBefore.iaSpans[iAt] - iBehind;
+            nodBefore.iaSpans[iAt] = iBehind + 1;
+        }
+        for (int iAt = iLevel; iAt < iLevels; iAt++) {
+            nodaUpdate[iAt].iaSpans[iAt]++;
+        }
+        iSize++;
+        return node;
+    }
+
+    /**
+     * Removes an entry from the skip list.
+     *
+     * @param entry The entry, which must be in the list.
+     */
+    private void remove(final Entry entry) {
+        Node nodAt = nodHead;
+        for (int iLevel = iLevels - 1; iLevel >= 0; iLevel--) {
+            while ((nodAt.naNext[iLevel] != null) &&
+                    (ORDER.compare(nodAt.naNext[iLevel].entry, entry) < 0)) {
+                nodAt = nodAt.naNext[iLevel];
+            }
+            nodaUpdate[iLevel] = nodAt;
+        }
+        final Node node = nodAt.naNext[0];
+        for (int iLevel = 0; iLevel < iLevels; iLevel++) {
+            final Node nodBefore = nodaUpdate[iLevel];
+            if (nodBefore.naNext[iLevel] == node) {
+                nodBefore.iaSpans[iLevel] += node.iaSpans[iLevel] - 1;
+                nodBefore.naNext[iLevel] = node.naNext[iLevel];
+            }
+            else {
+                nodBefore.iaSpans[iLevel]--;
+            }
+        }
+        while ((iLevels > 1) && (nodHead.naNext[iLevels - 1] == null)) {
+            iLevels--;
+        }
+        iSize--;
+    }
+
+    /**
+     * Picks the level of a new node: each level up is half as likely.
+     *
+     * @return The level, from 1.
+     */
+    private int randomLevel() {
+        final int iLevel = Integer.numberOfTrailingZeros(rLevels.nextInt() | (1 << (iMAX_LEVEL - 1))) + 1;
+        return Math.min(iLevel, iMAX_LEVEL);
+    }
+
+    /**
+     * Finds the rank of a node.
+     *
+     * @param node The node.
+     * @return The rank, from 0 for the best.
+     */
+    private int getRank(final Node node) {
+        int iRank = 0;
+        Node nodAt = nodHead;
+        for (int iLevel = iLevels - 1; iLevel >= 0; iLevel--) {
+            while ((nodAt.naNext[iLevel] != null) &&
+                    (ORDER.compare(nodAt.naNext[iLevel].entry, node.entry) <= 0)) {
+                iRank += nodAt.iaSpans[iLevel];
+                nodAt = nodAt.naNext[iLevel];
+            }
+        }
+        return iRank - 1;
+    }
+
+    /**
+     * Finds the node of a rank.
+     *
+     * @param iRank The rank, from 0 for the best.
+     * @return The node, or null if there are fewer entries.
+     */
+    private Node getNode(final int iRank) {
+        if ((iRank < 0) || (iRank >= iSize)) {
+            return null;
+        }
+        int iTraversed = 0;
+        Node nodAt = nodHead;
+        for (int iLevel = iLevels - 1; iLevel >= 0; iLevel--) {
+            while ((nodAt.naNext[iLevel] != null) &&
+                    ((iTraversed + nodAt.iaSpans[iLevel]) <= (iRank + 1))) {
+                iTraversed += nodAt.iaSpans[iLevel];
+                nodAt = nodAt.naNext[iLevel];
+            }
+        }
+        return nodAt;
+    }
+
+    /**
+     * Gets the best entries.
+     *
+     * @param iFirst The rank of the first entry, from 0 for the best.
+     * @param iCount The most entries to get.
+     * @return The entries, best first.
+     */
+    public synchronized List<Entry> getTop(final int iFirst, final int iCount) {
+        final List<Entry> lstTop = new ArrayList<>(Math.max(0, Math.min(iCount, iSize - iFirst)));
+        Node nodAt = getNode(iFirst);
+        while ((nodAt != null) && (lstTop.size() < iCount)) {
+            lstTop.add(nodAt.entry);
+            nodAt = nodAt.naNext[0];
+        }
+        return lstTop;
+    }
+
+    /**
+     * Gets the rank of a player's best game.
+     *
+     * @param sName The name of the player.
+     * @return The rank, from 0 for the best, or -1 if the player has no
+     * games.
+     */
+    public synchronized int getRank(final String sName) {
+        final List<Node> lstKept = mapPlayers.get(normalize(sName));
+        return ((lstKept == null) || lstKept.isEmpty()) ? -1 : getRank(lstKept.get(0));
+    }
+
+    /**
+     * Gets a player's best game.
+     *
+     * @param sName The name of the player.
+     * @return The entry, or null if the player has no games.
+     */
+    public synchronized Entry getBest(final String sName) {
+        final List<Node> lstKept = mapPlayers.get(normalize(sName));
+        return ((lstKept == null) || lstKept.isEmpty()) ? null : lstKept.get(0).entry;
+    }
+
+    /**
+     * Gets the number of games kept.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return iSize;
+    }
+
+    /**
+     * Gets the number of players with games kept.
+     *
+     * @return The number of players.
+     */
+    public synchronized int getPlayerCount() {
+        return mapPlayers.size();
+    }
+
+    /**
+     * Rewrites the log with only the games that are kept, in the order they
+     * were played, and swaps it in for the old one.
+     *
+     * @throws IOException If the log could not be rewritten.
+     */
+    public synchronized void compact() throws IOException {
+        final List<Entry> lstKept = new ArrayList<>(iSize);
+        for (Node nodAt = nodHead.naNext[0]; nodAt != null; nodAt = nodAt.naNext[0]) {
+            lstKept.add(nodAt.entry);
+        }
+        final Entry[] entries = lstKept.toArray(new Entry[0]);
+        Arrays.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(final Entry first, final Entry second) {
+                return Long.compare(first.lSequence, second.lSequence);
+            }
+        });
+
+        final Path pthTemporary = pthFile.resolveSibling(pthFile.getFileName() + ".tmp");
+        writeLog(pthTemporary, Arrays.asList(entries));
+        dosLog.close();
+        Files.move(pthTemporary, pthFile, StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+        dosLog = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(pthFile, StandardOpenOption.APPEND)));
+        lLogRecords = entries.length;
+    }
+
+    /**
+     * Writes a whole log file.
+     *
+     * @param pthLog  The file.
+     * @param entries The entries, in the order they were played.
+     * @throws IOException If the file could not be written.
+     */
+    private static void writeLog(final Path pthLog, final List<Entry> entries) throws IOException {
+        try (final OutputStream osOut = Files.newOutputStream(pthLog);
+             final DataOutputStream dosOut = new DataOutputStream(new BufferedOutputStream(osOut, 1 << 16))) {
+            dosOut.writeInt(iMAGIC);
+            for (final Entry entry : entries) {
+                writeRecord(dosOut, entry);
+            }
+        }
+    }
+
+    /**
+     * Writes the record of an entry.
+     *
+     * @param dosOut The stream to write to.
+     * @param entry  The entry.
+     * @throws IOException If the record could not be written.
+     */
+    private static void writeRecord(final DataOutputStream dosOut, final Entry entry)
+            throws IOException {
+        final byte[] baName = entry.sName.getBytes(StandardCharsets.UTF_8);
+        dosOut.writeShort(baName.length);
+        dosOut.write(baName);
+        dosOut.writeInt(entry.iScore);
+        dosOut.writeInt(entry.iFruits);
+        dosOut.writeInt(entry.iTicks);
+        dosOut.writeLong(entry.lTime);
+    }
+
+    /**
+     * Gets the size of a record.
+     *
+     * @param iNameBytes The length of the name in bytes.
+     * @return The number of bytes.
+     */
+    private static int getRecordSize(final int iNameBytes) {
+        return Short.BYTES + iNameBytes + (3 * Integer.BYTES) + Long.BYTES;
+    }
+
+    /**
+     * Closes the log.
+     *
+     * @throws IOException If the log could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (dosLog != null) {
+            dosLog.close();
+            dosLog = null;
+        }
+    }
+
+    /**
+     * The {@code Entry} class is one game on the leaderboard.
+     */
+    public static final class Entry {
+
+        /**
+         * The name of the player.
+         */
+        private final String sName;
+
+        /**
+         * The score.
+         */
+        private final int iScore;
+
+        /**
+         * The number of fruits eaten.
+         */
+        private final int iFruits;
+
+        /**
+         * The number of ticks survived.
+         */
+        private final int iTicks;
+
+        /**
+         * When the game ended, in milliseconds since the epoch.
+         */
+        private final long lTime;
+
+        /**
+         * The order in which the entry was recorded, which breaks ties
+         * between equal scores.
+         */
+        private long lSequence;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param sName   The name of the player.
+         * @param iScore  The score.
+         * @param iFruits The number of fruits eaten.
+         * @param iTicks  The number of ticks survived.
+         * @param lTime   When the game ended.
+         */
+        private Entry(final String sName,
+                      final int iScore,
+                      final int iFruits,
+                      final int iTicks,
+                      final long lTime) {
+            this.sName = sName;
+            this.iScore = iScore;
+            this.iFruits = iFruits;
+            this.iTicks = iTicks;
+            this.lTime = lTime;
+        }
+
+        /**
+         * Gets the name of the player.
+         *
+         * @return The name.
+         */
+        public String getName() {
+            return sName;
+        }
+
+        /**
+         * Gets the score.
+         *
+         * @return The score.
+         */
+        public int getScore() {
+            return iScore;
+        }
+
+        /**
+         * Gets the number of fruits eaten.
+         *
+         * @return The number of fruits.
+         */
+        public int getFruits() {
+            return iFruits;
+        }
+
+        /**
+         * Gets the number of ticks survived.
+         *
+         * @return The number of ticks.
+         */
+        public int getTicks() {
+            return iTicks;
+        }
+
+        /**
+         * Gets when the game ended.
+         *
+         * @return The time in milliseconds since the epoch.
+         */
+        public long getTime() {
+            return lTime;
+        }
+
+        @Override
+        public String toString() {
+            return sName + " " + iScore + " (" + iFruits + " fruits, " + iTicks + " ticks)";
+        }
+    }
+
+    /**
+     * The {@code Node} class is an entry's place in the skip list.
+     */
+    private static final class Node {
+
+        /**
+         * The entry, or null for the head.
+         */
+        private final Entry entry;
+
+        /**
+         * The next node on each level.
+         */
+        private final Node[] naNext;
+
+        /**
+         * The number of entries each link moves forward by.
+         */
+        private final int[] iaSpans;
+
+        /**
+         * Creates a new node.
+         *
+         * @param entry  The entry.
+         * @param iLevel The number of levels the node is linked on.
+         */
+        private Node(final Entry entry, final int iLevel) {
+            this.entry = entry;
+            this.naNext = new Node[iLevel];
+            this.iaSpans = new int[iLevel];
+        }
+    }
+
+    /**
+     * Entry point of the leaderboard tool.
+     *
+     * @param args The options described in the class comment.
+     * @throws IOException If the leaderboard could not be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+        Path pthLog = Paths.get(System.getProperty("snake.leaderboard.file", sDEFAULT_FILE));
+        int iTop = 10;
+        String sRank = null;
+        int iBenchmark = 0;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--file=")) {
+                pthLog = Paths.get(sArg.substring("--file=".length()));
+            }
+            else if (sArg.startsWith("--top=")) {
+                iTop = Math.max(0, Integer.parseInt(sArg.substring("--top=".length())));
+            }
+            else if (sArg.startsWith("--rank=")) {
+                sRank = sArg.substring("--rank=".length());
+            }
+            else if (sArg.startsWith("--benchmark=")) {
+                iBenchmark = Math.max(1, Integer.parseInt(sArg.substring("--benchmark=".length())));
+            }
+        }
+        if (iBenchmark > 0) {
+            benchmark(iBenchmark);
+            return;
+        }
+
+        final long lStart = System.nanoTime();
+        try (final Leaderboard leaderboard = new Leaderboard(pthLog)) {
+            System.out.printf("%d games of %d players loaded in %.1f ms%n",
+                              leaderboard.size(),
+                              leaderboard.getPlayerCount(),
+                              (System.nanoTime() - lStart) / 1.0e6);
+            int iRank = 0;
+            for (final Entry entry : leaderboard.getTop(0, iTop)) {
+                System.out.println(++iRank + ". " + entry);
+            }
+            if (sRank != null) {
+                System.out.println(sRank + ": rank " + (leaderboard.getRank(sRank) + 1) +
+                                           ", best " + leaderboard.getBest(sRank));
+            }
+        }
+    }
+
+    /**
+     * Fills a scratch leaderboard with random games and prints how long
+     * recording, replaying, top K and rank lookups take.
+     *
+     * @param iGames The number of games.
+     * @throws IOException If the scratch log could not be written.
+     */
+    private static void benchmark(final int iGames) throws IOException {
+        final Path pthScratch = Files.createTempFile("snake_leaderboard", ".log");
+        Files.delete(pthScratch);
+        final Random rRandom = new Random(1L);
+        final int iPlayers = Math.max(1, iGames / 5);
+        try {
+            long lStart = System.nanoTime();
+            try (final Leaderboard leaderboard = new Leaderboard(pthScratch)) {
+                for (int iGame = 0; iGame < iGames; iGame++) {
+                    leaderboard.record("player" + rRandom.nextInt(iPlayers), rRandom.nextInt(1000000),
+                                       rRandom.nextInt(200), rRandom.nextInt(5000),
+                                       System.currentTimeMillis());
+                }
+                System.out.printf("record: %d games in %.0f ms (%.2f us/game), %d kept%n",
+                                  iGames,
+                                  (System.nanoTime() - lStart) / 1.0e6,
+                                  (System.nanoTime() - lStart) / 1.0e3 / iGames,
+                                  leaderboard.size());
+            }
+
+            lStart = System.nanoTime();
+            try (final Leaderboard leaderboard = new Leaderboard(pthScratch)) {
+                System.out.printf("replay: %d games in %.0f ms%n",
+                                  leaderboard.size(),
+                                  (System.nanoTime() - lStart) / 1.0e6);
+
+                final int iLookups = 100000;
+                lStart = System.nanoTime();
+                long lSum = 0L;
+                for (int iLookup = 0; iLookup < iLookups; iLookup++) {
+                    lSum += leaderboard.getRank("player" + rRandom.nextInt(iPlayers));
+                }
+                System.out.printf("rank of player: %.2f us%n",
+                                  (System.nanoTime() - lStart) / 1.0e3 / iLookups);
+                lStart = System.nanoTime();
+                for (int iLookup = 0; iLookup < iLookups; iLookup++) {
+                    lSum += leaderboard.getTop(rRandom.nextInt(leaderboard.size()), 10).size();
+                }
+                System.out.printf("10 entries from a random rank: %.2f us (%d)%n",
+                                  (System.nanoTime() - lStart) / 1.0e3 / iLookups,
+                                  lSum);
+            }
+        }
+        finally {
+            Files.deleteIfExists(pthScratch);
+        }
+    }
+}
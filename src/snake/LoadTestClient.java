@@ -0,0 +1,298 @@
+package snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * The {@code LoadTestClient} class simulates thousands of players against a
+ * {@link GameServer} from a single thread. Every simulated player steers at
+ * random whenever it receives a state update and starts a new game as soon
+ * as its snake dies.
+ * <p>
+ * At the end of the run it prints how many players connected, how many
+ * state updates arrived per second and how many games were played.
+ * <p>
+ * Usage: {@code LoadTestClient [host] [port] [players] [seconds]}
+ */
+public final class LoadTestClient {
+
+    /**
+     * The default number of simulated players.
+     */
+    private static final int iDEFAULT_PLAYERS = 2000;
+
+    /**
+     * The default length of the run, in seconds.
+     */
+    private static final int iDEFAULT_SECONDS = 10;
+
+    /**
+     * The chance (out of 100) that a player turns after a state update.
+     */
+    private static final int iTURN_CHANCE = 20;
+
+    /**
+     * The number of connections opened before waiting for them to complete,
+     * so that the server's accept queue doesn't overflow.
+     */
+    private static final int iCONNECT_BATCH = 256;
+
+    /**
+     * Every direction, so the players don't have to call
+     * {@code Direction.values()} (which allocates).
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The selector every player is registered with.
+     */
+    private final Selector selSelector;
+
+    /**
+     * The buffer used to send a byte of input, shared by every player.
+     */
+    private final ByteBuffer bufInput;
+
+    /**
+     * The random number generator the players steer with.
+     */
+    private final Random rRandom;
+
+    /**
+     * The number of players that connected.
+     */
+    private int iConnected;
+
+    /**
+     * The number of players whose connection was closed early.
+     */
+    private int iDisconnected;
+
+    /**
+     * The number of state updates received.
+     */
+    private long lStates;
+
+    /**
+     * The number of games that ended.
+     */
+    private long lGamesOver;
+
+    /**
+     * Creates a new load test client.
+     *
+     * @throws IOException If the selector could not be opened.
+     */
+    private LoadTestClient() throws IOException {
+        selSelector = Selector.open();
+        bufInput = ByteBuffer.allocateDirect(1);
+        rRandom = new Random();
+    }
+
+    /**
+     * Opens the connections of every player, in batches.
+     *
+     * @param addrServer The address of the server.
+     * @param iPlayers   The number of players.
+     * @throws IOException If a connection could not be opened.
+     */
+    private void connect(final InetSocketAddress addrServer, final int iPlayers)
+            throws IOException {
+        int iOpened = 0;
+        while (iOpened < iPlayers) {
+            final int iBatch = Math.min(iCONNECT_BATCH, iPlayers - iOpened);
+            for (int iPlayer = 0; iPlayer < iBatch; iPlayer++) {
+                final SocketChannel schChannel = SocketChannel.open();
+                schChannel.configureBlocking(false);
+                schChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                schChannel.connect(addrServer);
+                schChannel.register(selSelector, SelectionKey.OP_CONNECT,
+                                    ByteBuffer.allocateDirect(
+                                            ServerProtocol.iHELLO_SIZE +
+                                                    (2 * ServerProtocol.iSTATE_SIZE)));
+            }
+            iOpened += iBatch;
+
+            /*
+             * Serve the players that are already connected while the batch
+             * completes.
+             */
+            while ((iConnected + iDisconnected) < iOpened) {
+                poll(100L);
+            }
+        }
+    }
+
+    /**
+     * Waits for events and handles them.
+     *
+     * @param lTimeout The longest time to wait, in milliseconds.
+     * @throws IOException If the selector failed.
+     */
+    private void poll(final long lTimeout) throws IOException {
+        selSelector.select(lTimeout);
+        final Iterator<SelectionKey> itKeys = selSelector.selectedKeys().iterator();
+        while (itKeys.hasNext()) {
+            final SelectionKey key = itKeys.next();
+            itKeys.remove();
+            try {
+                if (key.isConnectable()) {
+                    ((SocketChannel) key.channel()).finishConnect();
+                    key.interestOps(SelectionKey.OP_READ);
+                    iConnected++;
+                }
+                else if (key.isReadable()) {
+                    read(key);
+                }
+            }
+            catch (final IOException e) {
+                close(key);
+            }
+        }
+    }
+
+    /**
+     * Reads the messages the server sent a player and answers the state
+     * updates.
+     *
+     * @param key The player's key.
+     * @throws IOException If the connection failed.
+     */
+    private void read(final SelectionKey key) throws IOException {
+        final SocketChannel schChannel = (SocketChannel) key.channel();
+        final ByteBuffer bufIn = (ByteBuffer) key.attachment();
+        if (schChannel.read(bufIn) < 0) {
+            close(key);
+            return;
+        }
+
+        bufIn.flip();
+        while (bufIn.hasRemaining()) {
+            final byte bType = bufIn.get(bufIn.position());
+            final int iSize = (bType == ServerProtocol.bHELLO) ?
+                    ServerProtocol.iHELLO_SIZE : ServerProtocol.iSTATE_SIZE;
+            if (bufIn.remaining() < iSize) {
+                break;
+            }
+            if (bType == ServerProtocol.bSTATE) {
+                final boolean bGameOver = bufIn.get(bufIn.position() + iSize - 1) != 0;
+                lStates++;
+                if (bGameOver) {
+                    lGamesOver++;
+                    send(schChannel, ServerProtocol.bRESET);
+                }
+                else if (rRandom.nextInt(100) < iTURN_CHANCE) {
+                    send(schChannel, ServerProtocol.encodeDirection(
+                            DIRECTIONS[rRandom.nextInt(DIRECTIONS.length)]));
+                }
+            }
+            bufIn.position(bufIn.position() + iSize);
+        }
+        bufIn.compact();
+    }
+
+    /**
+     * Sends a byte of input. If the socket is full the input is dropped,
+     * just like a player whose key press was too late.
+     *
+     * @param schChannel The player's channel.
+     * @param bInput     The byte.
+     * @throws IOException If the connection failed.
+     */
+    private void send(final SocketChannel schChannel, final byte bInput) throws IOException {
+        bufInput.clear();
+        bufInput.put(bInput);
+        bufInput.flip();
+        schChannel.write(bufInput);
+    }
+
+    /**
+     * Closes a player's connection.
+     *
+     * @param key The player's key.
+     */
+    private void close(final SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        }
+        catch (final IOException e) {
+            /*
+             * The connection is gone either way.
+             */
+        }
+        iDisconnected++;
+    }
+
+    /**
+     * Closes every connection and the selector.
+     */
+    private void shutdown() {
+        for (final SelectionKey key : selSelector.keys()) {
+            try {
+                key.channel().close();
+            }
+            catch (final IOException e) {
+                /*
+                 * The connection is gone either way.
+                 */
+            }
+        }
+        try {
+            selSelector.close();
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Entry point of the load test.
+     *
+     * @param args The host and port of the server, the number of players and
+     *             the length of the run in seconds, all optional.
+     * @throws IOException If the server could not be reached.
+     */
+    public static void main(final String[] args) throws IOException {
+        final String sHost = (args.length > 0) ? args[0] : "127.0.0.1";
+        final int iPort = (args.length > 1) ? Integer.parseInt(args[1]) : GameServer.iDEFAULT_PORT;
+        final int iPlayers = (args.length > 2) ? Integer.parseInt(args[2]) : iDEFAULT_PLAYERS;
+        final int iSeconds = (args.length > 3) ? Integer.parseInt(args[3]) : iDEFAULT_SECONDS;
+
+        final LoadTestClient client = new LoadTestClient();
+        final long lConnectStart = System.nanoTime();
+        client.connect(new InetSocketAddress(sHost, iPort), iPlayers);
+        final double dConnectSeconds = (System.nanoTime() - lConnectStart) / 1.0e9;
+
+        /*
+         * Only count the updates of the measured interval.
+         */
+        client.lStates = 0;
+        client.lGamesOver = 0;
+        final long lStart = System.nanoTime();
+        final long lEnd = lStart + (iSeconds * 1000L * SnakeGame.MILLION);
+        long lNow;
+        while ((lNow = System.nanoTime()) < lEnd) {
+            client.poll(Math.max(1L, (lEnd - lNow) / SnakeGame.MILLION));
+        }
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+        client.shutdown();
+
+        System.out.printf("players=%d connected=%d disconnected=%d connect=%.2fs " +
+                                  "states=%d (%.0f/s) gamesOver=%d%n",
+                          iPlayers,
+                          client.iConnected,
+                          client.iDisconnected,
+                          dConnectSeconds,
+                          client.lStates,
+                          client.lStates / dSeconds,
+                          client.lGamesOver);
+    }
+}
@@ -0,0 +1,565 @@
+package snake;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@code MctsController} class is a bot that picks each move by Monte
+ * Carlo tree search. For every move it runs one search per worker of a
+ * fork-join pool until a time budget is used up, and then takes the move
+ * that the searches together tried most often. The caller waits for the
+ * search, so a game loop that hosts these bots sets the budget to fit its
+ * ticks (see {@link #setBudget(long)}).
+ * <p>
+ * Each search grows its own tree over the three moves a snake has (ahead,
+ * left and right), choosing between them with UCB1. From the end of the
+ * tree it plays the game out for a few dozen ticks with a quick rollout
+ * policy that picks at random among the moves that don't die on the spot,
+ * while any other snakes are steered by the {@link GreedyController}.
+ * A playout is worth more the longer the snake survives and the sooner it
+ * eats.
+ * <p>
+ * Every playout starts from a copy of the real game made with
+ * {@link SnakeEngine#copyFrom(SnakeEngine)}, which only copies arrays, and
+ * the trees live in preallocated arrays, so searching allocates nothing.
+ * <p>
+ * Usage: {@code MctsController [threads] [budgetMillis] [size] [games]}
+ * plays games with the bot and prints how many playouts and simulated ticks
+ * it managed per second.
+ */
+public class MctsController implements SnakeController {
+
+    /**
+     * The default time budget of each move, in nanoseconds.
+     */
+    public static final long lDEFAULT_BUDGET = 5L * SnakeGame.MILLION;
+
+    /**
+     * The number of moves a snake can make: ahead, left and right.
+     */
+    private static final int iMOVES = 3;
+
+    /**
+     * The number of nodes each search tree can hold.
+     */
+    private static final int iTREE_CAPACITY = 1 << 15;
+
+    /**
+     * The deepest a search tree can grow.
+     */
+    private static final int iMAX_DEPTH = 64;
+
+    /**
+     * The number of ticks a playout runs past the end of the tree.
+     */
+    private static final int iROLLOUT_TICKS = 30;
+
+    /**
+     * How much exploring untried moves is favoured over exploiting good
+     * ones.
+     */
+    private static final double dEXPLORATION = 1.4;
+
+    /**
+     * How much less a fruit is worth for every tick it takes to reach it.
+     */
+    private static final double dDISCOUNT = 0.95;
+
+    /**
+     * The directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The bot that steers the other snakes during playouts. It keeps no
+     * state, so all searches share it.
+     */
+    private static final GreedyController ctlOPPONENT = new GreedyController();
+
+    /**
+     * The pool the searches run on.
+     */
+    private final ForkJoinPool fjpPool;
+
+    /**
+     * The searches, one per worker of the pool.
+     */
+    private final Search[] seaSearches;
+
+    /**
+     * The task that runs every search and waits for them.
+     */
+    private final RecursiveAction actSearchAll;
+
+    /**
+     * The time budget of each move, in nanoseconds.
+     */
+    private volatile long lBudget;
+
+    /**
+     * The number of playouts run so far.
+     */
+    private long lPlayouts;
+
+    /**
+     * The number of ticks simulated so far.
+     */
+    private long lSimulatedTicks;
+
+    /**
+     * Creates a new bot that searches on the common pool with the default
+     * budget.
+     */
+    public MctsController() {
+        this(ForkJoinPool.commonPool(), lDEFAULT_BUDGET);
+    }
+
+    /**
+     * Creates a new bot.
+     *
+     * @param fjpPool The pool to search on. One search runs per worker.
+     * @param lBudget The time budget of each move, in nanoseconds.
+     */
+    public MctsController(final ForkJoinPool fjpPool, final long lBudget) {
+        this.fjpPool = fjpPool;
+        this.lBudget = lBudget;
+        this.seaSearches = new Search[Math.max(1, fjpPool.getParallelism())];
+        this.actSearchAll = new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(seaSearches);
+            }
+        };
+    }
+
+    @Override
+    public void control(final SnakeEngine engine, final int iSnake) {
+        if (!engine.isAlive(iSnake)) {
+            return;
+        }
+
+        /*
+         * The searches keep their copies of the game between moves, and only
+         * need new ones when the game changes shape.
+         */
+        final long lDeadline = System.nanoTime() + lBudget;
+        for (int iSearch = 0; iSearch < seaSearches.length; iSearch++) {
+            if ((seaSearches[iSearch] == null) || !seaSearches[iSearch].fits(engine)) {
+                seaSearches[iSearch] = new Search(engine, iSearch);
+            }
+            seaSearches[iSearch].prepare(engine, iSnake, lDeadline);
+        }
+        actSearchAll.reinitialize();
+        fjpPool.invoke(actSearchAll);
+
+        /*
+         * Add up the visits of the searches, and take the move tried most.
+         */
+        int iBest = 0;
+        long lBestVisits = -1;
+        for (int iMove = 0; iMove < iMOVES; iMove++) {
+            long lVisits = 0;
+            for (final Search search : seaSearches) {
+                lVisits += search.getRootVisits(iMove);
+            }
+            if (lVisits > lBestVisits) {
+                iBest = iMove;
+                lBestVisits = lVisits;
+            }
+        }
+        for (final Search search : seaSearches) {
+            lPlayouts += search.iPlayouts;
+            lSimulatedTicks += search.iTicks;
+        }
+
+        final Direction current = engine.getDirection(iSnake);
+        final Direction next = turn(current, iBest);
+        if (next != current) {
+            engine.steer(iSnake, next);
+        }
+    }
+
+    /**
+     * Sets the time budget of each move. The game shrinks it to fit the
+     * searches of all its bots into a tick, since they run on its loop.
+     *
+     * @param lBudget The budget, in nanoseconds.
+     */
+    public void setBudget(final long lBudget) {
+        this.lBudget = lBudget;
+    }
+
+    /**
+     * Gets the time budget of each move.
+     *
+     * @return The budget, in nanoseconds.
+     */
+    public long getBudget() {
+        return lBudget;
+    }
+
+    /**
+     * Gets the number of playouts run so far.
+     *
+     * @return The number of playouts.
+     */
+    public long getPlayouts() {
+        return lPlayouts;
+    }
+
+    /**
+     * Gets the number of ticks simulated so far.
+     *
+     * @return The number of ticks.
+     */
+    public long getSimulatedTicks() {
+        return lSimulatedTicks;
+    }
+
+    /**
+     * Gets the direction a move leads to.
+     *
+     * @param current The direction the snake is going in.
+     * @param iMove   The move: 0 for ahead, 1 for left and 2 for right.
+     * @return The direction.
+     */
+    private static Direction turn(final Direction current, final int iMove) {
+        switch (iMove) {
+            case 1:
+                return DIRECTIONS[(current.ordinal() + 3) % DIRECTIONS.length];
+
+            case 2:
+                return DIRECTIONS[(current.ordinal() + 1) % DIRECTIONS.length];
+
+            default:
+                return current;
+        }
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of worker threads, the budget of each move in
+     *             milliseconds, the number of columns and rows of the board
+     *             and the number of games, all optional.
+     */
+    public static void main(final String[] args) {
+        final int iThreads = (args.length > 0) ?
+                Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final long lBudget = (args.length > 1) ?
+                (Long.parseLong(args[1]) * SnakeGame.MILLION) : lDEFAULT_BUDGET;
+        final int iSize = (args.length > 2) ? Integer.parseInt(args[2]) : BoardPanel.iCOL_COUNT;
+        final int iGames = (args.length > 3) ? Integer.parseInt(args[3]) : 3;
+
+        final ForkJoinPool fjpPool = new ForkJoinPool(iThreads);
+        final MctsController bot = new MctsController(fjpPool, lBudget);
+        final SnakeEngine engine = new SnakeEngine(iSize, iSize, new Random(1L));
+        long lMoves = 0;
+        long lScore = 0;
+        long lLength = 0;
+        final long lStart = System.nanoTime();
+        for (int iGame = 0; iGame < iGames; iGame++) {
+            engine.reset();
+            while (!engine.isGameOver()) {
+                bot.control(engine, 0);
+                engine.tick();
+                lMoves++;
+            }
+            lScore += engine.getScore();
+            lLength += engine.getLength();
+            System.out.printf("game %d: score=%d length=%d%n",
+                              iGame + 1, engine.getScore(), engine.getLength());
+        }
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+        fjpPool.shutdown();
+
+        System.out.printf("threads=%d budget=%.1fms moves=%d mean score=%.0f mean length=%.0f " +
+                                  "playouts/s=%.0f simulated ticks/s=%.0f%n",
+                          iThreads,
+                          lBudget / 1.0e6,
+                          lMoves,
+                          lScore / (double) iGames,
+                          lLength / (double) iGames,
+                          bot.getPlayouts() / dSeconds,
+                          bot.getSimulatedTicks() / dSeconds);
+    }
+
+    /**
+     * The {@code Search} class is one worker's tree search.
+     */
+    private static final class Search extends RecursiveAction {
+
+        /**
+         * Serial Version UID. Searches are never serialized, but fork-join
+         * tasks are serializable.
+         */
+        private static final long serialVersionUID = -4378235717282164219L;
+
+        /**
+         * The copy of the game that playouts are run on.
+         */
+        private final SnakeEngine engSimulation;
+
+        /**
+         * The random number generator of the playouts.
+         */
+        private final Random rRandom;
+
+        /**
+         * The index of each node's first child, or -1 if it has none yet.
+         * The children of a node are next to each other, one per move.
+         */
+        private final int[] iaFirstChild = new int[iTREE_CAPACITY];
+
+        /**
+         * The number of playouts through each node.
+         */
+        private final int[] iaVisits = new int[iTREE_CAPACITY];
+
+        /**
+         * The total value of the playouts through each node.
+         */
+        private final double[] daValues = new double[iTREE_CAPACITY];
+
+        /**
+         * The nodes the current playout passed through.
+         */
+        private final int[] iaPath = new int[iMAX_DEPTH + 1];
+
+        /**
+         * The game being searched.
+         */
+        private SnakeEngine engSource;
+
+        /**
+         * The snake being steered.
+         */
+        private int iSnake;
+
+        /**
+         * The time (from {@code System.nanoTime()}) to stop searching at.
+         */
+        private long lDeadline;
+
+        /**
+         * The number of nodes in the tree.
+         */
+        private int iNodes;
+
+        /**
+         * The number of playouts of the current move.
+         */
+        private int iPlayouts;
+
+        /**
+         * The number of ticks simulated for the current move.
+         */
+        private int iTicks;
+
+        /**
+         * Whether or not the snake died in the current playout.
+         */
+        private boolean bDead;
+
+        /**
+         * The discounted number of fruits eaten in the current playout.
+         */
+        private double dFruits;
+
+        /**
+         * The worth of a fruit eaten on the next tick of the playout.
+         */
+        private double dFruitWorth;
+
+        /**
+         * Creates a new search for games shaped like another.
+         *
+         * @param engine  The game.
+         * @param iSearch The number of the search, used as its seed.
+         */
+        private Search(final SnakeEngine engine, final int iSearch) {
+            this.rRandom = new Random(iSearch * 0x9E3779B97F4A7C15L);
+            this.engSimulation = new SnakeEngine(engine.getBoard().getColumns(),
+                                                 engine.getBoard().getRows(),
+                                                 engine.getSnakeCount(),
+                                                 rRandom);
+        }
+
+        /**
+         * Checks whether this search can copy a game.
+         *
+         * @param engine The game.
+         * @return Whether or not the game has the same shape.
+         */
+        private boolean fits(final SnakeEngine engine) {
+            return (engine.getSnakeCount() == engSimulation.getSnakeCount()) &&
+                    (engine.getBoard().getColumns() == engSimulation.getBoard().getColumns()) &&
+                    (engine.getBoard().getRows() == engSimulation.getBoard().getRows());
+        }
+
+        /**
+         * Sets the search up for a new move.
+         *
+         * @param engSource The game.
+         * @param iSnake    The snake to steer.
+         * @param lDeadline The time to stop searching at.
+         */
+        private void prepare(final SnakeEngine engSource, final int iSnake, final long lDeadline) {
+            this.engSource = engSource;
+            this.iSnake = iSnake;
+            this.lDeadline = lDeadline;
+            reinitialize();
+        }
+
+        /**
+         * Gets the number of playouts that started with a move.
+         *
+         * @param iMove The move.
+         * @return The number of playouts.
+         */
+        private int getRootVisits(final int iMove) {
+            return (iaFirstChild[0] < 0) ? 0 : iaVisits[iaFirstChild[0] + iMove];
+        }
+
+        @Override
+        protected void compute() {
+            iNodes = 1;
+            iaFirstChild[0] = -1;
+            iaVisits[0] = 0;
+            daValues[0] = 0.0;
+            iPlayouts = 0;
+            iTicks = 0;
+            do {
+                playout();
+            } while (System.nanoTime() < lDeadline);
+        }
+
+        /**
+         * Runs one playout: down the tree, growing it by a node, then on at
+         * random, and back up with the result.
+         */
+        private void playout() {
+            engSimulation.copyFrom(engSource);
+            bDead = false;
+            dFruits = 0.0;
+            dFruitWorth = 1.0;
+
+            int iNode = 0;
+            int iDepth = 0;
+            iaPath[iDepth++] = 0;
+            while (!bDead && (iDepth <= iMAX_DEPTH)) {
+                if (iaFirstChild[iNode] < 0) {
+                    /*
+                     * Only grow the tree below nodes that were played out
+                     * before.
+                     */
+                    if ((iaVisits[iNode] == 0) || ((iNodes + iMOVES) > iTREE_CAPACITY)) {
+                        break;
+                    }
+                    iaFirstChild[iNode] = iNodes;
+                    for (int iMove = 0; iMove < iMOVES; iMove++) {
+                        iaFirstChild[iNodes + iMove] = -1;
+                        iaVisits[iNodes + iMove] = 0;
+                        daValues[iNodes + iMove] = 0.0;
+                    }
+                    iNodes += iMOVES;
+                }
+                final int iChild = select(iNode);
+                advance(iChild - iaFirstChild[iNode]);
+                iaPath[iDepth++] = iChild;
+                iNode = iChild;
+            }
+
+            for (int iTick = 0; !bDead && (iTick < iROLLOUT_TICKS); iTick++) {
+                advance(pickRolloutMove());
+            }
+
+            /*
+             * Surviving counts most, and fruits eaten sooner count more.
+             */
+            final double dValue = (bDead ? 0.0 : 0.5) + (0.5 * (dFruits / (dFruits + 1.0)));
+            for (int iStep = 0; iStep < iDepth; iStep++) {
+                iaVisits[iaPath[iStep]]++;
+                daValues[iaPath[iStep]] += dValue;
+            }
+            iPlayouts++;
+        }
+
+        /**
+         * Picks the child of a node to go down, by UCB1. Moves that were
+         * never tried go first.
+         *
+         * @param iNode The node.
+         * @return The child.
+         */
+        private int select(final int iNode) {
+            final int iFirst = iaFirstChild[iNode];
+            final double dLogVisits = Math.log(Math.max(1, iaVisits[iNode]));
+            int iBest = iFirst;
+            double dBestScore = Double.NEGATIVE_INFINITY;
+            for (int iChild = iFirst; iChild < (iFirst + iMOVES); iChild++) {
+                if (iaVisits[iChild] == 0) {
+                    return iChild;
+                }
+                final double dScore = (daValues[iChild] / iaVisits[iChild]) +
+                        (dEXPLORATION * Math.sqrt(dLogVisits / iaVisits[iChild]));
+                if (dScore > dBestScore) {
+                    iBest = iChild;
+                    dBestScore = dScore;
+                }
+            }
+            return iBest;
+        }
+
+        /**
+         * Picks a move for the rollout: at random among those that don't
+         * die on the spot, and straight for a fruit next to the head.
+         *
+         * @return The move.
+         */
+        private int pickRolloutMove() {
+            final Direction current = engSimulation.getDirection(iSnake);
+            final int iHead = engSimulation.getHeadCell(iSnake);
+            final GameBoard board = engSimulation.getBoard();
+            int iSafe = 0;
+            int iChosen = 0;
+            for (int iMove = 0; iMove < iMOVES; iMove++) {
+                final int iCell = engSimulation.getNextCell(iHead, turn(current, iMove));
+                if (iCell < 0) {
+                    continue;
+                }
+                final byte bCode = board.getCell(iCell);
+                if (bCode == GameBoard.FRUIT) {
+                    return iMove;
+                }
+                if ((bCode == GameBoard.EMPTY) && (rRandom.nextInt(++iSafe) == 0)) {
+                    iChosen = iMove;
+                }
+            }
+            return iChosen;
+        }
+
+        /**
+         * Makes a move in the simulated game and moves it on by one tick.
+         *
+         * @param iMove The move.
+         */
+        private void advance(final int iMove) {
+            engSimulation.steer(iSnake, turn(engSimulation.getDirection(iSnake), iMove));
+            for (int iOther = 0; iOther < engSimulation.getSnakeCount(); iOther++) {
+                if (iOther != iSnake) {
+                    ctlOPPONENT.control(engSimulation, iOther);
+                }
+            }
+
+            final int iFruitsBefore = engSimulation.getFruitsEaten(iSnake);
+            engSimulation.tick();
+            iTicks++;
+            dFruits += (engSimulation.getFruitsEaten(iSnake) - iFruitsBefore) * dFruitWorth;
+            dFruitWorth *= dDISCOUNT;
+            bDead = !engSimulation.isAlive(iSnake);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package snake;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+
+/**
+ * The {@code Metrics} class is the in-process registry of the game's
+ * counters and latency histograms. Everything here is lock-free and cheap
+ * enough to be recorded on every tick and every frame.
+ * <p>
+ * Calling {@link #install()} publishes every metric as an MBean under the
+ * {@code snake} domain and dumps them to a file when the JVM exits. The file
+ * name can be changed with the {@code snake.metrics.file} system property.
+ */
+public final class Metrics {
+
+    /**
+     * The time taken by each update of the game logic.
+     */
+    public static final LatencyHistogram TICK_TIME = new LatencyHistogram("tick");
+
+    /**
+     * The time taken to paint each frame of the board.
+     */
+    public static final LatencyHistogram FRAME_TIME = new LatencyHistogram("frame");
+
+    /**
+     * The time taken to spawn fruits.
+     */
+    public static final LatencyHistogram SPAWN_TIME = new LatencyHistogram("spawn");
+
+    /**
+     * The time taken to write a saved game.
+     */
+    public static final LatencyHistogram SAVE_TIME = new LatencyHistogram("save");
+
+    /**
+     * The time taken to read a saved game.
+     */
+    public static final LatencyHistogram LOAD_TIME = new LatencyHistogram("load");
+
+    /**
+     * The time between a direction being queued and the tick that moved the
+     * snake in it.
+     */
+    public static final LatencyHistogram INPUT_DELAY = new LatencyHistogram("inputDelay");
+
+    /**
+     * The time taken by a server to tick all of its sessions and send their
+     * states.
+     */
+    public static final LatencyHistogram SERVER_PASS_TIME = new LatencyHistogram("serverPass");
+
+    /**
+     * The number of logic ticks that have run.
+     */
+    public static final Counter TICKS = new Counter("ticks");
+
+    /**
+     * The number of frames that have been painted.
+     */
+    public static final Counter FRAMES = new Counter("frames");
+
+    /**
+     * The number of games that have ended.
+     */
+    public static final Counter GAMES_OVER = new Counter("gamesOver");
+
+    /**
+     * The number of state updates a server has sent to its clients.
+     */
+    public static final Counter STATES_SENT = new Counter("statesSent");
+
+    /**
+     * The number of state updates a server skipped because the client had
+     * not read the previous one yet.
+     */
+    public static final Counter STATES_DROPPED = new Counter("statesDropped");
+
+    /**
+     * The number of connections a server failed to accept or set up, for
+     * instance because it ran out of file descriptors.
+     */
+    public static final Counter ACCEPT_FAILURES = new Counter("acceptFailures");
+
+    /**
+     * The score of the game being played.
+     */
+    public static final Gauge SCORE = new Gauge("score");
+
+    /**
+     * The length of the snake of the game being played.
+     */
+    public static final Gauge SNAKE_LENGTH = new Gauge("snakeLength");
+
+    /**
+     * The default file that the metrics are dumped to on exit.
+     */
+    private static final String sDEFAULT_DUMP_FILE = "snake_metrics.txt";
+
+    /**
+     * Every histogram, in the order they are dumped.
+     */
+    private static final LatencyHistogram[] HISTOGRAMS = {
+            TICK_TIME, FRAME_TIME, SPAWN_TIME, SAVE_TIME, LOAD_TIME, INPUT_DELAY,
+            SERVER_PASS_TIME
+    };
+
+    /**
+     * Every counter, in the order they are dumped.
+     */
+    private static final Counter[] COUNTERS = {
+            TICKS, FRAMES, GAMES_OVER, STATES_SENT, STATES_DROPPED, ACCEPT_FAILURES
+    };
+
+    /**
+     * Every gauge, in the order they are dumped.
+     */
+    private static final Gauge[] GAUGES = {
+            SCORE, SNAKE_LENGTH
+    };
+
+    /**
+     * Whether or not {@link #install()} has already run.
+     */
+    private static boolean bInstalled;
+
+    /**
+     * This class only holds static members.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Registers every metric with the platform MBean server and adds a
+     * shutdown hook that dumps them to a file. Calling this more than once
+     * has no effect.
+     */
+    public static synchronized void install() {
+        if (bInstalled) {
+            return;
+        }
+        bInstalled = true;
+
+        final MBeanServer mbsServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (final LatencyHistogram histogram : HISTOGRAMS) {
+                mbsServer.registerMBean(histogram, new ObjectName(
+                        "snake:type=Latency,name=" + histogram.getName()));
+            }
+            for (final Counter counter : COUNTERS) {
+                mbsServer.registerMBean(counter, new ObjectName(
+                        "snake:type=Counter,name=" + counter.getName()));
+            }
+            for (final Gauge gauge : GAUGES) {
+                mbsServer.registerMBean(gauge, new ObjectName(
+                        "snake:type=Gauge,name=" + gauge.getName()));
+            }
+        }
+        catch (final JMException e) {
+            e.printStackTrace();
+        }
+
+        final String sFile = System.getProperty("snake.metrics.file",
+                                                sDEFAULT_DUMP_FILE);
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dump(sFile);
+            }
+        }, "metrics-dump"));
+    }
+
+    /**
+     * Appends the current value of every metric to a file.
+     *
+     * @param sFile The file to append to.
+     */
+    public static void dump(final String sFile) {
+        try (PrintWriter pwOut = new PrintWriter(new FileWriter(sFile, true))) {
+            dump(pwOut);
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the current value of every metric, one per line.
+     *
+     * @param pwOut The writer to write to.
+     */
+    public static void dump(final PrintWriter pwOut) {
+        pwOut.println("# " + new Date());
+        for (final Counter counter : COUNTERS) {
+            pwOut.println(counter);
+        }
+        for (final Gauge gauge : GAUGES) {
+            pwOut.println(gauge);
+        }
+        for (final LatencyHistogram histogram : HISTOGRAMS) {
+            pwOut.println(histogram);
+        }
+        pwOut.flush();
+    }
+
+    /**
+     * Gets every histogram, in the order they are dumped.
+     *
+     * @return A copy of the list of histograms.
+     */
+    public static LatencyHistogram[] getHistograms() {
+        return HISTOGRAMS.clone();
+    }
+
+    /**
+     * Gets every counter, in the order they are dumped.
+     *
+     * @return A copy of the list of counters.
+     */
+    public static Counter[] getCounters() {
+        return COUNTERS.clone();
+    }
+
+    /**
+     * Gets every gauge, in the order they are dumped.
+     *
+     * @return A copy of the list of gauges.
+     */
+    public static Gauge[] getGauges() {
+        return GAUGES.clone();
+    }
+}
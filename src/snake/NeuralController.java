@@ -0,0 +1,284 @@
+package snake;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * The {@code NeuralController} class is a bot that lets a
+ * {@link NeuralNetwork} pick its moves. The network sees the board as the
+ * planes of a {@link VectorEnvironment} observation and scores the four
+ * directions; the bot takes the best scoring one that neither turns back
+ * nor dies on the spot, when there is one.
+ * <p>
+ * A single game is fed to the network as the list of tiles that are set,
+ * read straight off the board, so a decision costs a scan of the board and
+ * a few hundred short vector additions and allocates nothing. For training
+ * and evaluation, {@link #chooseActions(VectorEnvironment, int[])} picks the
+ * actions of every game of an environment in one batched call.
+ * <p>
+ * Usage: {@code NeuralController [--weights=FILE] [--size=N] [--games=N]
+ * [--seconds=N] [--write=FILE]} times single decisions and batched steps,
+ * with random weights unless a weight file is given, and optionally writes
+ * the network to a weight file to start training from.
+ */
+public class NeuralController implements SnakeController {
+
+    /**
+     * The number of units of each hidden layer of a network created with
+     * random weights.
+     */
+    private static final int[] iaDEFAULT_HIDDEN = {64, 32};
+
+    /**
+     * The directions, indexed by ordinal.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The network that scores the moves.
+     */
+    private final NeuralNetwork nnNetwork;
+
+    /**
+     * Creates a new bot.
+     *
+     * @param nnNetwork The network that scores the moves. The bot needs it to
+     *                  itself.
+     */
+    public NeuralController(final NeuralNetwork nnNetwork) {
+        if ((nnNetwork.getInputCount() % VectorEnvironment.iCHANNELS) != 0) {
+            throw new IllegalArgumentException("The network doesn't take board planes");
+        }
+        this.nnNetwork = nnNetwork;
+    }
+
+    @Override
+    public void control(final SnakeEngine engine, final int iSnake) {
+        if (!engine.isAlive(iSnake)) {
+            return;
+        }
+        final float[] faOutputs = evaluate(engine.getBoard());
+        final Direction best = choose(engine, iSnake, faOutputs, 0);
+        if ((best != null) && (best != engine.getDirection(iSnake))) {
+            engine.steer(iSnake, best);
+        }
+    }
+
+    /**
+     * Picks the action of every game of an environment, for its next step.
+     * <p>
+     * The set inputs are read off each game's board rather than found by
+     * scanning its observation, which is four times as long and mostly
+     * zeros. {@link NeuralNetwork#evaluateBatch(byte[], int, float[])}
+     * remains for observations that come without their games.
+     *
+     * @param environment The environment.
+     * @param iaActions   The array to write the ordinal of each game's
+     *                    {@link Direction} to.
+     */
+    public void chooseActions(final VectorEnvironment environment, final int[] iaActions) {
+        final int iGames = environment.getGameCount();
+        for (int iGame = 0; iGame < iGames; iGame++) {
+            final SnakeEngine engine = environment.getEngine(iGame);
+            final Direction best = choose(engine, 0, evaluate(engine.getBoard()), 0);
+            iaActions[iGame] = (best != null) ? best.ordinal() : VectorEnvironment.iNO_ACTION;
+        }
+    }
+
+    /**
+     * Runs the network on a board.
+     *
+     * @param board The board.
+     * @return The score of each direction. The array is reused.
+     */
+    private float[] evaluate(final GameBoard board) {
+        final int iCells = board.getCellCount();
+        if ((iCells * VectorEnvironment.iCHANNELS) != nnNetwork.getInputCount()) {
+            throw new IllegalStateException("The network was made for another board size");
+        }
+
+        /*
+         * List the set inputs in plane order, as they lie in an observation.
+         */
+        final int[] iaActive = nnNetwork.getActiveInputs();
+        int iCount = 0;
+        for (int iCell = 0; iCell < iCells; iCell++) {
+            final int iChannel = getChannel(board.getCell(iCell));
+            if (iChannel >= 0) {
+                iaActive[iCount++] = (iChannel * iCells) + iCell;
+            }
+        }
+        return nnNetwork.evaluateActive(iCount);
+    }
+
+    /**
+     * Picks the best scoring direction that doesn't turn back, preferring
+     * ones that don't die on the spot.
+     *
+     * @param engine   The engine.
+     * @param iSnake   The snake.
+     * @param faScores The scores.
+     * @param iOffset  The index of the score of the first direction.
+     * @return The direction, or null if every direction turns back.
+     */
+    private static Direction choose(final SnakeEngine engine,
+                                    final int iSnake,
+                                    final float[] faScores,
+                                    final int iOffset) {
+        final Direction current = engine.getDirection(iSnake);
+        final int iHead = engine.getHeadCell(iSnake);
+        Direction best = null;
+        boolean bBestSafe = false;
+        float fBestScore = Float.NEGATIVE_INFINITY;
+        for (final Direction direction : DIRECTIONS) {
+            if (direction == current.getOpposite()) {
+                continue;
+            }
+            final int iNext = engine.getNextCell(iHead, direction);
+            final byte bCode = (iNext >= 0) ? engine.getBoard().getCell(iNext) : GameBoard.SNAKE_BODY;
+            final boolean bSafe = (bCode == GameBoard.EMPTY) || (bCode == GameBoard.FRUIT);
+            final float fScore = faScores[iOffset + direction.ordinal()];
+            if ((bSafe && !bBestSafe) || ((bSafe == bBestSafe) && (fScore > fBestScore))) {
+                best = direction;
+                bBestSafe = bSafe;
+                fBestScore = fScore;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the plane a tile code is marked in.
+     *
+     * @param bCode The tile's code.
+     * @return The plane, or -1 for an empty tile.
+     */
+    private static int getChannel(final byte bCode) {
+        if (bCode == GameBoard.SNAKE_BODY) {
+            return VectorEnvironment.iCHANNEL_BODY;
+        }
+        else if (bCode == GameBoard.SNAKE_HEAD) {
+            return VectorEnvironment.iCHANNEL_HEAD;
+        }
+        else if (bCode == GameBoard.FRUIT) {
+            return VectorEnvironment.iCHANNEL_FRUIT;
+        }
+        else if (bCode == GameBoard.BAD_FRUIT) {
+            return VectorEnvironment.iCHANNEL_BAD_FRUIT;
+        }
+        return -1;
+    }
+
+    /**
+     * Entry point of the benchmark. Plays single games with the bot for a
+     * while, then steps an environment with batched decisions for a while,
+     * and prints the time per decision and the bytes allocated.
+     *
+     * @param args The options described in the class comment.
+     * @throws IOException If the weight file could not be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+        String sWeights = null;
+        String sWrite = null;
+        int iSize = BoardPanel.iCOL_COUNT;
+        int iGames = 1024;
+        int iSeconds = 5;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--weights=")) {
+                sWeights = sArg.substring("--weights=".length());
+            }
+            else if (sArg.startsWith("--write=")) {
+                sWrite = sArg.substring("--write=".length());
+            }
+            else if (sArg.startsWith("--size=")) {
+                iSize = Math.max(5, Integer.parseInt(sArg.substring("--size=".length())));
+            }
+            else if (sArg.startsWith("--games=")) {
+                iGames = Math.max(1, Integer.parseInt(sArg.substring("--games=".length())));
+            }
+            else if (sArg.startsWith("--seconds=")) {
+                iSeconds = Math.max(1, Integer.parseInt(sArg.substring("--seconds=".length())));
+            }
+        }
+
+        final NeuralNetwork nnNetwork = (sWeights != null) ?
+                NeuralNetwork.read(Paths.get(sWeights)) :
+                NeuralNetwork.random(iSize * iSize, iaDEFAULT_HIDDEN, new Random(1L));
+        if (sWrite != null) {
+            nnNetwork.write(Paths.get(sWrite));
+        }
+        iSize = (int) Math.round(Math.sqrt(nnNetwork.getInputCount() / VectorEnvironment.iCHANNELS));
+        final NeuralController controller = new NeuralController(nnNetwork);
+        final com.sun.management.ThreadMXBean thrThreads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long lThread = Thread.currentThread().getId();
+
+        /*
+         * Single games, one decision per tick, after a second of warm up.
+         */
+        final SnakeEngine engine = new SnakeEngine(iSize, iSize, new Random(1L));
+        engine.reset();
+        final long lWarmEnd = System.nanoTime() + (1000L * SnakeGame.MILLION);
+        while (System.nanoTime() < lWarmEnd) {
+            controller.control(engine, 0);
+            engine.tick();
+            if (engine.isGameOver()) {
+                engine.reset();
+            }
+        }
+        long lDecisions = 0;
+        long lDecisionNanos = 0;
+        long lAllocated = thrThreads.getThreadAllocatedBytes(lThread);
+        final long lSingleEnd = System.nanoTime() + (iSeconds * 1000L * SnakeGame.MILLION);
+        while (System.nanoTime() < lSingleEnd) {
+            final long lStart = System.nanoTime();
+            controller.control(engine, 0);
+            lDecisionNanos += System.nanoTime() - lStart;
+            lDecisions++;
+            engine.tick();
+            if (engine.isGameOver()) {
+                engine.reset();
+            }
+        }
+        lAllocated = thrThreads.getThreadAllocatedBytes(lThread) - lAllocated;
+        System.out.printf("single: size=%d decisions=%d ns/decision=%.0f allocated=%d bytes%n",
+                          iSize,
+                          lDecisions,
+                          lDecisionNanos / (double) lDecisions,
+                          lAllocated);
+
+        /*
+         * Every game of an environment per step.
+         */
+        final VectorEnvironment environment = new VectorEnvironment(iGames, iSize, iSize);
+        final long[] laSeeds = new long[iGames];
+        for (int iGame = 0; iGame < iGames; iGame++) {
+            laSeeds[iGame] = iGame;
+        }
+        environment.reset(laSeeds);
+        final int[] iaActions = new int[iGames];
+        controller.chooseActions(environment, iaActions);
+        environment.step(iaActions);
+
+        long lSteps = 0;
+        lAllocated = thrThreads.getThreadAllocatedBytes(lThread);
+        final long lStart = System.nanoTime();
+        final long lBatchEnd = lStart + (iSeconds * 1000L * SnakeGame.MILLION);
+        while (System.nanoTime() < lBatchEnd) {
+            controller.chooseActions(environment, iaActions);
+            environment.step(iaActions);
+            lSteps++;
+        }
+        lAllocated = thrThreads.getThreadAllocatedBytes(lThread) - lAllocated;
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+        System.out.printf("batched: games=%d steps=%d game-steps/s=%.0f ns/decision=%.0f " +
+                                  "allocated=%d bytes%n",
+                          iGames,
+                          lSteps,
+                          (lSteps * (double) iGames) / dSeconds,
+                          (dSeconds * 1.0e9) / (lSteps * (double) iGames),
+                          lAllocated);
+    }
+}
@@ -0,0 +1,313 @@
+package snake;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * The {@code NeuralNetwork} class is a small multilayer perceptron that
+ * maps the planes of a board, in the layout of
+ * {@link VectorEnvironment#getObservations()}, to a score for each
+ * {@link Direction}. The hidden layers use ReLU and the output layer is
+ * linear.
+ * <p>
+ * The weights of each layer are stored input by input, so that a layer is
+ * computed as a sum of weight rows scaled by the inputs. The inner loops
+ * then run over contiguous floats with no dependency between iterations,
+ * which the JIT compiles to SIMD instructions on its own. The first layer
+ * makes the most of this: its inputs are zeros and ones, and most of them
+ * are zero, so it only adds up the rows of the tiles that are set instead
+ * of multiplying the whole matrix.
+ * <p>
+ * The activations live in buffers allocated with the network, so inference
+ * allocates nothing, and a network must only be used by one thread at a
+ * time.
+ * <p>
+ * The weight file is a sequence of big-endian values: a magic number, the
+ * number of layer sizes, the sizes from the input to the output, and then
+ * for each layer its weights, input by input, followed by its biases.
+ */
+public class NeuralNetwork {
+
+    /**
+     * The first bytes of a weight file.
+     */
+    private static final int iMAGIC = 0x534E4E31;
+
+    /**
+     * The number of outputs: one score per direction.
+     */
+    public static final int iOUTPUTS = Direction.values().length;
+
+    /**
+     * The number of units of each layer, from the input to the output.
+     */
+    private final int[] iaSizes;
+
+    /**
+     * The weights of each layer, indexed by {@code input * outputs + output}.
+     */
+    private final float[][] faaWeights;
+
+    /**
+     * The biases of each layer.
+     */
+    private final float[][] faaBiases;
+
+    /**
+     * The activations of each layer but the input, reused by every pass.
+     */
+    private final float[][] faaActivations;
+
+    /**
+     * The indices of the inputs that are set, gathered by a pass.
+     */
+    private final int[] iaActive;
+
+    /**
+     * Creates a network with all weights zero.
+     *
+     * @param iaSizes The number of units of each layer, from the input to
+     *                the output, which must have {@link #iOUTPUTS} units.
+     */
+    public NeuralNetwork(final int... iaSizes) {
+        if ((iaSizes.length < 2) || (iaSizes[iaSizes.length - 1] != iOUTPUTS)) {
+            throw new IllegalArgumentException("Expected at least two layers and " +
+                                                       iOUTPUTS + " outputs");
+        }
+        this.iaSizes = iaSizes.clone();
+        final int iLayers = iaSizes.length - 1;
+        this.faaWeights = new float[iLayers][];
+        this.faaBiases = new float[iLayers][];
+        this.faaActivations = new float[iLayers][];
+        for (int iLayer = 0; iLayer < iLayers; iLayer++) {
+            if ((iaSizes[iLayer] < 1) || (iaSizes[iLayer + 1] < 1)) {
+                throw new IllegalArgumentException("Every layer needs at least one unit");
+            }
+            faaWeights[iLayer] = new float[iaSizes[iLayer] * iaSizes[iLayer + 1]];
+            faaBiases[iLayer] = new float[iaSizes[iLayer + 1]];
+            faaActivations[iLayer] = new float[iaSizes[iLayer + 1]];
+        }
+        this.iaActive = new int[iaSizes[0]];
+    }
+
+    /**
+     * Creates a network for a board with random weights, scaled so that
+     * activations neither die out nor blow up through the layers.
+     *
+     * @param iCells   The number of tiles of the board.
+     * @param iaHidden The number of units of each hidden layer.
+     * @param rRandom  The random number generator to draw the weights from.
+     * @return The network.
+     */
+    public static NeuralNetwork random(final int iCells, final int[] iaHidden, final Random rRandom) {
+        final int[] iaSizes = new int[iaHidden.length + 2];
+        iaSizes[0] = VectorEnvironment.iCHANNELS * iCells;
+        System.arraycopy(iaHidden, 0, iaSizes, 1, iaHidden.length);
+        iaSizes[iaSizes.length - 1] = iOUTPUTS;
+
+        final NeuralNetwork network = new NeuralNetwork(iaSizes);
+        for (int iLayer = 0; iLayer < network.faaWeights.length; iLayer++) {
+            final float[] faWeights = network.faaWeights[iLayer];
+            final double dScale = Math.sqrt(2.0 / iaSizes[iLayer]);
+            for (int iWeight = 0; iWeight < faWeights.length; iWeight++) {
+                faWeights[iWeight] = (float) (rRandom.nextGaussian() * dScale);
+            }
+        }
+        return network;
+    }
+
+    /**
+     * Reads a network from a weight file.
+     *
+     * @param pthWeights The weight file.
+     * @return The network.
+     * @throws IOException If the file could not be read or isn't a weight
+     *                     file.
+     */
+    public static NeuralNetwork read(final Path pthWeights) throws IOException {
+        try (final DataInputStream disIn = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(pthWeights)))) {
+            if (disIn.readInt() != iMAGIC) {
+                throw new IOException("Not a weight file");
+            }
+            final int[] iaSizes = new int[disIn.readInt()];
+            for (int iLayer = 0; iLayer < iaSizes.length; iLayer++) {
+                iaSizes[iLayer] = disIn.readInt();
+            }
+
+            final NeuralNetwork network;
+            try {
+                network = new NeuralNetwork(iaSizes);
+            }
+            catch (final IllegalArgumentException e) {
+                throw new IOException("Bad layer sizes in the weight file", e);
+            }
+            for (int iLayer = 0; iLayer < network.faaWeights.length; iLayer++) {
+                readFloats(disIn, network.faaWeights[iLayer]);
+                readFloats(disIn, network.faaBiases[iLayer]);
+            }
+            return network;
+        }
+    }
+
+    /**
+     * Writes the network to a weight file.
+     *
+     * @param pthWeights The weight file.
+     * @throws IOException If the file could not be written.
+     */
+    public void write(final Path pthWeights) throws IOException {
+        try (final DataOutputStream dosOut = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(pthWeights)))) {
+            dosOut.writeInt(iMAGIC);
+            dosOut.writeInt(iaSizes.length);
+            for (final int iSize : iaSizes) {
+                dosOut.writeInt(iSize);
+            }
+            for (int iLayer = 0; iLayer < faaWeights.length; iLayer++) {
+                for (final float fWeight : faaWeights[iLayer]) {
+                    dosOut.writeFloat(fWeight);
+                }
+                for (final float fBias : faaBiases[iLayer]) {
+                    dosOut.writeFloat(fBias);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads floats into an array.
+     *
+     * @param disIn    The stream to read from.
+     * @param faValues The array to fill.
+     * @throws IOException If the stream ended early.
+     */
+    private static void readFloats(final DataInputStream disIn, final float[] faValues)
+            throws IOException {
+        for (int iValue = 0; iValue < faValues.length; iValue++) {
+            faValues[iValue] = disIn.readFloat();
+        }
+    }
+
+    /**
+     * Gets the number of inputs.
+     *
+     * @return The size of the input layer.
+     */
+    public int getInputCount() {
+        return iaSizes[0];
+    }
+
+    /**
+     * Scores the directions for one observation.
+     *
+     * @param baObservations The observations.
+     * @param iOffset        The index of the observation's first byte.
+     * @param faScores       The array to write the score of each direction
+     *                       to.
+     * @param iScoreOffset   The index to write the first score to.
+     */
+    public void evaluate(final byte[] baObservations,
+                         final int iOffset,
+                         final float[] faScores,
+                         final int iScoreOffset) {
+        int iCount = 0;
+        for (int iInput = 0; iInput < iaSizes[0]; iInput++) {
+            if (baObservations[iOffset + iInput] != 0) {
+                iaActive[iCount++] = iInput;
+            }
+        }
+        evaluateActive(iCount);
+        System.arraycopy(faaActivations[faaActivations.length - 1], 0, faScores, iScoreOffset,
+                         iOUTPUTS);
+    }
+
+    /**
+     * Scores the directions for many observations in one call, such as all
+     * the games of a {@link VectorEnvironment}.
+     *
+     * @param baObservations The observations, one after the other.
+     * @param iCount         The number of observations.
+     * @param faScores       The array to write the scores to, indexed by
+     *                       {@code observation * iOUTPUTS + direction}.
+     */
+    public void evaluateBatch(final byte[] baObservations, final int iCount, final float[] faScores) {
+        for (int iObservation = 0; iObservation < iCount; iObservation++) {
+            evaluate(baObservations, iObservation * iaSizes[0], faScores, iObservation * iOUTPUTS);
+        }
+    }
+
+    /**
+     * Gets the array to list the set inputs in, for callers that know them
+     * without building a whole observation.
+     *
+     * @return The array to write the indices of the set inputs to. Pass
+     * their count to {@link #evaluateActive(int)}.
+     */
+    int[] getActiveInputs() {
+        return iaActive;
+    }
+
+    /**
+     * Runs the network on the inputs listed in {@link #getActiveInputs()},
+     * all of which are one while every other input is zero.
+     *
+     * @param iCount The number of set inputs.
+     * @return The score of each direction. The array is reused.
+     */
+    float[] evaluateActive(final int iCount) {
+        /*
+         * The first layer only adds up the weight rows of the set inputs.
+         */
+        final float[] faFirst = faaActivations[0];
+        final float[] faFirstWeights = faaWeights[0];
+        final int iFirstOutputs = iaSizes[1];
+        System.arraycopy(faaBiases[0], 0, faFirst, 0, iFirstOutputs);
+        for (int iActive = 0; iActive < iCount; iActive++) {
+            final int iRow = iaActive[iActive] * iFirstOutputs;
+            for (int iOutput = 0; iOutput < iFirstOutputs; iOutput++) {
+                faFirst[iOutput] += faFirstWeights[iRow + iOutput];
+            }
+        }
+
+        /*
+         * Every further layer scales the weight rows by its inputs.
+         */
+        for (int iLayer = 1; iLayer < faaWeights.length; iLayer++) {
+            final float[] faInputs = faaActivations[iLayer - 1];
+            relu(faInputs);
+            final float[] faOutputs = faaActivations[iLayer];
+            final float[] faWeights = faaWeights[iLayer];
+            final int iOutputs = iaSizes[iLayer + 1];
+            System.arraycopy(faaBiases[iLayer], 0, faOutputs, 0, iOutputs);
+            for (int iInput = 0; iInput < faInputs.length; iInput++) {
+                final float fInput = faInputs[iInput];
+                if (fInput == 0.0f) {
+                    continue;
+                }
+                final int iRow = iInput * iOutputs;
+                for (int iOutput = 0; iOutput < iOutputs; iOutput++) {
+                    faOutputs[iOutput] += fInput * faWeights[iRow + iOutput];
+                }
+            }
+        }
+        return faaActivations[faaActivations.length - 1];
+    }
+
+    /**
+     * Replaces the negative values of an array with zero.
+     *
+     * @param faValues The array.
+     */
+    private static void relu(final float[] faValues) {
+        for (int iValue = 0; iValue < faValues.length; iValue++) {
+            faValues[iValue] = Math.max(0.0f, faValues[iValue]);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package snake;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.Random;
+
+/**
+ * The {@code ParticleSystem} class animates short-lived particles, such as
+ * the burst of a fruit being eaten or the debris of a snake that died.
+ * <p>
+ * Particles live in parallel arrays of primitives, one per property, sized
+ * once to a fixed capacity. They are moved, aged and culled in a single
+ * pass over the arrays, and a dead particle is culled by moving the last
+ * live one into its place, so the live particles always sit at the front.
+ * When the pool is full, new particles are dropped rather than making room,
+ * which bounds the work of a frame by the capacity. Colors come from a
+ * palette of {@link Color}s made up front, so neither emitting, updating nor
+ * drawing allocates anything. A particle fades out through opaque colors
+ * blended towards the background rather than through alpha, since filling
+ * with a translucent color allocates on every call in the software
+ * pipeline.
+ * <p>
+ * A particle system may be shared by threads: the game loop emits particles
+ * while the event dispatch thread updates and draws them.
+ */
+public class ParticleSystem {
+
+    /**
+     * The number of steps a particle fades out in.
+     */
+    private static final int iFADE_LEVELS = 16;
+
+    /**
+     * The longest time step of an update, in seconds, so that a stalled
+     * frame doesn't fling the particles across the board.
+     */
+    private static final float fMAX_STEP = 0.05f;
+
+    /**
+     * The number of particles the system can hold.
+     */
+    private final int iCapacity;
+
+    /**
+     * The x coordinate of each particle, in pixels.
+     */
+    private final float[] faX;
+
+    /**
+     * The y coordinate of each particle, in pixels.
+     */
+    private final float[] faY;
+
+    /**
+     * The horizontal speed of each particle, in pixels per second.
+     */
+    private final float[] faSpeedX;
+
+    /**
+     * The vertical speed of each particle, in pixels per second.
+     */
+    private final float[] faSpeedY;
+
+    /**
+     * The time each particle has left, in seconds.
+     */
+    private final float[] faTimeLeft;
+
+    /**
+     * The time each particle lives for in all, in seconds.
+     */
+    private final float[] faLifetime;
+
+    /**
+     * The size of each particle, in pixels.
+     */
+    private final byte[] baSizes;
+
+    /**
+     * The palette color of each particle.
+     */
+    private final byte[] baColors;
+
+    /**
+     * The palette, as {@code [color][fade level]}, from the background
+     * color to the full color.
+     */
+    private final Color[][] colaPalette;
+
+    /**
+     * The random number generator that scatters the particles.
+     */
+    private final Random rRandom = new Random();
+
+    /**
+     * The downward pull on every particle, in pixels per second squared.
+     */
+    private final float fGravity;
+
+    /**
+     * The number of live particles, which sit at the front of the arrays.
+     */
+    private int iCount;
+
+    /**
+     * The number of particles dropped because the pool was full.
+     */
+    private long lDropped;
+
+    /**
+     * Creates an empty particle system.
+     *
+     * @param iCapacity  The most particles alive at once.
+     * @param colors     The colors particles can be, indexed by palette
+     *                   color.
+     * @param background The color the particles fade out into.
+     * @param fGravity   The downward pull on every particle, in pixels per
+     *                   second squared.
+     */
+    public ParticleSystem(final int iCapacity,
+                          final Color[] colors,
+                          final Color background,
+                          final float fGravity) {
+        if (colors.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many colors");
+        }
+        this.iCapacity = iCapacity;
+        this.fGravity = fGravity;
+        faX = new float[iCapacity];
+        faY = new float[iCapacity];
+        faSpeedX = new float[iCapacity];
+        faSpeedY = new float[iCapacity];
+        faTimeLeft = new float[iCapacity];
+        faLifetime = new float[iCapacity];
+        baSizes = new byte[iCapacity];
+        baColors = new byte[iCapacity];
+        colaPalette = new Color[colors.length][iFADE_LEVELS];
+        for (int iColor = 0; iColor < colors.length; iColor++) {
+            for (int iLevel = 0; iLevel < iFADE_LEVELS; iLevel++) {
+                final int iWeight = iLevel + 1;
+                final int iRest = iFADE_LEVELS - iWeight;
+                colaPalette[iColor][iLevel] = new Color(
+                        ((colors[iColor].getRed() * iWeight) + (background.getRed() * iRest)) / iFADE_LEVELS,
+                        ((colors[iColor].getGreen() * iWeight) + (background.getGreen() * iRest)) / iFADE_LEVELS,
+                        ((colors[iColor].getBlue() * iWeight) + (background.getBlue() * iRest)) / iFADE_LEVELS);
+            }
+        }
+    }
+
+    /**
+     * Emits particles from a point, flying off in every direction.
+     *
+     * @param fX        The x coordinate, in pixels.
+     * @param fY        The y coordinate, in pixels.
+     * @param iParticles The number of particles.
+     * @param fSpeed    The fastest speed of a particle, in pixels per
+     *                  second. Each particle gets a random speed up to it.
+     * @param fLifetime The longest time a particle lives for, in seconds.
+     *                  Each particle gets a random time from half of it.
+     * @param iSize     The size of each particle, in pixels.
+     * @param iColor    The palette color.
+     * @return The number of particles emitted, fewer than asked for if the
+     * pool filled up.
+     */
+    public synchronized int emit(final float fX,
+                                 final float fY,
+                                 final int iParticles,
+                                 final float fSpeed,
+                                 final float fLifetime,
+                                 final int iSize,
+                                 final int iColor) {
+        final int iEmitted = Math.min(iParticles, iCapacity - iCount);
+        lDropped += iParticles - iEmitted;
+        for (int iParticle = 0; iParticle < iEmitted; iParticle++) {
+            final double dAngle = rRandom.nextDouble() * 2.0 * Math.PI;
+            final float fVelocity = fSpeed * rRandom.nextFloat();
+            final float fLife = fLifetime * (0.5f + (0.5f * rRandom.nextFloat()));
+            faX[iCount] = fX;
+            faY[iCount] = fY;
+            faSpeedX[iCount] = (float) (Math.cos(dAngle) * fVelocity);
+            faSpeedY[iCount] = (float) (Math.sin(dAngle) * fVelocity);
+            faTimeLeft[iCount] = fLife;
+            faLifetime[iCount] = fLife;
+            baSizes[iCount] = (byte) Math.min(Byte.MAX_VALUE, Math.max(1, iSize));
+            baColors[iCount] = (byte) iColor;
+            iCount++;
+        }
+        return iEmitted;
+    }
+
+    /**
+     * Moves and ages every particle, and culls the ones whose time is up.
+     *
+     * @param fSeconds The time since the last update, in seconds.
+     */
+    public synchronized void update(final float fSeconds) {
+        final float fStep = Math.min(fMAX_STEP, Math.max(0.0f, fSeconds));
+        final float fFall = fGravity * fStep;
+        int iParticle = 0;
+        while (iParticle < iCount) {
+            final float fTimeLeft = faTimeLeft[iParticle] - fStep;
+            if (fTimeLeft <= 0.0f) {
+                /*
+                 * Move the last live particle into the gap, and look at the
+                 * same slot again.
+                 */
+                iCount--;
+                faX[iParticle] = faX[iCount];
+                faY[iParticle] = faY[iCount];
+                faSpeedX[iParticle] = faSpeedX[iCount];
+                faSpeedY[iParticle] = faSpeedY[iCount];
+                faTimeLeft[iParticle] = faTimeLeft[iCount];
+                faLifetime[iParticle] = faLifetime[iCount];
+                baSizes[iParticle] = baSizes[iCount];
+                baColors[iParticle] = baColors[iCount];
+                continue;
+            }
+            faTimeLeft[iParticle] = fTimeLeft;
+            faSpeedY[iParticle] += fFall;
+            faX[iParticle] += faSpeedX[iParticle] * fStep;
+            faY[iParticle] += faSpeedY[iParticle] * fStep;
+            iParticle++;
+        }
+    }
+
+    /**
+     * Draws every particle as a square, fading out as its time runs out.
+     *
+     * @param g The graphics object to draw to.
+     * @return The number of particles drawn.
+     */
+    public synchronized int draw(final Graphics g) {
+        for (int iParticle = 0; iParticle < iCount; iParticle++) {
+            final int iLevel = Math.min(iFADE_LEVELS - 1,
+                    (int) ((iFADE_LEVELS * faTimeLeft[iParticle]) / faLifetime[iParticle]));
+            final int iSize = baSizes[iParticle];
+            g.setColor(colaPalette[baColors[iParticle]][iLevel]);
+            g.fillRect((int) faX[iParticle] - (iSize / 2), (int) faY[iParticle] - (iSize / 2),
+                       iSize, iSize);
+        }
+        return iCount;
+    }
+
+    /**
+     * Removes every particle.
+     */
+    public synchronized void clear() {
+        iCount = 0;
+    }
+
+    /**
+     * Gets the number of live particles.
+     *
+     * @return The number of particles.
+     */
+    public synchronized int getCount() {
+        return iCount;
+    }
+
+    /**
+     * Gets the most particles alive at once.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return iCapacity;
+    }
+
+    /**
+     * Gets the number of particles dropped so far because the pool was full.
+     *
+     * @return The number of particles.
+     */
+    public synchronized long getDroppedCount() {
+        return lDropped;
+    }
+}
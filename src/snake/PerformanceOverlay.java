@@ -0,0 +1,281 @@
+package snake;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * The {@code PerformanceOverlay} class draws a small heads-up display with
+ * live performance figures over the board: frames and ticks per second,
+ * tick and frame time percentiles, allocation rate, GC count and the length
+ * of the snake.
+ * <p>
+ * The figures are only recalculated about once a second. The text is then
+ * rendered into a cached image, so every other frame costs a single
+ * {@code drawImage}.
+ */
+public class PerformanceOverlay {
+
+    /**
+     * The number of nanoseconds between updates of the figures.
+     */
+    private static final long lUPDATE_INTERVAL = 1000L * SnakeGame.MILLION;
+
+    /**
+     * The font to draw the figures with.
+     */
+    private static final Font fFONT = new Font(Font.MONOSPACED, Font.BOLD, 11);
+
+    /**
+     * The number of lines drawn.
+     */
+    private static final int iLINE_COUNT = 7;
+
+    /**
+     * The padding around the text, in pixels.
+     */
+    private static final int iPADDING = 4;
+
+    /**
+     * The background of the overlay.
+     */
+    private static final Color cBACKGROUND = new Color(0, 0, 0, 160);
+
+    /**
+     * The SnakeGame instance.
+     */
+    private final SnakeGame snkGame;
+
+    /**
+     * The bean used to read how much each thread has allocated, or null if
+     * the JVM doesn't support it.
+     */
+    private final com.sun.management.ThreadMXBean thrThreads;
+
+    /**
+     * The garbage collectors of the JVM.
+     */
+    private final List<GarbageCollectorMXBean> lstCollectors;
+
+    /**
+     * The tick time buckets at the previous update.
+     */
+    private final long[] laTickPrevious;
+
+    /**
+     * The tick time buckets at this update.
+     */
+    private final long[] laTickCurrent;
+
+    /**
+     * The frame time buckets at the previous update.
+     */
+    private final long[] laFramePrevious;
+
+    /**
+     * The frame time buckets at this update.
+     */
+    private final long[] laFrameCurrent;
+
+    /**
+     * The lines of text currently shown.
+     */
+    private final String[] saLines;
+
+    /**
+     * The cached rendering of the text, or null if it has to be redrawn.
+     */
+    private BufferedImage imgCache;
+
+    /**
+     * The time of the previous update, or 0 if there hasn't been one.
+     */
+    private long lLastUpdate;
+
+    /**
+     * The number of frames at the previous update.
+     */
+    private long lLastFrames;
+
+    /**
+     * The number of ticks at the previous update.
+     */
+    private long lLastTicks;
+
+    /**
+     * The total number of bytes allocated at the previous update.
+     */
+    private long lLastAllocated;
+
+    /**
+     * Creates a new PerformanceOverlay instance.
+     *
+     * @param snkGame The SnakeGame instance.
+     */
+    public PerformanceOverlay(final SnakeGame snkGame) {
+        this.snkGame = snkGame;
+
+        final ThreadMXBean thrBean = ManagementFactory.getThreadMXBean();
+        if ((thrBean instanceof com.sun.management.ThreadMXBean) &&
+                ((com.sun.management.ThreadMXBean) thrBean)
+                        .isThreadAllocatedMemorySupported()) {
+            thrThreads = (com.sun.management.ThreadMXBean) thrBean;
+            thrThreads.setThreadAllocatedMemoryEnabled(true);
+        }
+        else {
+            thrThreads = null;
+        }
+        lstCollectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+        final int iBuckets = LatencyHistogram.getBucketCount();
+        laTickPrevious = new long[iBuckets];
+        laTickCurrent = new long[iBuckets];
+        laFramePrevious = new long[iBuckets];
+        laFrameCurrent = new long[iBuckets];
+        saLines = new String[iLINE_COUNT];
+        for (int iLine = 0; iLine < iLINE_COUNT; iLine++) {
+            saLines[iLine] = "";
+        }
+    }
+
+    /**
+     * Draws the overlay, updating the figures first if they are due.
+     *
+     * @param g  The graphics object to draw to.
+     * @param iX The x coordinate of the top left corner (in pixels).
+     * @param iY The y coordinate of the top left corner (in pixels).
+     */
+    public void draw(final Graphics g, final int iX, final int iY) {
+        final long lNow = System.nanoTime();
+        if ((lLastUpdate == 0) || ((lNow - lLastUpdate) >= lUPDATE_INTERVAL)) {
+            update(lNow);
+        }
+        if (imgCache == null) {
+            imgCache = render(g);
+        }
+        g.drawImage(imgCache, iX, iY, null);
+    }
+
+    /**
+     * Recalculates every figure from the metrics gathered since the previous
+     * update.
+     *
+     * @param lNow The current time, in nanoseconds.
+     */
+    private void update(final long lNow) {
+        final long lFrames = Metrics.FRAMES.getCount();
+        final long lTicks = Metrics.TICKS.getCount();
+        final long lAllocated = getAllocatedBytes();
+        Metrics.TICK_TIME.copyBuckets(laTickCurrent);
+        Metrics.FRAME_TIME.copyBuckets(laFrameCurrent);
+
+        if (lLastUpdate != 0) {
+            final double dSeconds = (lNow - lLastUpdate) / 1.0e9;
+            subtract(laTickCurrent, laTickPrevious);
+            subtract(laFrameCurrent, laFramePrevious);
+
+            saLines[0] = String.format("FPS  %6.1f", (lFrames - lLastFrames) / dSeconds);
+            saLines[1] = String.format("TPS  %6.1f", (lTicks - lLastTicks) / dSeconds);
+            saLines[2] = String.format("Tick p50 %7.1fus p99 %7.1fus",
+                                       LatencyHistogram.getValueAtPercentile(laTickPrevious, 50.0) / 1000.0,
+                                       LatencyHistogram.getValueAtPercentile(laTickPrevious, 99.0) / 1000.0);
+            saLines[3] = String.format("Frame p50 %6.1fus p99 %7.1fus",
+                                       LatencyHistogram.getValueAtPercentile(laFramePrevious, 50.0) / 1000.0,
+                                       LatencyHistogram.getValueAtPercentile(laFramePrevious, 99.0) / 1000.0);
+            saLines[4] = (thrThreads == null) ? "Alloc n/a" :
+                    String.format("Alloc %8.1f KB/s",
+                                  Math.max(0L, lAllocated - lLastAllocated) / dSeconds / 1024.0);
+            saLines[5] = "GCs  " + getCollectionCount();
+            saLines[6] = "Snake length " + snkGame.getSnakeLength();
+            imgCache = null;
+        }
+
+        System.arraycopy(laTickCurrent, 0, laTickPrevious, 0, laTickCurrent.length);
+        System.arraycopy(laFrameCurrent, 0, laFramePrevious, 0, laFrameCurrent.length);
+        lLastFrames = lFrames;
+        lLastTicks = lTicks;
+        lLastAllocated = lAllocated;
+        lLastUpdate = lNow;
+    }
+
+    /**
+     * Renders the current lines of text into a new image.
+     *
+     * @param g The graphics object the image will be drawn to, used for
+     *          measuring the text.
+     * @return The rendered text.
+     */
+    private BufferedImage render(final Graphics g) {
+        final FontMetrics fmMetrics = g.getFontMetrics(fFONT);
+        int iWidth = 0;
+        for (final String sLine : saLines) {
+            iWidth = Math.max(iWidth, fmMetrics.stringWidth(sLine));
+        }
+        final int iLineHeight = fmMetrics.getHeight();
+        final BufferedImage imgText = new BufferedImage(
+                Math.max(1, iWidth + (2 * iPADDING)),
+                (iLineHeight * iLINE_COUNT) + (2 * iPADDING),
+                BufferedImage.TYPE_INT_ARGB);
+
+        final Graphics2D g2d = imgText.createGraphics();
+        g2d.setColor(cBACKGROUND);
+        g2d.fillRect(0, 0, imgText.getWidth(), imgText.getHeight());
+        g2d.setFont(fFONT);
+        g2d.setColor(Color.GREEN);
+        int iDrawY = iPADDING + fmMetrics.getAscent();
+        for (final String sLine : saLines) {
+            g2d.drawString(sLine, iPADDING, iDrawY);
+            iDrawY += iLineHeight;
+        }
+        g2d.dispose();
+        return imgText;
+    }
+
+    /**
+     * Turns the current bucket counts into the counts recorded since the
+     * previous update. The result is stored in {@code laPrevious}.
+     *
+     * @param laCurrent  The current bucket counts.
+     * @param laPrevious The bucket counts at the previous update.
+     */
+    private static void subtract(final long[] laCurrent, final long[] laPrevious) {
+        for (int iBucket = 0; iBucket < laCurrent.length; iBucket++) {
+            laPrevious[iBucket] = laCurrent[iBucket] - laPrevious[iBucket];
+        }
+    }
+
+    /**
+     * Adds up the number of bytes allocated by every live thread.
+     *
+     * @return The total allocated bytes, or 0 if it can't be measured.
+     */
+    private long getAllocatedBytes() {
+        if (thrThreads == null) {
+            return 0L;
+        }
+        long lTotal = 0;
+        for (final long lAllocated : thrThreads.getThreadAllocatedBytes(
+                thrThreads.getAllThreadIds())) {
+            if (lAllocated > 0) {
+                lTotal += lAllocated;
+            }
+        }
+        return lTotal;
+    }
+
+    /**
+     * Adds up the number of collections run by every garbage collector.
+     *
+     * @return The total number of collections.
+     */
+    private long getCollectionCount() {
+        long lTotal = 0;
+        for (final GarbageCollectorMXBean gcCollector : lstCollectors) {
+            lTotal += Math.max(0L, gcCollector.getCollectionCount());
+        }
+        return lTotal;
+    }
+}
@@ -0,0 +1,105 @@
+package snake;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code ServerProtocol} class defines the messages exchanged between a
+ * {@link GameServer} and its clients. Every message has a fixed size, so
+ * neither side needs a length prefix.
+ * <p>
+ * A client sends single bytes: the ordinal of a {@link Direction} to steer,
+ * or {@link #bRESET} to start a new game once the current one is over. The
+ * server greets each client with a {@link #bHELLO} message and then sends a
+ * {@link #bSTATE} message after every tick.
+ */
+public final class ServerProtocol {
+
+    /**
+     * The client byte that starts a new game.
+     */
+    public static final byte bRESET = 'R';
+
+    /**
+     * The type of the greeting: the number of columns and rows of the
+     * board.
+     */
+    public static final byte bHELLO = 'H';
+
+    /**
+     * The size of a greeting, in bytes.
+     */
+    public static final int iHELLO_SIZE = 1 + 4 + 4;
+
+    /**
+     * The type of a state update: the tick, score, length and head of the
+     * snake, and whether the game is over.
+     */
+    public static final byte bSTATE = 'S';
+
+    /**
+     * The size of a state update, in bytes.
+     */
+    public static final int iSTATE_SIZE = 1 + 4 + 4 + 4 + 4 + 1;
+
+    /**
+     * Every direction, indexed by the byte that stands for it.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * This class only holds static members.
+     */
+    private ServerProtocol() {
+    }
+
+    /**
+     * Writes a greeting.
+     *
+     * @param bufOut The buffer to write to.
+     * @param iCols  The number of columns on the board.
+     * @param iRows  The number of rows on the board.
+     */
+    public static void writeHello(final ByteBuffer bufOut,
+                                  final int iCols,
+                                  final int iRows) {
+        bufOut.put(bHELLO).putInt(iCols).putInt(iRows);
+    }
+
+    /**
+     * Writes a state update for the first snake of an engine.
+     *
+     * @param bufOut The buffer to write to.
+     * @param engine The engine.
+     * @param iTick  The number of ticks the session has run.
+     */
+    public static void writeState(final ByteBuffer bufOut,
+                                  final SnakeEngine engine,
+                                  final int iTick) {
+        bufOut.put(bSTATE)
+              .putInt(iTick)
+              .putInt(engine.getScore())
+              .putInt(engine.getLength())
+              .putInt(engine.getHeadCell())
+              .put((byte) (engine.isGameOver() ? 1 : 0));
+    }
+
+    /**
+     * Gets the direction that a client byte stands for.
+     *
+     * @param bInput The byte.
+     * @return The direction, or null if the byte isn't a direction.
+     */
+    public static Direction decodeDirection(final byte bInput) {
+        return ((bInput >= 0) && (bInput < DIRECTIONS.length)) ? DIRECTIONS[bInput] : null;
+    }
+
+    /**
+     * Gets the byte that a client sends to steer in a direction.
+     *
+     * @param direction The direction.
+     * @return The byte.
+     */
+    public static byte encodeDirection(final Direction direction) {
+        return (byte) direction.ordinal();
+    }
+}
@@ -0,0 +1,162 @@
+package snake;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The {@code SessionBenchmark} class compares the ways a
+ * {@link SessionManager} can host sessions. For each mode it starts the
+ * same number of sessions, lets them run, and reports how long starting
+ * them took, how many ticks they managed compared to the target, how late
+ * the ticks ran, and how many platform threads and how much heap it took.
+ * <p>
+ * Virtual threads are only benchmarked on Java 21 or later; on older JVMs
+ * that mode is reported as not measured, and no numbers are given for it.
+ * <p>
+ * Usage: {@code SessionBenchmark [sessions] [seconds] [ticksPerSecond]}
+ */
+public final class SessionBenchmark {
+
+    /**
+     * The default number of sessions.
+     */
+    private static final int iDEFAULT_SESSIONS = 10000;
+
+    /**
+     * The default length of each run, in seconds.
+     */
+    private static final int iDEFAULT_SECONDS = 10;
+
+    /**
+     * The number of bytes in a megabyte.
+     */
+    private static final double dBYTES_PER_MB = 1024.0 * 1024.0;
+
+    /**
+     * The longest time (in nanoseconds) that starting the sessions of one
+     * mode may take before that mode is given up on. Thousands of busy
+     * platform threads can slow thread creation down to a crawl on small
+     * machines.
+     */
+    private static final long lSTART_TIMEOUT = 30L * 1000L * SnakeGame.MILLION;
+
+    /**
+     * This class only holds static members.
+     */
+    private SessionBenchmark() {
+    }
+
+    /**
+     * Hosts a number of sessions in one mode for a while and prints the
+     * results.
+     *
+     * @param mode            The mode.
+     * @param iSessions       The number of sessions.
+     * @param iSeconds        The length of the run, in seconds.
+     * @param fTicksPerSecond The number of ticks per second of each session.
+     * @throws InterruptedException If the benchmark was interrupted.
+     */
+    private static void run(final SessionManager.Mode mode,
+                            final int iSessions,
+                            final int iSeconds,
+                            final float fTicksPerSecond) throws InterruptedException {
+        if ((mode == SessionManager.Mode.VIRTUAL) && !SessionManager.isVirtualAvailable()) {
+            System.out.println(mode + ": not measured; this JVM (Java " +
+                                       System.getProperty("java.specification.version") +
+                                       ") has no virtual threads, so the virtual thread path" +
+                                       " was not run (it needs Java 21 or later)");
+            return;
+        }
+
+        final ThreadMXBean thrThreads = ManagementFactory.getThreadMXBean();
+        final Runtime rtRuntime = Runtime.getRuntime();
+        System.gc();
+        final long lHeapBefore = rtRuntime.totalMemory() - rtRuntime.freeMemory();
+
+        final SessionManager manager = new SessionManager(mode,
+                                                          fTicksPerSecond,
+                                                          BoardPanel.iCOL_COUNT,
+                                                          BoardPanel.iROW_COUNT);
+        final long lStart = System.nanoTime();
+        try {
+            for (int iSession = 0; iSession < iSessions; iSession++) {
+                manager.start();
+                if ((System.nanoTime() - lStart) > lSTART_TIMEOUT) {
+                    System.out.printf("%s: gave up after starting %d sessions in %.0fs%n",
+                                      mode,
+                                      manager.getSessionCount(),
+                                      (System.nanoTime() - lStart) / 1.0e9);
+                    manager.stopAll();
+                    return;
+                }
+            }
+        }
+        catch (final OutOfMemoryError e) {
+            /*
+             * Platform threads can run out of native memory long before the
+             * heap does.
+             */
+            System.out.println(mode + ": failed after " + manager.getSessionCount() +
+                                       " sessions: " + e.getMessage());
+            manager.stopAll();
+            return;
+        }
+        final double dStartSeconds = (System.nanoTime() - lStart) / 1.0e9;
+
+        /*
+         * Only measure once every session is up, and leave out the first
+         * ticks, which all land at once.
+         */
+        Thread.sleep(1000L);
+        manager.getLateness().reset();
+        final long lTicksBefore = manager.getTickCount();
+        final long lMeasureStart = System.nanoTime();
+        Thread.sleep(iSeconds * 1000L);
+        final double dSeconds = (System.nanoTime() - lMeasureStart) / 1.0e9;
+        final long lTicks = manager.getTickCount() - lTicksBefore;
+        final int iThreads = thrThreads.getThreadCount();
+        final long lHeapAfter = rtRuntime.totalMemory() - rtRuntime.freeMemory();
+        final LatencyHistogram hisLateness = manager.getLateness();
+        final String sSample = manager.describe(0);
+        manager.stopAll();
+
+        System.out.printf("%s: sessions=%d start=%.2fs ticks/s=%.0f (target %.0f) " +
+                                  "lateness p50=%.2fms p99=%.2fms max=%.2fms " +
+                                  "platformThreads=%d heap=%.1fMB%n",
+                          mode,
+                          iSessions,
+                          dStartSeconds,
+                          lTicks / dSeconds,
+                          iSessions * (double) fTicksPerSecond,
+                          hisLateness.getP50Micros() / 1000.0,
+                          hisLateness.getP99Micros() / 1000.0,
+                          hisLateness.getMaxMicros() / 1000.0,
+                          iThreads,
+                          (lHeapAfter - lHeapBefore) / dBYTES_PER_MB);
+        System.out.println("  " + sSample);
+
+        /*
+         * Give the stopped threads a moment to wind down before the next
+         * mode is measured.
+         */
+        Thread.sleep(1000L);
+    }
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args The number of sessions, the length of each run in seconds
+     *             and the number of ticks per second, all optional.
+     * @throws InterruptedException If the benchmark was interrupted.
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final int iSessions = (args.length > 0) ? Integer.parseInt(args[0]) : iDEFAULT_SESSIONS;
+        final int iSeconds = (args.length > 1) ? Integer.parseInt(args[1]) : iDEFAULT_SECONDS;
+        final float fTicksPerSecond = (args.length > 2) ?
+                Float.parseFloat(args[2]) : SnakeGame.CYCLES_PER_SECOND;
+
+        run(SessionManager.Mode.POOLED, iSessions, iSeconds, fTicksPerSecond);
+        run(SessionManager.Mode.PLATFORM, iSessions, iSeconds, fTicksPerSecond);
+        run(SessionManager.Mode.VIRTUAL, iSessions, iSeconds, fTicksPerSecond);
+    }
+}
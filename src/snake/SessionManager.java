@@ -0,0 +1,497 @@
+package snake;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code SessionManager} class hosts game sessions that each run their
+ * own game loop, in the style of {@link SnakeGame#startGame}: tick, then
+ * sleep until the next tick is due. It can start, stop and inspect sessions
+ * while they run.
+ * <p>
+ * How the loops are run depends on the {@link Mode}. With
+ * {@link Mode#VIRTUAL} each loop gets its own virtual thread and the JDK
+ * parks it during its sleeps, so sessions should only need a handful of
+ * carrier threads. Virtual threads need Java 21, while the game is built for
+ * Java 8, so they are looked up reflectively; see
+ * {@link #isVirtualAvailable()}. This mode has not been run on the Java 17
+ * JDK the game is developed on. {@link Mode#PLATFORM} runs the same loop on
+ * one platform thread per session, and {@link Mode#POOLED} replaces the loop
+ * with a task scheduled on a pool of platform threads, one per core, for
+ * comparison.
+ * <p>
+ * Sessions have no client attached; each is steered by a
+ * {@link GreedyController} and starts a new game as soon as it ends, unless
+ * input is fed to it through {@link #sendInput(int, byte)}.
+ *
+ * @see SessionBenchmark
+ */
+public class SessionManager {
+
+    /**
+     * The ways a session's loop can be run.
+     */
+    public enum Mode {
+
+        /**
+         * A virtual thread per session.
+         */
+        VIRTUAL,
+
+        /**
+         * A platform thread per session.
+         */
+        PLATFORM,
+
+        /**
+         * A scheduled task per session, on a pool of platform threads.
+         */
+        POOLED
+    }
+
+    /**
+     * The stack size of the platform threads that run a session each. The
+     * loop barely uses the stack, and the default would reserve a megabyte
+     * per session.
+     */
+    private static final long lPLATFORM_STACK_SIZE = 256L * 1024L;
+
+    /**
+     * The factory for virtual threads, or null if this JVM doesn't have
+     * them.
+     */
+    private static final ThreadFactory tfVIRTUAL = createVirtualFactory();
+
+    /**
+     * How the sessions' loops are run.
+     */
+    private final Mode mode;
+
+    /**
+     * The number of nanoseconds between ticks of each session.
+     */
+    private final long lTickNanos;
+
+    /**
+     * The number of columns on each board.
+     */
+    private final int iCols;
+
+    /**
+     * The number of rows on each board.
+     */
+    private final int iRows;
+
+    /**
+     * The running sessions, by identifier.
+     */
+    private final Map<Integer, Host> mapHosts;
+
+    /**
+     * The identifier given to the next session.
+     */
+    private final AtomicInteger aiNextId;
+
+    /**
+     * The factory for the threads of {@link Mode#VIRTUAL} and
+     * {@link Mode#PLATFORM}.
+     */
+    private final ThreadFactory tfThreads;
+
+    /**
+     * The pool of {@link Mode#POOLED}, or null in the other modes.
+     */
+    private final ScheduledThreadPoolExecutor stpPool;
+
+    /**
+     * How late each tick ran compared to when it was due.
+     */
+    private final LatencyHistogram hisLateness;
+
+    /**
+     * The number of ticks run by every session together.
+     */
+    private final LongAdder ladTicks;
+
+    /**
+     * The log the sessions record their finished games in, or null.
+     */
+    private volatile StatsLog slgStats;
+
+    /**
+     * Creates a new manager with no sessions.
+     *
+     * @param mode            How the sessions' loops are run.
+     * @param fTicksPerSecond The number of ticks per second of every game.
+     * @param iCols           The number of columns on each board.
+     * @param iRows           The number of rows on each board.
+     * @throws IllegalStateException If virtual threads were asked for but
+     *                               are not available.
+     */
+    public SessionManager(final Mode mode,
+                          final float fTicksPerSecond,
+                          final int iCols,
+                          final int iRows) {
+        if ((mode == Mode.VIRTUAL) && !isVirtualAvailable()) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later");
+        }
+        this.mode = mode;
+        this.lTickNanos = (long) ((1000L * SnakeGame.MILLION) / fTicksPerSecond);
+        this.iCols = iCols;
+        this.iRows = iRows;
+        this.mapHosts = new ConcurrentHashMap<>();
+        this.aiNextId = new AtomicInteger();
+        this.hisLateness = new LatencyHistogram(mode.name().toLowerCase() + "Lateness");
+        this.ladTicks = new LongAdder();
+
+        switch (mode) {
+            case VIRTUAL:
+                tfThreads = tfVIRTUAL;
+                stpPool = null;
+                break;
+
+            case PLATFORM:
+                tfThreads = new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runTask) {
+                        final Thread thrThread = new Thread(null, runTask, "session",
+                                                            lPLATFORM_STACK_SIZE);
+                        thrThread.setDaemon(true);
+                        return thrThread;
+                    }
+                };
+                stpPool = null;
+                break;
+
+            default:
+                tfThreads = null;
+                stpPool = new ScheduledThreadPoolExecutor(
+                        Runtime.getRuntime().availableProcessors());
+                stpPool.setRemoveOnCancelPolicy(true);
+                break;
+        }
+    }
+
+    /**
+     * Checks whether this JVM can run sessions on virtual threads.
+     *
+     * @return Whether or not {@link Mode#VIRTUAL} is available.
+     */
+    public static boolean isVirtualAvailable() {
+        return tfVIRTUAL != null;
+    }
+
+    /**
+     * Looks up {@code Thread.ofVirtual().factory()} reflectively.
+     *
+     * @return The factory, or null if virtual threads are not available.
+     */
+    private static ThreadFactory createVirtualFactory() {
+        try {
+            final Object objBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Method metFactory = Class.forName("java.lang.Thread$Builder")
+                                           .getMethod("factory");
+            return (ThreadFactory) metFactory.invoke(objBuilder);
+        }
+        catch (final ReflectiveOperationException e) {
+            return null;
+        }
+        catch (final RuntimeException e) {
+            /*
+             * Preview builds may refuse to hand out virtual threads.
+             */
+            return null;
+        }
+    }
+
+    /**
+     * Sets the log the sessions record their finished games in. Only
+     * sessions started afterwards use it.
+     *
+     * @param slgStats The log, or null to stop recording.
+     */
+    public void setStatsLog(final StatsLog slgStats) {
+        this.slgStats = slgStats;
+    }
+
+    /**
+     * Starts a new session.
+     *
+     * @return The identifier of the session.
+     */
+    public int start() {
+        final int iId = aiNextId.getAndIncrement();
+        final GameSession session = new GameSession(iId, iCols, iRows, System.nanoTime() ^ iId);
+        session.setStatsLog(slgStats);
+        final Host host = new Host(session);
+
+        /*
+         * The host is only published once it holds its task or thread, so
+         * that a concurrent stop always finds something to cancel.
+         */
+        if (stpPool != null) {
+            host.futTask = stpPool.scheduleAtFixedRate(host, 0L, lTickNanos,
+                                                       TimeUnit.NANOSECONDS);
+            mapHosts.put(iId, host);
+        }
+        else {
+            host.thrThread = tfThreads.newThread(host);
+            mapHosts.put(iId, host);
+            host.thrThread.start();
+        }
+        return iId;
+    }
+
+    /**
+     * Stops a session. Its loop finishes the tick it's in, if any.
+     *
+     * @param iId The identifier of the session.
+     * @return Whether or not the session was running.
+     */
+    public boolean stop(final int iId) {
+        final Host host = mapHosts.remove(iId);
+        if (host == null) {
+            return false;
+        }
+        host.bRunning = false;
+        if (host.futTask != null) {
+            host.futTask.cancel(false);
+        }
+        else {
+            host.thrThread.interrupt();
+        }
+        return true;
+    }
+
+    /**
+     * Stops every session, waits (briefly) for their loops to end, and
+     * writes out the games left in the stats log.
+     */
+    public void stopAll() {
+        for (final Integer iId : mapHosts.keySet()) {
+            stop(iId);
+        }
+        if (stpPool != null) {
+            stpPool.shutdown();
+            try {
+                stpPool.awaitTermination(1L, TimeUnit.SECONDS);
+            }
+            catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final StatsLog slgLog = slgStats;
+        if (slgLog != null) {
+            try {
+                slgLog.flush();
+            }
+            catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Feeds a byte of input to a session, as a client would.
+     *
+     * @param iId    The identifier of the session.
+     * @param bInput The byte, as defined by {@link ServerProtocol}.
+     * @return Whether or not the session exists.
+     */
+    public boolean sendInput(final int iId, final byte bInput) {
+        final Host host = mapHosts.get(iId);
+        if (host == null) {
+            return false;
+        }
+        synchronized (host.sesSession) {
+            host.bManual = true;
+            host.sesSession.handleInput(bInput);
+        }
+        return true;
+    }
+
+    /**
+     * Describes a session: its tick count, score, length and whether its
+     * game is over.
+     *
+     * @param iId The identifier of the session.
+     * @return The description, or null if the session doesn't exist.
+     */
+    public String describe(final int iId) {
+        final Host host = mapHosts.get(iId);
+        if (host == null) {
+            return null;
+        }
+        synchronized (host.sesSession) {
+            final SnakeEngine engine = host.sesSession.getEngine();
+            return String.format("session=%d ticks=%d score=%d length=%d gameOver=%b",
+                                 iId,
+                                 host.sesSession.getTicks(),
+                                 engine.getScore(),
+                                 engine.getLength(),
+                                 engine.isGameOver());
+        }
+    }
+
+    /**
+     * Gets the number of running sessions.
+     *
+     * @return The number of sessions.
+     */
+    public int getSessionCount() {
+        return mapHosts.size();
+    }
+
+    /**
+     * Gets the number of ticks run by every session together.
+     *
+     * @return The number of ticks.
+     */
+    public long getTickCount() {
+        return ladTicks.sum();
+    }
+
+    /**
+     * Gets how late the ticks ran compared to when they were due.
+     *
+     * @return The lateness histogram.
+     */
+    public LatencyHistogram getLateness() {
+        return hisLateness;
+    }
+
+    /**
+     * Gets how the sessions' loops are run.
+     *
+     * @return The mode.
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * The {@code Host} class runs the loop of one session.
+     */
+    private final class Host implements Runnable {
+
+        /**
+         * The session.
+         */
+        private final GameSession sesSession;
+
+        /**
+         * The bot that steers the session until it gets input.
+         */
+        private final GreedyController ctlBot;
+
+        /**
+         * The thread running the loop, in the thread modes.
+         */
+        private Thread thrThread;
+
+        /**
+         * The scheduled task, in {@link Mode#POOLED}.
+         */
+        private ScheduledFuture<?> futTask;
+
+        /**
+         * When the next tick is due, in {@link Mode#POOLED}.
+         */
+        private long lNextTick;
+
+        /**
+         * Whether or not the session should keep running.
+         */
+        private volatile boolean bRunning;
+
+        /**
+         * Whether or not the session has been given input, which takes the
+         * bot off it.
+         */
+        private boolean bManual;
+
+        /**
+         * Creates a new host.
+         *
+         * @param sesSession The session.
+         */
+        private Host(final GameSession sesSession) {
+            this.sesSession = sesSession;
+            this.ctlBot = new GreedyController();
+            this.bRunning = true;
+        }
+
+        @Override
+        public void run() {
+            if (stpPool != null) {
+                /*
+                 * Scheduled: the pool calls us once per tick.
+                 */
+                final long lNow = System.nanoTime();
+                if (lNextTick == 0) {
+                    lNextTick = lNow;
+                }
+                hisLateness.record(lNow - lNextTick);
+                lNextTick += lTickNanos;
+                tick();
+                return;
+            }
+
+            /*
+             * Threaded: the game loop. Sleeping parks a virtual thread and
+             * frees its carrier for other sessions.
+             */
+            long lNextDue = System.nanoTime();
+            while (bRunning) {
+                final long lNow = System.nanoTime();
+                hisLateness.record(lNow - lNextDue);
+                tick();
+
+                /*
+                 * A session that has fallen more than a tick behind skips the
+                 * ticks it missed and starts over from now, rather than
+                 * catching up on them in a burst.
+                 */
+                lNextDue += lTickNanos;
+                final long lAfter = System.nanoTime();
+                if ((lAfter - lNextDue) > lTickNanos) {
+                    lNextDue = lAfter + lTickNanos;
+                }
+                final long lSleep = lNextDue - lAfter;
+                if (lSleep > 0) {
+                    try {
+                        Thread.sleep(lSleep / SnakeGame.MILLION, (int) (lSleep % SnakeGame.MILLION));
+                    }
+                    catch (final InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs one tick of the session.
+         */
+        private void tick() {
+            synchronized (sesSession) {
+                final SnakeEngine engine = sesSession.getEngine();
+                if (!bManual) {
+                    if (engine.isGameOver()) {
+                        engine.reset();
+                    }
+                    ctlBot.control(engine, 0);
+                }
+                sesSession.tick();
+            }
+            ladTicks.increment();
+        }
+    }
+}
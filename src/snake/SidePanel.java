@@ -45,16 +45,17 @@ public class SidePanel extends JPanel {
     public SidePanel(SnakeGame snkGame) {
         this.snkGame = snkGame;
 
-        setPreferredSize(new Dimension(300,
-                                       BoardPanel.iROW_COUNT * BoardPanel.iTILE_SIZE));
+        setPreferredSize(new Dimension(300, Math.max(
+                BoardPanel.iROW_COUNT * BoardPanel.iTILE_SIZE,
+                snkGame.getBoard().getPreferredSize().height)));
         setBackground(Color.DARK_GRAY.darker().darker());
     }
 
     private static final int STATISTICS_OFFSET = 104;
 
-    private static final int CONTROLS_OFFSET = 248;
+    private static final int CONTROLS_OFFSET = 220;
 
-    private static final int MESSAGE_STRIDE = 30;
+    private static final int MESSAGE_STRIDE = 26;
 
     private static final int SMALL_OFFSET = 25;
 
@@ -116,23 +117,50 @@ public class SidePanel extends JPanel {
         }
         g.drawString("" + snkGame.getNextFruitScore(), LARGE_OFFSET + 75, drawY);
         g.setColor(Color.WHITE);
+        final SnakeEngine engine = snkGame.getEngine();
+        if (engine.getSnakeCount() > 1) {
+            g.drawString("Snakes Alive: " + engine.getAliveCount() + " / " +
+                                 engine.getSnakeCount(),
+                         LARGE_OFFSET,
+                         drawY += MESSAGE_STRIDE);
+        }
         //Draw the content for the controls category.
         drawY = CONTROLS_OFFSET;
-        g.drawString("Move Up: W / Up Arrowkey",
-                     LARGE_OFFSET,
-                     drawY += MESSAGE_STRIDE);
-        g.drawString("Move Down: S / Down Arrowkey",
-                     LARGE_OFFSET,
-                     drawY += MESSAGE_STRIDE);
-        g.drawString("Move Left: A / Left Arrowkey",
+        if (snkGame.getHumanCount() > 1) {
+            /*
+             * Players sharing the keyboard each have their own keys, in the
+             * order up, left, down and right.
+             */
+            for (int iPlayer = 0; iPlayer < snkGame.getHumanCount(); iPlayer++) {
+                g.drawString("Player " + (iPlayer + 1) + ": " +
+                                     KeyboardController.getKeyNames(iPlayer),
+                             LARGE_OFFSET,
+                             drawY += MESSAGE_STRIDE);
+            }
+        }
+        else {
+            g.drawString("Move Up: W / Up Arrowkey",
+                         LARGE_OFFSET,
+                         drawY += MESSAGE_STRIDE);
+            g.drawString("Move Down: S / Down Arrowkey",
+                         LARGE_OFFSET,
+                         drawY += MESSAGE_STRIDE);
+            g.drawString("Move Left: A / Left Arrowkey",
+                         LARGE_OFFSET,
+                         drawY += MESSAGE_STRIDE);
+            g.drawString("Move Right: D / Right Arrowkey",
+                         LARGE_OFFSET,
+                         drawY += MESSAGE_STRIDE);
+        }
+        g.drawString("Pause Game: P", LARGE_OFFSET, drawY += MESSAGE_STRIDE);
+        g.drawString("Save / Load Game: G / C", LARGE_OFFSET, drawY += MESSAGE_STRIDE);
+        g.drawString("Turbo Mode: T" + (snkGame.isTurbo() ? " (On)" : ""),
                      LARGE_OFFSET,
                      drawY += MESSAGE_STRIDE);
-        g.drawString("Move Right: D / Right Arrowkey",
+        g.drawString("Autopilot: O" + (snkGame.isAutopilot() ? " (On)" : ""),
                      LARGE_OFFSET,
                      drawY += MESSAGE_STRIDE);
-        g.drawString("Pause Game: P", LARGE_OFFSET, drawY += MESSAGE_STRIDE);
-        g.drawString("Save Game: G", LARGE_OFFSET, drawY += MESSAGE_STRIDE);
-        g.drawString("Load Game: C", LARGE_OFFSET, drawY + MESSAGE_STRIDE);
+        g.drawString("Performance Overlay: F3", LARGE_OFFSET, drawY + MESSAGE_STRIDE);
     }
 
     void drawWithShadow(Graphics g, int iX, int iY, String sMessage) {
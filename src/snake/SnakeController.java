@@ -0,0 +1,17 @@
+package snake;
+
+/**
+ * The {@code SnakeController} interface is implemented by everything that
+ * steers a snake: players at the keyboard as well as bots. The game asks
+ * every controller to steer its snake right before each tick.
+ */
+public interface SnakeController {
+
+    /**
+     * Queues the next direction(s) for a snake, if any.
+     *
+     * @param engine The engine the snake lives in.
+     * @param iSnake The index of the snake in the engine.
+     */
+    void control(SnakeEngine engine, int iSnake);
+}
@@ -0,0 +1,1292 @@
+package snake;
+
+import java.awt.*;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The {@code SnakeEngine} class holds the rules of the game and the state of
+ * a single game, without any of the windowing. {@link SnakeGame} drives one
+ * from its game loop, but it can just as well be ticked headless.
+ * <p>
+ * A game can have any number of snakes sharing the board. Every tick moves
+ * all of them at once: tails are retracted first, then heads that claim the
+ * same tile are resolved through a stamped claim grid, and finally each
+ * snake moves into its tile in order. This costs O(snakes) per tick
+ * regardless of the size of the board, and the outcome doesn't depend on
+ * the order of the snakes for anything but fruit spawns.
+ * <p>
+ * Each snake is kept as a ring buffer of tile indices and its queued
+ * directions as a small ring of constants, so that a tick never allocates.
+ * The methods without a snake index act on the first snake, which is the
+ * only one in a single player game.
+ */
+public class SnakeEngine {
+
+    /**
+     * The minimum length of the snake. This allows the snake to grow
+     * right when the game starts, so that we're not just a head moving
+     * around on the board.
+     */
+    public static final int iMIN_SNAKE_LENGTH = 5;
+
+    /**
+     * The maximum number of directions that we can have polled in the
+     * direction list.
+     */
+    public static final int iMAX_DIRECTIONS = 3;
+
+    /**
+     * The number of points a freshly spawned fruit is worth.
+     */
+    public static final int iMAX_FRUIT_SCORE = 100;
+
+    /**
+     * The number of points a fruit will never drop below.
+     */
+    public static final int iMIN_FRUIT_SCORE = 10;
+
+    /**
+     * The largest value a fruit can be given.
+     */
+    public static final int iMAX_FRUIT_VALUE = 4;
+
+    /**
+     * The number of fruits (and bad fruits) placed per snake when a game
+     * starts.
+     */
+    public static final int iINITIAL_FRUITS = 3;
+
+    /**
+     * The number of directions the direction ring can hold. This leaves
+     * room for a direction pushed to the front of a full queue.
+     */
+    private static final int iDIRECTION_CAPACITY = 8;
+
+    /**
+     * The board the game is played on.
+     */
+    private final GameBoard brdBoard;
+
+    /**
+     * The random number generator (used for spawning fruits).
+     */
+    private final Random rRandom;
+
+    /**
+     * The snakes on the board.
+     */
+    private final Snake[] snkSnakes;
+
+    /**
+     * The tick in which each tile was last claimed by a moving head. Only
+     * used when there is more than one snake.
+     */
+    private final int[] iaClaimTick;
+
+    /**
+     * The snake that last claimed each tile.
+     */
+    private final int[] iaClaimOwner;
+
+    /**
+     * The number of ticks played, used to stamp claims.
+     */
+    private int iTick;
+
+    /**
+     * The number of ticks played since the game started.
+     */
+    private int iGameTicks;
+
+    /**
+     * The value of the most recently spawned fruit.
+     */
+    private int iFruitValue;
+
+    /**
+     * Whether or not the next spawn places the initial set of fruits.
+     */
+    private boolean bInit;
+
+    /**
+     * Whether or not the game is over.
+     */
+    private boolean bGameOver;
+
+    /**
+     * Whether or not spawns are recorded in {@link Metrics} and the flight
+     * recorder.
+     */
+    private boolean bInstrumented;
+
+    /**
+     * Whether or not a new game places bad fruits on the board.
+     */
+    private boolean bBadFruits;
+
+    /**
+     * Creates a new single player engine with an empty board. Call
+     * {@link #reset()} to start a game.
+     *
+     * @param iCols   The number of columns on the board.
+     * @param iRows   The number of rows on the board.
+     * @param rRandom The random number generator used for spawning fruits.
+     */
+    public SnakeEngine(final int iCols, final int iRows, final Random rRandom) {
+        this(iCols, iRows, 1, rRandom);
+    }
+
+    /**
+     * Creates a new engine with an empty board. Call {@link #reset()} to
+     * start a game.
+     *
+     * @param iCols   The number of columns on the board.
+     * @param iRows   The number of rows on the board.
+     * @param iSnakes The number of snakes on the board.
+     * @param rRandom The random number generator used for spawning fruits.
+     */
+    public SnakeEngine(final int iCols,
+                       final int iRows,
+                       final int iSnakes,
+                       final Random rRandom) {
+        this.brdBoard = new GameBoard(iCols, iRows);
+        this.rRandom = rRandom;
+        this.snkSnakes = new Snake[iSnakes];
+        for (int iSnake = 0; iSnake < iSnakes; iSnake++) {
+            snkSnakes[iSnake] = new Snake(brdBoard.getCellCount() + (iMAX_FRUIT_VALUE * 4));
+        }
+        if (iSnakes > 1) {
+            iaClaimTick = new int[brdBoard.getCellCount()];
+            iaClaimOwner = new int[brdBoard.getCellCount()];
+        }
+        else {
+            iaClaimTick = null;
+            iaClaimOwner = null;
+        }
+        this.bInit = true;
+        this.bBadFruits = true;
+    }
+
+    /**
+     * Resets the game's variables to their default states and starts a new
+     * game.
+     */
+    public void reset() {
+        bGameOver = false;
+        iGameTicks = 0;
+        bInit = true;
+        brdBoard.clear();
+
+        /*
+         * Spread the snakes over the board in a grid. A single snake starts
+         * at the center of the board, heading north.
+         */
+        final int iGridCols = (int) Math.ceil(Math.sqrt(snkSnakes.length));
+        final int iGridRows = (snkSnakes.length + iGridCols - 1) / iGridCols;
+        for (int iSnake = 0; iSnake < snkSnakes.length; iSnake++) {
+            final int x = (((2 * (iSnake % iGridCols)) + 1) * brdBoard.getColumns())
+                    / (2 * iGridCols);
+            final int y = (((2 * (iSnake / iGridCols)) + 1) * brdBoard.getRows())
+                    / (2 * iGridRows);
+            final int iHead = brdBoard.indexOf(x, y);
+            snkSnakes[iSnake].reset(iHead);
+            brdBoard.setCell(iHead, GameBoard.SNAKE_HEAD);
+        }
+
+        spawnFruit(snkSnakes[0]);
+        if (bBadFruits) {
+            spawnBadFruits();
+        }
+    }
+
+    /**
+     * Updates the game's logic by one cycle, moving every snake that is
+     * still alive.
+     *
+     * @return The tile that the head of the first snake collided with, or
+     * null if it moved onto an empty tile (or the game is already over).
+     */
+    public TileType tick() {
+        if (bGameOver) {
+            return null;
+        }
+        iTick++;
+        iGameTicks++;
+
+        /*
+         * Work out where every head is going. If a snake has moved out of
+         * bounds ('hit' a wall), we can just say that it's collided with
+         * itself, as both cases are handled identically.
+         */
+        for (final Snake snake : snkSnakes) {
+            snake.bCollision = GameBoard.EMPTY;
+            if (snake.bAlive) {
+                snake.iTarget = getNextCell(snake.getHeadCell(), snake.getDirection());
+                if (snake.iTarget < 0) {
+                    snake.bCollision = GameBoard.SNAKE_BODY;
+                }
+            }
+        }
+
+        /*
+         * Here we remove the tail from of each snake and the board if the
+         * snake is long enough, and the tile it's moving onto is not a fruit.
+         * All of the tails go before any head moves, so a snake can always
+         * follow a tail (its own or another's) that is moving out of the way.
+         */
+        for (final Snake snake : snkSnakes) {
+            if (snake.bAlive && (snake.bCollision == GameBoard.EMPTY) &&
+                    (brdBoard.getCell(snake.iTarget) != GameBoard.FRUIT) &&
+                    (snake.iLength > iMIN_SNAKE_LENGTH)) {
+                brdBoard.setCell(snake.removeTail(), GameBoard.EMPTY);
+            }
+        }
+
+        /*
+         * Heads that move into the same tile collide with each other. Each
+         * moving head stamps its tile with the current tick, so a second
+         * stamp on the same tile means a head-on collision for both.
+         */
+        if (iaClaimTick != null) {
+            for (int iSnake = 0; iSnake < snkSnakes.length; iSnake++) {
+                final Snake snake = snkSnakes[iSnake];
+                if (snake.bAlive && (snake.bCollision == GameBoard.EMPTY)) {
+                    if (iaClaimTick[snake.iTarget] == iTick) {
+                        snake.bCollision = GameBoard.SNAKE_HEAD;
+                        snkSnakes[iaClaimOwner[snake.iTarget]].bCollision = GameBoard.SNAKE_HEAD;
+                    }
+                    else {
+                        iaClaimTick[snake.iTarget] = iTick;
+                        iaClaimOwner[snake.iTarget] = iSnake;
+                    }
+                }
+            }
+        }
+
+        /*
+         * Then move every snake that is still free to, and handle what it
+         * ran into. The snakes that died are only cleared off the board
+         * afterwards, so that whether a head ran into them doesn't depend on
+         * which of the two moved first.
+         */
+        for (final Snake snake : snkSnakes) {
+            if (snake.bAlive && (snake.bCollision == GameBoard.EMPTY)) {
+                updateSnake(snake);
+            }
+        }
+        boolean bAnyAlive = false;
+        for (final Snake snake : snkSnakes) {
+            if (snake.bAlive) {
+                if ((snake.bCollision == GameBoard.SNAKE_BODY) ||
+                        (snake.bCollision == GameBoard.SNAKE_HEAD) ||
+                        (snake.bCollision == GameBoard.BAD_FRUIT)) {
+                    kill(snake);
+                }
+                bAnyAlive |= snake.bAlive;
+            }
+        }
+        bGameOver = !bAnyAlive;
+        return GameBoard.decode(snkSnakes[0].bCollision);
+    }
+
+    /**
+     * Moves a snake into the tile it's heading for and handles the
+     * collision.
+     *
+     * @param snake The snake, whose tail has already been retracted.
+     */
+    private void updateSnake(final Snake snake) {
+        /*
+         * Update the snake's position on the board if we didn't collide with
+         * a body (or a head that is staying where it is):
+         *
+         * 1. Set the old head position to a body tile.
+         * 2. Add the new head to the snake.
+         * 3. Set the new head position to a head tile.
+         *
+         * If more than one direction is in the queue, poll it to read new
+         * input.
+         */
+        final byte bOld = brdBoard.getCell(snake.iTarget);
+        if ((bOld == GameBoard.SNAKE_BODY) || (bOld == GameBoard.SNAKE_HEAD)) {
+            snake.bCollision = GameBoard.SNAKE_BODY;
+            return;
+        }
+        brdBoard.setCell(snake.getHeadCell(), GameBoard.SNAKE_BODY);
+        snake.pushHead(snake.iTarget);
+        brdBoard.setCell(snake.iTarget, GameBoard.SNAKE_HEAD);
+        if (snake.iDirectionCount > 1) {
+            snake.pollDirection();
+        }
+        snake.bCollision = bOld;
+
+        /*
+         * Fruit: If we collided with a fruit, we increment the number of
+         * fruits that we've eaten, update the score, and spawn a new fruit.
+         *
+         * If no collision occurred, we simply decrement the number of points
+         * that the next fruit will give us if it's high enough. This adds a
+         * bit of skill to the game as collecting fruits more quickly will
+         * yield a higher score.
+         */
+        if (bOld == GameBoard.FRUIT) {
+            snake.iFruitsEaten++;
+            snake.iScore += snake.nextFruitScore * iFruitValue;
+            snake.iFactor = iFruitValue;
+            spawnFruit(snake);
+        }
+        else if ((bOld == GameBoard.EMPTY) && (snake.nextFruitScore > iMIN_FRUIT_SCORE)) {
+            snake.nextFruitScore--;
+        }
+    }
+
+    /**
+     * Marks a snake as dead. In a game with several snakes its body is
+     * cleared off the board so that the others can use the space; a single
+     * snake stays where it is for the game over screen.
+     *
+     * @param snake The snake.
+     */
+    private void kill(final Snake snake) {
+        snake.bAlive = false;
+        snake.bKiller = snake.bCollision;
+        snake.bWall = snake.iTarget < 0;
+        snake.iSurvived = iGameTicks;
+        if (snkSnakes.length > 1) {
+            for (int iPiece = 0; iPiece < snake.iLength; iPiece++) {
+                final int iCell = snake.getBodyCell(iPiece);
+                final byte bCode = brdBoard.getCell(iCell);
+                if ((bCode == GameBoard.SNAKE_BODY) || (bCode == GameBoard.SNAKE_HEAD)) {
+                    brdBoard.setCell(iCell, GameBoard.EMPTY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the tile a head moves into.
+     *
+     * @param iHead     The tile index of the head.
+     * @param direction The direction the head moves in.
+     * @return The tile index, or -1 if the head would leave the board.
+     */
+    public int getNextCell(final int iHead, final Direction direction) {
+        return brdBoard.getNeighbour(iHead, direction);
+    }
+
+    /**
+     * Spawns new fruits onto the board.
+     *
+     * @param snake The snake that ate the fruit being replaced.
+     */
+    private void spawnFruit(final Snake snake) {
+        final long lStart = bInstrumented ? System.nanoTime() : 0L;
+        final GameEvents.Spawn evtSpawn = (bInstrumented && GameEvents.SPAWN.isEnabled()) ?
+                new GameEvents.Spawn() : null;
+        if (evtSpawn != null) {
+            evtSpawn.begin();
+        }
+        final boolean bMultiple = bInit;
+
+        /*
+         * While we could just as easily choose a random index on the board
+         * and check it if it's free until we find an empty one, that method
+         * tends to hang if the snake becomes very large.
+         *
+         * This method simply loops through until it finds the nth free index
+         * and selects uses that. This means that the game will be able to
+         * locate an index at a relatively constant rate regardless of the
+         * size of the snake.
+         */
+        if (bInit) {
+            spawnMultipleFruits();
+        }
+        else {
+            spawnOneFruit(snake);
+        }
+
+        if (bInstrumented) {
+            Metrics.SPAWN_TIME.recordSince(lStart);
+            if ((evtSpawn != null) && evtSpawn.shouldCommit()) {
+                evtSpawn.snakeLength = snake.iLength;
+                evtSpawn.freeCells = brdBoard.countFree(GameBoard.FRUIT);
+                evtSpawn.fruits = bMultiple ? (iINITIAL_FRUITS * snkSnakes.length) : 1;
+                evtSpawn.commit();
+            }
+        }
+    }
+
+    /**
+     * Places the initial set of fruits.
+     */
+    private void spawnMultipleFruits() {
+        int iCounter = iINITIAL_FRUITS * snkSnakes.length;
+        int index = nextFreeIndex();
+
+        while (iCounter > 0) {
+            for (final Snake snake : snkSnakes) {
+                snake.nextFruitScore = iMAX_FRUIT_SCORE;
+            }
+            //Randomize the factor for each value
+            placeFruit(nextFruitValue(), index);
+            --iCounter;
+            index = nextFreeIndex();
+        }
+        bInit = false;
+    }
+
+    /**
+     * Places a single fruit and grows a snake by the factor of the fruit it
+     * just ate.
+     *
+     * @param snake The snake that ate the fruit.
+     */
+    private void spawnOneFruit(final Snake snake) {
+        //Randomize the value for one fruit
+        snake.nextFruitScore = iMAX_FRUIT_SCORE;
+        final int iValue = nextFruitValue();
+        placeFruit(iValue, nextFreeIndex());
+        for (int iC = 0; iC < snake.iFactor; ++iC) {
+            final int iHead = snake.getHeadCell();
+            brdBoard.setCell(iHead, GameBoard.SNAKE_BODY);
+            snake.pushHead(iHead);
+            brdBoard.setCell(iHead, GameBoard.SNAKE_HEAD);
+            if (snake.iDirectionCount > 1) {
+                snake.pollDirection();
+            }
+        }
+    }
+
+    /**
+     * Places a fruit on the nth free tile, if there is one.
+     *
+     * @param iValue The value of the fruit.
+     * @param index  Which free tile to place the fruit on.
+     */
+    private void placeFruit(final int iValue, final int index) {
+        final int iCell = brdBoard.findNthFree(index, GameBoard.FRUIT);
+        if (iCell >= 0) {
+            brdBoard.setCell(iCell, GameBoard.FRUIT);
+            iFruitValue = iValue;
+        }
+    }
+
+    /**
+     * Places the initial set of bad fruits.
+     */
+    private void spawnBadFruits() {
+        int iCounter = iINITIAL_FRUITS * snkSnakes.length;
+        int index = nextFreeIndex();
+
+        while (iCounter > 0) {
+            final int iCell = brdBoard.findNthFree(index, GameBoard.BAD_FRUIT);
+            if (iCell >= 0) {
+                brdBoard.setCell(iCell, GameBoard.BAD_FRUIT);
+            }
+            --iCounter;
+            index = nextFreeIndex();
+        }
+    }
+
+    /**
+     * Picks a random index among the tiles not taken by snakes.
+     *
+     * @return The index.
+     */
+    private int nextFreeIndex() {
+        int iTaken = 0;
+        for (final Snake snake : snkSnakes) {
+            iTaken += snake.iLength;
+        }
+        return rRandom.nextInt(Math.max(1, brdBoard.getCellCount() - iTaken));
+    }
+
+    /**
+     * Picks a random value for a fruit.
+     *
+     * @return The value, between 1 and {@code iMAX_FRUIT_VALUE}.
+     */
+    private int nextFruitValue() {
+        return rRandom.nextInt(iMAX_FRUIT_VALUE) + 1;
+    }
+
+    /**
+     * Queues a direction for the first snake to move in.
+     *
+     * @param direction The direction to move in.
+     * @return Whether or not the direction was queued.
+     * @see #queueDirection(int, Direction)
+     */
+    public boolean queueDirection(final Direction direction) {
+        return queueDirection(0, direction);
+    }
+
+    /**
+     * Queues a direction for a snake to move in, as long as the queue is
+     * not full and the most recent direction is adjacent to it.
+     *
+     * @param iSnake    The snake.
+     * @param direction The direction to move in.
+     * @return Whether or not the direction was queued.
+     */
+    public boolean queueDirection(final int iSnake, final Direction direction) {
+        final Snake snake = snkSnakes[iSnake];
+        if (snake.iDirectionCount < iMAX_DIRECTIONS) {
+            final Direction last = snake.getLastDirection();
+            if ((last != direction) && (last != direction.getOpposite())) {
+                snake.addLastDirection(direction);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Points a snake in a direction for its very next move, dropping
+     * whatever else was queued. A direction that would reverse the snake is
+     * ignored. This is meant for snakes that are steered this way only, once
+     * per tick, so that the front of the queue is always the direction the
+     * snake last moved in.
+     *
+     * @param iSnake    The snake.
+     * @param direction The direction to move in.
+     * @return Whether or not the snake was steered.
+     */
+    public boolean steer(final int iSnake, final Direction direction) {
+        final Snake snake = snkSnakes[iSnake];
+        final Direction current = snake.getDirection();
+        if ((current == null) || (direction == current.getOpposite())) {
+            return false;
+        }
+        for (int iDirection = 1; iDirection < snake.iDirectionCount; iDirection++) {
+            snake.daDirections[(snake.iFirstDirection + iDirection) % iDIRECTION_CAPACITY] = null;
+        }
+        snake.daDirections[snake.iFirstDirection] = direction;
+        snake.iDirectionCount = 1;
+        return true;
+    }
+
+    /**
+     * Pushes a direction to the front of the first snake's queue, so that it
+     * is the one the snake moves in next.
+     *
+     * @param direction The direction.
+     */
+    public void pushDirection(final Direction direction) {
+        snkSnakes[0].pushDirection(direction);
+    }
+
+    /**
+     * Gets the board the game is played on.
+     *
+     * @return The board.
+     */
+    public GameBoard getBoard() {
+        return brdBoard;
+    }
+
+    /**
+     * Gets the number of snakes on the board, dead or alive.
+     *
+     * @return The number of snakes.
+     */
+    public int getSnakeCount() {
+        return snkSnakes.length;
+    }
+
+    /**
+     * Gets the number of snakes that are still alive.
+     *
+     * @return The number of live snakes.
+     */
+    public int getAliveCount() {
+        int iAlive = 0;
+        for (final Snake snake : snkSnakes) {
+            if (snake.bAlive) {
+                iAlive++;
+            }
+        }
+        return iAlive;
+    }
+
+    /**
+     * Checks whether a snake is still alive.
+     *
+     * @param iSnake The snake.
+     * @return Whether or not the snake is alive.
+     */
+    public boolean isAlive(final int iSnake) {
+        return snkSnakes[iSnake].bAlive;
+    }
+
+    /**
+     * Gets the tile that a snake ran into on the last tick.
+     *
+     * @param iSnake The snake.
+     * @return The tile type, or null if it moved onto an empty tile or
+     * didn't move.
+     */
+    public TileType getCollision(final int iSnake) {
+        return GameBoard.decode(snkSnakes[iSnake].bCollision);
+    }
+
+    /**
+     * Gets what a dead snake ran into.
+     *
+     * @param iSnake The snake.
+     * @return The tile type, which is {@link TileType#SnakeBody} for a wall
+     * as well (see {@link #isKilledByWall(int)}), or null if the snake is
+     * alive or the game was ended before it ran into anything.
+     */
+    public TileType getKiller(final int iSnake) {
+        final Snake snake = snkSnakes[iSnake];
+        return snake.bAlive ? null : GameBoard.decode(snake.bKiller);
+    }
+
+    /**
+     * Checks whether a dead snake ran into a wall.
+     *
+     * @param iSnake The snake.
+     * @return Whether or not the snake died on a wall.
+     */
+    public boolean isKilledByWall(final int iSnake) {
+        final Snake snake = snkSnakes[iSnake];
+        return !snake.bAlive && snake.bWall;
+    }
+
+    /**
+     * Gets the number of ticks played since the game started.
+     *
+     * @return The number of ticks.
+     */
+    public int getTicks() {
+        return iGameTicks;
+    }
+
+    /**
+     * Gets the number of ticks a snake has survived.
+     *
+     * @param iSnake The snake.
+     * @return The tick the snake died in, or the number of ticks played if
+     * it's alive.
+     */
+    public int getSurvivalTicks(final int iSnake) {
+        final Snake snake = snkSnakes[iSnake];
+        return snake.bAlive ? iGameTicks : snake.iSurvived;
+    }
+
+    /**
+     * Gets the number of pieces in the first snake.
+     *
+     * @return The length of the snake.
+     */
+    public int getLength() {
+        return getLength(0);
+    }
+
+    /**
+     * Gets the number of pieces in a snake.
+     *
+     * @param iSnake The snake.
+     * @return The length of the snake.
+     */
+    public int getLength(final int iSnake) {
+        return snkSnakes[iSnake].iLength;
+    }
+
+    /**
+     * Gets the tile index of the head of the first snake.
+     *
+     * @return The tile index of the head.
+     */
+    public int getHeadCell() {
+        return getHeadCell(0);
+    }
+
+    /**
+     * Gets the tile index of the head of a snake.
+     *
+     * @param iSnake The snake.
+     * @return The tile index of the head.
+     */
+    public int getHeadCell(final int iSnake) {
+        return snkSnakes[iSnake].getHeadCell();
+    }
+
+    /**
+     * Gets the tile index of a piece of the first snake.
+     *
+     * @param iPiece The piece, counting from 0 at the head.
+     * @return The tile index of the piece.
+     */
+    public int getBodyCell(final int iPiece) {
+        return getBodyCell(0, iPiece);
+    }
+
+    /**
+     * Gets the tile index of a piece of a snake.
+     *
+     * @param iSnake The snake.
+     * @param iPiece The piece, counting from 0 at the head.
+     * @return The tile index of the piece.
+     */
+    public int getBodyCell(final int iSnake, final int iPiece) {
+        return snkSnakes[iSnake].getBodyCell(iPiece);
+    }
+
+    /**
+     * Gets the direction the first snake will move in next.
+     *
+     * @return The current direction, or null if none is queued.
+     */
+    public Direction getDirection() {
+        return getDirection(0);
+    }
+
+    /**
+     * Gets the direction a snake will move in next.
+     *
+     * @param iSnake The snake.
+     * @return The current direction, or null if none is queued.
+     */
+    public Direction getDirection(final int iSnake) {
+        return snkSnakes[iSnake].getDirection();
+    }
+
+    /**
+     * Gets the most recently queued direction of the first snake.
+     *
+     * @return The last direction, or null if none is queued.
+     */
+    public Direction getLastDirection() {
+        return getLastDirection(0);
+    }
+
+    /**
+     * Gets the most recently queued direction of a snake.
+     *
+     * @param iSnake The snake.
+     * @return The last direction, or null if none is queued.
+     */
+    public Direction getLastDirection(final int iSnake) {
+        return snkSnakes[iSnake].getLastDirection();
+    }
+
+    /**
+     * Gets the number of directions queued for the first snake.
+     *
+     * @return The number of directions.
+     */
+    public int getDirectionCount() {
+        return getDirectionCount(0);
+    }
+
+    /**
+     * Gets the number of directions queued for a snake.
+     *
+     * @param iSnake The snake.
+     * @return The number of directions.
+     */
+    public int getDirectionCount(final int iSnake) {
+        return snkSnakes[iSnake].iDirectionCount;
+    }
+
+    /**
+     * Copies the first snake into a list of points, head first, in the
+     * format that saved games use.
+     *
+     * @return The points of the snake.
+     */
+    public LinkedList<Point> getSnakePoints() {
+        final Snake snake = snkSnakes[0];
+        final LinkedList<Point> snakePoints = new LinkedList<>();
+        for (int iPiece = 0; iPiece < snake.iLength; iPiece++) {
+            final int iCell = snake.getBodyCell(iPiece);
+            snakePoints.add(new Point(iCell % brdBoard.getColumns(),
+                                      iCell / brdBoard.getColumns()));
+        }
+        return snakePoints;
+    }
+
+    /**
+     * Replaces the first snake with a list of points, head first, in the
+     * format that saved games use.
+     *
+     * @param snakePoints The points of the snake.
+     */
+    public void setSnakePoints(final List<Point> snakePoints) {
+        final Snake snake = snkSnakes[0];
+        snake.iLength = 0;
+        snake.iHeadSlot = 0;
+        for (final Point point : snakePoints) {
+            snake.addTail(brdBoard.indexOf(point.x, point.y));
+        }
+    }
+
+    /**
+     * Copies the first snake's queued directions into a list.
+     *
+     * @return The queued directions.
+     */
+    public LinkedList<Direction> getDirectionList() {
+        final Snake snake = snkSnakes[0];
+        final LinkedList<Direction> directions = new LinkedList<>();
+        for (int iDirection = 0; iDirection < snake.iDirectionCount; iDirection++) {
+            directions.add(snake.daDirections[(snake.iFirstDirection + iDirection)
+                    % iDIRECTION_CAPACITY]);
+        }
+        return directions;
+    }
+
+    /**
+     * Replaces the first snake's queued directions with a list.
+     *
+     * @param directions The directions to queue.
+     */
+    public void setDirectionList(final List<Direction> directions) {
+        final Snake snake = snkSnakes[0];
+        snake.iDirectionCount = 0;
+        for (final Direction direction : directions) {
+            snake.addLastDirection(direction);
+        }
+    }
+
+    /**
+     * Gets the current score of the first snake.
+     *
+     * @return The score.
+     */
+    public int getScore() {
+        return getScore(0);
+    }
+
+    /**
+     * Gets the current score of a snake.
+     *
+     * @param iSnake The snake.
+     * @return The score.
+     */
+    public int getScore(final int iSnake) {
+        return snkSnakes[iSnake].iScore;
+    }
+
+    public void setScore(final int iScore) {
+        snkSnakes[0].iScore = iScore;
+    }
+
+    /**
+     * Gets the number of fruits eaten by the first snake.
+     *
+     * @return The fruits eaten.
+     */
+    public int getFruitsEaten() {
+        return getFruitsEaten(0);
+    }
+
+    /**
+     * Gets the number of fruits eaten by a snake.
+     *
+     * @param iSnake The snake.
+     * @return The fruits eaten.
+     */
+    public int getFruitsEaten(final int iSnake) {
+        return snkSnakes[iSnake].iFruitsEaten;
+    }
+
+    public void setFruitsEaten(final int iFruitsEaten) {
+        snkSnakes[0].iFruitsEaten = iFruitsEaten;
+    }
+
+    /**
+     * Gets the number of points the next fruit will award the first snake.
+     *
+     * @return The next fruit score.
+     */
+    public int getNextFruitScore() {
+        return snkSnakes[0].nextFruitScore;
+    }
+
+    public void setNextFruitScore(final int nextFruitScore) {
+        snkSnakes[0].nextFruitScore = nextFruitScore;
+    }
+
+    public int getFactor() {
+        return snkSnakes[0].iFactor;
+    }
+
+    public void setFactor(final int iFactor) {
+        snkSnakes[0].iFactor = iFactor;
+    }
+
+    public boolean isInit() {
+        return bInit;
+    }
+
+    public void setInit(final boolean bInit) {
+        this.bInit = bInit;
+    }
+
+    /**
+     * Gets the flag that indicates whether or not the game is over, which
+     * is when no snake is left alive.
+     *
+     * @return The game over flag.
+     */
+    public boolean isGameOver() {
+        return bGameOver;
+    }
+
+    /**
+     * Ends the game (or brings a loaded game back to life). Every snake is
+     * marked as dead or alive accordingly.
+     *
+     * @param bGameOver Whether or not the game is over.
+     */
+    public void setGameOver(final boolean bGameOver) {
+        this.bGameOver = bGameOver;
+        if (!bGameOver && (snkSnakes.length == 1)) {
+            snkSnakes[0].bAlive = true;
+        }
+        else if (bGameOver) {
+            for (final Snake snake : snkSnakes) {
+                if (snake.bAlive) {
+                    snake.bAlive = false;
+                    snake.bKiller = GameBoard.EMPTY;
+                    snake.bWall = false;
+                    snake.iSurvived = iGameTicks;
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns recording of spawns into {@link Metrics} and the flight recorder
+     * on or off. Headless games that run many engines at once leave this
+     * off so that they don't contend on the shared histograms.
+     *
+     * @param bInstrumented Whether or not to record spawns.
+     */
+    public void setInstrumented(final boolean bInstrumented) {
+        this.bInstrumented = bInstrumented;
+    }
+
+    /**
+     * Copies the whole state of another engine into this one, so that a
+     * search can play a position out without touching the real game. Only
+     * arrays are copied, and none are allocated unless the other engine's
+     * snakes have outgrown this one's. The random number generator is not
+     * copied, so the copy spawns its own fruits from here on.
+     *
+     * @param other The engine to copy, with the same board size and number
+     *              of snakes.
+     */
+    public void copyFrom(final SnakeEngine other) {
+        if ((other.snkSnakes.length != snkSnakes.length) ||
+                (other.brdBoard.getCellCount() != brdBoard.getCellCount()) ||
+                (other.brdBoard.getColumns() != brdBoard.getColumns())) {
+            throw new IllegalArgumentException("The engines must have the same board and snakes");
+        }
+        brdBoard.copyFrom(other.brdBoard);
+        for (int iSnake = 0; iSnake < snkSnakes.length; iSnake++) {
+            snkSnakes[iSnake].copyFrom(other.snkSnakes[iSnake]);
+        }
+        if (iaClaimTick != null) {
+            System.arraycopy(other.iaClaimTick, 0, iaClaimTick, 0, iaClaimTick.length);
+            System.arraycopy(other.iaClaimOwner, 0, iaClaimOwner, 0, iaClaimOwner.length);
+        }
+        iTick = other.iTick;
+        iGameTicks = other.iGameTicks;
+        iFruitValue = other.iFruitValue;
+        bInit = other.bInit;
+        bGameOver = other.bGameOver;
+        bBadFruits = other.bBadFruits;
+    }
+
+    /**
+     * Gets a 64-bit hash of the state of the game: the board, and for each
+     * snake its head, its length (which includes the growth still to come),
+     * whether it's alive, its score, what its next fruit is worth and its
+     * queued directions, as well as the value of the fruit on the board.
+     * Equal states have equal hashes, so the hash can key a transposition
+     * table, be compared tick by tick to check that two runs stay in step,
+     * or deduplicate snapshots.
+     * <p>
+     * The board's part is kept up to date as tiles change; the rest is
+     * mixed in by this call, which costs a few operations per snake and
+     * queued direction.
+     *
+     * @return The hash.
+     */
+    public long getHash() {
+        long lHash = brdBoard.getHash() ^ GameBoard.mix(~(long) iFruitValue);
+        for (int iSnake = 0; iSnake < snkSnakes.length; iSnake++) {
+            final Snake snake = snkSnakes[iSnake];
+            long lSnake = GameBoard.mix(((long) iSnake << 32) | snake.getHeadCell());
+            lSnake = GameBoard.mix(lSnake ^ (((long) snake.iLength << 1) | (snake.bAlive ? 1 : 0)));
+            lSnake = GameBoard.mix(lSnake ^ (((long) snake.iScore << 32) |
+                    (snake.nextFruitScore & 0xFFFFFFFFL)));
+            for (int iQueued = 0; iQueued < snake.iDirectionCount; iQueued++) {
+                final Direction direction =
+                        snake.daDirections[(snake.iFirstDirection + iQueued) % iDIRECTION_CAPACITY];
+                lSnake = GameBoard.mix(lSnake ^ (direction.ordinal() + 1));
+            }
+            lHash ^= lSnake;
+        }
+        return lHash;
+    }
+
+    /**
+     * Turns bad fruits on or off, from the next game on. Without them every
+     * tile can be reached, so a solver can fill the whole board.
+     *
+     * @param bBadFruits Whether or not to place bad fruits.
+     */
+    public void setBadFruits(final boolean bBadFruits) {
+        this.bBadFruits = bBadFruits;
+    }
+
+    /**
+     * The {@code Snake} class holds the state of one snake on the board.
+     */
+    private static final class Snake {
+
+        /**
+         * The tile index of every piece of the snake, as a ring buffer
+         * starting at the head.
+         */
+        private int[] iaBody;
+
+        /**
+         * The position of the head in {@code iaBody}.
+         */
+        private int iHeadSlot;
+
+        /**
+         * The number of pieces in the snake.
+         */
+        private int iLength;
+
+        /**
+         * The queued directions, as a ring buffer.
+         */
+        private final Direction[] daDirections;
+
+        /**
+         * The position of the first queued direction in
+         * {@code daDirections}.
+         */
+        private int iFirstDirection;
+
+        /**
+         * The number of queued directions.
+         */
+        private int iDirectionCount;
+
+        /**
+         * The current score.
+         */
+        private int iScore;
+
+        /**
+         * The number of fruits that this snake has eaten.
+         */
+        private int iFruitsEaten;
+
+        /**
+         * The number of points that the next fruit will award.
+         */
+        private int nextFruitScore;
+
+        /**
+         * The number of pieces the snake grows by when it eats a fruit.
+         */
+        private int iFactor;
+
+        /**
+         * Whether or not the snake is still alive.
+         */
+        private boolean bAlive;
+
+        /**
+         * The tile the head is moving into this tick.
+         */
+        private int iTarget;
+
+        /**
+         * The code of the tile the head ran into this tick.
+         */
+        private byte bCollision;
+
+        /**
+         * The code of the tile the snake died on.
+         */
+        private byte bKiller;
+
+        /**
+         * Whether or not the snake died on a wall.
+         */
+        private boolean bWall;
+
+        /**
+         * The tick the snake died in.
+         */
+        private int iSurvived;
+
+        /**
+         * Creates a new snake with no pieces.
+         *
+         * @param iCapacity The initial size of the body buffer.
+         */
+        private Snake(final int iCapacity) {
+            iaBody = new int[iCapacity];
+            daDirections = new Direction[iDIRECTION_CAPACITY];
+        }
+
+        /**
+         * Resets the snake to a lone head heading north.
+         *
+         * @param iHead The tile index of the head.
+         */
+        private void reset(final int iHead) {
+            iScore = 0;
+            iFruitsEaten = 0;
+            bAlive = true;
+            bCollision = GameBoard.EMPTY;
+            iLength = 0;
+            pushHead(iHead);
+            iDirectionCount = 0;
+            addLastDirection(Direction.North);
+        }
+
+        /**
+         * Copies the state of another snake into this one.
+         *
+         * @param other The snake to copy.
+         */
+        private void copyFrom(final Snake other) {
+            if (iaBody.length != other.iaBody.length) {
+                iaBody = new int[other.iaBody.length];
+            }
+            System.arraycopy(other.iaBody, 0, iaBody, 0, iaBody.length);
+            iHeadSlot = other.iHeadSlot;
+            iLength = other.iLength;
+            System.arraycopy(other.daDirections, 0, daDirections, 0, iDIRECTION_CAPACITY);
+            iFirstDirection = other.iFirstDirection;
+            iDirectionCount = other.iDirectionCount;
+            iScore = other.iScore;
+            iFruitsEaten = other.iFruitsEaten;
+            nextFruitScore = other.nextFruitScore;
+            iFactor = other.iFactor;
+            bAlive = other.bAlive;
+            iTarget = other.iTarget;
+            bCollision = other.bCollision;
+            bKiller = other.bKiller;
+            bWall = other.bWall;
+            iSurvived = other.iSurvived;
+        }
+
+        private int getHeadCell() {
+            return iaBody[iHeadSlot];
+        }
+
+        private int getBodyCell(final int iPiece) {
+            return iaBody[(iHeadSlot + iPiece) % iaBody.length];
+        }
+
+        private Direction getDirection() {
+            return (iDirectionCount == 0) ? null : daDirections[iFirstDirection];
+        }
+
+        private Direction getLastDirection() {
+            return (iDirectionCount == 0) ? null :
+                    daDirections[(iFirstDirection + iDirectionCount - 1) % iDIRECTION_CAPACITY];
+        }
+
+        /**
+         * Pushes a direction to the front of the queue.
+         *
+         * @param direction The direction.
+         */
+        private void pushDirection(final Direction direction) {
+            if (iDirectionCount < iDIRECTION_CAPACITY) {
+                iFirstDirection = (iFirstDirection + iDIRECTION_CAPACITY - 1) % iDIRECTION_CAPACITY;
+                daDirections[iFirstDirection] = direction;
+                iDirectionCount++;
+            }
+        }
+
+        /**
+         * Adds a direction to the back of the queue.
+         *
+         * @param direction The direction.
+         */
+        private void addLastDirection(final Direction direction) {
+            if (iDirectionCount < iDIRECTION_CAPACITY) {
+                daDirections[(iFirstDirection + iDirectionCount) % iDIRECTION_CAPACITY] = direction;
+                iDirectionCount++;
+            }
+        }
+
+        /**
+         * Removes the first direction from the queue.
+         */
+        private void pollDirection() {
+            daDirections[iFirstDirection] = null;
+            iFirstDirection = (iFirstDirection + 1) % iDIRECTION_CAPACITY;
+            iDirectionCount--;
+        }
+
+        /**
+         * Adds a new head to the front of the snake, growing the body buffer
+         * if it's full.
+         *
+         * @param iCell The tile index of the new head.
+         */
+        private void pushHead(final int iCell) {
+            if (iLength == iaBody.length) {
+                growBody();
+            }
+            iHeadSlot = (iHeadSlot + iaBody.length - 1) % iaBody.length;
+            iaBody[iHeadSlot] = iCell;
+            iLength++;
+        }
+
+        /**
+         * Adds a new piece to the back of the snake.
+         *
+         * @param iCell The tile index of the new piece.
+         */
+        private void addTail(final int iCell) {
+            if (iLength == iaBody.length) {
+                growBody();
+            }
+            iaBody[(iHeadSlot + iLength) % iaBody.length] = iCell;
+            iLength++;
+        }
+
+        /**
+         * Removes the last piece of the snake.
+         *
+         * @return The tile index of the piece that was removed.
+         */
+        private int removeTail() {
+            iLength--;
+            return iaBody[(iHeadSlot + iLength) % iaBody.length];
+        }
+
+        /**
+         * Doubles the size of the body buffer. The snake only outgrows the
+         * initial buffer once it covers nearly the whole board.
+         */
+        private void growBody() {
+            final int[] iaGrown = new int[iaBody.length * 2];
+            for (int iPiece = 0; iPiece < iLength; iPiece++) {
+                iaGrown[iPiece] = getBodyCell(iPiece);
+            }
+            iaBody = iaGrown;
+            iHeadSlot = 0;
+        }
+    }
+}
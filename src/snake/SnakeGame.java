@@ -5,8 +5,14 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import static snake.StateHandler.loadGame;
 import static snake.StateHandler.saveGame;
@@ -29,18 +35,18 @@ public class SnakeGame extends JFrame {
     private static final long lFRAME_TIME = 1000L / 50L;
 
     /**
-     * The minimum length of the snake. This allows the snake to grow
-     * right when the game starts, so that we're not just a head moving
-     * around on the board.
+     * The number of milliseconds that should pass between each frame while
+     * the game is idle (paused, on the start screen or after a game over).
+     * This is just fast enough to keep the overlay animation alive.
      */
-    private static final int iMIN_SNAKE_LENGTH = 5;
+    private static final long lIDLE_FRAME_TIME = 1000L / 8L;
+
+    public static final float CYCLES_PER_SECOND = 9.0f;
 
     /**
-     * The maximum number of directions that we can have polled in the
-     * direction list.
+     * The default number of logic cycles per second while in turbo mode.
      */
-    private static final int iMAX_DIRECTIONS = 3;
-    public static final float CYCLES_PER_SECOND = 9.0f;
+    public static final float TURBO_CYCLES_PER_SECOND = 5000.0f;
     public static final long MILLION = 1000000L;
 
     /**
@@ -54,9 +60,9 @@ public class SnakeGame extends JFrame {
     private SidePanel sidSide;
 
     /**
-     * The random number generator (used for spawning fruits).
+     * The engine holding the rules and the state of the game.
      */
-    private Random rRandom;
+    private SnakeEngine engine;
 
     /**
      * The Clock instance for handling the game logic.
@@ -70,122 +76,193 @@ public class SnakeGame extends JFrame {
     private boolean bNewGame;
 
     /**
-     * Whether or not the game is over.
+     * Whether or not the game is paused.
+     */
+    private boolean bPaused;
+
+    /**
+     * The ticker that runs each update of the game logic.
      */
-    private boolean bGameOver;
+    private GameTicker gtkTicker;
 
     /**
-     * Whether or not the game is paused.
+     * The monitor that the game loop parks on between frames. Input wakes
+     * the loop up through it so that it does not have to poll.
      */
-    private boolean bPaused;
+    private final Object objLoopMonitor = new Object();
 
     /**
-     * The shaker helper object for the frame
+     * Whether or not the game loop has been asked to run the next frame
+     * immediately. Guarded by {@code objLoopMonitor}.
      */
-    private ShakeFrame shaShaker;
+    private boolean bWakeRequested;
 
     /**
-     * The list that contains the points for the snake.
+     * Whether or not the game is running in turbo mode, where the logic is
+     * allowed to run many cycles per rendered frame.
      */
-    private LinkedList<Point> snake;
+    private volatile boolean bTurbo;
 
     /**
-     * The list that contains the queued directions.
+     * The number of logic cycles per second to run while in turbo mode.
      */
-    private LinkedList<Direction> directions;
+    private float fTurboCyclesPerSecond = TURBO_CYCLES_PER_SECOND;
 
     /**
-     * The current iScore.
+     * The time (from {@code System.nanoTime()}) at which the oldest direction
+     * that hasn't been acted on yet was queued, or 0 if there is none.
      */
-    private int iScore;
+    private volatile long lInputTime;
 
     /**
-     * The number of fruits that we've eaten.
+     * Whether or not the performance overlay is shown over the board.
      */
-    private int iFruitsEaten;
+    private volatile boolean bOverlayVisible;
 
     /**
-     * The number of points that the next fruit will award us.
+     * The controller of each snake. The players at the keyboard come first,
+     * followed by the bots.
      */
-    private int nextFruitScore;
+    private final SnakeController[] ctlControllers;
+
+    /**
+     * The number of snakes steered from the keyboard.
+     */
+    private final int iHumans;
+
+    /**
+     * Whether or not the snakes of the players at the keyboard are steered
+     * by the autopilot.
+     */
+    private volatile boolean bAutopilot;
+
     /**
-     * Check if we are the first time playing
+     * The controller that steers the players' snakes while the autopilot is
+     * on.
      */
-    private boolean bInit;
+    private final AutopilotController ctlAutopilot = new AutopilotController();
+
     /**
-     * A random number assigned to each fruit
+     * The log every finished game is recorded in, or null if it could not
+     * be opened.
      */
-    private int iFactor;
+    private final StatsLog slgStats = StatsLog.openDefault();
+
+    /**
+     * The leaderboard every finished game is recorded on, or null if it
+     * could not be opened.
+     */
+    private final Leaderboard ldbScores = Leaderboard.openDefault();
+
+    /**
+     * The thread that writes finished games to the stats log and the
+     * leaderboard, so that the game loop never waits on the disk, nor on
+     * the lock of the leaderboard that the stats server takes to answer
+     * queries.
+     */
+    private final ExecutorService exsRecorder = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thrRecorder = new Thread(runnable, "game-recorder");
+                    thrRecorder.setDaemon(true);
+                    return thrRecorder;
+                }
+            });
+
+    /**
+     * The name the first player's games are recorded on the leaderboard
+     * under: the one last used to save or load a game, or the
+     * {@code snake.player} system property until then.
+     */
+    private String sPlayerName = System.getProperty("snake.player",
+                                                    System.getProperty("user.name", "player"));
 
     /**
      * Action when the snake goes up
      */
     private void up(){
-        if (!bPaused && !bGameOver) {
-           if (directions.size() < iMAX_DIRECTIONS) {
-                Direction last = directions.peekLast();
-                if (last != Direction.South && last != Direction.North) {
-                    directions.addLast(Direction.North);
-                }
-            }
+        if (!bPaused && !isGameOver()) {
+            engine.queueDirection(Direction.North);
         }
     }
     /**
      * Action when the snake goes down
      */
     private void down(){
-        if (!bPaused && !bGameOver) {
-           if (directions.size() < iMAX_DIRECTIONS) {
-            Direction last = directions.peekLast();
-                if (last != Direction.North && last != Direction.South) {
-                    directions.addLast(Direction.South);
-                }
-            }
-        }        
+        if (!bPaused && !isGameOver()) {
+            engine.queueDirection(Direction.South);
+        }
     }
     /**
      * Action when the snake goes left
      */
     private void left(){
-        if (!bPaused && !bGameOver) {
-            if (directions.size() < iMAX_DIRECTIONS) {
-                Direction last = directions.peekLast();
-                if (last != Direction.East && last != Direction.West) {
-                   directions.addLast(Direction.West);
-                }
-            }
+        if (!bPaused && !isGameOver()) {
+            engine.queueDirection(Direction.West);
         }
     }
     /**
      * Action when the snake goes right
      */
     private void right(){
-        if (!bPaused && !bGameOver) {
-            if (directions.size() < iMAX_DIRECTIONS) {
-                Direction last = directions.peekLast();
-                if (last != Direction.West && last != Direction.East) {
-                   directions.addLast(Direction.East);
-                }
-            }
-        }    
+        if (!bPaused && !isGameOver()) {
+            engine.queueDirection(Direction.East);
+        }
     }
     /**
      * Creates a new SnakeGame instance. Creates a new window,
      * and sets up the controller input.
+     *
+     * @param iCols   The number of columns on the board.
+     * @param iRows   The number of rows on the board.
+     * @param iHumans The number of snakes steered from the keyboard.
+     * @param iBots   The number of snakes steered by bots.
+     * @param bSolver Whether or not the bots are solvers that fill the
+     *                board, in which case no bad fruits are placed.
+     * @param bMcts   Whether or not the bots search with Monte Carlo tree
+     *                search instead of being greedy.
+     * @param daHeuristic The weights of the heuristic bots, or null if the
+     *                    bots aren't heuristic bots.
      */
-    private SnakeGame() {
+    private SnakeGame(final int iCols,
+                      final int iRows,
+                      final int iHumans,
+                      final int iBots,
+                      final boolean bSolver,
+                      final boolean bMcts,
+                      final double[] daHeuristic) {
         super("Snake Remake");
         setLayout(new BorderLayout());
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         setResizable(false);
-        bInit = true;
+
+        /*
+         * Create the engine that runs the rules of the game.
+         */
+        engine = new SnakeEngine(iCols, iRows, iHumans + iBots, new Random());
+        engine.setInstrumented(true);
+        engine.setBadFruits(!bSolver);
+
+        /*
+         * Give every snake its controller.
+         */
+        this.iHumans = iHumans;
+        ctlControllers = new SnakeController[iHumans + iBots];
+        for (int iSnake = 0; iSnake < ctlControllers.length; iSnake++) {
+            ctlControllers[iSnake] = (iSnake < iHumans) ?
+                    KeyboardController.forPlayer(iSnake, iHumans) :
+                    createBot(bSolver, bMcts, daHeuristic);
+        }
+        updateSearchBudgets();
 
         /*
          * Initialize the game's panels and add them to the window.
          */
         brdBoard = new BoardPanel(this);
+        gtkTicker = new GameTicker(engine, ctlControllers, iHumans, ctlAutopilot,
+                                   brdBoard.getEffects());
         sidSide = new SidePanel(this);
-        shaShaker = new ShakeFrame(this);
         add(brdBoard, BorderLayout.CENTER);
         add(sidSide, BorderLayout.EAST);
 
@@ -210,10 +287,7 @@ public class SnakeGame extends JFrame {
         /*
          * Initialize everything we're going to be using.
          */
-        rRandom = new Random();
-        snake = new LinkedList<>();
-        directions = new LinkedList<>();
-        clkLogicTimer = new Clock(CYCLES_PER_SECOND);
+        clkLogicTimer = new Clock(getCyclesPerSecond());
         bNewGame = true;
 
         // Set the timer to paused initially.
@@ -221,183 +295,373 @@ public class SnakeGame extends JFrame {
 
         /*
          * This is the game loop. It will update and render the game and will
-         * continue to run until the game window is closed.
+         * continue to run until the game window is closed (or its thread is
+         * interrupted). While nothing is animating (not even the particles
+         * of an effect) the loop drops to a low frame rate and parks between
+         * frames until either input arrives or the next frame is due.
          */
         while (true) {
             //Get the current frame's start time.
             final long start = System.nanoTime();
+            final boolean bIdle = isIdle();
 
             //Update the logic timer.
             clkLogicTimer.update();
 
             /*
-             * If a cycle has elapsed on the logic timer, then update the game.
+             * Update the game once for every cycle that has elapsed on the
+             * logic timer. Normally that is at most one per frame, but in
+             * turbo mode we catch up on as many cycles as fit in the frame
+             * and drop whatever backlog is left so that we never spiral.
              */
-            if (clkLogicTimer.hasElapsedCycle()) {
-                updateGame();
-            }
+            updateElapsedCycles(start);
 
-            //Repaint the board and side panel with the new content.
+            /*
+             * Repaint the board with the new content. The side panel only
+             * changes while playing or in response to input, so it is left
+             * alone on idle frames that nobody asked for.
+             */
+            final boolean bWoken = consumeWakeRequest();
             brdBoard.repaint();
-            sidSide.repaint();
+            if (!bIdle || bWoken) {
+                sidSide.repaint();
+            }
 
             /*
              * Calculate the delta time between since the start of the frame
-             * and sleep for the excess time to cap the frame rate. While not
+             * and park for the excess time to cap the frame rate. While not
              * incredibly accurate, it is sufficient for our purposes.
              */
+            final long lFrameTime = (isIdle() && !brdBoard.getEffects().hasParticles()) ?
+                    lIDLE_FRAME_TIME : lFRAME_TIME;
             final long delta = (System.nanoTime() - start) / MILLION;
-            if (delta < lFRAME_TIME) {
-                try {
-                    Thread.sleep(lFRAME_TIME - delta);
-                }
-                catch (final Exception e) {
-                    e.printStackTrace();
-                }
+            if ((delta < lFrameTime) && !parkLoop(lFrameTime - delta)) {
+                return;
             }
         }
     }
 
     /**
-     * Updates the game's logic.
+     * Runs the game logic for the cycles that have elapsed on the logic
+     * timer.
+     *
+     * @param lFrameStart The time (in nanoseconds) at which the frame started.
      */
-    private void updateGame() {
-        /*
-         * Gets the type of tile that the head of the snake collided with. If
-         * the snake hit a wall, SnakeBody will be returned, as both conditions
-         * are handled identically.
-         */
-        final TileType collision = updateSnake();
+    private void updateElapsedCycles(final long lFrameStart) {
+        if (!bTurbo) {
+            if (clkLogicTimer.hasElapsedCycle()) {
+                updateGame();
+                stopIfGameOver();
+            }
+            return;
+        }
 
-        /*
-         * Here we handle the different possible collisions.
-         *
-         * Fruit: If we collided with a fruit, we increment the number of
-         * fruits that we've eaten, update the iScore, and spawn a new fruit.
-         *
-         * SnakeBody: If we collided with our tail (or a wall), we flag that
-         * the game is over and pause the game.
-         *
-         * If no collision occurred, we simply decrement the number of points
-         * that the next fruit will give us if it's high enough. This adds a
-         * bit of skill to the game as collecting fruits more quickly will
-         * yield a higher iScore.
-         */
-        if (collision == TileType.Fruit) {
-            iFruitsEaten++;
-            iScore += nextFruitScore * collision.getValue();
-            iFactor = collision.getValue();
-            spawnFruit();
-        }
-        else {
-            if ((collision == TileType.SnakeBody) || (collision == TileType
-                    .BadFruit)) {
-                shaShaker.startShaking();
-                bGameOver = true;
-                clkLogicTimer.setPaused(true);
+        final long lBudget = (lFRAME_TIME * MILLION) / 2;
+        while (clkLogicTimer.hasElapsedCycle()) {
+            updateGame();
+            if (stopIfGameOver() || ((System.nanoTime() - lFrameStart) > lBudget)) {
+                clkLogicTimer.clearElapsedCycles();
+                break;
             }
-            else {
-                if (nextFruitScore > 10) {
-                    nextFruitScore--;
-                }
+        }
+    }
+
+    /**
+     * Drops the cycles left on the logic timer once the game is over. The
+     * timer is paused by then, but pausing keeps the cycles that had already
+     * elapsed, and each of them would run the game over again.
+     *
+     * @return Whether or not the game is over.
+     */
+    private boolean stopIfGameOver() {
+        if (engine.isGameOver()) {
+            clkLogicTimer.clearElapsedCycles();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of logic cycles per second for the current mode.
+     *
+     * @return The cycles per second.
+     */
+    private float getCyclesPerSecond() {
+        return bTurbo ? fTurboCyclesPerSecond : CYCLES_PER_SECOND;
+    }
+
+    /**
+     * Turns turbo mode on or off. In turbo mode the logic runs at
+     * {@code fTurboCyclesPerSecond} while the screen keeps being rendered
+     * at the normal frame rate.
+     *
+     * @param isTurbo Whether or not to run in turbo mode.
+     */
+    public void setTurbo(final boolean isTurbo) {
+        bTurbo = isTurbo;
+        if (clkLogicTimer != null) {
+            clkLogicTimer.setCyclesPerSecond(getCyclesPerSecond());
+        }
+        updateSearchBudgets();
+    }
+
+    /**
+     * Shares out the time the Monte Carlo bots may search for on each tick.
+     * Their searches run on the game loop, so together they get at most a
+     * quarter of a tick, and never more than half a frame, however many of
+     * them there are and however fast the logic runs.
+     */
+    private void updateSearchBudgets() {
+        int iSearchers = 0;
+        for (final SnakeController ctlController : ctlControllers) {
+            if (ctlController instanceof MctsController) {
+                iSearchers++;
+            }
+        }
+        if (iSearchers == 0) {
+            return;
+        }
+        final long lTickTime = (long) (1.0e9 / getCyclesPerSecond());
+        final long lShare = Math.min(lTickTime / 4, (lFRAME_TIME * MILLION) / 2) / iSearchers;
+        for (final SnakeController ctlController : ctlControllers) {
+            if (ctlController instanceof MctsController) {
+                ((MctsController) ctlController).setBudget(
+                        Math.min(MctsController.lDEFAULT_BUDGET, lShare));
             }
         }
+    }
 
+    /**
+     * Gets the number of snakes steered from the keyboard.
+     *
+     * @return The number of players at the keyboard.
+     */
+    public int getHumanCount() {
+        return iHumans;
     }
 
     /**
-     * Updates the snake's position and size.
+     * Gets the flag that indicates whether or not turbo mode is on.
      *
-     * @return Tile tile that the head moved into.
+     * @return The turbo flag.
      */
-    private TileType updateSnake() {
+    public boolean isTurbo() {
+        return bTurbo;
+    }
 
-        /*
-         * Here we peek at the next direction rather than polling it. While
-         * not game breaking, polling the direction here causes a small bug
-         * where the snake's direction will change after a game over (though
-         * it will not move).
-         */
-        final Direction direction = directions.peekFirst();
+    /**
+     * Turns the autopilot on or off. While it is on, the snakes of the
+     * players at the keyboard are steered by an {@link AutopilotController},
+     * and the keys still work to override it.
+     *
+     * @param isAutopilot Whether or not the autopilot steers.
+     */
+    public void setAutopilot(final boolean isAutopilot) {
+        bAutopilot = isAutopilot;
+    }
 
-        /*
-         * Here we calculate the new point that the snake's head will be at
-         * after the update.
-         */
-        final Point head = new Point(snake.peekFirst());
-        switch (direction) {
-            case North:
-                head.y--;
-                break;
+    /**
+     * Gets the flag that indicates whether or not the autopilot is on.
+     *
+     * @return The autopilot flag.
+     */
+    public boolean isAutopilot() {
+        return bAutopilot;
+    }
 
-            case South:
-                head.y++;
-                break;
+    /**
+     * Sets the number of logic cycles per second used in turbo mode.
+     *
+     * @param fCyclesPerSecond The turbo cycles per second.
+     */
+    public void setTurboCyclesPerSecond(final float fCyclesPerSecond) {
+        fTurboCyclesPerSecond = fCyclesPerSecond;
+        setTurbo(bTurbo);
+    }
 
-            case West:
-                head.x--;
-                break;
+    /**
+     * Gets the flag that indicates whether or not the performance overlay is
+     * shown.
+     *
+     * @return The overlay flag.
+     */
+    public boolean isOverlayVisible() {
+        return bOverlayVisible;
+    }
 
-            case East:
-                head.x++;
-                break;
+    /**
+     * Shows or hides the performance overlay.
+     *
+     * @param isOverlayVisible Whether or not to show the overlay.
+     */
+    public void setOverlayVisible(final boolean isOverlayVisible) {
+        bOverlayVisible = isOverlayVisible;
+    }
+
+    /**
+     * Checks whether the game is in a state where nothing but the overlay
+     * message is animating.
+     *
+     * @return Whether or not the game loop may run at the idle frame rate.
+     */
+    private boolean isIdle() {
+        return bNewGame || isGameOver() || bPaused;
+    }
+
+    /**
+     * Parks the game loop until the given time has passed or until
+     * {@code wakeLoop} is called, whichever happens first.
+     *
+     * @param lMillis The maximum number of milliseconds to park for.
+     * @return Whether or not the game loop should go on, which it shouldn't
+     * once its thread has been interrupted.
+     */
+    private boolean parkLoop(final long lMillis) {
+        synchronized (objLoopMonitor) {
+            if (!bWakeRequested) {
+                try {
+                    objLoopMonitor.wait(lMillis);
+                }
+                catch (final InterruptedException e) {
+                    /*
+                     * Keep the flag set for whoever interrupted us, and stop
+                     * the loop rather than have every later wait throw at
+                     * once and spin.
+                     */
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
         }
+        return true;
+    }
 
-        /*
-         * If the snake has moved out of bounds ('hit' a wall), we can just
-         * return that it's collided with itself, as both cases are handled
-         * identically.
-         */
-        if (hasMovedOutOfBounds(head)) {
-            return TileType.SnakeBody; //Pretend we collided with our body.
+    /**
+     * Clears a pending wake up request.
+     *
+     * @return Whether or not a wake up had been requested.
+     */
+    private boolean consumeWakeRequest() {
+        synchronized (objLoopMonitor) {
+            final boolean bWoken = bWakeRequested;
+            bWakeRequested = false;
+            return bWoken;
         }
+    }
+
+    /**
+     * Wakes the game loop up so that the next frame runs immediately, for
+     * example because input changed what has to be drawn.
+     */
+    private void wakeLoop() {
+        synchronized (objLoopMonitor) {
+            bWakeRequested = true;
+            objLoopMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Updates the game's logic.
+     */
+    private void updateGame() {
+        final long lStart = System.nanoTime();
+        final boolean bEnded = gtkTicker.tick(bAutopilot);
 
         /*
-         * Here we get the tile that was located at the new head position and
-         * remove the tail from of the snake and the board if the snake is
-         * long enough, and the tile it moved onto is not a fruit.
-         *
-         * If the tail was removed, we need to retrieve the old tile again
-         * incase the tile we hit was the tail piece that was just removed
-         * to prevent a false game over.
+         * If input was waiting on this tick, record how long it waited.
          */
-        TileType old = brdBoard.getTile(head.x, head.y);
-        if ((old != TileType.Fruit) && (snake.size() > iMIN_SNAKE_LENGTH)) {
-            final Point tail = snake.removeLast();
-            brdBoard.setTile(tail, null);
-            old = brdBoard.getTile(head.x, head.y);
+        final long lQueued = lInputTime;
+        if (lQueued != 0) {
+            lInputTime = 0;
+            Metrics.INPUT_DELAY.record(lStart - lQueued);
         }
 
         /*
-         * Update the snake's position on the board if we didn't collide with
-         * our tail:
-         *
-         * 1. Set the old head position to a body tile.
-         * 2. Add the new head to the snake.
-         * 3. Set the new head position to a head tile.
-         *
-         * If more than one direction is in the queue, poll it to read new
-         * input.
+         * If the last snake that counts collided with a tail (or a wall, or a
+         * bad fruit), the engine flags that the game is over, and we pause
+         * the game while its debris settles. The game is recorded only on
+         * the tick that ended it.
          */
-        if (old != TileType.SnakeBody) {
-            brdBoard.setTile(snake.peekFirst(), TileType.SnakeBody);
-            snake.push(head);
-            brdBoard.setTile(head, TileType.SnakeHead);
-            if (directions.size() > 1) {
-                directions.poll();
-            }
+        if (engine.isGameOver()) {
+            clkLogicTimer.setPaused(true);
+        }
+        if (bEnded) {
+            recordGame();
         }
-        return old;
     }
 
-    private boolean hasMovedOutOfBounds(final Point head) {
-        if (head.x < 0) {
-            return true;
+    /**
+     * Appends the game of every snake that just finished to the stats log,
+     * and the game of each player at the keyboard to the leaderboard under
+     * that player's name. The bots' snakes aren't ranked, so a game without
+     * players adds nothing to the leaderboard. The games are taken down on
+     * the game loop, and written out right away by the recorder.
+     */
+    private void recordGame() {
+        final ByteBuffer bufStats = (slgStats != null) ?
+                StatsLog.encode(engine, StatsLog.SOURCE_INTERACTIVE) : null;
+        final int iRanked = (ldbScores != null) ? iHumans : 0;
+        final long lTime = System.currentTimeMillis();
+        final String[] saNames = new String[iRanked];
+        final int[] iaScores = new int[iRanked];
+        final int[] iaFruits = new int[iRanked];
+        final int[] iaTicks = new int[iRanked];
+        for (int iSnake = 0; iSnake < iRanked; iSnake++) {
+            saNames[iSnake] = getPlayerName(iSnake);
+            iaScores[iSnake] = engine.getScore(iSnake);
+            iaFruits[iSnake] = engine.getFruitsEaten(iSnake);
+            iaTicks[iSnake] = engine.getSurvivalTicks(iSnake);
         }
-        if (head.x >= BoardPanel.iCOL_COUNT) {
-            return true;
+        exsRecorder.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (bufStats != null) {
+                        slgStats.append(bufStats);
+                        slgStats.flush();
+                    }
+                }
+                catch (final IOException e) {
+                    e.printStackTrace();
+                }
+                try {
+                    for (int iSnake = 0; iSnake < saNames.length; iSnake++) {
+                        ldbScores.record(saNames[iSnake], iaScores[iSnake], iaFruits[iSnake],
+                                         iaTicks[iSnake], lTime);
+                    }
+                }
+                catch (final IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the name a player's games are recorded on the leaderboard under.
+     * The first player goes by the player name, and each other player by
+     * the {@code snake.player<n>} system property, or by the player name
+     * followed by the number of the player if it isn't set.
+     *
+     * @param iSnake The snake of the player.
+     * @return The name of the player.
+     */
+    private String getPlayerName(final int iSnake) {
+        if (iSnake == 0) {
+            return sPlayerName;
         }
-        return (head.y < 0) || (head.y >= BoardPanel.iROW_COUNT);
+        final int iPlayer = iSnake + 1;
+        return System.getProperty("snake.player" + iPlayer, sPlayerName + " (" + iPlayer + ")");
+    }
+
+    /**
+     * Sets the name the first player's games are recorded on the
+     * leaderboard under.
+     *
+     * @param sPlayerName The name used to save or load a game.
+     */
+    void setPlayerName(final String sPlayerName) {
+        this.sPlayerName = sPlayerName;
     }
 
     /**
@@ -405,56 +669,16 @@ public class SnakeGame extends JFrame {
      */
     private void resetGame() {
         /*
-         * Reset the iScore statistics. (Note that nextFruitPoints is reset in
-         * the spawnFruit function later on).
-         */
-        iScore = 0;
-        iFruitsEaten = 0;
-
-        /*
-         * Reset both the new game and game over flags.
+         * Reset the new game flag, and let the engine reset the score, the
+         * snake and the board.
          */
         bNewGame = false;
-        bGameOver = false;
-        bInit = true;
-
-        /*
-         * Create the head at the center of the board.
-         */
-        final Point head = new Point(BoardPanel.iCOL_COUNT / 2,
-                                     BoardPanel.iROW_COUNT / 2);
-        /*
-         * Clear the snake list and add the head.
-         */
-        snake.clear();
-        snake.add(head);
-
-        /*
-         * Clear the board and add the head.
-         */
-        brdBoard.clearBoard();
-        brdBoard.setTile(head, TileType.SnakeHead);
-
-        /*
-         * Clear the directions and add north as the
-         * default direction.
-         */
-        directions.clear();
-        directions.add(Direction.North);
+        engine.reset();
 
         /*
          * Reset the logic timer.
          */
         clkLogicTimer.reset();
-
-        /*
-         * Spawn a new fruit.
-         */
-        spawnFruit();
-        /*
-         * Spawn bads fruits.
-         */
-        spawnBadFruits();
     }
 
     /**
@@ -472,7 +696,7 @@ public class SnakeGame extends JFrame {
      * @return The game over flag.
      */
     public boolean isGameOver() {
-        return bGameOver;
+        return engine.isGameOver();
     }
 
     /**
@@ -484,121 +708,13 @@ public class SnakeGame extends JFrame {
         return bPaused;
     }
 
-    /**
-     * Spawns a new fruit onto the board.
-     */
-    private void spawnFruit() {
-
-        /*
-         * While we could just as easily choose a random index on the board
-         * and check it if it's free until we find an empty one, that method
-         * tends to hang if the snake becomes very large.
-         *
-         * This method simply loops through until it finds the nth free index
-         * and selects uses that. This means that the game will be able to
-         * locate an index at a relatively constant rate regardless of the
-         * size of the snake.
-         */
-        if (bInit) {
-            spawnMultipleFruits();
-        }
-        else {
-            spawnOneFruit();
-        }
-    }
-
-    private void spawnMultipleFruits() {
-        int iCounter = 3;
-        int index = rRandom.nextInt((BoardPanel.iCOL_COUNT * BoardPanel
-                .iROW_COUNT) - snake
-                .size());
-
-        while (iCounter > 0) {
-            nextFruitScore = 100;
-            //Randomize the factor for each value
-            final int iRandom = (int) ((Math.random() * ((4 - 1) + 1)) + 1);
-            findFreeTiles(iRandom, index);
-            --iCounter;
-            index = rRandom.nextInt((BoardPanel.iCOL_COUNT * BoardPanel
-                    .iROW_COUNT) - snake
-                    .size());
-        }
-        bInit = false;
-
-    }
-
-
-    private void spawnOneFruit() {
-        //Randomize the value for one fruit
-        nextFruitScore = 100;
-        final int iRandom = (int) ((Math.random() * ((4 - 1) + 1)) + 1);
-        final int index = rRandom.nextInt((BoardPanel.iCOL_COUNT * BoardPanel
-                .iROW_COUNT) - snake
-                .size());
-        findFreeTiles(iRandom, index);
-        for (int iC = 0; iC < iFactor; ++iC) {
-            final Point head = new Point(snake.peekFirst());
-            brdBoard.setTile(snake.peekFirst(), TileType.SnakeBody);
-            snake.push(head);
-            brdBoard.setTile(head, TileType.SnakeHead);
-            if (directions.size() > 1) {
-                directions.poll();
-            }
-
-        }
-    }
-
-    private void findFreeTiles(final int iRandom, final int index) {
-        int freeFound = -1;
-        for (int x = 0; x < BoardPanel.iCOL_COUNT; x++) {
-            for (int y = 0; y < BoardPanel.iROW_COUNT; y++) {
-                final TileType type = brdBoard.getTile(x, y);
-                if ((type == null) || (type == TileType.Fruit)) {
-                    ++freeFound;
-                    if (freeFound == index) {
-                        brdBoard.setTile(x, y, TileType.Fruit, iRandom);
-                        break;
-                    }
-                }
-            }
-        }
-    }
-
-    private void spawnBadFruits() {
-        int iCounter = 3;
-        int index = rRandom.nextInt((BoardPanel.iCOL_COUNT * BoardPanel
-                .iROW_COUNT) - snake
-                .size());
-
-        while (iCounter > 0) {
-            int freeFound = -1;
-            for (int x = 0; x < BoardPanel.iCOL_COUNT; x++) {
-                for (int y = 0; y < BoardPanel.iROW_COUNT; y++) {
-                    TileType type = brdBoard.getTile(x, y);
-                    if ((type == null) || (type == TileType.BadFruit)) {
-                        ++freeFound;
-                        if (freeFound == index) {
-                            brdBoard.setTile(x, y, TileType.BadFruit, -1);
-                            break;
-                        }
-                    }
-                }
-            }
-            --iCounter;
-            index = rRandom.nextInt((BoardPanel.iCOL_COUNT * BoardPanel
-                    .iROW_COUNT) - snake
-                    .size());
-        }
-
-    }
-
     /**
      * Gets the current iScore.
      *
      * @return The iScore.
      */
     public int getScore() {
-        return iScore;
+        return engine.getScore();
     }
 
     /**
@@ -607,7 +723,7 @@ public class SnakeGame extends JFrame {
      * @return The fruits eaten.
      */
     public int getFruitsEaten() {
-        return iFruitsEaten;
+        return engine.getFruitsEaten();
     }
 
     /**
@@ -616,7 +732,7 @@ public class SnakeGame extends JFrame {
      * @return The next fruit iScore.
      */
     public int getNextFruitScore() {
-        return nextFruitScore;
+        return engine.getNextFruitScore();
     }
 
     /**
@@ -625,11 +741,41 @@ public class SnakeGame extends JFrame {
      * @return The current direction.
      */
     public Direction getDirection() {
-        return directions.peek();
+        return engine.getDirection();
     }
 
     public List getSnake() {
-        return snake;
+        return engine.getSnakePoints();
+    }
+
+    /**
+     * Gets the number of pieces in the snake.
+     *
+     * @return The length of the snake.
+     */
+    public int getSnakeLength() {
+        return engine.getLength();
+    }
+
+    /**
+     * Checks whether the game can be saved or loaded. Saved games hold a
+     * single snake on the default board.
+     *
+     * @return Whether or not saving and loading are supported.
+     */
+    public boolean isSaveSupported() {
+        return (engine.getSnakeCount() == 1) &&
+                (engine.getBoard().getColumns() == BoardPanel.iCOL_COUNT) &&
+                (engine.getBoard().getRows() == BoardPanel.iROW_COUNT);
+    }
+
+    /**
+     * Gets the engine holding the rules and the state of the game.
+     *
+     * @return The engine.
+     */
+    public SnakeEngine getEngine() {
+        return engine;
     }
 
     public BoardPanel getBoard() {
@@ -641,27 +787,27 @@ public class SnakeGame extends JFrame {
     }
 
     public void setIsGameOver(final boolean isGameOver) {
-        bGameOver = isGameOver;
+        engine.setGameOver(isGameOver);
     }
 
     public void setNextFruitScore(final int nextFruitScore) {
-        this.nextFruitScore = nextFruitScore;
+        engine.setNextFruitScore(nextFruitScore);
     }
 
     public boolean isInit() {
-        return bInit;
+        return engine.isInit();
     }
 
     public void setInit(final boolean bInit) {
-        this.bInit = bInit;
+        engine.setInit(bInit);
     }
 
     public int getFactor() {
-        return iFactor;
+        return engine.getFactor();
     }
 
     public void setFactor(final int iFactor) {
-        this.iFactor = iFactor;
+        engine.setFactor(iFactor);
     }
 
     public void setIsPaused(final boolean isPaused) {
@@ -669,44 +815,151 @@ public class SnakeGame extends JFrame {
     }
 
     public void setScore(final int score) {
-        iScore = score;
+        engine.setScore(score);
     }
 
     public void setFruitsEaten(final int fruitsEaten) {
-        iFruitsEaten = fruitsEaten;
+        engine.setFruitsEaten(fruitsEaten);
     }
 
     public void setDirection(final Direction direction) {
-        directions.addFirst(direction);
+        engine.pushDirection(direction);
         //this.directions.addLast(directions);
     }
 
     public void setDirections(final LinkedList<Direction> directions) {
-        this.directions = directions;
+        engine.setDirectionList(directions);
     }
 
     public void setSnake(final LinkedList<Point> snake) {
-        this.snake.clear();
-        this.snake = snake;
+        engine.setSnakePoints(snake);
     }
 
     public void setBoard(final BoardPanel board) {
         brdBoard.clearBoard();
         brdBoard = board;
+        gtkTicker = new GameTicker(engine, ctlControllers, iHumans, ctlAutopilot,
+                                   brdBoard.getEffects());
+    }
+
+    /**
+     * Creates the controller of a bot.
+     *
+     * @param bSolver Whether or not the bot is a solver that fills the board.
+     * @param bMcts   Whether or not the bot uses Monte Carlo tree search.
+     * @param daHeuristic The weights of a heuristic bot, or null if the bot
+     *                    isn't one.
+     * @return The controller.
+     */
+    private static SnakeController createBot(final boolean bSolver,
+                                             final boolean bMcts,
+                                             final double[] daHeuristic) {
+        if (bSolver) {
+            return new HamiltonianController();
+        }
+        else if (bMcts) {
+            return new MctsController();
+        }
+        else if (daHeuristic != null) {
+            return new HeuristicController(daHeuristic);
+        }
+        return new GreedyController();
     }
 
     /**
      * Entry point of the program.
      *
-     * @param args Unused.
+     * @param args {@code --turbo} to start in turbo mode, or
+     *             {@code --turbo=N} to start in turbo mode running N logic
+     *             cycles per second. {@code --players=N} sets the number of
+     *             snakes steered from the keyboard (up to four),
+     *             {@code --bots=N} the number of snakes steered by bots, and
+     *             {@code --cols=N} and {@code --rows=N} the size of the
+     *             board. {@code --autopilot} starts with the autopilot
+     *             steering the players' snakes, and {@code --solver} runs a
+     *             single snake that fills the board, without bad fruits (on
+     *             a board one column wider if both sizes are odd, since the
+     *             solver can't fill those).
+     *             {@code --mcts} makes the bots search with Monte Carlo tree
+     *             search, and {@code --heuristic} makes them heuristic bots,
+     *             with {@code --heuristic=FILE} taking the best weights of a
+     *             {@link GeneticTrainer} checkpoint.
      */
     public static void main(final String[] args) {
-        final SnakeGame snake = new SnakeGame();
+        Metrics.install();
+        int iCols = BoardPanel.iCOL_COUNT;
+        int iRows = BoardPanel.iROW_COUNT;
+        int iHumans = 1;
+        int iBots = 0;
+        boolean bSolver = false;
+        boolean bMcts = false;
+        double[] daHeuristic = null;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--players=")) {
+                iHumans = Math.min(KeyboardController.iMAX_PLAYERS, Math.max(0,
+                        Integer.parseInt(sArg.substring("--players=".length()))));
+            }
+            else if (sArg.startsWith("--bots=")) {
+                iBots = Math.max(0, Integer.parseInt(sArg.substring("--bots=".length())));
+            }
+            else if (sArg.startsWith("--cols=")) {
+                iCols = Math.max(5, Integer.parseInt(sArg.substring("--cols=".length())));
+            }
+            else if (sArg.startsWith("--rows=")) {
+                iRows = Math.max(5, Integer.parseInt(sArg.substring("--rows=".length())));
+            }
+            else if (sArg.equals("--solver")) {
+                bSolver = true;
+            }
+            else if (sArg.equals("--mcts")) {
+                bMcts = true;
+            }
+            else if (sArg.equals("--heuristic")) {
+                daHeuristic = new HeuristicController().getWeights();
+            }
+            else if (sArg.startsWith("--heuristic=")) {
+                final String sCheckpoint = sArg.substring("--heuristic=".length());
+                try {
+                    daHeuristic = GeneticTrainer.readBest(Paths.get(sCheckpoint));
+                }
+                catch (final IOException e) {
+                    System.err.println("Could not read " + sCheckpoint + ": " + e.getMessage());
+                    daHeuristic = new HeuristicController().getWeights();
+                }
+            }
+        }
+        if (bSolver) {
+            iHumans = 0;
+            iBots = 1;
+            if (!HamiltonianController.isCovering(iCols, iRows)) {
+                iCols++;
+            }
+        }
+        if ((iHumans + iBots) == 0) {
+            iBots = 1;
+        }
+
+        final SnakeGame snake = new SnakeGame(iCols, iRows, iHumans, iBots, bSolver, bMcts,
+                                              daHeuristic);
+        for (final String sArg : args) {
+            if (sArg.equals("--turbo")) {
+                snake.setTurbo(true);
+            }
+            else if (sArg.equals("--autopilot")) {
+                snake.setAutopilot(true);
+            }
+            else if (sArg.startsWith("--turbo=")) {
+                snake.setTurboCyclesPerSecond(
+                        Float.parseFloat(sArg.substring("--turbo=".length())));
+                snake.setTurbo(true);
+            }
+        }
+        StatsServer.startDefault(snake.ldbScores);
         snake.startGame();
     }
 
     public List<Direction> getDirections() {
-        return directions;
+        return engine.getDirectionList();
     }
 
     private class snakeKeyAdapter extends KeyAdapter {
@@ -723,7 +976,9 @@ public class SnakeGame extends JFrame {
                  */
                 case KeyEvent.VK_W:
                 case KeyEvent.VK_UP:
-                    pressedUp();
+                case KeyEvent.VK_I:
+                case KeyEvent.VK_NUMPAD8:
+                    pressedDirection(e.getKeyCode());
                     break;
 
                 /*
@@ -735,7 +990,9 @@ public class SnakeGame extends JFrame {
                  */
                 case KeyEvent.VK_S:
                 case KeyEvent.VK_DOWN:
-                    pressedDown();
+                case KeyEvent.VK_K:
+                case KeyEvent.VK_NUMPAD5:
+                    pressedDirection(e.getKeyCode());
                     break;
 
                 /*
@@ -747,7 +1004,9 @@ public class SnakeGame extends JFrame {
                  */
                 case KeyEvent.VK_A:
                 case KeyEvent.VK_LEFT:
-                    pressedLeft();
+                case KeyEvent.VK_J:
+                case KeyEvent.VK_NUMPAD4:
+                    pressedDirection(e.getKeyCode());
                     break;
 
                 /*
@@ -759,7 +1018,9 @@ public class SnakeGame extends JFrame {
                  */
                 case KeyEvent.VK_D:
                 case KeyEvent.VK_RIGHT:
-                    pressedRight();
+                case KeyEvent.VK_L:
+                case KeyEvent.VK_NUMPAD6:
+                    pressedDirection(e.getKeyCode());
                     break;
 
                 /*
@@ -782,11 +1043,42 @@ public class SnakeGame extends JFrame {
                 case KeyEvent.VK_C:
                     tryToLoad();
                     break;
+
+                /*
+                 * Toggle turbo mode.
+                 */
+                case KeyEvent.VK_T:
+                    setTurbo(!bTurbo);
+                    break;
+
+                /*
+                 * Toggle the autopilot.
+                 */
+                case KeyEvent.VK_O:
+                    setAutopilot(!bAutopilot);
+                    break;
+
+                /*
+                 * Toggle the performance overlay.
+                 */
+                case KeyEvent.VK_F3:
+                    bOverlayVisible = !bOverlayVisible;
+                    break;
             }
 
+            /*
+             * Any key might have changed what is on screen (or unpaused the
+             * game), so don't wait for the idle frame to come around.
+             */
+            wakeLoop();
+
         }
 
         private void tryToLoad() {
+            if (!isSaveSupported()) {
+                showSaveUnsupported();
+                return;
+            }
             // Pause the game before loading
             if (!bPaused) {
                 bPaused = true;
@@ -796,7 +1088,10 @@ public class SnakeGame extends JFrame {
         }
 
         private void tryToSave() {
-            if (!bGameOver && !bNewGame) {
+            if (!isSaveSupported()) {
+                showSaveUnsupported();
+            }
+            else if (!isGameOver() && !bNewGame) {
                 // Pause the game before saving
                 if (!bPaused) {
                     bPaused = true;
@@ -816,8 +1111,17 @@ public class SnakeGame extends JFrame {
             }
         }
 
+        private void showSaveUnsupported() {
+            JOptionPane.showMessageDialog(null,
+                                          "Only single player games on " +
+                                                  "the default board can " +
+                                                  "be saved and loaded",
+                                          "Not supported",
+                                          JOptionPane.ERROR_MESSAGE);
+        }
+
         private void pressedEnter() {
-            if (bNewGame || bGameOver) {
+            if (bNewGame || isGameOver()) {
                 // Unpause the game if it is paused
                 if (bPaused) {
                     bPaused = false;
@@ -828,59 +1132,33 @@ public class SnakeGame extends JFrame {
         }
 
         private void pauseUnpause() {
-            if (!bGameOver) {
+            if (!isGameOver()) {
                 bPaused = !bPaused;
                 clkLogicTimer.setPaused(bPaused);
             }
         }
 
-        private void pressedRight() {
-            if (!bPaused && !bGameOver) {
-                if (directions.size() < iMAX_DIRECTIONS) {
-                    final Direction last = directions.peekLast();
-                    if ((last != Direction.West) && (last !=
-                            Direction.East)) {
-                        directions.addLast(Direction.East);
-                    }
-                }
-            }
-        }
-
-        private void pressedLeft() {
-            if (!bPaused && !bGameOver) {
-                if (directions.size() < iMAX_DIRECTIONS) {
-                    final Direction last = directions.peekLast();
-                    if ((last != Direction.East) && (last !=
-                            Direction.West)) {
-                        directions.addLast(Direction.West);
-                    }
-                }
-            }
-        }
-
-        private void pressedDown() {
-            if (!bPaused && !bGameOver) {
-                if (directions.size() < iMAX_DIRECTIONS) {
-                    final Direction last = directions.peekLast();
-                    if ((last != Direction.North) && (last !=
-                            Direction.South)) {
-                        directions.addLast(Direction.South);
+        private void pressedDirection(final int iKeyCode) {
+            if (!bPaused && !isGameOver()) {
+                /*
+                 * Hand the key to every player's bindings, since players
+                 * each have their own keys.
+                 */
+                for (int iSnake = 0; iSnake < iHumans; iSnake++) {
+                    final Direction direction = ((KeyboardController)
+                            ctlControllers[iSnake]).getDirection(iKeyCode);
+                    if ((direction != null) && engine.isAlive(iSnake) &&
+                            engine.queueDirection(iSnake, direction)) {
+                        markInput();
                     }
                 }
             }
         }
 
-        private void pressedUp() {
-            if (!bPaused && !bGameOver) {
-                if (directions.size() < iMAX_DIRECTIONS) {
-                    final Direction last = directions.peekLast();
-                    if ((last != Direction.South) && (last !=
-                            Direction.North)) {
-                        directions.addLast(Direction.North);
-                    }
-                }
+        private void markInput() {
+            if (lInputTime == 0) {
+                lInputTime = System.nanoTime();
             }
         }
-
     }
 }
\ No newline at end of file
@@ -0,0 +1,287 @@
+package snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * The {@code SpectatorClient} class simulates many spectators of a
+ * {@link SpectatorHub} from a single thread. Every spectator decodes the
+ * stream with its own {@link SpectatorDecoder}, so that a broken stream shows
+ * up as frames that couldn't be decoded.
+ * <p>
+ * At the end of the run it prints how many spectators connected, how many
+ * frames and bytes each one received per second, and how often spectators
+ * fell behind and had to wait for a keyframe.
+ * <p>
+ * Usage: {@code SpectatorClient [host] [port] [spectators] [seconds]}
+ */
+public final class SpectatorClient {
+
+    /**
+     * The default number of spectators.
+     */
+    private static final int iDEFAULT_SPECTATORS = 1000;
+
+    /**
+     * The default length of the run, in seconds.
+     */
+    private static final int iDEFAULT_SECONDS = 10;
+
+    /**
+     * The initial size of each spectator's receive buffer, in bytes. The
+     * buffer grows if a keyframe doesn't fit.
+     */
+    private static final int iBUFFER_SIZE = 4096;
+
+    /**
+     * The number of connections opened before waiting for them to complete,
+     * so that the hub's accept queue doesn't overflow.
+     */
+    private static final int iCONNECT_BATCH = 256;
+
+    /**
+     * The selector every spectator is registered with.
+     */
+    private final Selector selSelector;
+
+    /**
+     * The number of spectators that connected.
+     */
+    private int iConnected;
+
+    /**
+     * The number of spectators whose connection was closed early.
+     */
+    private int iDisconnected;
+
+    /**
+     * The number of bytes received.
+     */
+    private long lBytes;
+
+    /**
+     * The number of frames decoded.
+     */
+    private long lFrames;
+
+    /**
+     * The number of times a spectator missed frames.
+     */
+    private long lGaps;
+
+    /**
+     * Creates a new spectator client.
+     *
+     * @throws IOException If the selector could not be opened.
+     */
+    private SpectatorClient() throws IOException {
+        selSelector = Selector.open();
+    }
+
+    /**
+     * Opens the connections of every spectator, in batches.
+     *
+     * @param addrHub     The address of the hub.
+     * @param iSpectators The number of spectators.
+     * @throws IOException If a connection could not be opened.
+     */
+    private void connect(final InetSocketAddress addrHub, final int iSpectators)
+            throws IOException {
+        int iOpened = 0;
+        while (iOpened < iSpectators) {
+            final int iBatch = Math.min(iCONNECT_BATCH, iSpectators - iOpened);
+            for (int iSpectator = 0; iSpectator < iBatch; iSpectator++) {
+                final SocketChannel schChannel = SocketChannel.open();
+                schChannel.configureBlocking(false);
+                schChannel.connect(addrHub);
+                schChannel.register(selSelector, SelectionKey.OP_CONNECT, new Viewer());
+            }
+            iOpened += iBatch;
+
+            /*
+             * Serve the spectators that are already connected while the
+             * batch completes.
+             */
+            while ((iConnected + iDisconnected) < iOpened) {
+                poll(100L);
+            }
+        }
+    }
+
+    /**
+     * Waits for events and handles them.
+     *
+     * @param lTimeout The longest time to wait, in milliseconds.
+     * @throws IOException If the selector failed.
+     */
+    private void poll(final long lTimeout) throws IOException {
+        selSelector.select(lTimeout);
+        final Iterator<SelectionKey> itKeys = selSelector.selectedKeys().iterator();
+        while (itKeys.hasNext()) {
+            final SelectionKey key = itKeys.next();
+            itKeys.remove();
+            try {
+                if (key.isConnectable()) {
+                    ((SocketChannel) key.channel()).finishConnect();
+                    key.interestOps(SelectionKey.OP_READ);
+                    iConnected++;
+                }
+                else if (key.isReadable()) {
+                    read(key);
+                }
+            }
+            catch (final IOException e) {
+                close(key);
+            }
+        }
+    }
+
+    /**
+     * Reads and decodes the frames the hub sent a spectator.
+     *
+     * @param key The spectator's key.
+     * @throws IOException If the connection failed.
+     */
+    private void read(final SelectionKey key) throws IOException {
+        final Viewer viewer = (Viewer) key.attachment();
+        final int iRead = ((SocketChannel) key.channel()).read(viewer.bufIn);
+        if (iRead < 0) {
+            close(key);
+            return;
+        }
+        lBytes += iRead;
+
+        viewer.bufIn.flip();
+        while (viewer.decoder.decode(viewer.bufIn)) {
+            final int iFrame = viewer.decoder.getFrame();
+            if ((viewer.iLastFrame >= 0) && (iFrame != (viewer.iLastFrame + 1))) {
+                lGaps++;
+            }
+            viewer.iLastFrame = iFrame;
+            lFrames++;
+        }
+        viewer.bufIn.compact();
+
+        /*
+         * A buffer that is full without holding a whole frame is too small
+         * for the frames of this hub.
+         */
+        if (!viewer.bufIn.hasRemaining()) {
+            final ByteBuffer bufLarger = ByteBuffer.allocate(viewer.bufIn.capacity() * 2);
+            viewer.bufIn.flip();
+            bufLarger.put(viewer.bufIn);
+            viewer.bufIn = bufLarger;
+        }
+    }
+
+    /**
+     * Closes a spectator's connection.
+     *
+     * @param key The spectator's key.
+     */
+    private void close(final SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        }
+        catch (final IOException e) {
+            /*
+             * The connection is gone either way.
+             */
+        }
+        iDisconnected++;
+    }
+
+    /**
+     * Closes every connection and the selector.
+     */
+    private void shutdown() {
+        for (final SelectionKey key : selSelector.keys()) {
+            try {
+                key.channel().close();
+            }
+            catch (final IOException e) {
+                /*
+                 * The connection is gone either way.
+                 */
+            }
+        }
+        try {
+            selSelector.close();
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Entry point of the spectator client.
+     *
+     * @param args The host and port of the hub, the number of spectators and
+     *             the length of the run in seconds, all optional.
+     * @throws IOException If the hub could not be reached.
+     */
+    public static void main(final String[] args) throws IOException {
+        final String sHost = (args.length > 0) ? args[0] : "127.0.0.1";
+        final int iPort = (args.length > 1) ? Integer.parseInt(args[1]) : SpectatorHub.iDEFAULT_PORT;
+        final int iSpectators = (args.length > 2) ?
+                Integer.parseInt(args[2]) : iDEFAULT_SPECTATORS;
+        final int iSeconds = (args.length > 3) ? Integer.parseInt(args[3]) : iDEFAULT_SECONDS;
+
+        final SpectatorClient client = new SpectatorClient();
+        client.connect(new InetSocketAddress(sHost, iPort), iSpectators);
+
+        /*
+         * Only count the frames of the measured interval.
+         */
+        client.lBytes = 0;
+        client.lFrames = 0;
+        client.lGaps = 0;
+        final long lStart = System.nanoTime();
+        final long lEnd = lStart + (iSeconds * 1000L * SnakeGame.MILLION);
+        long lNow;
+        while ((lNow = System.nanoTime()) < lEnd) {
+            client.poll(Math.max(1L, (lEnd - lNow) / SnakeGame.MILLION));
+        }
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+        client.shutdown();
+
+        final int iWatching = Math.max(1, client.iConnected - client.iDisconnected);
+        System.out.printf("spectators=%d connected=%d disconnected=%d " +
+                                  "frames/s=%.0f (%.1f each) bytes/s=%.0f (%.0f each) gaps=%d%n",
+                          iSpectators,
+                          client.iConnected,
+                          client.iDisconnected,
+                          client.lFrames / dSeconds,
+                          client.lFrames / dSeconds / iWatching,
+                          client.lBytes / dSeconds,
+                          client.lBytes / dSeconds / iWatching,
+                          client.lGaps);
+    }
+
+    /**
+     * The {@code Viewer} class holds the state of one simulated spectator.
+     */
+    private static final class Viewer {
+
+        /**
+         * The decoder of the spectator's stream.
+         */
+        private final SpectatorDecoder decoder = new SpectatorDecoder();
+
+        /**
+         * The bytes received but not decoded yet.
+         */
+        private ByteBuffer bufIn = ByteBuffer.allocate(iBUFFER_SIZE);
+
+        /**
+         * The number of the last frame decoded, or -1 before the first.
+         */
+        private int iLastFrame = -1;
+    }
+}
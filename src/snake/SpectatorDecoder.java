@@ -0,0 +1,172 @@
+package snake;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code SpectatorDecoder} class rebuilds a game from the frames of a
+ * {@link SpectatorStream}. Deltas that arrive before the first keyframe are
+ * skipped, since there is nothing to apply them to yet.
+ */
+public class SpectatorDecoder {
+
+    /**
+     * The board as last decoded, or null before the first keyframe.
+     */
+    private GameBoard board;
+
+    /**
+     * The score of each snake.
+     */
+    private int[] iaScores;
+
+    /**
+     * Whether or not each snake is alive.
+     */
+    private boolean[] baAlive;
+
+    /**
+     * The number of the last frame decoded.
+     */
+    private int iFrame;
+
+    /**
+     * Decodes one frame, if the buffer holds a whole one. The buffer's
+     * position is moved past the frame.
+     *
+     * @param bufIn The buffer to read from.
+     * @return Whether or not a frame was decoded.
+     */
+    public boolean decode(final ByteBuffer bufIn) {
+        /*
+         * Check that the length prefix and the body are both there before
+         * reading anything.
+         */
+        final int iStart = bufIn.position();
+        int iLength = 0;
+        int iShift = 0;
+        int iPosition = iStart;
+        while (true) {
+            if (iPosition >= bufIn.limit()) {
+                return false;
+            }
+            final byte bByte = bufIn.get(iPosition++);
+            iLength |= (bByte & 0x7F) << iShift;
+            iShift += 7;
+            if ((bByte & 0x80) == 0) {
+                break;
+            }
+        }
+        if ((bufIn.limit() - iPosition) < iLength) {
+            return false;
+        }
+
+        bufIn.position(iPosition);
+        final byte bType = bufIn.get();
+        iFrame = SpectatorStream.getVarInt(bufIn);
+        if (bType == SpectatorStream.bKEYFRAME) {
+            decodeKeyframe(bufIn);
+        }
+        else if (board != null) {
+            decodeDelta(bufIn);
+        }
+        bufIn.position(iPosition + iLength);
+        return true;
+    }
+
+    /**
+     * Decodes the body of a keyframe.
+     *
+     * @param bufIn The buffer to read from.
+     */
+    private void decodeKeyframe(final ByteBuffer bufIn) {
+        final int iCols = SpectatorStream.getVarInt(bufIn);
+        final int iRows = SpectatorStream.getVarInt(bufIn);
+        final int iSnakes = SpectatorStream.getVarInt(bufIn);
+        if ((board == null) || (board.getColumns() != iCols) || (board.getRows() != iRows)) {
+            board = new GameBoard(iCols, iRows);
+        }
+        if ((iaScores == null) || (iaScores.length != iSnakes)) {
+            iaScores = new int[iSnakes];
+            baAlive = new boolean[iSnakes];
+        }
+        for (int iSnake = 0; iSnake < iSnakes; iSnake++) {
+            final int iValue = SpectatorStream.getVarInt(bufIn);
+            iaScores[iSnake] = iValue >>> 1;
+            baAlive[iSnake] = (iValue & 1) != 0;
+        }
+        final int iCells = board.getCellCount();
+        for (int iCell = 0; iCell < iCells; iCell += 2) {
+            final byte bPacked = bufIn.get();
+            board.setCell(iCell, (byte) (bPacked & 0x0F));
+            if ((iCell + 1) < iCells) {
+                board.setCell(iCell + 1, (byte) ((bPacked >> 4) & 0x0F));
+            }
+        }
+    }
+
+    /**
+     * Decodes the body of a delta.
+     *
+     * @param bufIn The buffer to read from.
+     */
+    private void decodeDelta(final ByteBuffer bufIn) {
+        final int iChanges = SpectatorStream.getVarInt(bufIn);
+        for (int iChange = 0; iChange < iChanges; iChange++) {
+            final int iValue = SpectatorStream.getVarInt(bufIn);
+            board.setCell(iValue >>> SpectatorStream.iCODE_BITS,
+                          (byte) (iValue & ((1 << SpectatorStream.iCODE_BITS) - 1)));
+        }
+        for (int iSnake = 0; iSnake < iaScores.length; iSnake++) {
+            final int iValue = SpectatorStream.getVarInt(bufIn);
+            iaScores[iSnake] += SpectatorStream.unZigZag(iValue >>> 1);
+            baAlive[iSnake] = (iValue & 1) != 0;
+        }
+    }
+
+    /**
+     * Checks whether a keyframe has been decoded yet.
+     *
+     * @return Whether or not the decoder is in sync with the stream.
+     */
+    public boolean isSynced() {
+        return board != null;
+    }
+
+    /**
+     * Gets the board as last decoded.
+     *
+     * @return The board, or null before the first keyframe.
+     */
+    public GameBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Gets the score of a snake.
+     *
+     * @param iSnake The snake.
+     * @return The score.
+     */
+    public int getScore(final int iSnake) {
+        return iaScores[iSnake];
+    }
+
+    /**
+     * Checks whether a snake is alive.
+     *
+     * @param iSnake The snake.
+     * @return Whether or not the snake is alive.
+     */
+    public boolean isAlive(final int iSnake) {
+        return baAlive[iSnake];
+    }
+
+    /**
+     * Gets the number of the last frame decoded.
+     *
+     * @return The frame number.
+     */
+    public int getFrame() {
+        return iFrame;
+    }
+}
@@ -0,0 +1,438 @@
+package snake;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The {@code SpectatorHub} class runs a game of bots and streams it live to
+ * any number of spectators over TCP.
+ * <p>
+ * Like the {@link GameServer}, a single thread waits on a {@link Selector}
+ * until the next tick is due and then does a whole pass. Each tick is
+ * encoded once by a {@link SpectatorStream} and the same bytes are written
+ * to every spectator, so adding a spectator only adds a write. A spectator
+ * that can't keep up, or that just joined, is sent nothing until the next
+ * keyframe, so nobody ever receives a delta they can't apply.
+ * <p>
+ * Usage: {@code SpectatorHub [port] [bots] [size] [ticksPerSecond]}
+ *
+ * @see SpectatorClient
+ */
+public class SpectatorHub implements Runnable {
+
+    /**
+     * The default port to listen on.
+     */
+    public static final int iDEFAULT_PORT = 7778;
+
+    /**
+     * The number of pending connections the operating system may queue.
+     */
+    private static final int iBACKLOG = 4096;
+
+    /**
+     * The engine of the game being streamed.
+     */
+    private final SnakeEngine engine;
+
+    /**
+     * The controller of each snake.
+     */
+    private final SnakeController[] ctlControllers;
+
+    /**
+     * The encoder of the stream.
+     */
+    private final SpectatorStream strStream;
+
+    /**
+     * The channel that accepts new spectators.
+     */
+    private final ServerSocketChannel sscServer;
+
+    /**
+     * The selector that every channel is registered with.
+     */
+    private final Selector selSelector;
+
+    /**
+     * The key the server channel is registered with for new spectators.
+     */
+    private final SelectionKey keyAccept;
+
+    /**
+     * The buffer that anything spectators send is read into and discarded.
+     */
+    private final ByteBuffer bufDiscard;
+
+    /**
+     * The connected spectators, in no particular order.
+     */
+    private final List<Spectator> lstSpectators;
+
+    /**
+     * The number of nanoseconds between ticks.
+     */
+    private final long lTickNanos;
+
+    /**
+     * The number of spectators that failed to be accepted or set up.
+     */
+    private volatile long lAcceptFailures;
+
+    /**
+     * Whether or not the hub should keep running.
+     */
+    private volatile boolean bRunning;
+
+    /**
+     * Creates a new hub and starts listening. Call {@link #run()} to start
+     * the game and the stream.
+     *
+     * @param addrLocal         The address to listen on.
+     * @param engine            The engine of the game to stream.
+     * @param ctlControllers    The controller of each snake.
+     * @param fTicksPerSecond   The number of ticks per second.
+     * @param iKeyframeInterval The number of frames between keyframes.
+     * @throws IOException If the hub could not listen on the address.
+     */
+    public SpectatorHub(final InetSocketAddress addrLocal,
+                        final SnakeEngine engine,
+                        final SnakeController[] ctlControllers,
+                        final float fTicksPerSecond,
+                        final int iKeyframeInterval) throws IOException {
+        this.engine = engine;
+        this.ctlControllers = ctlControllers.clone();
+        this.strStream = new SpectatorStream(engine, iKeyframeInterval);
+        this.lTickNanos = (long) ((1000L * SnakeGame.MILLION) / fTicksPerSecond);
+        this.bufDiscard = ByteBuffer.allocateDirect(256);
+        this.lstSpectators = new ArrayList<>();
+        this.selSelector = Selector.open();
+        this.sscServer = ServerSocketChannel.open();
+        sscServer.bind(addrLocal, iBACKLOG);
+        sscServer.configureBlocking(false);
+        this.keyAccept = sscServer.register(selSelector, SelectionKey.OP_ACCEPT);
+        this.bRunning = true;
+    }
+
+    /**
+     * Gets the port the hub is listening on.
+     *
+     * @return The port.
+     * @throws IOException If the server socket is closed.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) sscServer.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Gets the number of spectators that failed to be accepted or set up,
+     * for instance because the hub ran out of file descriptors.
+     *
+     * @return The number of failures.
+     */
+    public long getAcceptFailureCount() {
+        return lAcceptFailures;
+    }
+
+    /**
+     * Asks the hub to stop. {@link #run()} returns once the current pass is
+     * done.
+     */
+    public void stop() {
+        bRunning = false;
+        selSelector.wakeup();
+    }
+
+    /**
+     * Runs the game and streams it until {@link #stop()} is called.
+     */
+    @Override
+    public void run() {
+        long lNextTick = System.nanoTime();
+        try {
+            while (bRunning) {
+                final long lWait = lNextTick - System.nanoTime();
+                if (lWait <= 0) {
+                    tick();
+                    lNextTick += lTickNanos;
+                    if ((lNextTick - System.nanoTime()) < 0) {
+                        lNextTick = System.nanoTime() + lTickNanos;
+                    }
+                    continue;
+                }
+
+                selSelector.select(Math.max(1L, lWait / SnakeGame.MILLION));
+                final Iterator<SelectionKey> itKeys = selSelector.selectedKeys().iterator();
+                while (itKeys.hasNext()) {
+                    final SelectionKey key = itKeys.next();
+                    itKeys.remove();
+                    handleKey(key);
+                }
+            }
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+        }
+        finally {
+            while (!lstSpectators.isEmpty()) {
+                close(lstSpectators.get(lstSpectators.size() - 1));
+            }
+            try {
+                sscServer.close();
+                selSelector.close();
+            }
+            catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Advances the game by one tick, starting a new game once the last one
+     * is over, and sends the frame to every spectator.
+     */
+    private void tick() {
+        if (keyAccept.interestOps() == 0) {
+            keyAccept.interestOps(SelectionKey.OP_ACCEPT);
+        }
+        if (engine.isGameOver()) {
+            engine.reset();
+        }
+        else {
+            for (int iSnake = 0; iSnake < ctlControllers.length; iSnake++) {
+                ctlControllers[iSnake].control(engine, iSnake);
+            }
+            engine.tick();
+        }
+
+        final ByteBuffer bufFrame = strStream.encode();
+        final boolean bKeyframe = strStream.isKeyframe();
+        final int iStart = bufFrame.position();
+        for (int iSpectator = lstSpectators.size() - 1; iSpectator >= 0; iSpectator--) {
+            final Spectator spectator = lstSpectators.get(iSpectator);
+
+            /*
+             * A spectator that is still writing the previous frame misses
+             * this one, and has to wait for a keyframe to catch up again.
+             */
+            if (spectator.bufPending.position() > 0) {
+                spectator.bSynced = false;
+                continue;
+            }
+            if (!spectator.bSynced && !bKeyframe) {
+                continue;
+            }
+
+            bufFrame.position(iStart);
+            try {
+                spectator.schChannel.write(bufFrame);
+                if (bufFrame.hasRemaining()) {
+                    spectator.bufPending.put(bufFrame);
+                    spectator.keyKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                }
+                spectator.bSynced = true;
+            }
+            catch (final IOException e) {
+                close(spectator);
+            }
+        }
+    }
+
+    /**
+     * Handles a key that the selector found ready.
+     *
+     * @param key The key.
+     */
+    private void handleKey(final SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+
+        final Spectator spectator = (Spectator) key.attachment();
+        try {
+            if (key.isReadable()) {
+                bufDiscard.clear();
+                if (spectator.schChannel.read(bufDiscard) < 0) {
+                    close(spectator);
+                    return;
+                }
+            }
+            if (key.isValid() && key.isWritable()) {
+                final ByteBuffer bufPending = spectator.bufPending;
+                bufPending.flip();
+                spectator.schChannel.write(bufPending);
+                final boolean bDone = !bufPending.hasRemaining();
+                bufPending.compact();
+                if (bDone) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            }
+        }
+        catch (final IOException e) {
+            close(spectator);
+        }
+    }
+
+    /**
+     * Accepts every pending spectator.
+     * <p>
+     * A connection that fails to be accepted or set up, say because the hub
+     * ran out of file descriptors, is counted and dropped, and the stream
+     * carries on for everyone else. Accepting then pauses until the next
+     * tick, so that the failure doesn't turn into a busy loop.
+     */
+    private void accept() {
+        while (true) {
+            final SocketChannel schClient;
+            try {
+                schClient = sscServer.accept();
+            }
+            catch (final IOException e) {
+                lAcceptFailures++;
+                keyAccept.interestOps(0);
+                return;
+            }
+            if (schClient == null) {
+                return;
+            }
+            final SelectionKey keyClient;
+            try {
+                schClient.configureBlocking(false);
+                keyClient = schClient.register(selSelector, SelectionKey.OP_READ);
+            }
+            catch (final IOException e) {
+                lAcceptFailures++;
+                closeChannel(schClient);
+                continue;
+            }
+            final Spectator spectator = new Spectator(schClient, strStream.getMaxFrameSize());
+            spectator.keyKey = keyClient;
+            keyClient.attach(spectator);
+            spectator.iIndex = lstSpectators.size();
+            lstSpectators.add(spectator);
+        }
+    }
+
+    /**
+     * Closes the channel of a spectator.
+     *
+     * @param schChannel The channel.
+     */
+    private static void closeChannel(final SocketChannel schChannel) {
+        try {
+            schChannel.close();
+        }
+        catch (final IOException e) {
+            /*
+             * The connection is gone either way.
+             */
+        }
+    }
+
+    /**
+     * Closes a spectator's connection.
+     *
+     * @param spectator The spectator.
+     */
+    private void close(final Spectator spectator) {
+        if (spectator.iIndex < 0) {
+            return;
+        }
+        spectator.keyKey.cancel();
+        closeChannel(spectator.schChannel);
+        final Spectator spcLast = lstSpectators.remove(lstSpectators.size() - 1);
+        if (spcLast != spectator) {
+            spcLast.iIndex = spectator.iIndex;
+            lstSpectators.set(spcLast.iIndex, spcLast);
+        }
+        spectator.iIndex = -1;
+    }
+
+    /**
+     * Entry point of the hub.
+     *
+     * @param args The port, the number of bots, the size of the board and the
+     *             number of ticks per second, all optional.
+     * @throws IOException If the hub could not listen on the port.
+     */
+    public static void main(final String[] args) throws IOException {
+        final int iPort = (args.length > 0) ? Integer.parseInt(args[0]) : iDEFAULT_PORT;
+        final int iBots = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+        final int iSize = (args.length > 2) ? Integer.parseInt(args[2]) : 48;
+        final float fTicksPerSecond = (args.length > 3) ?
+                Float.parseFloat(args[3]) : SnakeGame.CYCLES_PER_SECOND;
+
+        final SnakeEngine engine = new SnakeEngine(iSize, iSize, iBots, new Random());
+        final SnakeController[] ctlBots = new SnakeController[iBots];
+        for (int iBot = 0; iBot < iBots; iBot++) {
+            ctlBots[iBot] = new GreedyController();
+        }
+        engine.reset();
+
+        final SpectatorHub hub = new SpectatorHub(new InetSocketAddress(iPort),
+                                                  engine,
+                                                  ctlBots,
+                                                  fTicksPerSecond,
+                                                  SpectatorStream.iDEFAULT_KEYFRAME_INTERVAL);
+        System.out.println("Streaming " + iBots + " bots on port " + hub.getPort());
+        hub.run();
+    }
+
+    /**
+     * The {@code Spectator} class holds the state of one spectator's
+     * connection.
+     */
+    private static final class Spectator {
+
+        /**
+         * The channel to the spectator.
+         */
+        private final SocketChannel schChannel;
+
+        /**
+         * The part of a frame that the socket didn't take yet.
+         */
+        private final ByteBuffer bufPending;
+
+        /**
+         * The key the channel is registered with.
+         */
+        private SelectionKey keyKey;
+
+        /**
+         * Whether or not the spectator has received every frame since the
+         * last keyframe it was sent.
+         */
+        private boolean bSynced;
+
+        /**
+         * The position of the spectator in the list, or -1 once it's closed.
+         */
+        private int iIndex;
+
+        /**
+         * Creates a new spectator.
+         *
+         * @param schChannel    The channel to the spectator.
+         * @param iMaxFrameSize The largest size a frame can have.
+         */
+        private Spectator(final SocketChannel schChannel, final int iMaxFrameSize) {
+            this.schChannel = schChannel;
+            this.bufPending = ByteBuffer.allocateDirect(iMaxFrameSize);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package snake;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code SpectatorStream} class encodes a live game as a stream of
+ * frames for spectators. Most frames are deltas: the tiles that changed
+ * since the previous frame (new heads, retracted tails, fruits spawned or
+ * eaten) and the change in each snake's score, all as varints. Every so
+ * often, and whenever the whole board was reset, a keyframe carries the
+ * complete board packed two tiles to a byte, so that spectators who join
+ * late can sync up.
+ * <p>
+ * Each frame is encoded once into a direct buffer that is reused for the
+ * next frame, and written as is to every spectator.
+ * <p>
+ * A frame is a varint length followed by that many bytes:
+ * <pre>
+ * keyframe: 'K' tick cols rows snakes (score&lt;&lt;1|alive)* packedTiles
+ * delta:    'D' tick changes (cell&lt;&lt;3|code)* (zigzag(scoreDelta)&lt;&lt;1|alive)*
+ * </pre>
+ *
+ * @see SpectatorDecoder
+ * @see SpectatorHub
+ */
+public class SpectatorStream {
+
+    /**
+     * The type of a keyframe.
+     */
+    public static final byte bKEYFRAME = 'K';
+
+    /**
+     * The type of a delta.
+     */
+    public static final byte bDELTA = 'D';
+
+    /**
+     * The default number of frames between keyframes.
+     */
+    public static final int iDEFAULT_KEYFRAME_INTERVAL = 50;
+
+    /**
+     * The number of bits a tile code is shifted by in a delta.
+     */
+    static final int iCODE_BITS = 3;
+
+    /**
+     * The number of bytes reserved in front of each frame for its length.
+     */
+    private static final int iLENGTH_RESERVE = 5;
+
+    /**
+     * The engine of the game being streamed.
+     */
+    private final SnakeEngine engine;
+
+    /**
+     * The board of the game being streamed.
+     */
+    private final GameBoard board;
+
+    /**
+     * The number of frames between keyframes.
+     */
+    private final int iKeyframeInterval;
+
+    /**
+     * The buffer each frame is encoded into.
+     */
+    private final ByteBuffer bufFrame;
+
+    /**
+     * The score of each snake in the previous frame.
+     */
+    private final int[] iaLastScores;
+
+    /**
+     * The number of frames encoded.
+     */
+    private int iFrames;
+
+    /**
+     * The number of frames since the last keyframe.
+     */
+    private int iSinceKeyframe;
+
+    /**
+     * Whether or not the last frame was a keyframe.
+     */
+    private boolean bKeyframe;
+
+    /**
+     * Creates a new stream of a game. Changes to the board are tracked from
+     * now on, and the first frame will be a keyframe.
+     *
+     * @param engine            The engine of the game.
+     * @param iKeyframeInterval The number of frames between keyframes.
+     */
+    public SpectatorStream(final SnakeEngine engine, final int iKeyframeInterval) {
+        this.engine = engine;
+        this.board = engine.getBoard();
+        this.iKeyframeInterval = iKeyframeInterval;
+        this.iaLastScores = new int[engine.getSnakeCount()];
+        this.iSinceKeyframe = iKeyframeInterval;
+
+        /*
+         * A delta never grows larger than a keyframe, since a delta that
+         * would is sent as a keyframe instead.
+         */
+        this.bufFrame = ByteBuffer.allocateDirect(iLENGTH_RESERVE + 1 + (5 * 5) +
+                                                          (5 * engine.getSnakeCount()) +
+                                                          board.getCellCount());
+        board.trackChanges();
+    }
+
+    /**
+     * Encodes everything that happened since the previous frame.
+     *
+     * @return The frame, between its position and limit. The buffer is
+     * reused by the next call, and must not be modified.
+     */
+    public ByteBuffer encode() {
+        /*
+         * Send a keyframe when one is due, when the board was reset, or when
+         * so much changed that a keyframe would be smaller anyway.
+         */
+        bKeyframe = (++iSinceKeyframe >= iKeyframeInterval) || board.isAllChanged() ||
+                (board.getChangeCount() > (board.getCellCount() / 8));
+
+        bufFrame.clear();
+        bufFrame.position(iLENGTH_RESERVE);
+        if (bKeyframe) {
+            encodeKeyframe();
+            iSinceKeyframe = 0;
+        }
+        else {
+            encodeDelta();
+        }
+        board.beginChanges();
+        iFrames++;
+
+        /*
+         * Write the length right in front of the body.
+         */
+        final int iEnd = bufFrame.position();
+        final int iLength = iEnd - iLENGTH_RESERVE;
+        final int iStart = iLENGTH_RESERVE - getVarIntSize(iLength);
+        bufFrame.position(iStart);
+        putVarInt(bufFrame, iLength);
+        bufFrame.limit(iEnd);
+        bufFrame.position(iStart);
+        return bufFrame;
+    }
+
+    /**
+     * Encodes the whole board.
+     */
+    private void encodeKeyframe() {
+        bufFrame.put(bKEYFRAME);
+        putVarInt(bufFrame, iFrames);
+        putVarInt(bufFrame, board.getColumns());
+        putVarInt(bufFrame, board.getRows());
+        putVarInt(bufFrame, engine.getSnakeCount());
+        for (int iSnake = 0; iSnake < iaLastScores.length; iSnake++) {
+            iaLastScores[iSnake] = engine.getScore(iSnake);
+            putVarInt(bufFrame, (iaLastScores[iSnake] << 1) | (engine.isAlive(iSnake) ? 1 : 0));
+        }
+        final int iCells = board.getCellCount();
+        for (int iCell = 0; iCell < iCells; iCell += 2) {
+            final int iHigh = ((iCell + 1) < iCells) ? board.getCell(iCell + 1) : 0;
+            bufFrame.put((byte) (board.getCell(iCell) | (iHigh << 4)));
+        }
+    }
+
+    /**
+     * Encodes the tiles and scores that changed.
+     */
+    private void encodeDelta() {
+        bufFrame.put(bDELTA);
+        putVarInt(bufFrame, iFrames);
+        putVarInt(bufFrame, board.getChangeCount());
+        for (int iChange = 0; iChange < board.getChangeCount(); iChange++) {
+            final int iCell = board.getChangedCell(iChange);
+            putVarInt(bufFrame, (iCell << iCODE_BITS) | board.getCell(iCell));
+        }
+        for (int iSnake = 0; iSnake < iaLastScores.length; iSnake++) {
+            final int iScore = engine.getScore(iSnake);
+            final int iDelta = iScore - iaLastScores[iSnake];
+            iaLastScores[iSnake] = iScore;
+            putVarInt(bufFrame, (zigZag(iDelta) << 1) | (engine.isAlive(iSnake) ? 1 : 0));
+        }
+    }
+
+    /**
+     * Checks whether the last frame encoded was a keyframe.
+     *
+     * @return Whether or not it was a keyframe.
+     */
+    public boolean isKeyframe() {
+        return bKeyframe;
+    }
+
+    /**
+     * Gets the largest size a frame can have, in bytes.
+     *
+     * @return The size.
+     */
+    public int getMaxFrameSize() {
+        return bufFrame.capacity();
+    }
+
+    /**
+     * Writes a non-negative int as a varint: seven bits per byte, lowest
+     * first, with the top bit set on every byte but the last.
+     *
+     * @param bufOut The buffer to write to.
+     * @param iValue The value.
+     */
+    static void putVarInt(final ByteBuffer bufOut, final int iValue) {
+        int iRest = iValue;
+        while ((iRest & ~0x7F) != 0) {
+            bufOut.put((byte) ((iRest & 0x7F) | 0x80));
+            iRest >>>= 7;
+        }
+        bufOut.put((byte) iRest);
+    }
+
+    /**
+     * Reads a varint written by {@link #putVarInt(ByteBuffer, int)}.
+     *
+     * @param bufIn The buffer to read from.
+     * @return The value.
+     */
+    static int getVarInt(final ByteBuffer bufIn) {
+        int iValue = 0;
+        int iShift = 0;
+        byte bByte;
+        do {
+            bByte = bufIn.get();
+            iValue |= (bByte & 0x7F) << iShift;
+            iShift += 7;
+        } while ((bByte & 0x80) != 0);
+        return iValue;
+    }
+
+    /**
+     * Calculates the number of bytes a varint takes.
+     *
+     * @param iValue The (non-negative) value.
+     * @return The number of bytes.
+     */
+    static int getVarIntSize(final int iValue) {
+        int iSize = 1;
+        int iRest = iValue >>> 7;
+        while (iRest != 0) {
+            iSize++;
+            iRest >>>= 7;
+        }
+        return iSize;
+    }
+
+    /**
+     * Maps a signed int onto an unsigned one, so that small negative values
+     * also make short varints.
+     *
+     * @param iValue The signed value.
+     * @return The zigzag encoded value.
+     */
+    static int zigZag(final int iValue) {
+        return (iValue << 1) ^ (iValue >> 31);
+    }
+
+    /**
+     * Reverses {@link #zigZag(int)}.
+     *
+     * @param iValue The zigzag encoded value.
+     * @return The signed value.
+     */
+    static int unZigZag(final int iValue) {
+        return (iValue >>> 1) ^ -(iValue & 1);
+    }
+}
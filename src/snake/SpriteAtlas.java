@@ -0,0 +1,217 @@
+package snake;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@code SpriteAtlas} class holds one pre-drawn sprite of every kind of
+ * tile at one tile size, side by side in a single image, so that a board
+ * can be drawn by copying rectangles out of it instead of drawing shapes and
+ * gradients for every tile. The sprites are drawn by a
+ * {@link BoardRenderer}, so they look like the tiles of the game window,
+ * frozen at one step of the animation, with the grid lines included.
+ * <p>
+ * Atlases are drawn once per tile size and shared: {@link #get(int)}
+ * returns the same atlas to every caller.
+ */
+public final class SpriteAtlas {
+
+    /**
+     * The sprite of an empty tile.
+     */
+    public static final int iSPRITE_EMPTY = 0;
+
+    /**
+     * The sprite of a fruit.
+     */
+    public static final int iSPRITE_FRUIT = 1;
+
+    /**
+     * The sprite of a bad fruit.
+     */
+    public static final int iSPRITE_BAD_FRUIT = 2;
+
+    /**
+     * The first sprite of a body. There is one per body color.
+     */
+    public static final int iSPRITE_BODY = 3;
+
+    /**
+     * The number of body colors.
+     */
+    public static final int iBODY_COLORS = 8;
+
+    /**
+     * The first sprite of a head, followed by one per {@link Direction}, in
+     * order.
+     */
+    public static final int iSPRITE_HEAD = iSPRITE_BODY + iBODY_COLORS;
+
+    /**
+     * The number of sprites.
+     */
+    private static final int iSPRITES = iSPRITE_HEAD + Direction.values().length;
+
+    /**
+     * The seed of the colors of the sprites, so that they look the same on
+     * every run.
+     */
+    private static final long lSEED = 0x534E4B45L;
+
+    /**
+     * The color behind the tiles, as in the game window.
+     */
+    private static final Color BACKGROUND = Color.DARK_GRAY.darker().darker();
+
+    /**
+     * The atlas of each tile size drawn so far.
+     */
+    private static final Map<Integer, SpriteAtlas> mapAtlases = new HashMap<>();
+
+    /**
+     * The size of each sprite in pixels.
+     */
+    private final int iTileSize;
+
+    /**
+     * The sprites, side by side.
+     */
+    private final BufferedImage imgSprites;
+
+    /**
+     * Draws the sprites of a tile size.
+     *
+     * @param iTileSize The size of each sprite in pixels.
+     */
+    private SpriteAtlas(final int iTileSize) {
+        this.iTileSize = iTileSize;
+        this.imgSprites = createImage(iSPRITES * iTileSize, iTileSize);
+
+        final BoardRenderer bdrRenderer = new BoardRenderer(1, 1, iTileSize);
+        bdrRenderer.setSeed(lSEED);
+        final Direction[] directions = Direction.values();
+        final Graphics2D g2dSprites = imgSprites.createGraphics();
+        try {
+            for (int iSprite = 0; iSprite < iSPRITES; iSprite++) {
+                /*
+                 * Each sprite is clipped to its own cell, since the jitter of
+                 * a bad fruit may reach past it.
+                 */
+                final Graphics gSprite = g2dSprites.create(iSprite * iTileSize, 0, iTileSize, iTileSize);
+                try {
+                    gSprite.setColor(BACKGROUND);
+                    gSprite.fillRect(0, 0, iTileSize, iTileSize);
+                    if (iSprite == iSPRITE_FRUIT) {
+                        bdrRenderer.drawSprite(gSprite, 0, 0, TileType.Fruit, null);
+                    }
+                    else if (iSprite == iSPRITE_BAD_FRUIT) {
+                        bdrRenderer.drawSprite(gSprite, 0, 0, TileType.BadFruit, null);
+                    }
+                    else if (iSprite >= iSPRITE_HEAD) {
+                        bdrRenderer.drawSprite(gSprite, 0, 0, TileType.SnakeHead,
+                                               directions[iSprite - iSPRITE_HEAD]);
+                    }
+                    else if (iSprite >= iSPRITE_BODY) {
+                        bdrRenderer.drawSprite(gSprite, 0, 0, TileType.SnakeBody, null);
+                    }
+                    gSprite.setColor(Color.DARK_GRAY);
+                    gSprite.drawLine(0, 0, iTileSize - 1, 0);
+                    gSprite.drawLine(0, 0, 0, iTileSize - 1);
+                }
+                finally {
+                    gSprite.dispose();
+                }
+            }
+        }
+        finally {
+            g2dSprites.dispose();
+        }
+    }
+
+    /**
+     * Gets the atlas of a tile size, drawing it the first time it's asked
+     * for.
+     *
+     * @param iTileSize The size of each sprite in pixels.
+     * @return The shared atlas.
+     */
+    public static synchronized SpriteAtlas get(final int iTileSize) {
+        SpriteAtlas atlas = mapAtlases.get(iTileSize);
+        if (atlas == null) {
+            atlas = new SpriteAtlas(iTileSize);
+            mapAtlases.put(iTileSize, atlas);
+        }
+        return atlas;
+    }
+
+    /**
+     * Creates an image laid out like the screen where there is one, so that
+     * copying from it is a plain block copy.
+     *
+     * @param iWidth  The width in pixels.
+     * @param iHeight The height in pixels.
+     * @return The image.
+     */
+    static BufferedImage createImage(final int iWidth, final int iHeight) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(iWidth, iHeight, BufferedImage.TYPE_INT_RGB);
+        }
+        final GraphicsConfiguration gcfScreen = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return gcfScreen.createCompatibleImage(iWidth, iHeight, Transparency.OPAQUE);
+    }
+
+    /**
+     * Gets the size of each sprite.
+     *
+     * @return The size in pixels.
+     */
+    public int getTileSize() {
+        return iTileSize;
+    }
+
+    /**
+     * Gets the sprite of a tile code.
+     *
+     * @param bCode     The tile's code, as stored in a {@link GameBoard}.
+     * @param direction The direction the snake is facing, for a head.
+     * @param iColor    The body color, for a body.
+     * @return The sprite.
+     */
+    public static int getSprite(final byte bCode, final Direction direction, final int iColor) {
+        if (bCode == GameBoard.SNAKE_BODY) {
+            return iSPRITE_BODY + (iColor % iBODY_COLORS);
+        }
+        else if (bCode == GameBoard.SNAKE_HEAD) {
+            return iSPRITE_HEAD + direction.ordinal();
+        }
+        else if (bCode == GameBoard.FRUIT) {
+            return iSPRITE_FRUIT;
+        }
+        else if (bCode == GameBoard.BAD_FRUIT) {
+            return iSPRITE_BAD_FRUIT;
+        }
+        return iSPRITE_EMPTY;
+    }
+
+    /**
+     * Copies a sprite onto a tile.
+     *
+     * @param g       The graphics object to draw to.
+     * @param iSprite The sprite.
+     * @param iX      The x coordinate of the tile (in pixels).
+     * @param iY      The y coordinate of the tile (in pixels).
+     */
+    public void draw(final Graphics g, final int iSprite, final int iX, final int iY) {
+        final int iSource = iSprite * iTileSize;
+        g.drawImage(imgSprites, iX, iY, iX + iTileSize, iY + iTileSize,
+                    iSource, 0, iSource + iTileSize, iTileSize, null);
+    }
+}
@@ -18,6 +18,8 @@ public class StateHandler {
         String sName = JOptionPane.showInputDialog("Please input your " +
                                                            "username");
         if (sName != null){
+            final GameEvents.StateIo evtSave = new GameEvents.StateIo();
+            boolean bSucceeded = false;
             try {
                 /*
                  * Save a serialized version of the individual member variables
@@ -26,14 +28,20 @@ public class StateHandler {
                 // Asks for the name of the user to save
 
                 sName = sName.trim().toLowerCase() ;
+                snakeGame.setPlayerName(sName);
+                evtSave.begin();
+                final long lStart = System.nanoTime();
                 ObjectOutputStream objOut = new ObjectOutputStream(
                         new FileOutputStream(sName + "_saveGame.bin"));
                 writeVariables(snakeGame, objOut);
                 objOut.close();
+                Metrics.SAVE_TIME.recordSince(lStart);
+                bSucceeded = true;
             }
             catch (IOException e) {
                 e.printStackTrace();
             }
+            commitEvent(evtSave, "save", sName, bSucceeded);
         }
     }
 
@@ -50,11 +58,18 @@ public class StateHandler {
         if (sName != null){
 
             sName = sName.trim().toLowerCase();
+            final GameEvents.StateIo evtLoad = new GameEvents.StateIo();
+            evtLoad.begin();
+            boolean bSucceeded = false;
             try {
+                final long lStart = System.nanoTime();
                 final ObjectInputStream objIn = new ObjectInputStream(
                         new FileInputStream(sName + "_saveGame.bin"));
                 readVariables(snakeGame, objIn);
                 objIn.close();
+                snakeGame.setPlayerName(sName);
+                Metrics.LOAD_TIME.recordSince(lStart);
+                bSucceeded = true;
             }
             catch (IOException | ClassNotFoundException e) {
                 JOptionPane.showMessageDialog(null,
@@ -64,6 +79,30 @@ public class StateHandler {
                                               "Username not found.",
                                               JOptionPane.ERROR_MESSAGE);
             }
+            commitEvent(evtLoad, "load", sName, bSucceeded);
+        }
+    }
+
+    /**
+     * Fills in and commits a save/load flight recorder event, if a recording
+     * wants it.
+     *
+     * @param evtIo      The event, which was started before the file was opened.
+     * @param sOperation Either "save" or "load".
+     * @param sName      The username of the saved game.
+     * @param bSucceeded Whether or not the operation succeeded.
+     */
+    private static void commitEvent(final GameEvents.StateIo evtIo,
+                                    final String sOperation,
+                                    final String sName,
+                                    final boolean bSucceeded) {
+        evtIo.end();
+        if (evtIo.shouldCommit()) {
+            evtIo.operation = sOperation;
+            evtIo.username = sName;
+            evtIo.bytes = new File(sName + "_saveGame.bin").length();
+            evtIo.succeeded = bSucceeded;
+            evtIo.commit();
         }
     }
 
@@ -0,0 +1,455 @@
+package snake;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code StatsLog} class appends one fixed-size binary record per snake
+ * of each finished game to a log file, so that scores and the like outlive
+ * the game they were played in. Records are gathered in a direct buffer and
+ * written when it fills up or on {@link #flush()}, so recording a game
+ * allocates nothing. A game can also be encoded up front with
+ * {@link #encode(SnakeEngine, byte)} and appended later, so that a game
+ * loop can leave the writing to another thread.
+ * <p>
+ * The log rolls over: once the file grows past a size limit it's renamed
+ * to {@code FILE.1}, older files move up to {@code FILE.2} and so on, the
+ * oldest beyond the limit is deleted, and a new file is started.
+ * <p>
+ * Each file starts with a header of {@link #iMAGIC} and the record size,
+ * followed by little-endian records of {@link #iRECORD_SIZE} bytes:
+ * <pre>
+ * offset  size  field
+ *      0     8  time the game ended, in milliseconds since the epoch
+ *      8     4  score
+ *     12     4  fruits eaten
+ *     16     4  length
+ *     20     4  ticks survived
+ *     24     2  columns
+ *     26     2  rows
+ *     28     1  cause of death, one of the CAUSE_ constants
+ *     29     1  source, one of the SOURCE_ constants
+ *     30     1  number of snakes in the game
+ *     31     1  the snake, from 0 for the first
+ * </pre>
+ * {@link StatsSummary} reads the files back. A log may be shared by threads.
+ */
+public class StatsLog implements Closeable {
+
+    /**
+     * The first four bytes of every log file.
+     */
+    public static final int iMAGIC = 0x534E5354;
+
+    /**
+     * The number of bytes of a file header.
+     */
+    public static final int iHEADER_SIZE = 8;
+
+    /**
+     * The number of bytes of a record.
+     */
+    public static final int iRECORD_SIZE = 32;
+
+    /**
+     * The cause of a game that ended without the snake dying, such as one
+     * cut short by a simulation.
+     */
+    public static final byte CAUSE_NONE = 0;
+
+    /**
+     * The cause of a snake that ran into a wall.
+     */
+    public static final byte CAUSE_WALL = 1;
+
+    /**
+     * The cause of a snake that ran into a body.
+     */
+    public static final byte CAUSE_BODY = 2;
+
+    /**
+     * The cause of a snake that ran head first into another head.
+     */
+    public static final byte CAUSE_HEAD = 3;
+
+    /**
+     * The cause of a snake that ate a bad fruit.
+     */
+    public static final byte CAUSE_BAD_FRUIT = 4;
+
+    /**
+     * The names of the causes, indexed by cause.
+     */
+    public static final String[] saCAUSE_NAMES = {"none", "wall", "body", "head", "bad fruit"};
+
+    /**
+     * The source of a game played in the window.
+     */
+    public static final byte SOURCE_INTERACTIVE = 0;
+
+    /**
+     * The source of a game played by a headless simulation.
+     */
+    public static final byte SOURCE_SIMULATED = 1;
+
+    /**
+     * The source of a game played on the server.
+     */
+    public static final byte SOURCE_SERVER = 2;
+
+    /**
+     * The names of the sources, indexed by source.
+     */
+    public static final String[] saSOURCE_NAMES = {"interactive", "simulated", "server"};
+
+    /**
+     * The default log file.
+     */
+    public static final String sDEFAULT_FILE = "snake_stats.bin";
+
+    /**
+     * The size past which the default log rolls over.
+     */
+    private static final long lDEFAULT_MAX_BYTES = 16L * 1024L * 1024L;
+
+    /**
+     * The number of rolled over files the default log keeps.
+     */
+    private static final int iDEFAULT_GENERATIONS = 4;
+
+    /**
+     * The number of records gathered before they're written.
+     */
+    private static final int iBUFFERED_RECORDS = 2048;
+
+    /**
+     * The file being written.
+     */
+    private final Path pthFile;
+
+    /**
+     * The size past which the file rolls over.
+     */
+    private final long lMaxBytes;
+
+    /**
+     * The number of rolled over files kept.
+     */
+    private final int iGenerations;
+
+    /**
+     * The records waiting to be written.
+     */
+    private final ByteBuffer bufRecords;
+
+    /**
+     * The channel of the file being written.
+     */
+    private FileChannel fchFile;
+
+    /**
+     * Opens a log, appending to the file if it exists.
+     *
+     * @param pthFile      The file.
+     * @param lMaxBytes    The size past which the file rolls over.
+     * @param iGenerations The number of rolled over files kept.
+     * @throws IOException If the file could not be opened, or exists but
+     *                     isn't a log file.
+     */
+    public StatsLog(final Path pthFile, final long lMaxBytes, final int iGenerations)
+            throws IOException {
+        this.pthFile = pthFile;
+        this.lMaxBytes = Math.max(iHEADER_SIZE + iRECORD_SIZE, lMaxBytes);
+        this.iGenerations = Math.max(0, iGenerations);
+        this.bufRecords = ByteBuffer.allocateDirect(iBUFFERED_RECORDS * iRECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        open();
+    }
+
+    /**
+     * Opens the default log, named by the {@code snake.stats.file} system
+     * property, and adds a shutdown hook that writes what's left in it.
+     *
+     * @return The log, or null if it could not be opened.
+     */
+    public static StatsLog openDefault() {
+        final StatsLog slgStats;
+        try {
+            slgStats = new StatsLog(getDefaultPath(), lDEFAULT_MAX_BYTES, iDEFAULT_GENERATIONS);
+        }
+        catch (final IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    slgStats.close();
+                }
+                catch (final IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "stats-close"));
+        return slgStats;
+    }
+
+    /**
+     * Gets the default log file, named by the {@code snake.stats.file}
+     * system property.
+     *
+     * @return The file.
+     */
+    public static Path getDefaultPath() {
+        return Paths.get(System.getProperty("snake.stats.file", sDEFAULT_FILE));
+    }
+
+    /**
+     * Opens the file, writing a header if it's new, or checking it if not.
+     *
+     * @throws IOException If the file could not be opened or isn't a log
+     *                     file.
+     */
+    private void open() throws IOException {
+        fchFile = FileChannel.open(pthFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        final ByteBuffer bufHeader = ByteBuffer.allocate(iHEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (fchFile.size() == 0L) {
+            bufHeader.putInt(iMAGIC).putInt(iRECORD_SIZE).flip();
+            while (bufHeader.hasRemaining()) {
+                fchFile.write(bufHeader);
+            }
+        }
+        else {
+            while (bufHeader.hasRemaining() && (fchFile.read(bufHeader) >= 0)) {
+                continue;
+            }
+            bufHeader.flip();
+            if ((bufHeader.remaining() < iHEADER_SIZE) || (bufHeader.getInt() != iMAGIC) ||
+                    (bufHeader.getInt() != iRECORD_SIZE)) {
+                fchFile.close();
+                throw new IOException(pthFile + " is not a stats log");
+            }
+        }
+
+        /*
+         * A record cut short by a crash is dropped, so that the records
+         * that follow stay aligned.
+         */
+        final long lRecords = (fchFile.size() - iHEADER_SIZE) / iRECORD_SIZE;
+        fchFile.truncate(iHEADER_SIZE + (lRecords * iRECORD_SIZE));
+        fchFile.position(fchFile.size());
+    }
+
+    /**
+     * Records the game of every snake of an engine, working out how each
+     * one ended from the engine.
+     *
+     * @param engine  The engine, whose game has just finished.
+     * @param bSource Where the game was played, one of the SOURCE_
+     *                constants.
+     * @throws IOException If the records could not be written.
+     */
+    public synchronized void record(final SnakeEngine engine, final byte bSource)
+            throws IOException {
+        if (fchFile == null) {
+            throw new IOException("The stats log is closed");
+        }
+        final long lTime = System.currentTimeMillis();
+        for (int iSnake = 0; iSnake < engine.getSnakeCount(); iSnake++) {
+            if (!bufRecords.hasRemaining()) {
+                flush();
+            }
+            putRecord(bufRecords, engine, iSnake, bSource, lTime);
+        }
+    }
+
+    /**
+     * Encodes the game of every snake of an engine the way
+     * {@link #record(SnakeEngine, byte)} would record it, to be appended
+     * later with {@link #append(ByteBuffer)}.
+     *
+     * @param engine  The engine, whose game has just finished.
+     * @param bSource Where the game was played, one of the SOURCE_
+     *                constants.
+     * @return The records, ready to be read.
+     */
+    public static ByteBuffer encode(final SnakeEngine engine, final byte bSource) {
+        final ByteBuffer bufGame = ByteBuffer.allocate(engine.getSnakeCount() * iRECORD_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        final long lTime = System.currentTimeMillis();
+        for (int iSnake = 0; iSnake < engine.getSnakeCount(); iSnake++) {
+            putRecord(bufGame, engine, iSnake, bSource, lTime);
+        }
+        bufGame.flip();
+        return bufGame;
+    }
+
+    /**
+     * Appends records encoded by {@link #encode(SnakeEngine, byte)}.
+     *
+     * @param bufGame The records, which are read to the end.
+     * @throws IOException If the records could not be written.
+     */
+    public synchronized void append(final ByteBuffer bufGame) throws IOException {
+        if (fchFile == null) {
+            throw new IOException("The stats log is closed");
+        }
+        final int iLimit = bufGame.limit();
+        while (bufGame.remaining() >= iRECORD_SIZE) {
+            if (!bufRecords.hasRemaining()) {
+                flush();
+            }
+            bufGame.limit(bufGame.position() + iRECORD_SIZE);
+            bufRecords.put(bufGame);
+            bufGame.limit(iLimit);
+        }
+    }
+
+    /**
+     * Puts the record of one snake's game.
+     *
+     * @param bufTarget The buffer to put the record in.
+     * @param engine    The engine, whose game has just finished.
+     * @param iSnake    The snake.
+     * @param bSource   Where the game was played, one of the SOURCE_
+     *                  constants.
+     * @param lTime     When the game ended, in milliseconds since the
+     *                  epoch.
+     */
+    private static void putRecord(final ByteBuffer bufTarget,
+                                  final SnakeEngine engine,
+                                  final int iSnake,
+                                  final byte bSource,
+                                  final long lTime) {
+        final GameBoard board = engine.getBoard();
+        bufTarget.putLong(lTime)
+                .putInt(engine.getScore(iSnake))
+                .putInt(engine.getFruitsEaten(iSnake))
+                .putInt(engine.getLength(iSnake))
+                .putInt(engine.getSurvivalTicks(iSnake))
+                .putShort((short) board.getColumns())
+                .putShort((short) board.getRows())
+                .put(getCause(engine, iSnake))
+                .put(bSource)
+                .put((byte) Math.min(Byte.MAX_VALUE, engine.getSnakeCount()))
+                .put((byte) Math.min(Byte.MAX_VALUE, iSnake));
+    }
+
+    /**
+     * Works out how a snake's game ended.
+     *
+     * @param engine The engine.
+     * @param iSnake The snake.
+     * @return The cause, one of the CAUSE_ constants.
+     */
+    public static byte getCause(final SnakeEngine engine, final int iSnake) {
+        if (engine.isKilledByWall(iSnake)) {
+            return CAUSE_WALL;
+        }
+        final TileType killer = engine.getKiller(iSnake);
+        if (killer == null) {
+            return CAUSE_NONE;
+        }
+        switch (killer) {
+            case SnakeHead:
+                return CAUSE_HEAD;
+
+            case BadFruit:
+                return CAUSE_BAD_FRUIT;
+
+            default:
+                return CAUSE_BODY;
+        }
+    }
+
+    /**
+     * Writes the gathered records to the file, rolling it over first if
+     * it's full.
+     *
+     * @throws IOException If the records could not be written.
+     */
+    public synchronized void flush() throws IOException {
+        if ((fchFile == null) || (bufRecords.position() == 0)) {
+            return;
+        }
+        if ((fchFile.size() + bufRecords.position()) > lMaxBytes) {
+            rollOver();
+        }
+        bufRecords.flip();
+        while (bufRecords.hasRemaining()) {
+            fchFile.write(bufRecords);
+        }
+        bufRecords.clear();
+    }
+
+    /**
+     * Moves the file to the first generation, every generation up by one,
+     * and starts a new file. The file is only rolled over if it holds any
+     * records.
+     *
+     * @throws IOException If the files could not be moved.
+     */
+    private void rollOver() throws IOException {
+        if (fchFile.size() <= iHEADER_SIZE) {
+            return;
+        }
+        fchFile.close();
+        fchFile = null;
+        if (iGenerations == 0) {
+            Files.delete(pthFile);
+        }
+        else {
+            Files.deleteIfExists(getGeneration(pthFile, iGenerations));
+            for (int iGeneration = iGenerations - 1; iGeneration > 0; iGeneration--) {
+                final Path pthOlder = getGeneration(pthFile, iGeneration);
+                if (Files.exists(pthOlder)) {
+                    Files.move(pthOlder, getGeneration(pthFile, iGeneration + 1),
+                               StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(pthFile, getGeneration(pthFile, 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    /**
+     * Gets the name of a rolled over file.
+     *
+     * @param pthFile     The log file.
+     * @param iGeneration The generation, from 1 for the newest. 0 is the
+     *                    file being written.
+     * @return The file.
+     */
+    static Path getGeneration(final Path pthFile, final int iGeneration) {
+        return (iGeneration == 0) ? pthFile :
+                pthFile.resolveSibling(pthFile.getFileName() + "." + iGeneration);
+    }
+
+    /**
+     * Writes the gathered records and closes the file.
+     *
+     * @throws IOException If the records could not be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (fchFile != null) {
+            try {
+                flush();
+            }
+            finally {
+                fchFile.close();
+                fchFile = null;
+            }
+        }
+    }
+}
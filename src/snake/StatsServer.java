@@ -0,0 +1,847 @@
+package snake;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@code StatsServer} class serves the game's live metrics, its
+ * leaderboard and batch simulations as JSON over HTTP, on the loopback
+ * interface only.
+ * <p>
+ * A refresher thread renders the metrics and the top of the leaderboard to
+ * snapshots a couple of times a second, and requests are answered from the
+ * latest snapshot, so polling never touches the game loop: the game only
+ * ever writes its lock-free {@link Metrics}. Requests are handled by a small
+ * fixed pool of daemon threads.
+ * <pre>
+ * GET    /metrics                       counters, gauges and latencies
+ * GET    /leaderboard?from=N&amp;count=N     entries by rank, best first
+ * GET    /leaderboard?name=NAME         rank and best game of a player
+ * GET    /jobs                          every simulation job
+ * POST   /jobs?games=N&amp;size=N&amp;bot=B&amp;threads=N
+ *                                       queues a {@link HeatmapAnalytics} run
+ * GET    /jobs/ID                       one job
+ * DELETE /jobs/ID                       cancels a job
+ * </pre>
+ * Jobs run one at a time, and write their heatmaps to
+ * {@code snake_job-ID.csv} and {@code snake_job-ID-<heatmap>.png}. A job
+ * holds its heatmaps only while it runs, at most 16 jobs may wait or run at
+ * once, and only the latest 64 jobs that have finished are kept.
+ * <p>
+ * Queries of a player, and of ranks past the snapshot, ask the leaderboard
+ * itself and wait on its lock; the game records its games on a thread of
+ * its own, so they never hold up the game loop.
+ * <p>
+ * The game and the game server start a stats server when the
+ * {@code snake.http.port} system property is set. Usage:
+ * {@code StatsServer [--port=N]} serves the default leaderboard and runs
+ * jobs on its own until it's killed.
+ */
+public class StatsServer implements Closeable {
+
+    /**
+     * The port the stats server listens on when run on its own.
+     */
+    public static final int iDEFAULT_PORT = 8086;
+
+    /**
+     * The number of threads that handle requests.
+     */
+    private static final int iHANDLER_THREADS = 2;
+
+    /**
+     * The time between two refreshes of the snapshots, in milliseconds.
+     */
+    private static final long lREFRESH_MILLIS = 500L;
+
+    /**
+     * The number of leaderboard entries kept in the snapshot.
+     */
+    private static final int iSNAPSHOT_ENTRIES = 100;
+
+    /**
+     * The most leaderboard entries a request may ask for.
+     */
+    private static final int iMAX_ENTRIES = 1000;
+
+    /**
+     * The most finished jobs kept. Older ones are dropped as new jobs are
+     * queued.
+     */
+    private static final int iMAX_FINISHED_JOBS = 64;
+
+    /**
+     * The most jobs queued or running at once. Further jobs are turned away
+     * until some finish.
+     */
+    private static final int iMAX_PENDING_JOBS = 16;
+
+    /**
+     * The most games a job may play.
+     */
+    private static final long lMAX_JOB_GAMES = 100000000L;
+
+    /**
+     * The type of every response.
+     */
+    private static final String sCONTENT_TYPE = "application/json; charset=utf-8";
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer htsServer;
+
+    /**
+     * The threads that handle requests.
+     */
+    private final ExecutorService exsHandlers;
+
+    /**
+     * The thread that refreshes the snapshots.
+     */
+    private final ScheduledExecutorService sesRefresher;
+
+    /**
+     * The thread that runs the jobs, one at a time.
+     */
+    private final ExecutorService exsJobs;
+
+    /**
+     * The leaderboard, or null if there is none.
+     */
+    private final Leaderboard ldbScores;
+
+    /**
+     * Every job, by id.
+     */
+    private final ConcurrentSkipListMap<Integer, Job> mapJobs = new ConcurrentSkipListMap<>();
+
+    /**
+     * The id of the next job.
+     */
+    private final AtomicInteger iNextJob = new AtomicInteger(1);
+
+    /**
+     * The latest rendering of the metrics.
+     */
+    private volatile byte[] baMetrics;
+
+    /**
+     * The latest rendering of each of the best leaderboard entries.
+     */
+    private volatile String[] saTopEntries = new String[0];
+
+    /**
+     * The number of entries on the leaderboard at the latest refresh.
+     */
+    private volatile int iLeaderboardSize;
+
+    /**
+     * Starts a stats server.
+     *
+     * @param isaAddress The address to listen on.
+     * @param ldbScores  The leaderboard to serve, or null.
+     * @throws IOException If the server could not listen on the address.
+     */
+    public StatsServer(final InetSocketAddress isaAddress, final Leaderboard ldbScores)
+            throws IOException {
+        this.ldbScores = ldbScores;
+        exsHandlers = Executors.newFixedThreadPool(iHANDLER_THREADS, newThreadFactory("stats-http"));
+        sesRefresher = Executors.newSingleThreadScheduledExecutor(newThreadFactory("stats-refresh"));
+        exsJobs = Executors.newSingleThreadExecutor(newThreadFactory("stats-job"));
+        refresh();
+
+        htsServer = HttpServer.create(isaAddress, 0);
+        htsServer.setExecutor(exsHandlers);
+        htsServer.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                if (checkMethod(exchange, "GET")) {
+                    send(exchange, 200, baMetrics);
+                }
+            }
+        });
+        htsServer.createContext("/leaderboard", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                if (checkMethod(exchange, "GET")) {
+                    handleLeaderboard(exchange);
+                }
+            }
+        });
+        htsServer.createContext("/jobs", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                handleJobs(exchange);
+            }
+        });
+        htsServer.start();
+
+        sesRefresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, lREFRESH_MILLIS, lREFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a stats server on the loopback interface if the
+     * {@code snake.http.port} system property is set.
+     *
+     * @param ldbScores The leaderboard to serve, or null.
+     * @return The server, or null if the property isn't set or the server
+     * could not be started.
+     */
+    public static StatsServer startDefault(final Leaderboard ldbScores) {
+        final String sPort = System.getProperty("snake.http.port");
+        if (sPort == null) {
+            return null;
+        }
+        try {
+            final StatsServer server = new StatsServer(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(sPort)),
+                    ldbScores);
+            System.out.println("Serving stats on http://localhost:" + server.getPort() + "/");
+            return server;
+        }
+        catch (final IOException | NumberFormatException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Creates a factory of daemon threads, so that the server never keeps
+     * the JVM running.
+     *
+     * @param sName The start of the name of each thread.
+     * @return The factory.
+     */
+    private static ThreadFactory newThreadFactory(final String sName) {
+        final AtomicInteger iThreads = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thrThread = new Thread(runnable, sName + "-" + iThreads.incrementAndGet());
+                thrThread.setDaemon(true);
+                return thrThread;
+            }
+        };
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return htsServer.getAddress().getPort();
+    }
+
+    /**
+     * Renders the metrics and the top of the leaderboard to new snapshots.
+     */
+    private void refresh() {
+        final StringBuilder sbJson = new StringBuilder(4096);
+        sbJson.append("{\"time\":").append(System.currentTimeMillis());
+        sbJson.append(",\"counters\":{");
+        String sSeparator = "";
+        for (final Counter counter : Metrics.getCounters()) {
+            sbJson.append(sSeparator);
+            appendString(sbJson, counter.getName());
+            sbJson.append(':').append(counter.getCount());
+            sSeparator = ",";
+        }
+        sbJson.append("},\"gauges\":{");
+        sSeparator = "";
+        for (final Gauge gauge : Metrics.getGauges()) {
+            sbJson.append(sSeparator);
+            appendString(sbJson, gauge.getName());
+            sbJson.append(':').append(gauge.getValue());
+            sSeparator = ",";
+        }
+        sbJson.append("},\"latencies\":{");
+        sSeparator = "";
+        for (final LatencyHistogram histogram : Metrics.getHistograms()) {
+            sbJson.append(sSeparator);
+            appendString(sbJson, histogram.getName());
+            sbJson.append(":{\"count\":").append(histogram.getCount());
+            sbJson.append(",\"meanMicros\":");
+            appendNumber(sbJson, histogram.getMeanMicros());
+            sbJson.append(",\"p50Micros\":");
+            appendNumber(sbJson, histogram.getP50Micros());
+            sbJson.append(",\"p90Micros\":");
+            appendNumber(sbJson, histogram.getP90Micros());
+            sbJson.append(",\"p99Micros\":");
+            appendNumber(sbJson, histogram.getP99Micros());
+            sbJson.append(",\"p999Micros\":");
+            appendNumber(sbJson, histogram.getP999Micros());
+            sbJson.append(",\"maxMicros\":");
+            appendNumber(sbJson, histogram.getMaxMicros());
+            sbJson.append('}');
+            sSeparator = ",";
+        }
+        sbJson.append("}}");
+        baMetrics = sbJson.toString().getBytes(StandardCharsets.UTF_8);
+
+        if (ldbScores != null) {
+            final List<Leaderboard.Entry> lstTop = ldbScores.getTop(0, iSNAPSHOT_ENTRIES);
+            final String[] saEntries = new String[lstTop.size()];
+            for (int iRank = 0; iRank < saEntries.length; iRank++) {
+                saEntries[iRank] = renderEntry(iRank, lstTop.get(iRank));
+            }
+            iLeaderboardSize = ldbScores.size();
+            saTopEntries = saEntries;
+        }
+    }
+
+    /**
+     * Answers a leaderboard query, from the snapshot when it holds the
+     * entries asked for.
+     *
+     * @param exchange The request.
+     * @throws IOException If the response could not be sent.
+     */
+    private void handleLeaderboard(final HttpExchange exchange) throws IOException {
+        if (ldbScores == null) {
+            sendError(exchange, 404, "There is no leaderboard");
+            return;
+        }
+        final Map<String, String> mapQuery = parseQuery(exchange);
+        final StringBuilder sbJson = new StringBuilder(1024);
+        final String sName = mapQuery.get("name");
+        if (sName != null) {
+            final Leaderboard.Entry entry = ldbScores.getBest(sName);
+            if (entry == null) {
+                sendError(exchange, 404, "No games of " + sName);
+                return;
+            }
+            sbJson.append(renderEntry(ldbScores.getRank(sName), entry));
+        }
+        else {
+            final int iFirst;
+            final int iCount;
+            try {
+                iFirst = Math.max(0, Integer.parseInt(getOrDefault(mapQuery, "from", "0")));
+                iCount = Math.min(iMAX_ENTRIES, Math.max(0,
+                        Integer.parseInt(getOrDefault(mapQuery, "count", "10"))));
+            }
+            catch (final NumberFormatException e) {
+                sendError(exchange, 400, "Bad number: " + e.getMessage());
+                return;
+            }
+            sbJson.append("{\"size\":").append(iLeaderboardSize).append(",\"entries\":[");
+            final String[] saEntries = saTopEntries;
+            if ((iFirst + iCount) <= saEntries.length) {
+                for (int iRank = iFirst; iRank < (iFirst + iCount); iRank++) {
+                    sbJson.append((iRank == iFirst) ? "" : ",").append(saEntries[iRank]);
+                }
+            }
+            else {
+                /*
+                 * Past the snapshot, the leaderboard itself is asked; its
+                 * lock is only ever held by the game's recorder, never by
+                 * the game loop.
+                 */
+                final List<Leaderboard.Entry> lstEntries = ldbScores.getTop(iFirst, iCount);
+                for (int iEntry = 0; iEntry < lstEntries.size(); iEntry++) {
+                    sbJson.append((iEntry == 0) ? "" : ",")
+                            .append(renderEntry(iFirst + iEntry, lstEntries.get(iEntry)));
+                }
+            }
+            sbJson.append("]}");
+        }
+        send(exchange, 200, sbJson.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Lists, queues, shows or cancels jobs.
+     *
+     * @param exchange The request.
+     * @throws IOException If the response could not be sent.
+     */
+    private void handleJobs(final HttpExchange exchange) throws IOException {
+        final String sMethod = exchange.getRequestMethod();
+        final String sId = exchange.getRequestURI().getPath().substring("/jobs".length())
+                .replace("/", "");
+        final StringBuilder sbJson = new StringBuilder(1024);
+        if (sId.isEmpty()) {
+            if (sMethod.equals("GET")) {
+                sbJson.append("{\"jobs\":[");
+                String sSeparator = "";
+                for (final Job job : mapJobs.values()) {
+                    sbJson.append(sSeparator);
+                    job.appendJson(sbJson);
+                    sSeparator = ",";
+                }
+                sbJson.append("]}");
+                send(exchange, 200, sbJson.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            else if (sMethod.equals("POST")) {
+                final Map<String, String> mapQuery = parseQuery(exchange);
+                final Job job;
+                try {
+                    job = new Job(iNextJob.getAndIncrement(),
+                                  Math.min(lMAX_JOB_GAMES, Math.max(1L,
+                                          Long.parseLong(getOrDefault(mapQuery, "games", "100000")))),
+                                  Math.min(256, Math.max(5, Integer.parseInt(getOrDefault(
+                                          mapQuery, "size", Integer.toString(BoardPanel.iCOL_COUNT))))),
+                                  getOrDefault(mapQuery, "bot", "greedy"),
+                                  Math.min(Runtime.getRuntime().availableProcessors(), Math.max(1,
+                                          Integer.parseInt(getOrDefault(mapQuery, "threads", "1")))));
+                }
+                catch (final NumberFormatException e) {
+                    sendError(exchange, 400, "Bad number: " + e.getMessage());
+                    return;
+                }
+                synchronized (mapJobs) {
+                    if (!evictFinishedJobs()) {
+                        sendError(exchange, 503, "Too many jobs queued");
+                        return;
+                    }
+                    mapJobs.put(job.iId, job);
+                }
+                exsJobs.execute(job);
+                job.appendJson(sbJson);
+                send(exchange, 201, sbJson.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            else {
+                sendError(exchange, 405, "Use GET or POST");
+            }
+            return;
+        }
+
+        final Job job;
+        try {
+            job = mapJobs.get(Integer.parseInt(sId));
+        }
+        catch (final NumberFormatException e) {
+            sendError(exchange, 404, "No job " + sId);
+            return;
+        }
+        if (job == null) {
+            sendError(exchange, 404, "No job " + sId);
+        }
+        else if (sMethod.equals("GET") || sMethod.equals("DELETE")) {
+            if (sMethod.equals("DELETE")) {
+                job.cancel();
+            }
+            job.appendJson(sbJson);
+            send(exchange, 200, sbJson.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        else {
+            sendError(exchange, 405, "Use GET or DELETE");
+        }
+    }
+
+    /**
+     * Drops the oldest finished jobs until fewer than
+     * {@link #iMAX_FINISHED_JOBS} are left, to make room for one more.
+     * Queued and running jobs are always kept.
+     *
+     * @return Whether or not there is room for another queued job.
+     */
+    private boolean evictFinishedJobs() {
+        int iFinished = 0;
+        for (final Job job : mapJobs.values()) {
+            if (job.isFinished()) {
+                iFinished++;
+            }
+        }
+        if ((mapJobs.size() - iFinished) >= iMAX_PENDING_JOBS) {
+            return false;
+        }
+        final Iterator<Job> itJobs = mapJobs.values().iterator();
+        while ((iFinished >= iMAX_FINISHED_JOBS) && itJobs.hasNext()) {
+            if (itJobs.next().isFinished()) {
+                itJobs.remove();
+                iFinished--;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders a leaderboard entry.
+     *
+     * @param iRank The rank of the entry, from 0 for the best.
+     * @param entry The entry.
+     * @return The entry as a JSON object.
+     */
+    private static String renderEntry(final int iRank, final Leaderboard.Entry entry) {
+        final StringBuilder sbJson = new StringBuilder(128);
+        sbJson.append("{\"rank\":").append(iRank + 1).append(",\"name\":");
+        appendString(sbJson, entry.getName());
+        sbJson.append(",\"score\":").append(entry.getScore())
+                .append(",\"fruits\":").append(entry.getFruits())
+                .append(",\"ticks\":").append(entry.getTicks())
+                .append(",\"time\":").append(entry.getTime())
+                .append('}');
+        return sbJson.toString();
+    }
+
+    /**
+     * Appends a string as a JSON string.
+     *
+     * @param sbJson  The JSON being built.
+     * @param sString The string.
+     */
+    private static void appendString(final StringBuilder sbJson, final String sString) {
+        sbJson.append('"');
+        for (int iChar = 0; iChar < sString.length(); iChar++) {
+            final char cChar = sString.charAt(iChar);
+            if ((cChar == '"') || (cChar == '\\')) {
+                sbJson.append('\\').append(cChar);
+            }
+            else if (cChar < ' ') {
+                sbJson.append(String.format("\\u%04x", (int) cChar));
+            }
+            else {
+                sbJson.append(cChar);
+            }
+        }
+        sbJson.append('"');
+    }
+
+    /**
+     * Appends a number, as 0 if it isn't finite, since JSON has no NaN.
+     *
+     * @param sbJson  The JSON being built.
+     * @param dNumber The number.
+     */
+    private static void appendNumber(final StringBuilder sbJson, final double dNumber) {
+        sbJson.append(Double.isNaN(dNumber) || Double.isInfinite(dNumber) ? "0" :
+                              String.format(Locale.ROOT, "%.3f", dNumber));
+    }
+
+    /**
+     * Parses the query of a request.
+     *
+     * @param exchange The request.
+     * @return The value of each parameter.
+     */
+    private static Map<String, String> parseQuery(final HttpExchange exchange) {
+        final Map<String, String> mapQuery = new HashMap<>();
+        final String sQuery = exchange.getRequestURI().getRawQuery();
+        if (sQuery == null) {
+            return mapQuery;
+        }
+        for (final String sParameter : sQuery.split("&")) {
+            final int iEquals = sParameter.indexOf('=');
+            try {
+                if (iEquals > 0) {
+                    mapQuery.put(URLDecoder.decode(sParameter.substring(0, iEquals), "UTF-8"),
+                                 URLDecoder.decode(sParameter.substring(iEquals + 1), "UTF-8"));
+                }
+            }
+            catch (final UnsupportedEncodingException | IllegalArgumentException e) {
+                continue;
+            }
+        }
+        return mapQuery;
+    }
+
+    /**
+     * Gets a parameter of a query.
+     *
+     * @param mapQuery  The query.
+     * @param sName     The name of the parameter.
+     * @param sDefault  The value if the parameter isn't given.
+     * @return The value.
+     */
+    private static String getOrDefault(final Map<String, String> mapQuery,
+                                       final String sName,
+                                       final String sDefault) {
+        final String sValue = mapQuery.get(sName);
+        return (sValue != null) ? sValue : sDefault;
+    }
+
+    /**
+     * Checks the method of a request, answering 405 if it's wrong.
+     *
+     * @param exchange The request.
+     * @param sMethod  The method allowed.
+     * @return Whether or not the method is allowed.
+     * @throws IOException If the response could not be sent.
+     */
+    private static boolean checkMethod(final HttpExchange exchange, final String sMethod)
+            throws IOException {
+        if (exchange.getRequestMethod().equals(sMethod)) {
+            return true;
+        }
+        sendError(exchange, 405, "Use " + sMethod);
+        return false;
+    }
+
+    /**
+     * Sends an error.
+     *
+     * @param exchange The request.
+     * @param iStatus  The status code.
+     * @param sMessage What went wrong.
+     * @throws IOException If the response could not be sent.
+     */
+    private static void sendError(final HttpExchange exchange, final int iStatus, final String sMessage)
+            throws IOException {
+        final StringBuilder sbJson = new StringBuilder(64);
+        sbJson.append("{\"error\":");
+        appendString(sbJson, sMessage);
+        sbJson.append('}');
+        send(exchange, iStatus, sbJson.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a response and ends the exchange.
+     *
+     * @param exchange The request.
+     * @param iStatus  The status code.
+     * @param baBody   The JSON body.
+     * @throws IOException If the response could not be sent.
+     */
+    private static void send(final HttpExchange exchange, final int iStatus, final byte[] baBody)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", sCONTENT_TYPE);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(iStatus, baBody.length);
+        try (final OutputStream osBody = exchange.getResponseBody()) {
+            osBody.write(baBody);
+        }
+    }
+
+    /**
+     * Stops the server, cancelling every job.
+     */
+    @Override
+    public void close() {
+        for (final Job job : mapJobs.values()) {
+            job.cancel();
+        }
+        htsServer.stop(0);
+        sesRefresher.shutdownNow();
+        exsJobs.shutdown();
+        exsHandlers.shutdown();
+    }
+
+    /**
+     * The {@code Job} class is a batch simulation queued over HTTP.
+     */
+    private static final class Job implements Runnable {
+
+        /**
+         * The id of the job.
+         */
+        private final int iId;
+
+        /**
+         * The number of games to play.
+         */
+        private final long lGames;
+
+        /**
+         * The size of the board.
+         */
+        private final int iSize;
+
+        /**
+         * The name of the bot.
+         */
+        private final String sBot;
+
+        /**
+         * The number of threads to play on.
+         */
+        private final int iThreads;
+
+        /**
+         * The games being played, only while the job runs.
+         */
+        private volatile HeatmapAnalytics analytics;
+
+        /**
+         * Whether or not the job was cancelled.
+         */
+        private volatile boolean bCancelled;
+
+        /**
+         * The number of games played, once the job has finished.
+         */
+        private volatile long lGamesPlayed;
+
+        /**
+         * The state of the job: queued, running, done, cancelled or failed.
+         */
+        private volatile String sState = "queued";
+
+        /**
+         * The number of ticks played, once the job has finished.
+         */
+        private volatile long lTicks;
+
+        /**
+         * When the job started running, in nanoseconds, or 0.
+         */
+        private volatile long lStartNanos;
+
+        /**
+         * How long the job ran for, in nanoseconds, once it has finished.
+         */
+        private volatile long lRunNanos;
+
+        /**
+         * What went wrong, if the job failed.
+         */
+        private volatile String sError;
+
+        /**
+         * Creates a new job.
+         *
+         * @param iId      The id of the job.
+         * @param lGames   The number of games to play.
+         * @param iSize    The size of the board.
+         * @param sBot     The name of the bot.
+         * @param iThreads The number of threads to play on.
+         */
+        private Job(final int iId,
+                    final long lGames,
+                    final int iSize,
+                    final String sBot,
+                    final int iThreads) {
+            this.iId = iId;
+            this.lGames = lGames;
+            this.iSize = iSize;
+            this.sBot = sBot;
+            this.iThreads = iThreads;
+        }
+
+        @Override
+        public void run() {
+            if (bCancelled) {
+                sState = "cancelled";
+                return;
+            }
+            sState = "running";
+            lStartNanos = System.nanoTime();
+            final HeatmapAnalytics heatmaps = new HeatmapAnalytics(iSize, iSize, iThreads);
+            analytics = heatmaps;
+            if (bCancelled) {
+                heatmaps.cancel();
+            }
+            final ForkJoinPool fjpPool = new ForkJoinPool(iThreads);
+            try {
+                lTicks = heatmaps.play(fjpPool, lGames, HeatmapAnalytics.getBotFactory(sBot));
+                heatmaps.writeExports("snake_job-" + iId);
+                sState = heatmaps.isCancelled() ? "cancelled" : "done";
+            }
+            catch (final IOException | InterruptedException | RuntimeException e) {
+                sError = e.toString();
+                sState = "failed";
+            }
+            finally {
+                fjpPool.shutdown();
+                lRunNanos = System.nanoTime() - lStartNanos;
+
+                /*
+                 * Let go of the heatmaps, which are written out by now.
+                 */
+                lGamesPlayed = heatmaps.getGamesPlayed();
+                analytics = null;
+            }
+        }
+
+        /**
+         * Cancels the job, whether it's queued or running.
+         */
+        private void cancel() {
+            bCancelled = true;
+            final HeatmapAnalytics heatmaps = analytics;
+            if (heatmaps != null) {
+                heatmaps.cancel();
+            }
+        }
+
+        /**
+         * Checks whether the job is done, cancelled or failed.
+         *
+         * @return Whether or not the job has finished.
+         */
+        private boolean isFinished() {
+            final String sNow = sState;
+            return !sNow.equals("queued") && !sNow.equals("running");
+        }
+
+        /**
+         * Appends the job as a JSON object.
+         *
+         * @param sbJson The JSON being built.
+         */
+        private void appendJson(final StringBuilder sbJson) {
+            final String sNow = sState;
+            final long lStarted = lStartNanos;
+            final HeatmapAnalytics heatmaps = analytics;
+            final long lRun = sNow.equals("running") ? (System.nanoTime() - lStarted) : lRunNanos;
+            sbJson.append("{\"id\":").append(iId).append(",\"state\":");
+            appendString(sbJson, sNow);
+            sbJson.append(",\"games\":").append(lGames)
+                    .append(",\"gamesPlayed\":").append((heatmaps != null) ?
+                            heatmaps.getGamesPlayed() : lGamesPlayed)
+                    .append(",\"size\":").append(iSize)
+                    .append(",\"bot\":");
+            appendString(sbJson, sBot);
+            sbJson.append(",\"threads\":").append(iThreads)
+                    .append(",\"ticks\":").append(lTicks)
+                    .append(",\"seconds\":");
+            appendNumber(sbJson, (lStarted == 0L) ? 0.0 : (lRun / 1.0e9));
+            if (sError != null) {
+                sbJson.append(",\"error\":");
+                appendString(sbJson, sError);
+            }
+            sbJson.append('}');
+        }
+    }
+
+    /**
+     * Entry point of the stand-alone stats server.
+     *
+     * @param args The options described in the class comment.
+     * @throws IOException          If the server could not be started.
+     * @throws InterruptedException If the server was interrupted.
+     */
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        int iPort = iDEFAULT_PORT;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--port=")) {
+                iPort = Integer.parseInt(sArg.substring("--port=".length()));
+            }
+        }
+        Metrics.install();
+        final StatsServer server = new StatsServer(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), iPort),
+                Leaderboard.openDefault());
+        System.out.println("Serving stats on http://localhost:" + server.getPort() + "/");
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,252 @@
+package snake;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@code StatsSummary} class reads the records of a {@link StatsLog} in
+ * a single pass and sums them up: the mean and percentiles of the scores
+ * and of the ticks survived, and how many games ended with each cause of
+ * death. Percentiles come from log-linear histograms, so the memory used
+ * doesn't grow with the number of records, and the files are read through
+ * one reused buffer.
+ * <p>
+ * Usage: {@code StatsSummary [FILE] [--csv=OUT]} sums up the log
+ * {@code FILE} (by default the one {@link StatsLog#openDefault()} writes)
+ * and its rolled over files, oldest first, and optionally copies every
+ * record to {@code OUT} as CSV along the way.
+ */
+public class StatsSummary {
+
+    /**
+     * The number of records read at a time.
+     */
+    private static final int iREAD_RECORDS = 4096;
+
+    /**
+     * The number of rolled over files looked for.
+     */
+    private static final int iMAX_GENERATIONS = 1000;
+
+    /**
+     * The histogram of the scores.
+     */
+    private final LatencyHistogram lhScores = new LatencyHistogram("score");
+
+    /**
+     * The histogram of the ticks survived.
+     */
+    private final LatencyHistogram lhTicks = new LatencyHistogram("ticks");
+
+    /**
+     * The number of games that ended with each cause.
+     */
+    private final long[] laCauses = new long[StatsLog.saCAUSE_NAMES.length];
+
+    /**
+     * The number of games from each source.
+     */
+    private final long[] laSources = new long[StatsLog.saSOURCE_NAMES.length];
+
+    /**
+     * The sum of the scores.
+     */
+    private long lScoreSum;
+
+    /**
+     * The sum of the ticks survived.
+     */
+    private long lTickSum;
+
+    /**
+     * The number of records read.
+     */
+    private long lRecords;
+
+    /**
+     * The buffer the records are read into.
+     */
+    private final ByteBuffer bufRecords =
+            ByteBuffer.allocateDirect(iREAD_RECORDS * StatsLog.iRECORD_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Reads every record of a log file.
+     *
+     * @param pthFile The file.
+     * @param bwCsv   The writer to copy the records to as CSV, or null.
+     * @throws IOException If the file could not be read or isn't a log
+     *                     file.
+     */
+    public void read(final Path pthFile, final BufferedWriter bwCsv) throws IOException {
+        try (final FileChannel fchFile = FileChannel.open(pthFile, StandardOpenOption.READ)) {
+            bufRecords.clear().limit(StatsLog.iHEADER_SIZE);
+            while (bufRecords.hasRemaining() && (fchFile.read(bufRecords) >= 0)) {
+                continue;
+            }
+            bufRecords.flip();
+            if ((bufRecords.remaining() < StatsLog.iHEADER_SIZE) ||
+                    (bufRecords.getInt() != StatsLog.iMAGIC) ||
+                    (bufRecords.getInt() != StatsLog.iRECORD_SIZE)) {
+                throw new IOException(pthFile + " is not a stats log");
+            }
+
+            bufRecords.clear();
+            while (fchFile.read(bufRecords) >= 0) {
+                bufRecords.flip();
+                while (bufRecords.remaining() >= StatsLog.iRECORD_SIZE) {
+                    readRecord(bwCsv);
+                }
+                bufRecords.compact();
+            }
+        }
+    }
+
+    /**
+     * Reads the record at the buffer's position and adds it to the sums.
+     *
+     * @param bwCsv The writer to copy the record to as CSV, or null.
+     * @throws IOException If the record could not be written to the CSV.
+     */
+    private void readRecord(final BufferedWriter bwCsv) throws IOException {
+        final long lTime = bufRecords.getLong();
+        final int iScore = bufRecords.getInt();
+        final int iFruits = bufRecords.getInt();
+        final int iLength = bufRecords.getInt();
+        final int iTicks = bufRecords.getInt();
+        final int iCols = bufRecords.getShort();
+        final int iRows = bufRecords.getShort();
+        final int iCause = Math.min(laCauses.length - 1, Math.max(0, bufRecords.get()));
+        final int iSource = Math.min(laSources.length - 1, Math.max(0, bufRecords.get()));
+        final int iSnakes = bufRecords.get();
+        final int iSnake = bufRecords.get();
+
+        lRecords++;
+        lScoreSum += iScore;
+        lTickSum += iTicks;
+        lhScores.record(iScore);
+        lhTicks.record(iTicks);
+        laCauses[iCause]++;
+        laSources[iSource]++;
+
+        if (bwCsv != null) {
+            bwCsv.write(Long.toString(lTime));
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iScore));
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iFruits));
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iLength));
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iTicks));
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iCols));
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iRows));
+            bwCsv.write(',');
+            bwCsv.write(StatsLog.saCAUSE_NAMES[iCause]);
+            bwCsv.write(',');
+            bwCsv.write(StatsLog.saSOURCE_NAMES[iSource]);
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iSnakes));
+            bwCsv.write(',');
+            bwCsv.write(Integer.toString(iSnake));
+            bwCsv.newLine();
+        }
+    }
+
+    /**
+     * Gets the number of records read.
+     *
+     * @return The number of records.
+     */
+    public long getRecordCount() {
+        return lRecords;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sbSummary = new StringBuilder();
+        final double dRecords = Math.max(1L, lRecords);
+        sbSummary.append(String.format("games=%d%n", lRecords));
+        sbSummary.append(String.format("score: mean=%.1f p50=%d p99=%d max=%d%n",
+                                       lScoreSum / dRecords,
+                                       lhScores.getValueAtPercentile(50.0),
+                                       lhScores.getValueAtPercentile(99.0),
+                                       lhScores.getValueAtPercentile(100.0)));
+        sbSummary.append(String.format("ticks survived: mean=%.1f p50=%d p99=%d max=%d%n",
+                                       lTickSum / dRecords,
+                                       lhTicks.getValueAtPercentile(50.0),
+                                       lhTicks.getValueAtPercentile(99.0),
+                                       lhTicks.getValueAtPercentile(100.0)));
+        sbSummary.append("causes:");
+        for (int iCause = 0; iCause < laCauses.length; iCause++) {
+            sbSummary.append(String.format(" %s=%d (%.1f%%)",
+                                           StatsLog.saCAUSE_NAMES[iCause],
+                                           laCauses[iCause],
+                                           (100.0 * laCauses[iCause]) / dRecords));
+        }
+        sbSummary.append(String.format("%nsources:"));
+        for (int iSource = 0; iSource < laSources.length; iSource++) {
+            sbSummary.append(' ').append(StatsLog.saSOURCE_NAMES[iSource]).append('=')
+                    .append(laSources[iSource]);
+        }
+        return sbSummary.toString();
+    }
+
+    /**
+     * Entry point of the summarizer.
+     *
+     * @param args The options described in the class comment.
+     * @throws IOException If a file could not be read or written.
+     */
+    public static void main(final String[] args) throws IOException {
+        Path pthLog = StatsLog.getDefaultPath();
+        Path pthCsv = null;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--csv=")) {
+                pthCsv = Paths.get(sArg.substring("--csv=".length()));
+            }
+            else {
+                pthLog = Paths.get(sArg);
+            }
+        }
+
+        /*
+         * Find the oldest rolled over file, then read forwards in time.
+         */
+        int iOldest = 0;
+        while ((iOldest < iMAX_GENERATIONS) &&
+                Files.exists(StatsLog.getGeneration(pthLog, iOldest + 1))) {
+            iOldest++;
+        }
+
+        final StatsSummary summary = new StatsSummary();
+        final long lStart = System.nanoTime();
+        try (final BufferedWriter bwCsv = (pthCsv != null) ? Files.newBufferedWriter(pthCsv) : null) {
+            if (bwCsv != null) {
+                bwCsv.write("time,score,fruits,length,ticks,cols,rows,cause,source,snakes,snake");
+                bwCsv.newLine();
+            }
+            for (int iGeneration = iOldest; iGeneration >= 0; iGeneration--) {
+                final Path pthFile = StatsLog.getGeneration(pthLog, iGeneration);
+                if (Files.exists(pthFile)) {
+                    summary.read(pthFile, bwCsv);
+                }
+            }
+        }
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+        System.out.println(summary);
+        System.out.printf("read %d records in %.2fs (%.0f records/s)%n",
+                          summary.getRecordCount(),
+                          dSeconds,
+                          summary.getRecordCount() / dSeconds);
+    }
+}
@@ -0,0 +1,393 @@
+package snake;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * The {@code VectorEnvironment} class runs many single player games side by
+ * side for reinforcement learning, in the style of a vectorized Gym
+ * environment. Every call to {@link #step(int[])} moves each game by one
+ * tick with the action given for it, and leaves the results in arrays that
+ * are allocated once and reused:
+ * <ul>
+ * <li>the observations, one flat byte array holding {@link #iCHANNELS}
+ * planes of the board per game, each tile 1 where the plane's tile type is
+ * and 0 elsewhere, laid out as {@code [game][channel][row][column]};</li>
+ * <li>the reward each game earned with the step;</li>
+ * <li>whether each game ended with the step.</li>
+ * </ul>
+ * A game that ends is started again right away, so its observation already
+ * shows the first tick of the next game, and its done flag tells the caller
+ * that the reward was the last one of the episode.
+ * <p>
+ * Only the tiles that changed are written to the observations, using the
+ * board's change tracking, so a step costs about as much as the ticks
+ * themselves and allocates nothing.
+ * <p>
+ * Usage: {@code VectorEnvironment [games] [size] [seconds]} runs a
+ * benchmark with random actions.
+ */
+public class VectorEnvironment {
+
+    /**
+     * The plane of the body tiles.
+     */
+    public static final int iCHANNEL_BODY = 0;
+
+    /**
+     * The plane of the head tile.
+     */
+    public static final int iCHANNEL_HEAD = 1;
+
+    /**
+     * The plane of the fruit tiles.
+     */
+    public static final int iCHANNEL_FRUIT = 2;
+
+    /**
+     * The plane of the bad fruit tiles.
+     */
+    public static final int iCHANNEL_BAD_FRUIT = 3;
+
+    /**
+     * The number of planes of each observation.
+     */
+    public static final int iCHANNELS = 4;
+
+    /**
+     * The action that leaves the snake going the way it's going.
+     */
+    public static final int iNO_ACTION = -1;
+
+    /**
+     * The reward for eating a fruit.
+     */
+    public static final float fREWARD_FRUIT = 1.0f;
+
+    /**
+     * The reward for dying.
+     */
+    public static final float fREWARD_DEATH = -1.0f;
+
+    /**
+     * The tile code that each plane marks.
+     */
+    private static final byte[] baCHANNEL_CODES = {
+            GameBoard.SNAKE_BODY, GameBoard.SNAKE_HEAD, GameBoard.FRUIT, GameBoard.BAD_FRUIT
+    };
+
+    /**
+     * Every direction, indexed by the action that steers towards it.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The engine of each game.
+     */
+    private final SnakeEngine[] engEngines;
+
+    /**
+     * The random number generator of each game, reseeded by
+     * {@link #reset(long[])}.
+     */
+    private final Random[] rRandoms;
+
+    /**
+     * The number of tiles of each board.
+     */
+    private final int iCells;
+
+    /**
+     * The number of ticks a game may go without eating before it's cut
+     * short.
+     */
+    private final int iStarvation;
+
+    /**
+     * The observations of every game.
+     */
+    private final byte[] baObservations;
+
+    /**
+     * The reward of every game for the last step.
+     */
+    private final float[] faRewards;
+
+    /**
+     * Whether or not every game ended with the last step.
+     */
+    private final boolean[] baDones;
+
+    /**
+     * The number of ticks since each game last ate.
+     */
+    private final int[] iaHungry;
+
+    /**
+     * Creates a new set of games. Call {@link #reset(long[])} before the
+     * first step.
+     *
+     * @param iGames The number of games.
+     * @param iCols  The number of columns of each board.
+     * @param iRows  The number of rows of each board.
+     */
+    public VectorEnvironment(final int iGames, final int iCols, final int iRows) {
+        this.engEngines = new SnakeEngine[iGames];
+        this.rRandoms = new Random[iGames];
+        for (int iGame = 0; iGame < iGames; iGame++) {
+            rRandoms[iGame] = new Random(iGame);
+            engEngines[iGame] = new SnakeEngine(iCols, iRows, rRandoms[iGame]);
+            engEngines[iGame].getBoard().trackChanges();
+        }
+        this.iCells = iCols * iRows;
+        this.iStarvation = iCells * 2;
+        this.baObservations = new byte[iGames * iCHANNELS * iCells];
+        this.faRewards = new float[iGames];
+        this.baDones = new boolean[iGames];
+        this.iaHungry = new int[iGames];
+    }
+
+    /**
+     * Starts a new game in every slot.
+     *
+     * @param laSeeds The seed of each game's fruit spawns.
+     */
+    public void reset(final long[] laSeeds) {
+        if (laSeeds.length != engEngines.length) {
+            throw new IllegalArgumentException("Expected " + engEngines.length +
+                                                       " seeds, got " + laSeeds.length);
+        }
+        for (int iGame = 0; iGame < engEngines.length; iGame++) {
+            rRandoms[iGame].setSeed(laSeeds[iGame]);
+            restart(iGame);
+            faRewards[iGame] = 0.0f;
+            baDones[iGame] = false;
+        }
+    }
+
+    /**
+     * Moves every game by one tick.
+     *
+     * @param iaActions The action of each game: the ordinal of the
+     *                  {@link Direction} to turn to, or {@link #iNO_ACTION}.
+     *                  Turning back on the snake is ignored.
+     */
+    public void step(final int[] iaActions) {
+        if (iaActions.length != engEngines.length) {
+            throw new IllegalArgumentException("Expected " + engEngines.length +
+                                                       " actions, got " + iaActions.length);
+        }
+        for (int iGame = 0; iGame < engEngines.length; iGame++) {
+            final SnakeEngine engine = engEngines[iGame];
+            final int iAction = iaActions[iGame];
+            if (iAction != iNO_ACTION) {
+                engine.steer(0, DIRECTIONS[iAction]);
+            }
+
+            final TileType collision = engine.tick();
+            float fReward = 0.0f;
+            boolean bDone = false;
+            if (engine.isGameOver()) {
+                fReward = fREWARD_DEATH;
+                bDone = true;
+            }
+            else if (collision == TileType.Fruit) {
+                fReward = fREWARD_FRUIT;
+                iaHungry[iGame] = 0;
+            }
+            else if (++iaHungry[iGame] >= iStarvation) {
+                /*
+                 * A policy that has learned to go round in circles would
+                 * otherwise never finish its episode.
+                 */
+                bDone = true;
+            }
+            faRewards[iGame] = fReward;
+            baDones[iGame] = bDone;
+
+            if (bDone) {
+                restart(iGame);
+            }
+            else {
+                observe(iGame);
+            }
+        }
+    }
+
+    /**
+     * Starts a new game in one slot, continuing its random sequence.
+     *
+     * @param iGame The game.
+     */
+    private void restart(final int iGame) {
+        engEngines[iGame].reset();
+        iaHungry[iGame] = 0;
+        observe(iGame);
+    }
+
+    /**
+     * Writes the tiles of a game that changed since it was last observed
+     * into its observation.
+     *
+     * @param iGame The game.
+     */
+    private void observe(final int iGame) {
+        final GameBoard board = engEngines[iGame].getBoard();
+        final int iBase = iGame * iCHANNELS * iCells;
+        if (board.isAllChanged()) {
+            for (int iCell = 0; iCell < iCells; iCell++) {
+                writeTile(iBase, iCell, board.getCell(iCell));
+            }
+        }
+        else {
+            for (int iChange = 0; iChange < board.getChangeCount(); iChange++) {
+                final int iCell = board.getChangedCell(iChange);
+                writeTile(iBase, iCell, board.getCell(iCell));
+            }
+        }
+        board.beginChanges();
+    }
+
+    /**
+     * Writes one tile into every plane of an observation.
+     *
+     * @param iBase The index of the observation's first byte.
+     * @param iCell The tile index.
+     * @param bCode The tile's code.
+     */
+    private void writeTile(final int iBase, final int iCell, final byte bCode) {
+        for (int iChannel = 0; iChannel < iCHANNELS; iChannel++) {
+            baObservations[iBase + (iChannel * iCells) + iCell] =
+                    (byte) ((bCode == baCHANNEL_CODES[iChannel]) ? 1 : 0);
+        }
+    }
+
+    /**
+     * Gets the observations of every game, as left by the last call to
+     * {@link #reset(long[])} or {@link #step(int[])}. The array is reused.
+     *
+     * @return The observations.
+     */
+    public byte[] getObservations() {
+        return baObservations;
+    }
+
+    /**
+     * Gets the number of bytes in the observation of one game.
+     *
+     * @return The size of an observation.
+     */
+    public int getObservationSize() {
+        return iCHANNELS * iCells;
+    }
+
+    /**
+     * Gets the reward of every game for the last step. The array is reused.
+     *
+     * @return The rewards.
+     */
+    public float[] getRewards() {
+        return faRewards;
+    }
+
+    /**
+     * Gets whether or not every game ended with the last step. The array is
+     * reused.
+     *
+     * @return The done flags.
+     */
+    public boolean[] getDones() {
+        return baDones;
+    }
+
+    /**
+     * Gets the number of games.
+     *
+     * @return The number of games.
+     */
+    public int getGameCount() {
+        return engEngines.length;
+    }
+
+    /**
+     * Gets the engine of a game, for inspection.
+     *
+     * @param iGame The game.
+     * @return The engine.
+     */
+    public SnakeEngine getEngine(final int iGame) {
+        return engEngines[iGame];
+    }
+
+    /**
+     * Entry point of the benchmark. Steps every game with random actions and
+     * prints the steps per second and the bytes allocated per step.
+     *
+     * @param args The number of games, the number of columns and rows of
+     *             each board and the length of the run in seconds, all
+     *             optional.
+     */
+    public static void main(final String[] args) {
+        final int iGames = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+        final int iSize = (args.length > 1) ? Integer.parseInt(args[1]) : 12;
+        final int iSeconds = (args.length > 2) ? Integer.parseInt(args[2]) : 10;
+
+        final VectorEnvironment environment = new VectorEnvironment(iGames, iSize, iSize);
+        final long[] laSeeds = new long[iGames];
+        for (int iGame = 0; iGame < iGames; iGame++) {
+            laSeeds[iGame] = iGame;
+        }
+        environment.reset(laSeeds);
+
+        final Random rActions = new Random(1L);
+        final int[] iaActions = new int[iGames];
+        final com.sun.management.ThreadMXBean thrThreads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long lThread = Thread.currentThread().getId();
+
+        /*
+         * Warm up for a second, then measure.
+         */
+        long lSteps = 0;
+        long lEpisodes = 0;
+        long lAllocated = 0;
+        long lStart = System.nanoTime();
+        final long lWarmEnd = lStart + (1000L * SnakeGame.MILLION);
+        final long lEnd = lWarmEnd + (iSeconds * 1000L * SnakeGame.MILLION);
+        boolean bWarm = false;
+        long lNow;
+        while ((lNow = System.nanoTime()) < lEnd) {
+            if (!bWarm && (lNow >= lWarmEnd)) {
+                bWarm = true;
+                lStart = lNow;
+                lSteps = 0;
+                lEpisodes = 0;
+                lAllocated = thrThreads.getThreadAllocatedBytes(lThread);
+            }
+            for (int iGame = 0; iGame < iGames; iGame++) {
+                iaActions[iGame] = (rActions.nextInt(4) == 0) ?
+                        rActions.nextInt(DIRECTIONS.length) : iNO_ACTION;
+            }
+            environment.step(iaActions);
+            lSteps++;
+            final boolean[] baDone = environment.getDones();
+            for (int iGame = 0; iGame < iGames; iGame++) {
+                if (baDone[iGame]) {
+                    lEpisodes++;
+                }
+            }
+        }
+        lAllocated = thrThreads.getThreadAllocatedBytes(lThread) - lAllocated;
+        final double dSeconds = (System.nanoTime() - lStart) / 1.0e9;
+
+        System.out.printf("games=%d size=%d steps/s=%.0f game-steps/s=%.0f " +
+                                  "episodes=%d allocated=%d bytes (%.4f bytes/step)%n",
+                          iGames,
+                          iSize,
+                          lSteps / dSeconds,
+                          (lSteps * (double) iGames) / dSeconds,
+                          lEpisodes,
+                          lAllocated,
+                          lAllocated / (double) Math.max(1L, lSteps));
+    }
+}
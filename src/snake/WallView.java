@@ -0,0 +1,390 @@
+package snake;
+
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.WindowConstants;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code WallView} class shows a wall of bot games running at the same
+ * time, scaled into a grid in a single window, to watch tournaments live.
+ * <p>
+ * The whole wall lives in one offscreen image. After every tick, only the
+ * tiles that changed on each board are copied into it from a shared
+ * {@link SpriteAtlas}, using the change tracking of {@link GameBoard}, and
+ * only the boards that ticked are repainted, by asking Swing to repaint
+ * their rectangles. Painting is then a copy of those rectangles of the
+ * image to the screen, so a wall of 64 boards costs a fraction of 64
+ * {@link BoardPanel}s, which redraw every tile with shapes and gradients on
+ * every frame.
+ * <p>
+ * Game {@code n} of the wall is seeded with {@code n}, so a wall replays
+ * the same games every time it's run with the same options. A game that
+ * ends is shown for a moment, then replaced by the next seed.
+ * <p>
+ * Usage: {@code WallView [--games=N] [--size=N] [--bots=B,B,...]
+ * [--speed=N] [--tile=N] [--seconds=N]} shows {@code N} games of the
+ * named bots, taken in turn, at {@code N} ticks per second. With
+ * {@code --seconds} the wall closes after that long and prints how long the
+ * drawing took.
+ */
+public class WallView extends JPanel {
+
+    /**
+     * Serial Version UID.
+     */
+    private static final long serialVersionUID = 2935405102842683349L;
+
+    /**
+     * The number of pixels between two boards.
+     */
+    private static final int iGAP = 2;
+
+    /**
+     * The largest size (in pixels) the wall is scaled down to fit in.
+     */
+    private static final int iMAX_WALL_WIDTH = 1600;
+
+    /**
+     * The largest height (in pixels) the wall is scaled down to fit in.
+     */
+    private static final int iMAX_WALL_HEIGHT = 960;
+
+    /**
+     * The number of ticks a finished game stays on the wall.
+     */
+    private static final int iRESTART_TICKS = 20;
+
+    /**
+     * The number of ticks a game may go without eating before it's cut
+     * short, per tile of the board.
+     */
+    private static final int iSTARVATION_PER_CELL = 2;
+
+    /**
+     * The number of milliseconds in a frame.
+     */
+    private static final long lFRAME_TIME = 1000L / 60L;
+
+    /**
+     * The color of the gaps between boards.
+     */
+    private static final Color GAP_COLOR = Color.BLACK;
+
+    /**
+     * The games.
+     */
+    private final SnakeEngine[] engines;
+
+    /**
+     * The random number generator of each game, reseeded when it restarts.
+     */
+    private final Random[] rSpawns;
+
+    /**
+     * The bot of each game.
+     */
+    private final SnakeController[] controllers;
+
+    /**
+     * The number of ticks each game has gone without eating, or, once it's
+     * over, has been shown for.
+     */
+    private final int[] iaIdleTicks;
+
+    /**
+     * Whether or not each game ticked since it was last drawn.
+     */
+    private final boolean[] baTicked;
+
+    /**
+     * The number of boards across the wall.
+     */
+    private final int iWallCols;
+
+    /**
+     * The width of a board in pixels.
+     */
+    private final int iBoardWidth;
+
+    /**
+     * The height of a board in pixels.
+     */
+    private final int iBoardHeight;
+
+    /**
+     * The sprites the tiles are copied from.
+     */
+    private final SpriteAtlas atlas;
+
+    /**
+     * The whole wall, as last drawn. Drawing into it and painting it are
+     * done under its lock.
+     */
+    private final BufferedImage imgWall;
+
+    /**
+     * The number of ticks each game goes without eating before it's cut
+     * short.
+     */
+    private final int iStarvation;
+
+    /**
+     * The seed of the next game to be started.
+     */
+    private long lNextSeed;
+
+    /**
+     * Creates a new wall, with every game at its start.
+     *
+     * @param iGames    The number of games.
+     * @param iSize     The size of each board.
+     * @param saBots    The names of the bots, taken in turn.
+     * @param iTileSize The size of each tile in pixels, or 0 to fit the wall
+     *                  on the screen.
+     */
+    public WallView(final int iGames, final int iSize, final String[] saBots, final int iTileSize) {
+        iWallCols = (int) Math.ceil(Math.sqrt(iGames));
+        final int iWallRows = (iGames + iWallCols - 1) / iWallCols;
+        final int iTile = (iTileSize > 0) ? iTileSize : Math.max(2, Math.min(
+                ((iMAX_WALL_WIDTH / iWallCols) - iGAP) / iSize,
+                ((iMAX_WALL_HEIGHT / iWallRows) - iGAP) / iSize));
+        atlas = SpriteAtlas.get(iTile);
+        iBoardWidth = iSize * iTile;
+        iBoardHeight = iSize * iTile;
+        iStarvation = iSize * iSize * iSTARVATION_PER_CELL;
+
+        engines = new SnakeEngine[iGames];
+        rSpawns = new Random[iGames];
+        controllers = new SnakeController[iGames];
+        iaIdleTicks = new int[iGames];
+        baTicked = new boolean[iGames];
+        for (int iGame = 0; iGame < iGames; iGame++) {
+            rSpawns[iGame] = new Random(iGame);
+            engines[iGame] = new SnakeEngine(iSize, iSize, rSpawns[iGame]);
+            engines[iGame].getBoard().trackChanges();
+            engines[iGame].reset();
+            controllers[iGame] = HeatmapAnalytics.getBotFactory(saBots[iGame % saBots.length]).create();
+            baTicked[iGame] = true;
+        }
+        lNextSeed = iGames;
+
+        imgWall = SpriteAtlas.createImage((iWallCols * (iBoardWidth + iGAP)) - iGAP,
+                                          (iWallRows * (iBoardHeight + iGAP)) - iGAP);
+        final Graphics2D g2dWall = imgWall.createGraphics();
+        g2dWall.setColor(GAP_COLOR);
+        g2dWall.fillRect(0, 0, imgWall.getWidth(), imgWall.getHeight());
+        g2dWall.dispose();
+        setPreferredSize(new Dimension(imgWall.getWidth(), imgWall.getHeight()));
+        setOpaque(true);
+    }
+
+    /**
+     * Moves every game on by one tick, restarting the ones that have been
+     * over for long enough.
+     */
+    public void tick() {
+        for (int iGame = 0; iGame < engines.length; iGame++) {
+            final SnakeEngine engine = engines[iGame];
+            if (engine.isGameOver() || (iaIdleTicks[iGame] >= iStarvation)) {
+                if (engine.isGameOver() && (++iaIdleTicks[iGame] < iRESTART_TICKS)) {
+                    continue;
+                }
+                rSpawns[iGame].setSeed(lNextSeed++);
+                engine.reset();
+                iaIdleTicks[iGame] = 0;
+            }
+            else {
+                controllers[iGame].control(engine, 0);
+                final boolean bAte = engine.tick() == TileType.Fruit;
+                iaIdleTicks[iGame] = (bAte || engine.isGameOver()) ? 0 : (iaIdleTicks[iGame] + 1);
+            }
+            baTicked[iGame] = true;
+        }
+    }
+
+    /**
+     * Copies the tiles that changed on every board that ticked into the
+     * wall, and asks for those boards to be repainted.
+     *
+     * @return The number of boards drawn.
+     */
+    public int drawChanges() {
+        int iDrawn = 0;
+        synchronized (imgWall) {
+            final Graphics gWall = imgWall.getGraphics();
+            try {
+                for (int iGame = 0; iGame < engines.length; iGame++) {
+                    if (!baTicked[iGame]) {
+                        continue;
+                    }
+                    baTicked[iGame] = false;
+                    drawBoard(gWall, iGame);
+                    iDrawn++;
+                }
+            }
+            finally {
+                gWall.dispose();
+            }
+        }
+        return iDrawn;
+    }
+
+    /**
+     * Copies the changed tiles of one board into the wall, the whole board
+     * if it was cleared, and asks for it to be repainted.
+     *
+     * @param gWall The graphics of the wall.
+     * @param iGame The game.
+     */
+    private void drawBoard(final Graphics gWall, final int iGame) {
+        final SnakeEngine engine = engines[iGame];
+        final GameBoard board = engine.getBoard();
+        final int iLeft = (iGame % iWallCols) * (iBoardWidth + iGAP);
+        final int iTop = (iGame / iWallCols) * (iBoardHeight + iGAP);
+        if (board.isAllChanged()) {
+            for (int iCell = 0; iCell < board.getCellCount(); iCell++) {
+                drawCell(gWall, engine, iGame, iCell, iLeft, iTop);
+            }
+        }
+        else {
+            for (int iChange = 0; iChange < board.getChangeCount(); iChange++) {
+                drawCell(gWall, engine, iGame, board.getChangedCell(iChange), iLeft, iTop);
+            }
+        }
+        board.beginChanges();
+        repaint(iLeft, iTop, iBoardWidth, iBoardHeight);
+    }
+
+    /**
+     * Copies the sprite of one tile into the wall.
+     *
+     * @param gWall  The graphics of the wall.
+     * @param engine The game.
+     * @param iGame  The number of the game, which picks its body color.
+     * @param iCell  The tile.
+     * @param iLeft  The x coordinate of the board (in pixels).
+     * @param iTop   The y coordinate of the board (in pixels).
+     */
+    private void drawCell(final Graphics gWall,
+                          final SnakeEngine engine,
+                          final int iGame,
+                          final int iCell,
+                          final int iLeft,
+                          final int iTop) {
+        final GameBoard board = engine.getBoard();
+        final byte bCode = board.getCell(iCell);
+        Direction direction = Direction.North;
+        if (bCode == GameBoard.SNAKE_HEAD) {
+            for (int iSnake = 0; iSnake < engine.getSnakeCount(); iSnake++) {
+                if (engine.getHeadCell(iSnake) == iCell) {
+                    direction = engine.getDirection(iSnake);
+                }
+            }
+        }
+        final int iTileSize = atlas.getTileSize();
+        atlas.draw(gWall, SpriteAtlas.getSprite(bCode, direction, iGame),
+                   iLeft + ((iCell % board.getColumns()) * iTileSize),
+                   iTop + ((iCell / board.getColumns()) * iTileSize));
+    }
+
+    @Override
+    public void paintComponent(final Graphics g) {
+        final long lStart = System.nanoTime();
+        synchronized (imgWall) {
+            g.drawImage(imgWall, 0, 0, null);
+        }
+        Metrics.FRAMES.increment();
+        Metrics.FRAME_TIME.recordSince(lStart);
+    }
+
+    /**
+     * Entry point of the wall.
+     *
+     * @param args The options described in the class comment.
+     * @throws InterruptedException      If the window could not be created.
+     * @throws InvocationTargetException If the window could not be created.
+     */
+    public static void main(final String[] args)
+            throws InterruptedException, InvocationTargetException {
+        Metrics.install();
+        int iGames = 36;
+        int iSize = BoardPanel.iCOL_COUNT;
+        String[] saBots = {"greedy", "autopilot", "heuristic"};
+        float fTicksPerSecond = SnakeGame.CYCLES_PER_SECOND;
+        int iTileSize = 0;
+        int iSeconds = 0;
+        for (final String sArg : args) {
+            if (sArg.startsWith("--games=")) {
+                iGames = Math.max(1, Integer.parseInt(sArg.substring("--games=".length())));
+            }
+            else if (sArg.startsWith("--size=")) {
+                iSize = Math.max(5, Integer.parseInt(sArg.substring("--size=".length())));
+            }
+            else if (sArg.startsWith("--bots=")) {
+                saBots = sArg.substring("--bots=".length()).split(",");
+            }
+            else if (sArg.startsWith("--speed=")) {
+                fTicksPerSecond = Math.max(1.0f, Float.parseFloat(sArg.substring("--speed=".length())));
+            }
+            else if (sArg.startsWith("--tile=")) {
+                iTileSize = Math.max(2, Integer.parseInt(sArg.substring("--tile=".length())));
+            }
+            else if (sArg.startsWith("--seconds=")) {
+                iSeconds = Math.max(1, Integer.parseInt(sArg.substring("--seconds=".length())));
+            }
+        }
+
+        final WallView wall = new WallView(iGames, iSize, saBots, iTileSize);
+        final JFrame frmWall = new JFrame("Snake Wall");
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                frmWall.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
+                frmWall.add(wall);
+                frmWall.pack();
+                frmWall.setLocationRelativeTo(null);
+                frmWall.setVisible(true);
+            }
+        });
+
+        /*
+         * Tick the games on a clock and draw what changed, capping the frame
+         * rate like the game loop does.
+         */
+        final LatencyHistogram lhDraw = new LatencyHistogram("wallDraw");
+        final Clock clkLogicTimer = new Clock(fTicksPerSecond);
+        final long lEnd = (iSeconds > 0) ? (System.nanoTime() + (iSeconds * 1000L * SnakeGame.MILLION)) :
+                Long.MAX_VALUE;
+        long lBoardsDrawn = 0L;
+        while (System.nanoTime() < lEnd) {
+            final long lStart = System.nanoTime();
+            clkLogicTimer.update();
+            boolean bTicked = false;
+            while (clkLogicTimer.hasElapsedCycle()) {
+                wall.tick();
+                bTicked = true;
+            }
+            if (bTicked) {
+                final long lDrawStart = System.nanoTime();
+                lBoardsDrawn += wall.drawChanges();
+                lhDraw.recordSince(lDrawStart);
+            }
+            final long lDelta = (System.nanoTime() - lStart) / SnakeGame.MILLION;
+            if (lDelta < lFRAME_TIME) {
+                LockSupport.parkNanos((lFRAME_TIME - lDelta) * SnakeGame.MILLION);
+            }
+        }
+        System.out.println(lhDraw + " boards=" + lBoardsDrawn);
+        System.out.println(Metrics.FRAME_TIME);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,165 @@
+package snake;
+
+import java.util.Random;
+
+/**
+ * The {@code HashCheck} class is a headless harness for the Zobrist hashes
+ * of the game. It plays seeded games with randomly steered snakes and,
+ * after every tick and every reset, checks the hash the board keeps up to
+ * date against one computed from scratch. It also checks that the hash of a
+ * game follows the state the board doesn't hold: two copies of a game hash
+ * alike, and changing only a score or the value of the next fruit changes
+ * the hash.
+ * <p>
+ * The {@code check-hash} target of the build runs it before the tests.
+ * <p>
+ * Usage: {@code HashCheck [games]}
+ */
+public final class HashCheck {
+
+    /**
+     * The default number of games played on each board.
+     */
+    private static final int iDEFAULT_GAMES = 20;
+
+    /**
+     * The boards played on, as size and number of snakes. The first is the
+     * board of the game window.
+     */
+    private static final int[][] iaaBOARDS = {
+            {BoardPanel.iCOL_COUNT, 1},
+            {BoardPanel.iCOL_COUNT, 4},
+            {64, 16}
+    };
+
+    /**
+     * The chance (out of 100) that a snake turns on a given tick.
+     */
+    private static final int iTURN_CHANCE = 20;
+
+    /**
+     * The most ticks a game may take before it's cut short.
+     */
+    private static final int iMAX_TICKS = 100000;
+
+    /**
+     * Every direction.
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * This class only holds static members.
+     */
+    private HashCheck() {
+    }
+
+    /**
+     * Checks the hash the board keeps up to date against a full recompute.
+     *
+     * @param engine The engine.
+     * @return Whether or not the hashes match.
+     */
+    private static boolean isHashCurrent(final SnakeEngine engine) {
+        return engine.getBoard().getHash() == engine.getBoard().computeHash();
+    }
+
+    /**
+     * Plays one seeded game to the end, checking the board's hash along the
+     * way.
+     *
+     * @param iSize   The number of columns and rows.
+     * @param iSnakes The number of snakes.
+     * @param lSeed   The seed of the engine and of the steering.
+     * @return The number of ticks after which the hash was wrong.
+     */
+    private static int play(final int iSize, final int iSnakes, final long lSeed) {
+        final SnakeEngine engine = new SnakeEngine(iSize, iSize, iSnakes, new Random(lSeed));
+        final Random rSteering = new Random(~lSeed);
+        engine.reset();
+        int iMismatches = isHashCurrent(engine) ? 0 : 1;
+        int iTicks = 0;
+        while (!engine.isGameOver() && (engine.getBoard().getFruitCount() > 0) &&
+                (iTicks < iMAX_TICKS)) {
+            for (int iSnake = 0; iSnake < iSnakes; iSnake++) {
+                if (rSteering.nextInt(100) < iTURN_CHANCE) {
+                    engine.queueDirection(iSnake, DIRECTIONS[rSteering.nextInt(DIRECTIONS.length)]);
+                }
+            }
+            engine.tick();
+            iTicks++;
+            if (!isHashCurrent(engine)) {
+                iMismatches++;
+            }
+        }
+
+        /*
+         * A reset clears the board, which the hash has to follow as well.
+         */
+        engine.reset();
+        if (!isHashCurrent(engine)) {
+            iMismatches++;
+        }
+        if (iMismatches > 0) {
+            System.out.printf("%dx%d snakes=%d seed=%d ticks=%d mismatches=%d%n",
+                              iSize, iSize, iSnakes, lSeed, iTicks, iMismatches);
+        }
+        return iMismatches;
+    }
+
+    /**
+     * Checks that the hash of a game follows the scores, which leave the
+     * board as it is.
+     *
+     * @return Whether or not the hash missed a change, or told two copies
+     * apart.
+     */
+    private static boolean checkScores() {
+        final SnakeEngine engine = new SnakeEngine(BoardPanel.iCOL_COUNT, BoardPanel.iROW_COUNT,
+                                                   new Random(42L));
+        engine.reset();
+        final SnakeEngine copy = new SnakeEngine(BoardPanel.iCOL_COUNT, BoardPanel.iROW_COUNT,
+                                                 new Random(42L));
+        copy.copyFrom(engine);
+        boolean bFailed = false;
+        if (copy.getHash() != engine.getHash()) {
+            System.err.println("Two copies of a game hash differently.");
+            bFailed = true;
+        }
+        copy.setScore(engine.getScore() + 1);
+        if (copy.getHash() == engine.getHash()) {
+            System.err.println("The hash of a game doesn't follow the score.");
+            bFailed = true;
+        }
+        copy.copyFrom(engine);
+        copy.setNextFruitScore(engine.getNextFruitScore() - 1);
+        if (copy.getHash() == engine.getHash()) {
+            System.err.println("The hash of a game doesn't follow the value of the next fruit.");
+            bFailed = true;
+        }
+        return bFailed;
+    }
+
+    /**
+     * Entry point of the harness. Exits with a non-zero status if a hash
+     * was wrong.
+     *
+     * @param args The number of games to play on each board, optional.
+     */
+    public static void main(final String[] args) {
+        final int iGames = (args.length > 0) ? Integer.parseInt(args[0]) : iDEFAULT_GAMES;
+        boolean bFailed = checkScores();
+        long lMismatches = 0;
+        for (final int[] iaBoard : iaaBOARDS) {
+            for (long lSeed = 1; lSeed <= iGames; lSeed++) {
+                lMismatches += play(iaBoard[0], iaBoard[1], lSeed);
+            }
+        }
+        System.out.printf("boards=%d games=%d mismatches=%d%n",
+                          iaaBOARDS.length, iaaBOARDS.length * iGames, lMismatches);
+        if (lMismatches > 0) {
+            System.err.println("The board's hash didn't match a full recompute.");
+            bFailed = true;
+        }
+        System.exit(bFailed ? 1 : 0);
+    }
+}
@@ -0,0 +1,103 @@
+package snake;
+
+import java.util.Random;
+
+/**
+ * The {@code SolverCheck} class is a headless harness that plays seeded
+ * games with the {@link HamiltonianController} and fails unless every one
+ * of them fills the board. It covers the board {@code --solver} plays on by
+ * default, as well as boards where only one of the sizes is even.
+ * <p>
+ * The {@code check-solver} target of the build runs it before the tests.
+ * <p>
+ * Usage: {@code SolverCheck [games]}
+ */
+public final class SolverCheck {
+
+    /**
+     * The default number of games played on each board.
+     */
+    private static final int iDEFAULT_GAMES = 5;
+
+    /**
+     * The boards played on, as columns and rows. The first is the board
+     * {@code --solver} plays on by default.
+     */
+    private static final int[][] iaaBOARDS = {
+            {BoardPanel.iCOL_COUNT + 1, BoardPanel.iROW_COUNT},
+            {32, 17},
+            {17, 32},
+            {16, 16}
+    };
+
+    /**
+     * The most ticks a game may take per tile of the board before it counts
+     * as stuck.
+     */
+    private static final int iTICKS_PER_CELL = 100;
+
+    /**
+     * This class only holds static members.
+     */
+    private SolverCheck() {
+    }
+
+    /**
+     * Plays one seeded game to the end.
+     *
+     * @param iCols The number of columns.
+     * @param iRows The number of rows.
+     * @param lSeed The seed of the engine.
+     * @return Whether or not the game filled the board.
+     */
+    private static boolean play(final int iCols, final int iRows, final long lSeed) {
+        final SnakeEngine engine = new SnakeEngine(iCols, iRows, 1, new Random(lSeed));
+        engine.setBadFruits(false);
+        engine.reset();
+        final HamiltonianController ctlSolver = new HamiltonianController();
+        final long lMaxTicks = (long) iTICKS_PER_CELL * iCols * iRows;
+        long lTicks = 0;
+
+        /*
+         * A board without room for another fruit is a full board.
+         */
+        while (!engine.isGameOver() && (engine.getBoard().getFruitCount() > 0) &&
+                (lTicks < lMaxTicks)) {
+            ctlSolver.control(engine, 0);
+            engine.tick();
+            lTicks++;
+        }
+        final boolean bFilled = !engine.isGameOver() && (engine.getBoard().getFruitCount() == 0);
+        System.out.printf("%dx%d seed=%d ticks=%d length=%d %s%n",
+                          iCols,
+                          iRows,
+                          lSeed,
+                          lTicks,
+                          engine.getLength(),
+                          bFilled ? "filled" :
+                                  (engine.isGameOver() ? "died: " + engine.getKiller(0) : "stuck"));
+        return bFilled;
+    }
+
+    /**
+     * Entry point of the harness. Exits with a non-zero status if a game
+     * didn't fill its board.
+     *
+     * @param args The number of games to play on each board, optional.
+     */
+    public static void main(final String[] args) {
+        final int iGames = (args.length > 0) ? Integer.parseInt(args[0]) : iDEFAULT_GAMES;
+        boolean bFailed = false;
+        for (final int[] iaBoard : iaaBOARDS) {
+            for (long lSeed = 1; lSeed <= iGames; lSeed++) {
+                if (!play(iaBoard[0], iaBoard[1], lSeed)) {
+                    bFailed = true;
+                }
+            }
+        }
+        if (bFailed) {
+            System.err.println("The solver didn't fill every board.");
+        }
+        System.exit(bFailed ? 1 : 0);
+    }
+}
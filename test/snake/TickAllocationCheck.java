@@ -0,0 +1,355 @@
+package snake;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * The {@code TickAllocationCheck} class is a headless harness that runs the
+ * game logic for millions of ticks and fails if the number of bytes
+ * allocated per tick goes over a budget. It steers the snake at random so
+ * that movement, growth, fruit spawning and collisions (followed by a reset)
+ * are all exercised. It then does the same for a crowded multiplayer board,
+ * where heads also run into each other, and for a snake steered by the
+ * {@link HamiltonianController} until it fills the whole board. Last, it
+ * runs the game window's own tick path through a {@link GameTicker}, with
+ * the engine instrumented, bots steering and the particle effects of the
+ * board being set off, so the metrics, flight recorder events and effects
+ * of a tick are held to the same budget.
+ * <p>
+ * The {@code check-allocation} target of the build runs it before the
+ * tests, so a stray {@code new Point} or autoboxed value in the tick loop
+ * fails the build. It lives with the tests so that it isn't shipped in the
+ * jar.
+ * <p>
+ * Usage: {@code TickAllocationCheck [ticks] [bytesPerTickBudget]}
+ */
+public final class TickAllocationCheck {
+
+    /**
+     * The default number of measured ticks.
+     */
+    private static final long lDEFAULT_TICKS = 2000000L;
+
+    /**
+     * The number of ticks run before measuring, to let the JIT settle.
+     */
+    private static final long lWARMUP_TICKS = 500000L;
+
+    /**
+     * The default number of bytes each tick may allocate on average. This
+     * leaves room for measurement noise, but not for a single allocation
+     * per tick.
+     */
+    private static final double dDEFAULT_BUDGET = 0.01;
+
+    /**
+     * The number of snakes in the multiplayer scenario.
+     */
+    private static final int iMULTIPLAYER_SNAKES = 16;
+
+    /**
+     * The number of columns and rows of the multiplayer board.
+     */
+    private static final int iMULTIPLAYER_SIZE = 64;
+
+    /**
+     * The number of columns and rows of the board the solver fills.
+     */
+    private static final int iSOLVER_SIZE = 16;
+
+    /**
+     * The share of the ticks spent on the solver scenario, whose games take
+     * longer to play out.
+     */
+    private static final int iSOLVER_TICK_DIVISOR = 4;
+
+    /**
+     * The number of bots next to the player in the game scenario.
+     */
+    private static final int iGAME_BOTS = 3;
+
+    /**
+     * The time the effects move on by per tick in the game scenario, in
+     * seconds.
+     */
+    private static final float fEFFECTS_STEP = 1.0f / 60.0f;
+
+    /**
+     * The chance (out of 100) that the driver turns on a given tick.
+     */
+    private static final int iTURN_CHANCE = 20;
+
+    /**
+     * Every direction, so the driver doesn't have to call
+     * {@code Direction.values()} (which allocates).
+     */
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * The engine being driven.
+     */
+    private final SnakeEngine engine;
+
+    /**
+     * The random number generator the driver steers with.
+     */
+    private final Random rSteering;
+
+    /**
+     * The controller that steers the snakes, or null to steer at random.
+     */
+    private final SnakeController ctlDriver;
+
+    /**
+     * The ticker that runs the game window's tick path, or null to tick the
+     * engine directly.
+     */
+    private final GameTicker gtkTicker;
+
+    /**
+     * The effects the ticker sets off, or null if there is no ticker.
+     */
+    private final BoardEffects bfxEffects;
+
+    /**
+     * The number of ticks that moved the snake.
+     */
+    private long lMoves;
+
+    /**
+     * The number of fruits eaten (each of which grows the snake and spawns
+     * a new fruit).
+     */
+    private long lGrowths;
+
+    /**
+     * The number of games that ended, in a collision or with the board full.
+     */
+    private long lGames;
+
+    /**
+     * Creates a new harness around a seeded engine.
+     *
+     * @param iSize   The number of columns and rows of the board.
+     * @param iSnakes The number of snakes on the board.
+     * @param lSeed   The seed for both the engine and the driver.
+     */
+    private TickAllocationCheck(final int iSize, final int iSnakes, final long lSeed) {
+        this(iSize, iSnakes, lSeed, null);
+    }
+
+    /**
+     * Creates a new harness around a seeded engine.
+     *
+     * @param iSize     The number of columns and rows of the board.
+     * @param iSnakes   The number of snakes on the board.
+     * @param lSeed     The seed for both the engine and the driver.
+     * @param ctlDriver The controller that steers the snakes, or null to
+     *                  steer at random.
+     */
+    private TickAllocationCheck(final int iSize,
+                                final int iSnakes,
+                                final long lSeed,
+                                final SnakeController ctlDriver) {
+        engine = new SnakeEngine(iSize, iSize, iSnakes, new Random(lSeed));
+        rSteering = new Random(~lSeed);
+        this.ctlDriver = ctlDriver;
+        this.gtkTicker = null;
+        this.bfxEffects = null;
+        if (ctlDriver != null) {
+            engine.setBadFruits(false);
+        }
+        engine.reset();
+    }
+
+    /**
+     * Creates a new harness around the tick path of the game window: one
+     * player steered by the autopilot and a few greedy bots, on an
+     * instrumented engine.
+     *
+     * @param lSeed The seed of the engine.
+     */
+    private TickAllocationCheck(final long lSeed) {
+        engine = new SnakeEngine(BoardPanel.iCOL_COUNT, BoardPanel.iROW_COUNT, 1 + iGAME_BOTS,
+                                 new Random(lSeed));
+        engine.setInstrumented(true);
+        rSteering = null;
+        ctlDriver = null;
+        final SnakeController[] ctlControllers = new SnakeController[1 + iGAME_BOTS];
+        ctlControllers[0] = KeyboardController.forPlayer(0, 1);
+        for (int iSnake = 1; iSnake < ctlControllers.length; iSnake++) {
+            ctlControllers[iSnake] = new GreedyController();
+        }
+        bfxEffects = new BoardEffects(BoardPanel.iCOL_COUNT, BoardPanel.iTILE_SIZE, Color.BLACK);
+        gtkTicker = new GameTicker(engine, ctlControllers, 1, new AutopilotController(),
+                                   bfxEffects);
+        engine.reset();
+    }
+
+    /**
+     * Runs the game for a number of ticks, resetting it whenever it ends.
+     *
+     * @param lTicks The number of ticks to run.
+     */
+    private void run(final long lTicks) {
+        if (gtkTicker != null) {
+            runTicker(lTicks);
+            return;
+        }
+        for (long lTick = 0; lTick < lTicks; lTick++) {
+            for (int iSnake = 0; iSnake < engine.getSnakeCount(); iSnake++) {
+                if (ctlDriver != null) {
+                    ctlDriver.control(engine, iSnake);
+                }
+                else if (rSteering.nextInt(100) < iTURN_CHANCE) {
+                    engine.queueDirection(iSnake,
+                                          DIRECTIONS[rSteering.nextInt(DIRECTIONS.length)]);
+                }
+            }
+
+            /*
+             * A board without room for another fruit is as far as a game
+             * can go.
+             */
+            final TileType collision = engine.tick();
+            if (engine.isGameOver() || (engine.getBoard().getFruitCount() == 0)) {
+                lGames++;
+                engine.reset();
+            }
+            else {
+                lMoves++;
+                if (collision == TileType.Fruit) {
+                    lGrowths++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the game window's tick path for a number of ticks, moving the
+     * effects on after each and resetting the game whenever it ends.
+     *
+     * @param lTicks The number of ticks to run.
+     */
+    private void runTicker(final long lTicks) {
+        for (long lTick = 0; lTick < lTicks; lTick++) {
+            final int iFruits = engine.getFruitsEaten(0);
+            gtkTicker.tick(true);
+            bfxEffects.update(fEFFECTS_STEP);
+            if (engine.isGameOver() || (engine.getBoard().getFruitCount() == 0)) {
+                lGames++;
+                engine.reset();
+            }
+            else {
+                lMoves++;
+                if (engine.getFruitsEaten(0) != iFruits) {
+                    lGrowths++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of bytes the current thread has allocated so far.
+     *
+     * @param thrThreads The thread bean.
+     * @return The allocated bytes.
+     */
+    private static long getAllocatedBytes(final com.sun.management.ThreadMXBean thrThreads) {
+        return thrThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Warms a harness up, then measures how much its ticks allocate and
+     * prints the result.
+     *
+     * @param thrThreads The thread bean.
+     * @param check      The harness.
+     * @param lTicks     The number of ticks to measure.
+     * @param dBudget    The number of bytes each tick may allocate.
+     * @return Whether or not the budget was exceeded or a scenario wasn't
+     * exercised.
+     */
+    private static boolean measure(final com.sun.management.ThreadMXBean thrThreads,
+                                   final TickAllocationCheck check,
+                                   final long lTicks,
+                                   final double dBudget) {
+        check.run(lWARMUP_TICKS);
+        check.lMoves = 0;
+        check.lGrowths = 0;
+        check.lGames = 0;
+
+        /*
+         * Measure an empty interval first, so that the cost of reading the
+         * counter itself is not charged to the ticks.
+         */
+        final long lCalibrate = getAllocatedBytes(thrThreads);
+        final long lStart = getAllocatedBytes(thrThreads);
+        check.run(lTicks);
+        final long lEnd = getAllocatedBytes(thrThreads);
+        final long lAllocated = Math.max(0L, (lEnd - lStart) - (lStart - lCalibrate));
+        final double dPerTick = lAllocated / (double) lTicks;
+
+        System.out.printf("snakes=%d ticks=%d moves=%d growths=%d games=%d " +
+                                  "allocated=%d bytes (%.4f bytes/tick, budget %.4f)%n",
+                          check.engine.getSnakeCount(),
+                          lTicks,
+                          check.lMoves,
+                          check.lGrowths,
+                          check.lGames,
+                          lAllocated,
+                          dPerTick,
+                          dBudget);
+
+        boolean bFailed = false;
+        if (dPerTick > dBudget) {
+            System.err.println("The tick loop allocates more than the budget allows.");
+            bFailed = true;
+        }
+        if ((check.lMoves == 0) || (check.lGrowths == 0) || (check.lGames == 0)) {
+            System.err.println("Not every scenario was exercised; run more ticks.");
+            bFailed = true;
+        }
+        return bFailed;
+    }
+
+    /**
+     * Entry point of the harness. Exits with a non-zero status if the budget
+     * is exceeded or a scenario wasn't exercised.
+     *
+     * @param args The number of ticks to measure and the budget in bytes per
+     *             tick, both optional.
+     */
+    public static void main(final String[] args) {
+        final long lTicks = (args.length > 0) ? Long.parseLong(args[0]) : lDEFAULT_TICKS;
+        final double dBudget = (args.length > 1) ? Double.parseDouble(args[1]) : dDEFAULT_BUDGET;
+
+        final com.sun.management.ThreadMXBean thrThreads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!thrThreads.isThreadAllocatedMemorySupported()) {
+            System.err.println("Allocation measurement is not supported by this JVM.");
+            System.exit(2);
+        }
+        thrThreads.setThreadAllocatedMemoryEnabled(true);
+
+        boolean bFailed = measure(thrThreads,
+                                  new TickAllocationCheck(BoardPanel.iCOL_COUNT, 1, 42L),
+                                  lTicks,
+                                  dBudget);
+        bFailed |= measure(thrThreads,
+                           new TickAllocationCheck(iMULTIPLAYER_SIZE, iMULTIPLAYER_SNAKES, 42L),
+                           lTicks / iMULTIPLAYER_SNAKES,
+                           dBudget * iMULTIPLAYER_SNAKES);
+        bFailed |= measure(thrThreads,
+                           new TickAllocationCheck(iSOLVER_SIZE, 1, 42L,
+                                                   new HamiltonianController()),
+                           lTicks / iSOLVER_TICK_DIVISOR,
+                           dBudget * iSOLVER_TICK_DIVISOR);
+        bFailed |= measure(thrThreads,
+                           new TickAllocationCheck(42L),
+                           lTicks / (1 + iGAME_BOTS),
+                           dBudget * (1 + iGAME_BOTS));
+        System.exit(bFailed ? 1 : 0);
+    }
+}